@@ -52,3 +52,6 @@ include $(LOCAL_PATH)/CleanupNativeFileList.mk
 
 #################### Unit test on target environment
 #include $(LOCAL_PATH)/TargetUnitTests.mk
+
+#################### Benchmarks on host environment
+#include $(LOCAL_PATH)/HostBenchmarks.mk
@@ -15,5 +15,7 @@
 LATIN_IME_CORE_SRC_FILES :=
 LATIN_IME_CORE_SRC_FILES_BACKWARD_V401 :=
 LATIN_IME_CORE_TEST_FILES :=
+LATIN_IME_CORE_TEST_BENCHMARK_FILES :=
+LATIN_IME_CORE_BENCHMARK_FILES :=
 LATIN_IME_JNI_SRC_FILES :=
 LATIN_IME_SRC_DIR :=
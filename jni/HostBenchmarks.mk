@@ -0,0 +1,66 @@
+# Copyright (C) 2015 The Android Open Source Project
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+
+# Host build is never supported in unbundled (NDK/tapas) build
+ifeq (,$(TARGET_BUILD_APPS))
+
+# HACK: Temporarily disable host tool build on Mac until the build system is ready for C++11.
+TURBOKEYBOARD_HOST_OSNAME := $(shell uname -s)
+ifneq ($(TURBOKEYBOARD_HOST_OSNAME), Darwin) # TODO: Remove this
+
+LOCAL_PATH := $(call my-dir)
+
+######################################
+include $(CLEAR_VARS)
+
+include $(LOCAL_PATH)/NativeFileList.mk
+
+#################### Host library for benchmarks
+# Unlike the library for unit tests, this one is built without the address sanitizer, which
+# would dominate the timings.
+# TODO: Remove -std=c++11 once it is set by default on host build.
+LATIN_IME_SRC_DIR := src
+LOCAL_CFLAGS += -std=c++11 -O2 -Wno-unused-parameter -Wno-unused-function
+LOCAL_CLANG := true
+LOCAL_CXX_STL := libc++
+LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR)
+LOCAL_MODULE := libturbokeyboard_host_static_for_benchmarks
+LOCAL_MODULE_TAGS := optional
+LOCAL_SRC_FILES := $(addprefix $(LATIN_IME_SRC_DIR)/, $(LATIN_IME_CORE_SRC_FILES))
+include $(BUILD_HOST_STATIC_LIBRARY)
+
+#################### Host native benchmarks
+include $(CLEAR_VARS)
+LATIN_IME_BENCHMARK_SRC_DIR := benchmarks
+# TODO: Remove -std=c++11 once it is set by default on host build.
+LOCAL_CFLAGS += -std=c++11 -O2 -Wno-unused-parameter -Wno-unused-function
+LOCAL_CLANG := true
+LOCAL_CXX_STL := libc++
+LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR)
+LOCAL_MODULE := turbokeyboard_host_benchmarks
+LOCAL_MODULE_TAGS := optional
+LOCAL_SRC_FILES := $(addprefix $(LATIN_IME_BENCHMARK_SRC_DIR)/, $(LATIN_IME_CORE_BENCHMARK_FILES))
+LOCAL_STATIC_LIBRARIES += libturbokeyboard_host_static_for_benchmarks
+include $(BUILD_HOST_EXECUTABLE)
+
+include $(LOCAL_PATH)/CleanupNativeFileList.mk
+
+endif # Darwin - TODO: Remove this
+
+endif # TARGET_BUILD_APPS
+
+#################### Clean up the tmp vars
+TURBOKEYBOARD_HOST_OSNAME :=
+LATIN_IME_SRC_DIR :=
+LATIN_IME_BENCHMARK_SRC_DIR :=
@@ -42,15 +42,17 @@ include $(BUILD_HOST_STATIC_LIBRARY)
 #################### Host native tests
 include $(CLEAR_VARS)
 LATIN_IME_TEST_SRC_DIR := tests
+LATIN_IME_BENCHMARK_SRC_DIR := benchmarks
 LOCAL_ADDRESS_SANITIZER := true
 # TODO: Remove -std=c++11 once it is set by default on host build.
 LOCAL_CFLAGS += -std=c++11 -Wno-unused-parameter -Wno-unused-function
 LOCAL_CLANG := true
 LOCAL_CXX_STL := libc++
-LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR)
+LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR) $(LOCAL_PATH)/$(LATIN_IME_BENCHMARK_SRC_DIR)
 LOCAL_MODULE := libturbokeyboard_host_unittests
 LOCAL_MODULE_TAGS := tests
-LOCAL_SRC_FILES := $(addprefix $(LATIN_IME_TEST_SRC_DIR)/, $(LATIN_IME_CORE_TEST_FILES))
+LOCAL_SRC_FILES := $(addprefix $(LATIN_IME_TEST_SRC_DIR)/, $(LATIN_IME_CORE_TEST_FILES)) \
+    $(addprefix $(LATIN_IME_BENCHMARK_SRC_DIR)/, $(LATIN_IME_CORE_TEST_BENCHMARK_FILES))
 LOCAL_STATIC_LIBRARIES += libturbokeyboard_host_static_for_unittests
 include $(BUILD_HOST_NATIVE_TEST)
 
@@ -64,3 +66,4 @@ endif # TARGET_BUILD_APPS
 TURBOKEYBOARD_HOST_OSNAME :=
 LATIN_IME_SRC_DIR :=
 LATIN_IME_TEST_SRC_DIR :=
+LATIN_IME_BENCHMARK_SRC_DIR :=
@@ -87,7 +87,13 @@ LATIN_IME_CORE_SRC_FILES := \
     $(addprefix suggest/core/result/, \
         suggestion_results.cpp \
         suggestions_output_utils.cpp) \
-    suggest/policyimpl/gesture/gesture_suggest_policy_factory.cpp \
+    $(addprefix suggest/policyimpl/gesture/, \
+        gesture_scoring.cpp \
+        gesture_scoring_params.cpp \
+        gesture_suggest_policy.cpp \
+        gesture_suggest_policy_factory.cpp \
+        gesture_traversal.cpp \
+        gesture_weighting.cpp) \
     $(addprefix suggest/policyimpl/typing/, \
         scoring_params.cpp \
         typing_scoring.cpp \
@@ -137,10 +143,28 @@ LATIN_IME_CORE_TEST_FILES := \
     dictionary/utils/sparse_table_test.cpp \
     dictionary/utils/trie_map_test.cpp \
     suggest/core/dicnode/dic_node_pool_test.cpp \
+    suggest/core/dicnode/internal/dic_node_state_scoring_test.cpp \
     suggest/core/layout/geometry_utils_test.cpp \
     suggest/core/layout/normal_distribution_2d_test.cpp \
+    suggest/policyimpl/gesture/gesture_suggest_policy_test.cpp \
     suggest/policyimpl/utils/damerau_levenshtein_edit_distance_policy_test.cpp \
     utils/autocorrection_threshold_utils_test.cpp \
     utils/char_utils_test.cpp \
     utils/int_array_view_test.cpp \
+    utils/jni_data_utils_test.cpp \
     utils/time_keeper_test.cpp
+
+# Tests generate their dictionary and their input with these.
+LATIN_IME_CORE_TEST_BENCHMARK_FILES := \
+    benchmark_dictionary.cpp \
+    benchmark_keyboard.cpp
+
+LATIN_IME_CORE_BENCHMARK_FILES := \
+    benchmark_dictionary.cpp \
+    benchmark_keyboard.cpp \
+    benchmark_main.cpp \
+    benchmark_runner.cpp \
+    dic_nodes_cache_benchmark.cpp \
+    heap_usage.cpp \
+    suggest_benchmark.cpp \
+    ver4_patricia_trie_policy_benchmark.cpp
@@ -36,17 +36,20 @@ include $(BUILD_STATIC_LIBRARY)
 #################### Target native tests
 include $(CLEAR_VARS)
 LATIN_IME_TEST_SRC_DIR := tests
+LATIN_IME_BENCHMARK_SRC_DIR := benchmarks
 LOCAL_CFLAGS += -std=c++11 -Wno-unused-parameter -Wno-unused-function
 LOCAL_CLANG := true
-LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR)
+LOCAL_C_INCLUDES += $(LOCAL_PATH)/$(LATIN_IME_SRC_DIR) $(LOCAL_PATH)/$(LATIN_IME_BENCHMARK_SRC_DIR)
 LOCAL_MODULE := libturbokeyboard_target_unittests
 LOCAL_MODULE_TAGS := tests
 LOCAL_SRC_FILES :=  \
-    $(addprefix $(LATIN_IME_TEST_SRC_DIR)/, $(LATIN_IME_CORE_TEST_FILES))
+    $(addprefix $(LATIN_IME_TEST_SRC_DIR)/, $(LATIN_IME_CORE_TEST_FILES)) \
+    $(addprefix $(LATIN_IME_BENCHMARK_SRC_DIR)/, $(LATIN_IME_CORE_TEST_BENCHMARK_FILES))
 LOCAL_STATIC_LIBRARIES += libturbokeyboard_target_static_for_unittests
 include $(BUILD_NATIVE_TEST)
 
 #################### Clean up the tmp vars
 LATIN_IME_SRC_DIR :=
 LATIN_IME_TEST_SRC_DIR :=
+LATIN_IME_BENCHMARK_SRC_DIR :=
 include $(LOCAL_PATH)/CleanupNativeFileList.mk
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_dictionary.h"
+
+#include <algorithm>
+#include <cstdio>
+#include <cstring>
+#include <set>
+
+#include "dictionary/property/ngram_context.h"
+#include "dictionary/property/ngram_property.h"
+#include "dictionary/property/unigram_property.h"
+#include "dictionary/structure/dictionary_structure_with_buffer_policy_factory.h"
+#include "dictionary/utils/file_utils.h"
+#include "dictionary/utils/format_utils.h"
+#include "suggest/core/dictionary/dictionary.h"
+#include "utils/int_array_view.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+const int BenchmarkDictionary::WORD_COUNT = 20000;
+const int BenchmarkDictionary::BIGRAM_COUNT_PER_WORD = 4;
+
+// Letters repeated roughly in proportion to their frequency in English text.
+static const char *const WEIGHTED_LETTERS =
+        "eeeeeeeeeeeetttttttttaaaaaaaaoooooooiiiiiiinnnnnnnsssssshhhhhhrrrrrrddddllll"
+        "uuuccmmwwffggyyppbbvkjxqz";
+static const int MIN_WORD_LENGTH = 2;
+static const int MAX_WORD_LENGTH_TO_GENERATE = 12;
+static const int MIN_BIGRAM_PROBABILITY = 100;
+
+// A linear congruential generator, so that every run and every platform get the same words.
+static unsigned int nextRandom(unsigned int *const seed) {
+    *seed = *seed * 1103515245u + 12345u;
+    return (*seed >> 16) & 0x7FFF;
+}
+
+BenchmarkDictionary::BenchmarkDictionary(const char *const dictDirPath)
+        : mDictDirPath(dictDirPath), mWords(), mBigrams(), mDictionary(nullptr) {
+    generateWords();
+    if (!writeDictionary()) {
+        fprintf(stderr, "Cannot write the benchmark dictionary to %s\n", dictDirPath);
+        return;
+    }
+    DictionaryStructureWithBufferPolicy::StructurePolicyPtr policy =
+            DictionaryStructureWithBufferPolicyFactory::newPolicyForExistingDictFile(
+                    dictDirPath, 0 /* bufOffset */, 0 /* size */, false /* isUpdatable */);
+    if (!policy) {
+        fprintf(stderr, "Cannot open the benchmark dictionary in %s\n", dictDirPath);
+        return;
+    }
+    mDictionary.reset(new Dictionary(nullptr /* env */, std::move(policy)));
+}
+
+BenchmarkDictionary::~BenchmarkDictionary() {
+    mDictionary.reset();
+    FileUtils::removeDirAndFiles(mDictDirPath.c_str());
+}
+
+const DictionaryStructureWithBufferPolicy *
+        BenchmarkDictionary::getDictionaryStructurePolicy() const {
+    return mDictionary->getDictionaryStructurePolicy();
+}
+
+void BenchmarkDictionary::generateWords() {
+    const int letterCount = static_cast<int>(strlen(WEIGHTED_LETTERS));
+    unsigned int seed = 1;
+    std::set<std::vector<int>> generatedWords;
+    while (static_cast<int>(mWords.size()) < WORD_COUNT) {
+        // Short words are more likely, as in natural languages.
+        const int length = MIN_WORD_LENGTH + std::min(
+                static_cast<int>(nextRandom(&seed) % (MAX_WORD_LENGTH_TO_GENERATE / 2 + 1)),
+                static_cast<int>(nextRandom(&seed) % (MAX_WORD_LENGTH_TO_GENERATE + 1)));
+        std::vector<int> word;
+        for (int i = 0; i < length; ++i) {
+            word.push_back(WEIGHTED_LETTERS[nextRandom(&seed) % letterCount]);
+        }
+        if (generatedWords.insert(word).second) {
+            mWords.push_back(std::move(word));
+        }
+    }
+    for (int i = 0; i < WORD_COUNT; ++i) {
+        for (int j = 0; j < BIGRAM_COUNT_PER_WORD; ++j) {
+            // Favor the first words, which are the most probable ones, as next words.
+            const int nextWordIndex = static_cast<int>(std::min(nextRandom(&seed) % WORD_COUNT,
+                    nextRandom(&seed) % WORD_COUNT));
+            mBigrams.emplace_back(i, nextWordIndex);
+        }
+    }
+}
+
+// Same as what the IME does when a dictionary it updates gets too large.
+static bool runGCIfNeeded(const char *const dictDirPath,
+        DictionaryStructureWithBufferPolicy::StructurePolicyPtr *const policy) {
+    if (!(*policy)->needsToRunGC(true /* mindsBlockByGC */)) {
+        return true;
+    }
+    if (!(*policy)->flushWithGC(dictDirPath)) {
+        return false;
+    }
+    *policy = DictionaryStructureWithBufferPolicyFactory::newPolicyForExistingDictFile(
+            dictDirPath, 0 /* bufOffset */, 0 /* size */, true /* isUpdatable */);
+    return *policy != nullptr;
+}
+
+bool BenchmarkDictionary::writeDictionary() {
+    FileUtils::removeDirAndFiles(mDictDirPath.c_str());
+    const std::vector<int> locale = { 'e', 'n' };
+    const DictionaryHeaderStructurePolicy::AttributeMap attributeMap;
+    DictionaryStructureWithBufferPolicy::StructurePolicyPtr policy =
+            DictionaryStructureWithBufferPolicyFactory::newPolicyForOnMemoryDict(
+                    FormatUtils::VERSION_403, locale, &attributeMap);
+    if (!policy) {
+        return false;
+    }
+    const HistoricalInfo historicalInfo(NOT_A_TIMESTAMP, 0 /* level */, 1 /* count */);
+    for (int i = 0; i < WORD_COUNT; ++i) {
+        // The probability decreases with the rank, as in real dictionaries.
+        const int probability = MAX_PROBABILITY - (MAX_PROBABILITY - 1) * i / WORD_COUNT;
+        const UnigramProperty unigramProperty(false /* representsBeginningOfSentence */,
+                false /* isNotAWord */, false /* isPossiblyOffensive */, probability,
+                historicalInfo);
+        if (!policy->addUnigramEntry(CodePointArrayView(mWords[i]), &unigramProperty)
+                || !runGCIfNeeded(mDictDirPath.c_str(), &policy)) {
+            return false;
+        }
+    }
+    for (size_t i = 0; i < mBigrams.size(); ++i) {
+        const std::vector<int> &prevWord = mWords[mBigrams[i].first];
+        const NgramContext ngramContext(prevWord.data(), static_cast<int>(prevWord.size()),
+                false /* isBeginningOfSentence */);
+        const int probability = MIN_BIGRAM_PROBABILITY
+                + static_cast<int>(i % (MAX_PROBABILITY - MIN_BIGRAM_PROBABILITY));
+        const NgramProperty ngramProperty(ngramContext,
+                CodePointArrayView(mWords[mBigrams[i].second]).toVector(), probability,
+                historicalInfo);
+        if (!policy->addNgramEntry(&ngramProperty)
+                || !runGCIfNeeded(mDictDirPath.c_str(), &policy)) {
+            return false;
+        }
+    }
+    return policy->flushWithGC(mDictDirPath.c_str());
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef TURBOKEYBOARD_BENCHMARK_DICTIONARY_H
+#define TURBOKEYBOARD_BENCHMARK_DICTIONARY_H
+
+#include <memory>
+#include <string>
+#include <utility>
+#include <vector>
+
+#include "defines.h"
+
+namespace turbokeyboard {
+
+class Dictionary;
+class DictionaryStructureWithBufferPolicy;
+
+namespace benchmark {
+
+/**
+ * A ver4 dictionary of generated words, so that benchmarks don't depend on a dictionary file.
+ *
+ * The words are made of letters drawn with their frequency in English text, which gives the trie
+ * a realistic shape. The same words, probabilities and bigrams are generated on each run. The
+ * dictionary is written to a directory and opened from there, the way the IME opens ver4
+ * dictionaries, and the directory is removed when this is destroyed.
+ */
+class BenchmarkDictionary {
+ public:
+    static const int WORD_COUNT;
+    static const int BIGRAM_COUNT_PER_WORD;
+
+    explicit BenchmarkDictionary(const char *const dictDirPath);
+    ~BenchmarkDictionary();
+
+    bool isValid() const { return mDictionary != nullptr; }
+    Dictionary *getDictionary() const { return mDictionary.get(); }
+    const DictionaryStructureWithBufferPolicy *getDictionaryStructurePolicy() const;
+    const std::vector<std::vector<int>> &getWords() const { return mWords; }
+    // Pairs of indices in getWords() of a previous word and of a word following it.
+    const std::vector<std::pair<int, int>> &getBigrams() const { return mBigrams; }
+
+ private:
+    DISALLOW_IMPLICIT_CONSTRUCTORS(BenchmarkDictionary);
+
+    void generateWords();
+    bool writeDictionary();
+
+    const std::string mDictDirPath;
+    std::vector<std::vector<int>> mWords;
+    std::vector<std::pair<int, int>> mBigrams;
+    std::unique_ptr<Dictionary> mDictionary;
+};
+} // namespace benchmark
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_BENCHMARK_DICTIONARY_H
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_keyboard.h"
+
+#include <algorithm>
+#include <cstring>
+
+#include "suggest/core/layout/proximity_info.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+const int BenchmarkKeyboard::KEY_WIDTH = 108;
+const int BenchmarkKeyboard::KEY_HEIGHT = 160;
+// Same as the grid of the keyboards of the IME.
+const int BenchmarkKeyboard::GRID_WIDTH = 32;
+const int BenchmarkKeyboard::GRID_HEIGHT = 16;
+// Same as ProximityInfo.SEARCH_DISTANCE in Java.
+const float BenchmarkKeyboard::SEARCH_DISTANCE = 1.2f;
+const int BenchmarkKeyboard::GESTURE_POINT_COUNT_PER_KEY = 8;
+const int BenchmarkKeyboard::GESTURE_POINT_INTERVAL_MS = 10;
+
+static const char *const KEYBOARD_ROWS[] = { "qwertyuiop", "asdfghjkl", "zxcvbnm" };
+
+// Squared distance from a point to the closest point of a rectangle.
+static int getSquaredDistanceToRect(const int x, const int y, const int left, const int top,
+        const int width, const int height) {
+    const int dx = x < left ? left - x : (x >= left + width ? x - left - width + 1 : 0);
+    const int dy = y < top ? top - y : (y >= top + height ? y - top - height + 1 : 0);
+    return dx * dx + dy * dy;
+}
+
+BenchmarkKeyboard::BenchmarkKeyboard()
+        : mKeyCodePoints(), mKeyXCoordinates(), mKeyYCoordinates(), mProximityInfo(nullptr) {
+    const int rowCount = static_cast<int>(NELEMS(KEYBOARD_ROWS));
+    const int keyboardWidth = static_cast<int>(strlen(KEYBOARD_ROWS[0])) * KEY_WIDTH;
+    const int keyboardHeight = rowCount * KEY_HEIGHT;
+    for (int row = 0; row < rowCount; ++row) {
+        const int keyCount = static_cast<int>(strlen(KEYBOARD_ROWS[row]));
+        const int rowLeft = (keyboardWidth - keyCount * KEY_WIDTH) / 2;
+        for (int i = 0; i < keyCount; ++i) {
+            mKeyCodePoints.push_back(KEYBOARD_ROWS[row][i]);
+            mKeyXCoordinates.push_back(rowLeft + i * KEY_WIDTH);
+            mKeyYCoordinates.push_back(row * KEY_HEIGHT);
+        }
+    }
+    const int keyCount = static_cast<int>(mKeyCodePoints.size());
+    const std::vector<int> keyWidths(keyCount, KEY_WIDTH);
+    const std::vector<int> keyHeights(keyCount, KEY_HEIGHT);
+    // The keys near each cell of the grid, as computed by ProximityInfo in Java.
+    const int cellWidth = (keyboardWidth + GRID_WIDTH - 1) / GRID_WIDTH;
+    const int cellHeight = (keyboardHeight + GRID_HEIGHT - 1) / GRID_HEIGHT;
+    const int threshold = static_cast<int>(KEY_WIDTH * SEARCH_DISTANCE);
+    std::vector<int> proximityChars(GRID_WIDTH * GRID_HEIGHT * MAX_PROXIMITY_CHARS_SIZE,
+            NOT_A_CODE_POINT);
+    for (int cell = 0; cell < GRID_WIDTH * GRID_HEIGHT; ++cell) {
+        const int centerX = (cell % GRID_WIDTH) * cellWidth + cellWidth / 2;
+        const int centerY = (cell / GRID_WIDTH) * cellHeight + cellHeight / 2;
+        int proximityCharCount = 0;
+        for (int i = 0; i < keyCount && proximityCharCount < MAX_PROXIMITY_CHARS_SIZE; ++i) {
+            if (getSquaredDistanceToRect(centerX, centerY, mKeyXCoordinates[i],
+                    mKeyYCoordinates[i], KEY_WIDTH, KEY_HEIGHT) < threshold * threshold) {
+                proximityChars[cell * MAX_PROXIMITY_CHARS_SIZE + proximityCharCount] =
+                        mKeyCodePoints[i];
+                ++proximityCharCount;
+            }
+        }
+    }
+    mProximityInfo.reset(new ProximityInfo(keyboardWidth, keyboardHeight, GRID_WIDTH,
+            GRID_HEIGHT, KEY_WIDTH, KEY_HEIGHT, proximityChars.data(), keyCount,
+            mKeyXCoordinates.data(), mKeyYCoordinates.data(), keyWidths.data(),
+            keyHeights.data(), mKeyCodePoints.data(), nullptr /* sweetSpotCenterXs */,
+            nullptr /* sweetSpotCenterYs */, nullptr /* sweetSpotRadii */));
+}
+
+BenchmarkKeyboard::~BenchmarkKeyboard() {}
+
+bool BenchmarkKeyboard::getKeyCenter(const int codePoint, int *const outX, int *const outY) const {
+    const auto it = std::find(mKeyCodePoints.begin(), mKeyCodePoints.end(), codePoint);
+    if (it == mKeyCodePoints.end()) {
+        return false;
+    }
+    const int keyIndex = static_cast<int>(it - mKeyCodePoints.begin());
+    *outX = mKeyXCoordinates[keyIndex] + KEY_WIDTH / 2;
+    *outY = mKeyYCoordinates[keyIndex] + KEY_HEIGHT / 2;
+    return true;
+}
+
+void BenchmarkKeyboard::getTypingInput(const std::vector<int> &word, Input *const outInput) const {
+    *outInput = Input();
+    for (size_t i = 0; i < word.size(); ++i) {
+        int x = 0;
+        int y = 0;
+        if (!getKeyCenter(word[i], &x, &y)) {
+            continue;
+        }
+        // Up to a fifth of a key away from the center, the same way on each run.
+        const int offset = static_cast<int>((i * 7) % 5) - 2;
+        outInput->mCodePoints.push_back(word[i]);
+        outInput->mXCoordinates.push_back(x + offset * KEY_WIDTH / 10);
+        outInput->mYCoordinates.push_back(y - offset * KEY_HEIGHT / 10);
+        outInput->mTimes.push_back(0);
+        outInput->mPointerIds.push_back(0);
+    }
+}
+
+void BenchmarkKeyboard::getGestureInput(const std::vector<int> &word,
+        Input *const outInput) const {
+    *outInput = Input();
+    int prevX = 0;
+    int prevY = 0;
+    bool hasPrevKey = false;
+    for (const int codePoint : word) {
+        int x = 0;
+        int y = 0;
+        if (!getKeyCenter(codePoint, &x, &y)) {
+            continue;
+        }
+        const int pointCount = hasPrevKey ? GESTURE_POINT_COUNT_PER_KEY : 1;
+        for (int i = 1; i <= pointCount; ++i) {
+            outInput->mXCoordinates.push_back(prevX + (x - prevX) * i / pointCount);
+            outInput->mYCoordinates.push_back(prevY + (y - prevY) * i / pointCount);
+            outInput->mTimes.push_back((outInput->getSize() - 1) * GESTURE_POINT_INTERVAL_MS);
+            outInput->mPointerIds.push_back(0);
+        }
+        prevX = x;
+        prevY = y;
+        hasPrevKey = true;
+    }
+    // Gesture input has no code points, but they are read up to the input size.
+    outInput->mCodePoints.assign(outInput->getSize(), NOT_A_CODE_POINT);
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef TURBOKEYBOARD_BENCHMARK_KEYBOARD_H
+#define TURBOKEYBOARD_BENCHMARK_KEYBOARD_H
+
+#include <memory>
+#include <vector>
+
+#include "defines.h"
+
+namespace turbokeyboard {
+
+class ProximityInfo;
+
+namespace benchmark {
+
+/**
+ * The letter keys of a QWERTY phone keyboard, and the touch points one would get typing or
+ * gesturing words on it.
+ */
+class BenchmarkKeyboard {
+ public:
+    // The points of an input, laid out the way Suggest::getSuggestions takes them.
+    struct Input {
+        std::vector<int> mCodePoints;
+        std::vector<int> mXCoordinates;
+        std::vector<int> mYCoordinates;
+        std::vector<int> mTimes;
+        std::vector<int> mPointerIds;
+
+        int getSize() const { return static_cast<int>(mXCoordinates.size()); }
+    };
+
+    BenchmarkKeyboard();
+    ~BenchmarkKeyboard();
+
+    ProximityInfo *getProximityInfo() const { return mProximityInfo.get(); }
+
+    // Taps on each letter of the word, slightly off the centers of the keys.
+    void getTypingInput(const std::vector<int> &word, Input *const outInput) const;
+
+    // A gesture going through the centers of the keys of the letters of the word.
+    void getGestureInput(const std::vector<int> &word, Input *const outInput) const;
+
+ private:
+    DISALLOW_COPY_AND_ASSIGN(BenchmarkKeyboard);
+
+    static const int KEY_WIDTH;
+    static const int KEY_HEIGHT;
+    static const int GRID_WIDTH;
+    static const int GRID_HEIGHT;
+    static const float SEARCH_DISTANCE;
+    static const int GESTURE_POINT_COUNT_PER_KEY;
+    static const int GESTURE_POINT_INTERVAL_MS;
+
+    bool getKeyCenter(const int codePoint, int *const outX, int *const outY) const;
+
+    std::vector<int> mKeyCodePoints;
+    std::vector<int> mKeyXCoordinates;
+    std::vector<int> mKeyYCoordinates;
+    std::unique_ptr<ProximityInfo> mProximityInfo;
+};
+} // namespace benchmark
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_BENCHMARK_KEYBOARD_H
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <cstdio>
+#include <cstdlib>
+#include <string>
+#include <unistd.h>
+
+#include "benchmark_dictionary.h"
+#include "benchmark_keyboard.h"
+#include "benchmark_runner.h"
+#include "benchmark_suites.h"
+
+using namespace turbokeyboard::benchmark;
+
+// Usage: turbokeyboard_host_benchmarks [name filter]
+// The benchmark dictionary is written in $TMPDIR, or in /tmp.
+int main(int argc, char **argv) {
+    const char *const filter = argc > 1 ? argv[1] : nullptr;
+    const char *const tmpDirPath = getenv("TMPDIR");
+    const std::string dictDirPath = std::string(tmpDirPath ? tmpDirPath : "/tmp")
+            + "/turbokeyboard_benchmark_dict_" + std::to_string(getpid());
+    BenchmarkDictionary dictionary(dictDirPath.c_str());
+    if (!dictionary.isValid()) {
+        return 1;
+    }
+    const BenchmarkKeyboard keyboard;
+    BenchmarkRunner runner(filter);
+    runDicNodeBenchmarks(&runner, &dictionary);
+    runVer4PatriciaTriePolicyBenchmarks(&runner, &dictionary);
+    runSuggestBenchmarks(&runner, &dictionary, &keyboard);
+    if (runner.getRunCount() == 0) {
+        fprintf(stderr, "No benchmark matches %s\n", filter);
+        return 1;
+    }
+    return 0;
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_runner.h"
+
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <cstring>
+#include <vector>
+
+#include "heap_usage.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+const long long BenchmarkRunner::MIN_RUN_DURATION_NS = 100 * 1000 * 1000;
+const int BenchmarkRunner::MAX_OPERATION_COUNT = 1 << 26;
+const int BenchmarkRunner::MEASURED_RUN_COUNT = 5;
+
+static volatile int sResultSink = 0;
+
+/* static */ void BenchmarkRunner::keepResult(const int result) {
+    sResultSink = sResultSink + result;
+}
+
+void BenchmarkRunner::run(const char *const name, const Operations &operations) {
+    if (mFilter && !strstr(name, mFilter)) {
+        return;
+    }
+    ++mRunCount;
+    // Find how many operations take long enough. This also warms the caches up.
+    int operationCount = 1;
+    while (operationCount < MAX_OPERATION_COUNT
+            && runAndGetDurationNs(operations, operationCount) < MIN_RUN_DURATION_NS) {
+        operationCount *= 2;
+    }
+    std::vector<double> nsPerOperation;
+    size_t peakHeapSizeInBytes = 0;
+    for (int i = 0; i < MEASURED_RUN_COUNT; ++i) {
+        const size_t initialHeapSizeInBytes = HeapUsage::getCurrentSizeInBytes();
+        HeapUsage::resetPeak();
+        const long long durationNs = runAndGetDurationNs(operations, operationCount);
+        peakHeapSizeInBytes = std::max(peakHeapSizeInBytes,
+                HeapUsage::getPeakSizeInBytes() - initialHeapSizeInBytes);
+        nsPerOperation.push_back(static_cast<double>(durationNs) / operationCount);
+    }
+    std::sort(nsPerOperation.begin(), nsPerOperation.end());
+    printf("%-52s %12.1f ns/op (min %12.1f) %10d ops %10zu bytes peak heap\n", name,
+            nsPerOperation[nsPerOperation.size() / 2], nsPerOperation.front(), operationCount,
+            peakHeapSizeInBytes);
+    fflush(stdout);
+}
+
+/* static */ long long BenchmarkRunner::runAndGetDurationNs(const Operations &operations,
+        const int operationCount) {
+    const auto startTime = std::chrono::steady_clock::now();
+    operations(operationCount);
+    const auto endTime = std::chrono::steady_clock::now();
+    return std::chrono::duration_cast<std::chrono::nanoseconds>(endTime - startTime).count();
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
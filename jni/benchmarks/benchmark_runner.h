@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef TURBOKEYBOARD_BENCHMARK_RUNNER_H
+#define TURBOKEYBOARD_BENCHMARK_RUNNER_H
+
+#include <functional>
+
+#include "defines.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+/**
+ * Times benchmarks and prints their results.
+ *
+ * A benchmark is a function running a given number of operations. It is first run with more and
+ * more operations until a run takes long enough to be timed reliably, then run a few times with
+ * that count. The median time per operation is reported along with the fastest one, and the peak
+ * of the heap memory allocated during the runs on top of what was allocated before them.
+ */
+class BenchmarkRunner {
+ public:
+    typedef std::function<void(const int operationCount)> Operations;
+
+    // Only the benchmarks whose name contains the filter are run, or all of them if it is null.
+    explicit BenchmarkRunner(const char *const filter) : mFilter(filter), mRunCount(0) {}
+
+    void run(const char *const name, const Operations &operations);
+
+    int getRunCount() const { return mRunCount; }
+
+    // Benchmarks pass here the results they compute, so that the compiler can't optimize away
+    // the code computing them.
+    static void keepResult(const int result);
+
+ private:
+    DISALLOW_IMPLICIT_CONSTRUCTORS(BenchmarkRunner);
+
+    static const long long MIN_RUN_DURATION_NS;
+    static const int MAX_OPERATION_COUNT;
+    static const int MEASURED_RUN_COUNT;
+
+    static long long runAndGetDurationNs(const Operations &operations, const int operationCount);
+
+    const char *const mFilter;
+    int mRunCount;
+};
+} // namespace benchmark
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_BENCHMARK_RUNNER_H
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef TURBOKEYBOARD_BENCHMARK_SUITES_H
+#define TURBOKEYBOARD_BENCHMARK_SUITES_H
+
+namespace turbokeyboard {
+namespace benchmark {
+
+class BenchmarkDictionary;
+class BenchmarkKeyboard;
+class BenchmarkRunner;
+
+// DicNodesCache and DicNodePriorityQueue, with nodes of the benchmark dictionary.
+void runDicNodeBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary);
+
+// Lookups in the ver4 trie and language model.
+void runVer4PatriciaTriePolicyBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary);
+
+// Suggest::getSuggestions, for typing and for gesture input.
+void runSuggestBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary, const BenchmarkKeyboard *const keyboard);
+
+} // namespace benchmark
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_BENCHMARK_SUITES_H
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_suites.h"
+
+#include <vector>
+
+#include "benchmark_dictionary.h"
+#include "benchmark_runner.h"
+#include "dictionary/interface/dictionary_structure_with_buffer_policy.h"
+#include "suggest/core/dicnode/dic_node.h"
+#include "suggest/core/dicnode/dic_node_priority_queue.h"
+#include "suggest/core/dicnode/dic_node_utils.h"
+#include "suggest/core/dicnode/dic_node_vector.h"
+#include "suggest/core/dicnode/dic_nodes_cache.h"
+#include "utils/int_array_view.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+// Same as the capacity of the queues of the small DicNodesCache.
+static const int QUEUE_CAPACITY = 310;
+// Nodes are pushed to the next active queue by this many before the search advances, as when
+// the children of an active node are expanded.
+static const int NEXT_ACTIVE_BATCH_SIZE = 64;
+static const int MAX_SAMPLE_NODE_COUNT = 4096;
+
+// Nodes of the first levels of the trie, in breadth-first order.
+static void getSampleDicNodes(const DictionaryStructureWithBufferPolicy *const policy,
+        std::vector<DicNode> *const outDicNodes) {
+    DicNode rootDicNode;
+    DicNodeUtils::initAsRoot(policy, WordIdArrayView(), &rootDicNode);
+    outDicNodes->push_back(rootDicNode);
+    for (size_t i = 0; i < outDicNodes->size()
+            && static_cast<int>(outDicNodes->size()) < MAX_SAMPLE_NODE_COUNT; ++i) {
+        DicNodeVector childDicNodes;
+        DicNodeUtils::getAllChildDicNodes(&(*outDicNodes)[i], policy, &childDicNodes);
+        const int childCount = childDicNodes.getSizeAndLock();
+        for (int j = 0; j < childCount
+                && static_cast<int>(outDicNodes->size()) < MAX_SAMPLE_NODE_COUNT; ++j) {
+            outDicNodes->push_back(*childDicNodes[j]);
+        }
+    }
+}
+
+void runDicNodeBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary) {
+    std::vector<DicNode> dicNodes;
+    getSampleDicNodes(dictionary->getDictionaryStructurePolicy(), &dicNodes);
+    const int dicNodeCount = static_cast<int>(dicNodes.size());
+
+    // Once the queue is full, each push replaces the worst node or is dropped.
+    runner->run("DicNodePriorityQueue::copyPush (full)", [&](const int operationCount) {
+        DicNodePriorityQueue queue(QUEUE_CAPACITY);
+        for (int i = 0; i < operationCount; ++i) {
+            queue.copyPush(&dicNodes[i % dicNodeCount]);
+        }
+        BenchmarkRunner::keepResult(queue.getSize());
+    });
+
+    runner->run("DicNodePriorityQueue::copyPush+copyPop", [&](const int operationCount) {
+        DicNodePriorityQueue queue(QUEUE_CAPACITY);
+        DicNode dicNode;
+        for (int i = 0; i < QUEUE_CAPACITY / 2; ++i) {
+            queue.copyPush(&dicNodes[i % dicNodeCount]);
+        }
+        for (int i = 0; i < operationCount; ++i) {
+            queue.copyPush(&dicNodes[i % dicNodeCount]);
+            queue.copyPop(&dicNode);
+        }
+        BenchmarkRunner::keepResult(dicNode.getNodeCodePointCount());
+    });
+
+    // The pattern of the search loop: push the next active nodes, advance, pop them all.
+    runner->run("DicNodesCache::copyPushNextActive+popActive", [&](const int operationCount) {
+        DicNodesCache cache(false /* usesLargeCapacityCache */);
+        cache.reset(QUEUE_CAPACITY /* nextActiveSize */, MAX_RESULTS /* terminalSize */);
+        DicNode dicNode;
+        for (int i = 0; i < operationCount; ++i) {
+            cache.copyPushNextActive(&dicNodes[i % dicNodeCount]);
+            if ((i + 1) % NEXT_ACTIVE_BATCH_SIZE == 0 || i + 1 == operationCount) {
+                cache.advanceActiveDicNodes();
+                while (cache.activeSize() > 0) {
+                    cache.popActive(&dicNode);
+                }
+            }
+        }
+        BenchmarkRunner::keepResult(dicNode.getNodeCodePointCount());
+    });
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
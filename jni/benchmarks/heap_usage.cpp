@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "heap_usage.h"
+
+#include <algorithm>
+#include <cstdlib>
+#include <new>
+
+namespace turbokeyboard {
+namespace benchmark {
+
+// Each block starts with its size, padded to keep the returned pointer suitably aligned.
+static const size_t BLOCK_HEADER_SIZE = alignof(std::max_align_t);
+static size_t sCurrentSizeInBytes = 0;
+static size_t sPeakSizeInBytes = 0;
+
+static void *allocate(const size_t size) {
+    void *const block = malloc(BLOCK_HEADER_SIZE + size);
+    if (!block) {
+        return nullptr;
+    }
+    *static_cast<size_t *>(block) = size;
+    sCurrentSizeInBytes += size;
+    sPeakSizeInBytes = std::max(sPeakSizeInBytes, sCurrentSizeInBytes);
+    return static_cast<char *>(block) + BLOCK_HEADER_SIZE;
+}
+
+static void *allocateOrAbort(const size_t size) {
+    void *const ptr = allocate(size);
+    if (!ptr) {
+        abort();
+    }
+    return ptr;
+}
+
+static void deallocate(void *const ptr) {
+    if (!ptr) {
+        return;
+    }
+    void *const block = static_cast<char *>(ptr) - BLOCK_HEADER_SIZE;
+    sCurrentSizeInBytes -= *static_cast<size_t *>(block);
+    free(block);
+}
+
+/* static */ size_t HeapUsage::getCurrentSizeInBytes() {
+    return sCurrentSizeInBytes;
+}
+
+/* static */ size_t HeapUsage::getPeakSizeInBytes() {
+    return sPeakSizeInBytes;
+}
+
+/* static */ void HeapUsage::resetPeak() {
+    sPeakSizeInBytes = sCurrentSizeInBytes;
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
+
+void *operator new(size_t size) {
+    return turbokeyboard::benchmark::allocateOrAbort(size);
+}
+
+void *operator new[](size_t size) {
+    return turbokeyboard::benchmark::allocateOrAbort(size);
+}
+
+void *operator new(size_t size, const std::nothrow_t &) noexcept {
+    return turbokeyboard::benchmark::allocate(size);
+}
+
+void *operator new[](size_t size, const std::nothrow_t &) noexcept {
+    return turbokeyboard::benchmark::allocate(size);
+}
+
+void operator delete(void *ptr) noexcept {
+    turbokeyboard::benchmark::deallocate(ptr);
+}
+
+void operator delete[](void *ptr) noexcept {
+    turbokeyboard::benchmark::deallocate(ptr);
+}
+
+void operator delete(void *ptr, const std::nothrow_t &) noexcept {
+    turbokeyboard::benchmark::deallocate(ptr);
+}
+
+void operator delete[](void *ptr, const std::nothrow_t &) noexcept {
+    turbokeyboard::benchmark::deallocate(ptr);
+}
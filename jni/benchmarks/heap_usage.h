@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef TURBOKEYBOARD_HEAP_USAGE_H
+#define TURBOKEYBOARD_HEAP_USAGE_H
+
+#include <cstddef>
+
+#include "defines.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+// Memory allocated with operator new by the process. The global operators are replaced in
+// heap_usage.cpp, so this only works in the benchmark executable, which is single-threaded.
+// Memory mapped dictionary buffers are not heap memory and are not counted.
+class HeapUsage {
+ public:
+    static size_t getCurrentSizeInBytes();
+    // Returns the peak since the last call to resetPeak().
+    static size_t getPeakSizeInBytes();
+    static void resetPeak();
+
+ private:
+    DISALLOW_IMPLICIT_CONSTRUCTORS(HeapUsage);
+};
+} // namespace benchmark
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_HEAP_USAGE_H
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_suites.h"
+
+#include <vector>
+
+#include "benchmark_dictionary.h"
+#include "benchmark_keyboard.h"
+#include "benchmark_runner.h"
+#include "dictionary/property/ngram_context.h"
+#include "suggest/core/dictionary/dictionary.h"
+#include "suggest/core/result/suggestion_results.h"
+#include "suggest/core/session/dic_traverse_session.h"
+#include "suggest/core/suggest_options.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+static const int SAMPLE_WORD_COUNT = 64;
+static const int MIN_SAMPLE_WORD_LENGTH = 4;
+// Same as NativeSuggestOptions in Java. The weight for the locale is in thousands.
+static const int TYPING_OPTIONS[] = { 0 /* isGesture */, 0 /* useFullEditDistance */,
+        0 /* blockOffensiveWords */, 0 /* spaceAwareGestureEnabled */,
+        1000 /* weightForLocaleInThousands */ };
+static const int GESTURE_OPTIONS[] = { 1 /* isGesture */, 0 /* useFullEditDistance */,
+        0 /* blockOffensiveWords */, 1 /* spaceAwareGestureEnabled */,
+        1000 /* weightForLocaleInThousands */ };
+
+// Words spread over the whole range of probabilities, and long enough to need corrections.
+static void getSampleWords(const BenchmarkDictionary *const dictionary,
+        std::vector<std::vector<int>> *const outWords) {
+    const std::vector<std::vector<int>> &words = dictionary->getWords();
+    const size_t step = words.size() / SAMPLE_WORD_COUNT;
+    for (size_t i = 0; i < words.size()
+            && static_cast<int>(outWords->size()) < SAMPLE_WORD_COUNT; i += step) {
+        size_t index = i;
+        while (index < words.size() - 1
+                && static_cast<int>(words[index].size()) < MIN_SAMPLE_WORD_LENGTH) {
+            ++index;
+        }
+        outWords->push_back(words[index]);
+    }
+}
+
+static int getSuggestions(const BenchmarkDictionary *const dictionary,
+        const BenchmarkKeyboard *const keyboard, DicTraverseSession *const traverseSession,
+        BenchmarkKeyboard::Input *const input, const int inputSize,
+        const NgramContext *const ngramContext, const SuggestOptions *const suggestOptions) {
+    SuggestionResults suggestionResults(MAX_RESULTS);
+    dictionary->getDictionary()->getSuggestions(keyboard->getProximityInfo(), traverseSession,
+            input->mXCoordinates.data(), input->mYCoordinates.data(), input->mTimes.data(),
+            input->mPointerIds.data(), input->mCodePoints.data(), inputSize, ngramContext,
+            suggestOptions, NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL, &suggestionResults);
+    return suggestionResults.getSuggestionCount();
+}
+
+void runSuggestBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary, const BenchmarkKeyboard *const keyboard) {
+    std::vector<std::vector<int>> sampleWords;
+    getSampleWords(dictionary, &sampleWords);
+    std::vector<BenchmarkKeyboard::Input> typingInputs(sampleWords.size());
+    std::vector<BenchmarkKeyboard::Input> gestureInputs(sampleWords.size());
+    for (size_t i = 0; i < sampleWords.size(); ++i) {
+        keyboard->getTypingInput(sampleWords[i], &typingInputs[i]);
+        keyboard->getGestureInput(sampleWords[i], &gestureInputs[i]);
+    }
+    const SuggestOptions typingOptions(TYPING_OPTIONS, NELEMS(TYPING_OPTIONS));
+    const SuggestOptions gestureOptions(GESTURE_OPTIONS, NELEMS(GESTURE_OPTIONS));
+    // The main dictionaries are large enough for the IME to use the large cache.
+    DicTraverseSession traverseSession(nullptr /* env */, nullptr /* localeStr */,
+            true /* usesLargeCache */);
+    const NgramContext emptyNgramContext;
+
+    // One operation per key, as the IME asks for suggestions after each key of a word. The
+    // session continues the search of the previous key when it can, as it does in the IME.
+    runner->run("Suggest::getSuggestions (typing, per key)", [&](const int operationCount) {
+        int result = 0;
+        int wordIndex = 0;
+        int inputSize = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            if (inputSize == typingInputs[wordIndex].getSize()) {
+                wordIndex = (wordIndex + 1) % static_cast<int>(typingInputs.size());
+                inputSize = 0;
+            }
+            ++inputSize;
+            result += getSuggestions(dictionary, keyboard, &traverseSession,
+                    &typingInputs[wordIndex], inputSize, &emptyNgramContext, &typingOptions);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+
+    runner->run("Suggest::getSuggestions (typing, bigram context)",
+            [&](const int operationCount) {
+        int result = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            const int wordIndex = i % static_cast<int>(typingInputs.size());
+            const std::vector<int> &prevWord =
+                    sampleWords[(wordIndex + 1) % static_cast<int>(sampleWords.size())];
+            const NgramContext ngramContext(prevWord.data(), static_cast<int>(prevWord.size()),
+                    false /* isBeginningOfSentence */);
+            result += getSuggestions(dictionary, keyboard, &traverseSession,
+                    &typingInputs[wordIndex], typingInputs[wordIndex].getSize(), &ngramContext,
+                    &typingOptions);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+
+    runner->run("Suggest::getSuggestions (gesture)", [&](const int operationCount) {
+        int result = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            const int wordIndex = i % static_cast<int>(gestureInputs.size());
+            result += getSuggestions(dictionary, keyboard, &traverseSession,
+                    &gestureInputs[wordIndex], gestureInputs[wordIndex].getSize(),
+                    &emptyNgramContext, &gestureOptions);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "benchmark_suites.h"
+
+#include <vector>
+
+#include "benchmark_dictionary.h"
+#include "benchmark_runner.h"
+#include "dictionary/interface/dictionary_structure_with_buffer_policy.h"
+#include "dictionary/interface/ngram_listener.h"
+#include "utils/int_array_view.h"
+#include "utils/time_keeper.h"
+
+namespace turbokeyboard {
+namespace benchmark {
+
+class CountingNgramListener : public NgramListener {
+ public:
+    CountingNgramListener() : mEntryCount(0) {}
+
+    virtual void onVisitEntry(const int ngramProbability, const int targetWordId) {
+        ++mEntryCount;
+    }
+
+    int getEntryCount() const { return mEntryCount; }
+
+ private:
+    DISALLOW_COPY_AND_ASSIGN(CountingNgramListener);
+
+    int mEntryCount;
+};
+
+void runVer4PatriciaTriePolicyBenchmarks(BenchmarkRunner *const runner,
+        const BenchmarkDictionary *const dictionary) {
+    const DictionaryStructureWithBufferPolicy *const policy =
+            dictionary->getDictionaryStructurePolicy();
+    const std::vector<std::vector<int>> &words = dictionary->getWords();
+    const int wordCount = static_cast<int>(words.size());
+    std::vector<int> wordIds;
+    for (const std::vector<int> &word : words) {
+        wordIds.push_back(policy->getWordId(CodePointArrayView(word),
+                false /* forceLowerCaseSearch */));
+    }
+    const std::vector<std::pair<int, int>> &bigrams = dictionary->getBigrams();
+    const int bigramCount = static_cast<int>(bigrams.size());
+    TimeKeeper::setCurrentTime();
+
+    runner->run("Ver4PatriciaTriePolicy::getWordId", [&](const int operationCount) {
+        int result = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            result += policy->getWordId(CodePointArrayView(words[i % wordCount]),
+                    false /* forceLowerCaseSearch */);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+
+    runner->run("Ver4PatriciaTriePolicy::getProbabilityOfWord (unigram)",
+            [&](const int operationCount) {
+        int result = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            result += policy->getProbabilityOfWord(WordIdArrayView(), wordIds[i % wordCount]);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+
+    runner->run("Ver4PatriciaTriePolicy::getProbabilityOfWord (bigram)",
+            [&](const int operationCount) {
+        int result = 0;
+        for (int i = 0; i < operationCount; ++i) {
+            const std::pair<int, int> &bigram = bigrams[i % bigramCount];
+            result += policy->getProbabilityOfWord(
+                    WordIdArrayView::singleElementView(&wordIds[bigram.first]),
+                    wordIds[bigram.second]);
+        }
+        BenchmarkRunner::keepResult(result);
+    });
+
+    runner->run("Ver4PatriciaTriePolicy::iterateNgramEntries", [&](const int operationCount) {
+        CountingNgramListener listener;
+        for (int i = 0; i < operationCount; ++i) {
+            policy->iterateNgramEntries(
+                    WordIdArrayView::singleElementView(&wordIds[i % wordCount]), &listener);
+        }
+        BenchmarkRunner::keepResult(listener.getEntryCount());
+    });
+}
+
+} // namespace benchmark
+} // namespace turbokeyboard
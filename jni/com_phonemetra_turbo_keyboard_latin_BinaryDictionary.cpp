@@ -42,6 +42,22 @@ namespace turbokeyboard {
 
 class ProximityInfo;
 
+// The layout of the input buffer of getSuggestions, in ints.
+// Must be equal to the layout in DicTraverseSession.java.
+static const int MAX_SUGGEST_OPTION_COUNT = 16;
+static const int INPUT_CODE_POINTS_OFFSET = 0;
+static const int SUGGEST_OPTIONS_OFFSET = INPUT_CODE_POINTS_OFFSET + MAX_WORD_LENGTH;
+static const int PREV_WORD_CODE_POINTS_OFFSET = SUGGEST_OPTIONS_OFFSET + MAX_SUGGEST_OPTION_COUNT;
+static const int PREV_WORD_CODE_POINT_COUNTS_OFFSET =
+        PREV_WORD_CODE_POINTS_OFFSET + MAX_PREV_WORD_COUNT_FOR_N_GRAM * MAX_WORD_LENGTH;
+static const int PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET =
+        PREV_WORD_CODE_POINT_COUNTS_OFFSET + MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+// Followed by the x-coordinates, the y-coordinates, the times and the pointer ids, in sections of
+// inputPointerCapacity ints.
+static const int INPUT_POINTERS_OFFSET =
+        PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET + MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+static const int INPUT_POINTERS_SECTION_COUNT = 4;
+
 static jlong turbokeyboard_BinaryDictionary_open(JNIEnv *env, jclass clazz, jstring sourceDir,
         jlong dictOffset, jlong dictSize, jboolean isUpdatable) {
     PROF_INIT;
@@ -177,12 +193,10 @@ static int turbokeyboard_BinaryDictionary_getFormatVersion(JNIEnv *env, jclass c
 }
 
 static void turbokeyboard_BinaryDictionary_getSuggestions(JNIEnv *env, jclass clazz, jlong dict,
-        jlong proximityInfo, jlong dicTraverseSession, jintArray xCoordinatesArray,
-        jintArray yCoordinatesArray, jintArray timesArray, jintArray pointerIdsArray,
-        jintArray inputCodePointsArray, jint inputSize, jintArray suggestOptions,
-        jobjectArray prevWordCodePointArrays, jbooleanArray isBeginningOfSentenceArray,
-        jint prevWordCount, jintArray outSuggestionCount, jintArray outCodePointsArray,
-        jintArray outScoresArray, jintArray outSpaceIndicesArray, jintArray outTypesArray,
+        jlong proximityInfo, jlong dicTraverseSession, jobject inputBuffer,
+        jint inputPointerCapacity, jint inputSize, jint suggestOptionCount, jint prevWordCount,
+        jintArray outSuggestionCount, jintArray outCodePointsArray, jintArray outScoresArray,
+        jintArray outSpaceIndicesArray, jintArray outTypesArray,
         jintArray outAutoCommitFirstWordConfidenceArray,
         jfloatArray inOutWeightOfLangModelVsSpatialModel) {
     Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
@@ -197,23 +211,27 @@ static void turbokeyboard_BinaryDictionary_getSuggestions(JNIEnv *env, jclass cl
     if (!traverseSession) {
         return;
     }
-    // Input values
-    int xCoordinates[inputSize];
-    int yCoordinates[inputSize];
-    int times[inputSize];
-    int pointerIds[inputSize];
-    const jsize inputCodePointsLength = env->GetArrayLength(inputCodePointsArray);
-    int inputCodePoints[inputCodePointsLength];
-    env->GetIntArrayRegion(xCoordinatesArray, 0, inputSize, xCoordinates);
-    env->GetIntArrayRegion(yCoordinatesArray, 0, inputSize, yCoordinates);
-    env->GetIntArrayRegion(timesArray, 0, inputSize, times);
-    env->GetIntArrayRegion(pointerIdsArray, 0, inputSize, pointerIds);
-    env->GetIntArrayRegion(inputCodePointsArray, 0, inputCodePointsLength, inputCodePoints);
-
-    const jsize numberOfOptions = env->GetArrayLength(suggestOptions);
-    int options[numberOfOptions];
-    env->GetIntArrayRegion(suggestOptions, 0, numberOfOptions, options);
-    SuggestOptions givenSuggestOptions(options, numberOfOptions);
+    // Input values. They are read in place from the direct buffer of the session, which Java does
+    // not touch during this call.
+    int *const input = inputBuffer ?
+            static_cast<int *>(env->GetDirectBufferAddress(inputBuffer)) : nullptr;
+    const jlong inputBufferSize = static_cast<jlong>(sizeof(int)) * (INPUT_POINTERS_OFFSET
+            + INPUT_POINTERS_SECTION_COUNT * static_cast<jlong>(inputPointerCapacity));
+    if (!input || env->GetDirectBufferCapacity(inputBuffer) < inputBufferSize
+            || inputSize < 0 || inputSize > inputPointerCapacity
+            || suggestOptionCount < 0 || suggestOptionCount > MAX_SUGGEST_OPTION_COUNT
+            || prevWordCount < 0 || prevWordCount > MAX_PREV_WORD_COUNT_FOR_N_GRAM) {
+        AKLOGE("Invalid input buffer: inputSize = %d, inputPointerCapacity = %d", inputSize,
+                inputPointerCapacity);
+        ASSERT(false);
+        return;
+    }
+    int *const xCoordinates = input + INPUT_POINTERS_OFFSET;
+    int *const yCoordinates = xCoordinates + inputPointerCapacity;
+    int *const times = yCoordinates + inputPointerCapacity;
+    int *const pointerIds = times + inputPointerCapacity;
+    int *const inputCodePoints = input + INPUT_CODE_POINTS_OFFSET;
+    SuggestOptions givenSuggestOptions(input + SUGGEST_OPTIONS_OFFSET, suggestOptionCount);
 
     // Output values
     /* By the way, let's check the output array length here to make sure */
@@ -243,8 +261,13 @@ static void turbokeyboard_BinaryDictionary_getSuggestions(JNIEnv *env, jclass cl
     env->GetFloatArrayRegion(inOutWeightOfLangModelVsSpatialModel, 0, 1 /* len */,
             &weightOfLangModelVsSpatialModel);
     SuggestionResults suggestionResults(MAX_RESULTS);
-    const NgramContext ngramContext = JniDataUtils::constructNgramContext(env,
-            prevWordCodePointArrays, isBeginningOfSentenceArray, prevWordCount);
+    bool isBeginningOfSentence[MAX_PREV_WORD_COUNT_FOR_N_GRAM];
+    for (int i = 0; i < prevWordCount; ++i) {
+        isBeginningOfSentence[i] = input[PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET + i] != 0;
+    }
+    const NgramContext ngramContext(
+            reinterpret_cast<const int (*)[MAX_WORD_LENGTH]>(input + PREV_WORD_CODE_POINTS_OFFSET),
+            input + PREV_WORD_CODE_POINT_COUNTS_OFFSET, isBeginningOfSentence, prevWordCount);
     if (givenSuggestOptions.isGesture() || inputSize > 0) {
         // TODO: Use SuggestionResults to return suggestions.
         dictionary->getSuggestions(pInfo, traverseSession, xCoordinates, yCoordinates,
@@ -326,6 +349,44 @@ static jint turbokeyboard_BinaryDictionary_getNextWord(JNIEnv *env, jclass clazz
     return nextToken;
 }
 
+// Batched version of getNextWord and getWordProperty. This writes the properties of as many words
+// as fit in the direct buffer, in the layout above, and returns the token to continue from.
+static jint turbokeyboard_BinaryDictionary_getNextWordProperties(JNIEnv *env, jclass clazz,
+        jlong dict, jint token, jobject outBuffer, jintArray outEntryCount) {
+    JniDataUtils::putIntToArray(env, outEntryCount, 0 /* index */, 0);
+    Dictionary *dictionary = reinterpret_cast<Dictionary *>(dict);
+    if (!dictionary) return 0;
+    int *const buffer = outBuffer ?
+            static_cast<int *>(env->GetDirectBufferAddress(outBuffer)) : nullptr;
+    const jlong bufferSize = buffer ?
+            env->GetDirectBufferCapacity(outBuffer) / static_cast<jlong>(sizeof(int)) : 0;
+    if (bufferSize < JniDataUtils::WORD_PROPERTY_ENTRY_MIN_SIZE || bufferSize > S_INT_MAX) {
+        AKLOGE("Invalid output buffer: size %lld", static_cast<long long>(bufferSize));
+        ASSERT(false);
+        return 0;
+    }
+    int wordCodePoints[MAX_WORD_LENGTH];
+    int wordCodePointCount = 0;
+    int nextToken = token;
+    int entryCount = 0;
+    int bufferPos = 0;
+    do {
+        nextToken = dictionary->getNextWordAndNextToken(nextToken, wordCodePoints,
+                &wordCodePointCount);
+        if (wordCodePointCount <= 0) {
+            continue;
+        }
+        const WordProperty wordProperty = dictionary->getWordProperty(
+                CodePointArrayView(wordCodePoints, wordCodePointCount));
+        bufferPos += JniDataUtils::outputWordPropertyEntry(wordProperty, buffer + bufferPos,
+                static_cast<int>(bufferSize) - bufferPos);
+        ++entryCount;
+    } while (nextToken != 0 && bufferSize - bufferPos
+            >= JniDataUtils::WORD_PROPERTY_ENTRY_MIN_SIZE);
+    JniDataUtils::putIntToArray(env, outEntryCount, 0 /* index */, entryCount);
+    return nextToken;
+}
+
 static void turbokeyboard_BinaryDictionary_getWordProperty(JNIEnv *env, jclass clazz,
         jlong dict, jintArray word, jboolean isBeginningOfSentence, jintArray outCodePoints,
         jbooleanArray outFlags, jintArray outProbabilityInfo, jobject outNgramPrevWordsArray,
@@ -660,7 +721,7 @@ static const JNINativeMethod sMethods[] = {
     },
     {
         const_cast<char *>("getSuggestionsNative"),
-        const_cast<char *>("(JJJ[I[I[I[I[II[I[[I[ZI[I[I[I[I[I[I[F)V"),
+        const_cast<char *>("(JJJLjava/nio/ByteBuffer;IIII[I[I[I[I[I[I[F)V"),
         reinterpret_cast<void *>(turbokeyboard_BinaryDictionary_getSuggestions)
     },
     {
@@ -690,6 +751,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("(JI[I[Z)I"),
         reinterpret_cast<void *>(turbokeyboard_BinaryDictionary_getNextWord)
     },
+    {
+        const_cast<char *>("getNextWordPropertiesNative"),
+        const_cast<char *>("(JILjava/nio/ByteBuffer;[I)I"),
+        reinterpret_cast<void *>(turbokeyboard_BinaryDictionary_getNextWordProperties)
+    },
     {
         const_cast<char *>("addUnigramEntryNative"),
         const_cast<char *>("(J[II[IIZZZI)Z"),
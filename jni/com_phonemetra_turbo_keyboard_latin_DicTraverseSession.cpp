@@ -50,6 +50,21 @@ static void turbokeyboard_initDicTraverseSession(JNIEnv *env, jclass clazz, jlon
     ts->init(dict, &ngramContext, 0 /* suggestOptions */);
 }
 
+static void turbokeyboard_getDecoderCounters(JNIEnv *env, jclass clazz, jlong traverseSession,
+        jobject outCountersBuffer) {
+    DicTraverseSession *ts = reinterpret_cast<DicTraverseSession *>(traverseSession);
+    if (!ts || !outCountersBuffer) {
+        return;
+    }
+    int *const outCounters = static_cast<int *>(env->GetDirectBufferAddress(outCountersBuffer));
+    const jlong capacity = env->GetDirectBufferCapacity(outCountersBuffer);
+    if (!outCounters || capacity < 0) {
+        AKLOGE("The decoder counters buffer is not a direct buffer.");
+        return;
+    }
+    ts->copyDecoderCounters(outCounters, static_cast<int>(capacity / sizeof(outCounters[0])));
+}
+
 static void turbokeyboard_releaseDicTraverseSession(JNIEnv *env, jclass clazz, jlong traverseSession) {
     DicTraverseSession *ts = reinterpret_cast<DicTraverseSession *>(traverseSession);
     DicTraverseSession::releaseSessionInstance(ts);
@@ -66,6 +81,11 @@ static const JNINativeMethod sMethods[] = {
         const_cast<char *>("(JJ[II)V"),
         reinterpret_cast<void *>(turbokeyboard_initDicTraverseSession)
     },
+    {
+        const_cast<char *>("getDecoderCountersNative"),
+        const_cast<char *>("(JLjava/nio/ByteBuffer;)V"),
+        reinterpret_cast<void *>(turbokeyboard_getDecoderCounters)
+    },
     {
         const_cast<char *>("releaseDicTraverseSessionNative"),
         const_cast<char *>("(J)V"),
@@ -61,22 +61,25 @@ class DicNodePriorityQueue {
         mDicNodePool.reset(mMaxSize + 1);
     }
 
-    AK_FORCE_INLINE void copyPush(const DicNode *const dicNode) {
+    // Returns whether a DicNode was discarded: the worst one evicted by dicNode or dicNode
+    // itself.
+    AK_FORCE_INLINE bool copyPush(const DicNode *const dicNode) {
         DicNode *const pooledDicNode = newDicNode(dicNode);
         if (!pooledDicNode) {
-            return;
+            return true;
         }
         if (getSize() < mMaxSize) {
             mDicNodesQueue.push(pooledDicNode);
-            return;
+            return false;
         }
         if (betterThanWorstDicNode(pooledDicNode)) {
             mDicNodePool.placeBackInstance(mDicNodesQueue.top());
             mDicNodesQueue.pop();
             mDicNodesQueue.push(pooledDicNode);
-            return;
+            return true;
         }
         mDicNodePool.placeBackInstance(pooledDicNode);
+        return true;
     }
 
     AK_FORCE_INLINE void copyPop(DicNode *const dest) {
@@ -41,7 +41,7 @@ class DicNodesCache {
               mNextActiveDicNodes(&mDicNodePriorityQueue1),
               mCachedDicNodesForContinuousSuggestion(&mDicNodePriorityQueue2),
               mTerminalDicNodes(&mDicNodePriorityQueueForTerminal),
-              mInputIndex(0), mLastCachedInputIndex(0) {}
+              mInputIndex(0), mLastCachedInputIndex(0), mNextActiveOverflowCount(0) {}
 
     AK_FORCE_INLINE virtual ~DicNodesCache() {}
 
@@ -85,8 +85,9 @@ class DicNodesCache {
         }
     }
 
-    AK_FORCE_INLINE void copyPushTerminal(DicNode *dicNode) {
-        mTerminalDicNodes->copyPush(dicNode);
+    // Returns whether a DicNode was discarded because the queue was full.
+    AK_FORCE_INLINE bool copyPushTerminal(DicNode *dicNode) {
+        return mTerminalDicNodes->copyPush(dicNode);
     }
 
     AK_FORCE_INLINE void copyPushActive(DicNode *dicNode) {
@@ -97,8 +98,12 @@ class DicNodesCache {
         mCachedDicNodesForContinuousSuggestion->copyPush(dicNode);
     }
 
-    AK_FORCE_INLINE void copyPushNextActive(DicNode *dicNode) {
-        mNextActiveDicNodes->copyPush(dicNode);
+    // Returns whether a DicNode was discarded because the queue was full.
+    AK_FORCE_INLINE bool copyPushNextActive(DicNode *dicNode) {
+        if (mNextActiveDicNodes->getSize() >= mNextActiveDicNodes->getMaxSize()) {
+            ++mNextActiveOverflowCount;
+        }
+        return mNextActiveDicNodes->copyPush(dicNode);
     }
 
     void popTerminal(DicNode *dest) {
@@ -127,6 +132,14 @@ class DicNodesCache {
         mLastCachedInputIndex = mInputIndex;
     }
 
+    // The number of DicNodes pushed to a full next active queue since this cache was created.
+    int getNextActiveOverflowCount() const { return mNextActiveOverflowCount; }
+
+    AK_FORCE_INLINE int getCacheCapacity() const {
+        return mUsesLargeCapacityCache ?
+                LARGE_PRIORITY_QUEUE_CAPACITY : SMALL_PRIORITY_QUEUE_CAPACITY;
+    }
+
  private:
     DISALLOW_COPY_AND_ASSIGN(DicNodesCache);
 
@@ -154,11 +167,6 @@ class DicNodesCache {
         return tmp;
     }
 
-    AK_FORCE_INLINE int getCacheCapacity() const {
-        return mUsesLargeCapacityCache ?
-                LARGE_PRIORITY_QUEUE_CAPACITY : SMALL_PRIORITY_QUEUE_CAPACITY;
-    }
-
     AK_FORCE_INLINE void resetTemporaryCaches() {
         mActiveDicNodes->clear();
         mNextActiveDicNodes->clear();
@@ -185,6 +193,7 @@ class DicNodesCache {
     DicNodePriorityQueue *mTerminalDicNodes;
     int mInputIndex;
     int mLastCachedInputIndex;
+    int mNextActiveOverflowCount;
 };
 } // namespace turbokeyboard
 #endif // TURBOKEYBOARD_DIC_NODES_CACHE_H
@@ -210,8 +210,10 @@ class DicNodeStateScoring {
         if (!doNormalization) {
             mNormalizedCompoundDistance = mSpatialDistance + mLanguageDistance;
         } else {
+            // Only the gesture policy normalizes. Completions move the input index past the
+            // input, but they don't consume any point.
             mNormalizedCompoundDistance = (mSpatialDistance + mLanguageDistance)
-                    / static_cast<float>(std::max(1, totalInputIndex));
+                    / static_cast<float>(std::max(1, std::min(totalInputIndex, inputSize)));
         }
     }
 };
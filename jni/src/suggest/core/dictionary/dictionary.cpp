@@ -197,6 +197,10 @@ int Dictionary::getNextWordAndNextToken(const int token, int *const outCodePoint
 }
 
 void Dictionary::logDictionaryInfo(JNIEnv *const env) const {
+    if (!env) {
+        // Created by native code alone, there is no Java side to log to.
+        return;
+    }
     int dictionaryIdCodePointBuffer[HEADER_ATTRIBUTE_BUFFER_SIZE];
     int versionStringCodePointBuffer[HEADER_ATTRIBUTE_BUFFER_SIZE];
     int dateStringCodePointBuffer[HEADER_ATTRIBUTE_BUFFER_SIZE];
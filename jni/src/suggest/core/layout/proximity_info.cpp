@@ -49,13 +49,20 @@ static AK_FORCE_INLINE void safeGetOrFillZeroFloatArrayRegion(JNIEnv *env, jfloa
     }
 }
 
-ProximityInfo::ProximityInfo(JNIEnv *env, const int keyboardWidth, const int keyboardHeight,
+template<typename T>
+static AK_FORCE_INLINE void safeCopyOrFillZeroArray(const T *const array, const int len,
+        T *const buffer) {
+    if (array && buffer) {
+        memcpy(buffer, array, len * sizeof(buffer[0]));
+    } else if (buffer) {
+        memset(buffer, 0, len * sizeof(buffer[0]));
+    }
+}
+
+ProximityInfo::ProximityInfo(const int keyboardWidth, const int keyboardHeight,
         const int gridWidth, const int gridHeight, const int mostCommonKeyWidth,
-        const int mostCommonKeyHeight, const jintArray proximityChars, const int keyCount,
-        const jintArray keyXCoordinates, const jintArray keyYCoordinates,
-        const jintArray keyWidths, const jintArray keyHeights, const jintArray keyCharCodes,
-        const jfloatArray sweetSpotCenterXs, const jfloatArray sweetSpotCenterYs,
-        const jfloatArray sweetSpotRadii)
+        const int mostCommonKeyHeight, const int keyCount,
+        const bool hasTouchPositionCorrectionData)
         : GRID_WIDTH(gridWidth), GRID_HEIGHT(gridHeight), MOST_COMMON_KEY_WIDTH(mostCommonKeyWidth),
           MOST_COMMON_KEY_WIDTH_SQUARE(mostCommonKeyWidth * mostCommonKeyWidth),
           NORMALIZED_SQUARED_MOST_COMMON_KEY_HYPOTENUSE(1.0f +
@@ -66,12 +73,22 @@ ProximityInfo::ProximityInfo(JNIEnv *env, const int keyboardWidth, const int key
           KEY_COUNT(std::min(keyCount, MAX_KEY_COUNT_IN_A_KEYBOARD)),
           KEYBOARD_WIDTH(keyboardWidth), KEYBOARD_HEIGHT(keyboardHeight),
           KEYBOARD_HYPOTENUSE(hypotf(KEYBOARD_WIDTH, KEYBOARD_HEIGHT)),
-          HAS_TOUCH_POSITION_CORRECTION_DATA(keyCount > 0 && keyXCoordinates && keyYCoordinates
-                  && keyWidths && keyHeights && keyCharCodes && sweetSpotCenterXs
-                  && sweetSpotCenterYs && sweetSpotRadii),
+          HAS_TOUCH_POSITION_CORRECTION_DATA(keyCount > 0 && hasTouchPositionCorrectionData),
           mProximityCharsArray(new int[GRID_WIDTH * GRID_HEIGHT * MAX_PROXIMITY_CHARS_SIZE
                   /* proximityCharsLength */]),
-          mLowerCodePointToKeyMap() {
+          mLowerCodePointToKeyMap() {}
+
+ProximityInfo::ProximityInfo(JNIEnv *env, const int keyboardWidth, const int keyboardHeight,
+        const int gridWidth, const int gridHeight, const int mostCommonKeyWidth,
+        const int mostCommonKeyHeight, const jintArray proximityChars, const int keyCount,
+        const jintArray keyXCoordinates, const jintArray keyYCoordinates,
+        const jintArray keyWidths, const jintArray keyHeights, const jintArray keyCharCodes,
+        const jfloatArray sweetSpotCenterXs, const jfloatArray sweetSpotCenterYs,
+        const jfloatArray sweetSpotRadii)
+        : ProximityInfo(keyboardWidth, keyboardHeight, gridWidth, gridHeight, mostCommonKeyWidth,
+                  mostCommonKeyHeight, keyCount, keyXCoordinates && keyYCoordinates && keyWidths
+                          && keyHeights && keyCharCodes && sweetSpotCenterXs
+                          && sweetSpotCenterYs && sweetSpotRadii) {
     /* Let's check the input array length here to make sure */
     const jsize proximityCharsLength = env->GetArrayLength(proximityChars);
     if (proximityCharsLength != GRID_WIDTH * GRID_HEIGHT * MAX_PROXIMITY_CHARS_SIZE) {
@@ -95,6 +112,30 @@ ProximityInfo::ProximityInfo(JNIEnv *env, const int keyboardWidth, const int key
     initializeG();
 }
 
+ProximityInfo::ProximityInfo(const int keyboardWidth, const int keyboardHeight,
+        const int gridWidth, const int gridHeight, const int mostCommonKeyWidth,
+        const int mostCommonKeyHeight, const int *const proximityChars, const int keyCount,
+        const int *const keyXCoordinates, const int *const keyYCoordinates,
+        const int *const keyWidths, const int *const keyHeights, const int *const keyCharCodes,
+        const float *const sweetSpotCenterXs, const float *const sweetSpotCenterYs,
+        const float *const sweetSpotRadii)
+        : ProximityInfo(keyboardWidth, keyboardHeight, gridWidth, gridHeight, mostCommonKeyWidth,
+                  mostCommonKeyHeight, keyCount, keyXCoordinates && keyYCoordinates && keyWidths
+                          && keyHeights && keyCharCodes && sweetSpotCenterXs
+                          && sweetSpotCenterYs && sweetSpotRadii) {
+    safeCopyOrFillZeroArray(proximityChars, GRID_WIDTH * GRID_HEIGHT * MAX_PROXIMITY_CHARS_SIZE,
+            mProximityCharsArray);
+    safeCopyOrFillZeroArray(keyXCoordinates, KEY_COUNT, mKeyXCoordinates);
+    safeCopyOrFillZeroArray(keyYCoordinates, KEY_COUNT, mKeyYCoordinates);
+    safeCopyOrFillZeroArray(keyWidths, KEY_COUNT, mKeyWidths);
+    safeCopyOrFillZeroArray(keyHeights, KEY_COUNT, mKeyHeights);
+    safeCopyOrFillZeroArray(keyCharCodes, KEY_COUNT, mKeyCodePoints);
+    safeCopyOrFillZeroArray(sweetSpotCenterXs, KEY_COUNT, mSweetSpotCenterXs);
+    safeCopyOrFillZeroArray(sweetSpotCenterYs, KEY_COUNT, mSweetSpotCenterYs);
+    safeCopyOrFillZeroArray(sweetSpotRadii, KEY_COUNT, mSweetSpotRadii);
+    initializeG();
+}
+
 ProximityInfo::~ProximityInfo() {
     delete[] mProximityCharsArray;
 }
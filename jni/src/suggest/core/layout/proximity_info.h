@@ -35,6 +35,16 @@ class ProximityInfo {
             const jintArray keyYCoordinates, const jintArray keyWidths, const jintArray keyHeights,
             const jintArray keyCharCodes, const jfloatArray sweetSpotCenterXs,
             const jfloatArray sweetSpotCenterYs, const jfloatArray sweetSpotRadii);
+    // Same as above, for native code that runs without a JVM. The arrays are copied, and
+    // proximityChars must have gridWidth * gridHeight * MAX_PROXIMITY_CHARS_SIZE elements.
+    ProximityInfo(const int keyboardWidth, const int keyboardHeight,
+            const int gridWidth, const int gridHeight,
+            const int mostCommonKeyWidth, const int mostCommonKeyHeight,
+            const int *const proximityChars, const int keyCount, const int *const keyXCoordinates,
+            const int *const keyYCoordinates, const int *const keyWidths,
+            const int *const keyHeights, const int *const keyCharCodes,
+            const float *const sweetSpotCenterXs, const float *const sweetSpotCenterYs,
+            const float *const sweetSpotRadii);
     ~ProximityInfo();
     bool hasSpaceProximity(const int x, const int y) const;
     float getNormalizedSquaredDistanceFromCenterFloatG(
@@ -90,6 +100,12 @@ class ProximityInfo {
  private:
     DISALLOW_IMPLICIT_CONSTRUCTORS(ProximityInfo);
 
+    // Initializes everything but the arrays, which the public constructors fill.
+    ProximityInfo(const int keyboardWidth, const int keyboardHeight,
+            const int gridWidth, const int gridHeight,
+            const int mostCommonKeyWidth, const int mostCommonKeyHeight, const int keyCount,
+            const bool hasTouchPositionCorrectionData);
+
     void initializeG();
 
     const int GRID_WIDTH;
@@ -16,6 +16,8 @@
 
 #include "suggest/core/result/suggestion_results.h"
 
+#include <algorithm>
+
 #include "utils/jni_data_utils.h"
 
 namespace turbokeyboard {
@@ -89,18 +91,25 @@ void SuggestionResults::getSortedScores(int *const outScores) const {
     }
 }
 
-void SuggestionResults::dumpSuggestions() const {
-    AKLOGE("weight of language model vs spatial model: %f", mWeightOfLangModelVsSpatialModel);
-    std::vector<SuggestedWord> suggestedWords;
+void SuggestionResults::getSortedSuggestedWords(
+        std::vector<SuggestedWord> *const outSuggestedWords) const {
+    outSuggestedWords->clear();
     auto copyOfSuggestedWords = mSuggestedWords;
     while (!copyOfSuggestedWords.empty()) {
-        suggestedWords.push_back(copyOfSuggestedWords.top());
+        outSuggestedWords->push_back(copyOfSuggestedWords.top());
         copyOfSuggestedWords.pop();
     }
-    int index = 0;
-    for (auto it = suggestedWords.rbegin(); it != suggestedWords.rend(); ++it) {
-        DUMP_SUGGESTION(it->getCodePoint(), it->getCodePointCount(), index, it->getScore());
-        index++;
+    // The top of the queue is the worst suggestion.
+    std::reverse(outSuggestedWords->begin(), outSuggestedWords->end());
+}
+
+void SuggestionResults::dumpSuggestions() const {
+    AKLOGE("weight of language model vs spatial model: %f", mWeightOfLangModelVsSpatialModel);
+    std::vector<SuggestedWord> suggestedWords;
+    getSortedSuggestedWords(&suggestedWords);
+    for (int i = 0; i < static_cast<int>(suggestedWords.size()); ++i) {
+        DUMP_SUGGESTION(suggestedWords[i].getCodePoint(), suggestedWords[i].getCodePointCount(),
+                i, suggestedWords[i].getScore());
     }
 }
 
@@ -43,6 +43,8 @@ class SuggestionResults {
             const int score, const int type, const int indexToPartialCommit,
             const int autocimmitFirstWordConfindence);
     void getSortedScores(int *const outScores) const;
+    // Copies the suggestions from the best to the worst.
+    void getSortedSuggestedWords(std::vector<SuggestedWord> *const outSuggestedWords) const;
     void dumpSuggestions() const;
 
     void setWeightOfLangModelVsSpatialModel(const float weightOfLangModelVsSpatialModel) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#ifndef TURBOKEYBOARD_DECODER_COUNTERS_H
+#define TURBOKEYBOARD_DECODER_COUNTERS_H
+
+#include <algorithm>
+#include <cstring>
+
+#include "defines.h"
+
+namespace turbokeyboard {
+
+// The indices of the decoder counters.
+// Must be equal to DECODER_COUNTER_* in DicTraverseSession.java.
+typedef enum {
+    // getSuggestions calls made with the session.
+    DC_GET_SUGGESTIONS_CALLS,
+    // DicNodes popped from the active queue and expanded.
+    DC_EXPANDED_DIC_NODES,
+    // DicNodes discarded by a full next active or terminal queue, evicted or dropped, and next
+    // word DicNodes not created because the word was blocked or too unlikely.
+    DC_PRUNED_DIC_NODES,
+    // DicNodes pushed to a full next active queue, which evicted the worst node or were dropped.
+    DC_PRIORITY_QUEUE_OVERFLOWS,
+    // Terminal DicNodes pushed as suggestion candidates.
+    DC_TERMINAL_CANDIDATES,
+    // The largest number of code points of an expanded DicNode, previous words included.
+    DC_MAX_TRAVERSAL_DEPTH,
+    // The capacity of the queues of the session: LARGE_PRIORITY_QUEUE_CAPACITY or
+    // SMALL_PRIORITY_QUEUE_CAPACITY.
+    DC_PRIORITY_QUEUE_CAPACITY,
+    DECODER_COUNTER_COUNT
+} DecoderCounterId;
+
+/**
+ * Counters of the work done by the decoder since the session was created, to tune the queue
+ * capacities and the pruning thresholds. Updating a counter is a mere increment, so they are
+ * always maintained.
+ */
+class DecoderCounters {
+ public:
+    AK_FORCE_INLINE DecoderCounters() {
+        memset(mCounters, 0, sizeof(mCounters));
+    }
+
+    AK_FORCE_INLINE void increment(const DecoderCounterId id) {
+        ++mCounters[id];
+    }
+
+    AK_FORCE_INLINE void set(const DecoderCounterId id, const int value) {
+        mCounters[id] = value;
+    }
+
+    AK_FORCE_INLINE void updateMax(const DecoderCounterId id, const int value) {
+        mCounters[id] = std::max(mCounters[id], value);
+    }
+
+    AK_FORCE_INLINE int get(const DecoderCounterId id) const {
+        return mCounters[id];
+    }
+
+    // Copies up to outSize counters and returns the number of copied counters.
+    int copyTo(int *const outCounters, const int outSize) const {
+        const int count = std::min(outSize, static_cast<int>(DECODER_COUNTER_COUNT));
+        if (count > 0) {
+            memmove(outCounters, mCounters, count * sizeof(mCounters[0]));
+        }
+        return count;
+    }
+
+ private:
+    DISALLOW_COPY_AND_ASSIGN(DecoderCounters);
+
+    int mCounters[DECODER_COUNTER_COUNT];
+};
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_DECODER_COUNTERS_H
@@ -24,6 +24,7 @@
 #include "jni.h"
 #include "suggest/core/dicnode/dic_nodes_cache.h"
 #include "suggest/core/layout/proximity_info_state.h"
+#include "suggest/core/session/decoder_counters.h"
 #include "utils/int_array_view.h"
 
 namespace turbokeyboard {
@@ -53,7 +54,8 @@ class DicTraverseSession {
     AK_FORCE_INLINE DicTraverseSession(JNIEnv *env, jstring localeStr, bool usesLargeCache)
             : mPrevWordIdCount(0), mProximityInfo(nullptr), mDictionary(nullptr),
               mSuggestOptions(nullptr), mDicNodesCache(usesLargeCache), mMultiBigramMap(),
-              mInputSize(0), mMaxPointerCount(1), mMultiWordCostMultiplier(1.0f) {
+              mInputSize(0), mMaxPointerCount(1), mMultiWordCostMultiplier(1.0f),
+              mDecoderCounters() {
         // NOTE: mProximityInfoStates is an array of instances.
         // No need to initialize it explicitly here.
     }
@@ -86,6 +88,16 @@ class DicTraverseSession {
         return &mProximityInfoStates[id];
     }
     int getInputSize() const { return mInputSize; }
+    DecoderCounters *getDecoderCounters() { return &mDecoderCounters; }
+
+    // Copies the decoder counters, see DecoderCounterId, and returns the number of copied
+    // counters.
+    int copyDecoderCounters(int *const outCounters, const int outSize) {
+        mDecoderCounters.set(DC_PRIORITY_QUEUE_OVERFLOWS,
+                mDicNodesCache.getNextActiveOverflowCount());
+        mDecoderCounters.set(DC_PRIORITY_QUEUE_CAPACITY, mDicNodesCache.getCacheCapacity());
+        return mDecoderCounters.copyTo(outCounters, outSize);
+    }
 
     bool isOnlyOnePointerUsed(int *pointerId) const {
         // Not in the dictionary word
@@ -184,6 +196,7 @@ class DicTraverseSession {
     // Configuration per dictionary
     float mMultiWordCostMultiplier;
 
+    DecoderCounters mDecoderCounters;
 };
 } // namespace turbokeyboard
 #endif // TURBOKEYBOARD_DIC_TRAVERSE_SESSION_H
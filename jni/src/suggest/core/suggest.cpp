@@ -57,6 +57,7 @@ void Suggest::getSuggestions(ProximityInfo *pInfo, void *traverseSession,
             pointerIds, maxSpatialDistance, TRAVERSAL->getMaxPointerCount());
     // TODO: Add the way to evaluate cache
 
+    tSession->getDecoderCounters()->increment(DC_GET_SUGGESTIONS_CALLS);
     initializeSearch(tSession);
     PROF_TIMER_END(0);
     PROF_TIMER_START(1);
@@ -124,6 +125,9 @@ void Suggest::expandCurrentDicNodes(DicTraverseSession *traverseSession) const {
         if (dicNode.isTotalInputSizeExceedingLimit()) {
             return;
         }
+        DecoderCounters *const decoderCounters = traverseSession->getDecoderCounters();
+        decoderCounters->increment(DC_EXPANDED_DIC_NODES);
+        decoderCounters->updateMax(DC_MAX_TRAVERSAL_DEPTH, dicNode.getTotalNodeCodePointCount());
         childDicNodes.clear();
         const int point0Index = dicNode.getInputIndex(0);
         const bool canDoLookAheadCorrection =
@@ -220,7 +224,9 @@ void Suggest::expandCurrentDicNodes(DicTraverseSession *traverseSession) const {
 
             // Push the dicNode for look-ahead correction
             if (allowsErrorCorrections && canDoLookAheadCorrection) {
-                traverseSession->getDicTraverseCache()->copyPushNextActive(&dicNode);
+                if (traverseSession->getDicTraverseCache()->copyPushNextActive(&dicNode)) {
+                    decoderCounters->increment(DC_PRUNED_DIC_NODES);
+                }
             }
         }
     }
@@ -249,7 +255,11 @@ void Suggest::processTerminalDicNode(
     }
     Weighting::addCostAndForwardInputIndex(WEIGHTING, CT_TERMINAL, traverseSession, 0,
             &terminalDicNode, traverseSession->getMultiBigramMap());
-    traverseSession->getDicTraverseCache()->copyPushTerminal(&terminalDicNode);
+    DecoderCounters *const decoderCounters = traverseSession->getDecoderCounters();
+    if (traverseSession->getDicTraverseCache()->copyPushTerminal(&terminalDicNode)) {
+        decoderCounters->increment(DC_PRUNED_DIC_NODES);
+    }
+    decoderCounters->increment(DC_TERMINAL_CANDIDATES);
 }
 
 /**
@@ -265,8 +275,9 @@ void Suggest::processExpandedDicNode(
         }
         const int allowsLookAhead = !(dicNode->hasMultipleWords()
                 && dicNode->isCompletion(traverseSession->getInputSize()));
-        if (dicNode->hasChildren() && allowsLookAhead) {
-            traverseSession->getDicTraverseCache()->copyPushNextActive(dicNode);
+        if (dicNode->hasChildren() && allowsLookAhead
+                && traverseSession->getDicTraverseCache()->copyPushNextActive(dicNode)) {
+            traverseSession->getDecoderCounters()->increment(DC_PRUNED_DIC_NODES);
         }
     }
 }
@@ -418,10 +429,12 @@ void Suggest::createNextWordDicNode(DicTraverseSession *traverseSession, DicNode
                     traverseSession->getMultiBigramMap());
     if (SuggestionsOutputUtils::shouldBlockWord(traverseSession->getSuggestOptions(),
             dicNode, wordAttributes, false /* isLastWord */)) {
+        traverseSession->getDecoderCounters()->increment(DC_PRUNED_DIC_NODES);
         return;
     }
 
     if (!TRAVERSAL->isGoodToTraverseNextWord(dicNode, wordAttributes.getProbability())) {
+        traverseSession->getDecoderCounters()->increment(DC_PRUNED_DIC_NODES);
         return;
     }
 
@@ -438,7 +451,9 @@ void Suggest::createNextWordDicNode(DicTraverseSession *traverseSession, DicNode
         // CAVEAT: This pruning is important for speed. Remove this when we can afford not to prune
         // here because here is not the right place to do pruning. Pruning should take place only
         // in DicNodePriorityQueue.
-        traverseSession->getDicTraverseCache()->copyPushNextActive(&newDicNode);
+        if (traverseSession->getDicTraverseCache()->copyPushNextActive(&newDicNode)) {
+            traverseSession->getDecoderCounters()->increment(DC_PRUNED_DIC_NODES);
+        }
     }
 }
 } // namespace turbokeyboard
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "suggest/policyimpl/gesture/gesture_scoring.h"
+
+#include "suggest/core/dictionary/dictionary.h"
+#include "suggest/core/layout/proximity_info_state.h"
+#include "suggest/core/result/suggestion_results.h"
+
+namespace turbokeyboard {
+const GestureScoring GestureScoring::sInstance;
+
+void GestureScoring::getMostProbableString(const DicTraverseSession *const traverseSession,
+        const float weightOfLangModelVsSpatialModel,
+        SuggestionResults *const outSuggestionResults) const {
+    // Offers the keys the stroke went through when it was traced carefully enough, so that words
+    // that are not in the dictionaries can be gestured too.
+    const ProximityInfoState *const pInfoState = traverseSession->getProximityInfoState(0);
+    const int inputSize = pInfoState->size();
+    if (inputSize <= 0) {
+        return;
+    }
+    int codePoints[MAX_WORD_LENGTH];
+    const float logProbability = pInfoState->getMostProbableString(codePoints);
+    int codePointCount = 0;
+    while (codePointCount < MAX_WORD_LENGTH && codePoints[codePointCount] != 0) {
+        ++codePointCount;
+    }
+    if (codePointCount == 0 || logProbability > static_cast<float>(inputSize)
+            * GestureScoringParams::MOST_PROBABLE_STRING_MAX_LOG_PROBABILITY_PER_INPUT) {
+        return;
+    }
+    outSuggestionResults->addSuggestion(codePoints, codePointCount,
+            static_cast<int>(GestureScoringParams::MOST_PROBABLE_STRING_OUTPUT_SCORE
+                    * SUGGEST_INTERFACE_OUTPUT_SCALE),
+            Dictionary::KIND_OOV_CORRECTION, NOT_AN_INDEX, NOT_A_FIRST_WORD_CONFIDENCE);
+}
+}  // namespace turbokeyboard
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "suggest/policyimpl/gesture/gesture_scoring_params.h"
+
+namespace turbokeyboard {
+const float GestureScoringParams::MAX_SPATIAL_DISTANCE = 1.0f;
+const int GestureScoringParams::THRESHOLD_NEXT_WORD_PROBABILITY = 40;
+const int GestureScoringParams::THRESHOLD_NEXT_WORD_PROBABILITY_FOR_CAPPED = 120;
+const float GestureScoringParams::AUTOCORRECT_OUTPUT_THRESHOLD = 1.0f;
+const int GestureScoringParams::MAX_CACHE_DIC_NODE_SIZE = 310;
+const int GestureScoringParams::MAX_CACHE_DIC_NODE_SIZE_FOR_LOW_PROBABILITY_LOCALE = 100;
+const int GestureScoringParams::THRESHOLD_SHORT_WORD_LENGTH = 4;
+
+const float GestureScoringParams::PROBABILITY_WEIGHT = 0.5f;
+const float GestureScoringParams::SKIP_PROBABILITY_WEIGHT = 0.5f;
+const float GestureScoringParams::STROKE_END_SKIP_COST = 2.0f;
+const float GestureScoringParams::DISTANCE_WEIGHT_LENGTH = 0.1f;
+const float GestureScoringParams::DISTANCE_WEIGHT_LANGUAGE = 0.8f;
+const float GestureScoringParams::INTENTIONAL_OMISSION_COST = 0.05f;
+const float GestureScoringParams::DOUBLE_LETTER_COST = 0.05f;
+const float GestureScoringParams::STRONG_DOUBLE_LETTER_COST = 0.0f;
+const float GestureScoringParams::NOT_A_DOUBLE_LETTER_COST = 0.15f;
+const float GestureScoringParams::SPACE_OMISSION_COST = 0.5f;
+const float GestureScoringParams::COST_FIRST_COMPLETION = 0.8f;
+const float GestureScoringParams::COST_COMPLETION = 0.05f;
+const float GestureScoringParams::HAS_MULTI_WORD_TERMINAL_COST = 0.4f;
+const float GestureScoringParams::GESTURE_BASE_OUTPUT_SCORE = 1.0f;
+const float GestureScoringParams::GESTURE_MAX_OUTPUT_SCORE_PER_INPUT = 0.5f;
+const float GestureScoringParams::MOST_PROBABLE_STRING_MAX_LOG_PROBABILITY_PER_INPUT = 0.5f;
+const float GestureScoringParams::MOST_PROBABLE_STRING_OUTPUT_SCORE = 0.1f;
+const float GestureScoringParams::LOCALE_WEIGHT_THRESHOLD_FOR_SPACE_OMISSION = 0.99f;
+const float GestureScoringParams::LOCALE_WEIGHT_THRESHOLD_FOR_SMALL_CACHE_SIZE = 0.99f;
+} // namespace turbokeyboard
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#ifndef TURBOKEYBOARD_GESTURE_SCORING_PARAMS_H
+#define TURBOKEYBOARD_GESTURE_SCORING_PARAMS_H
+
+#include "defines.h"
+
+namespace turbokeyboard {
+
+class GestureScoringParams {
+ public:
+    // Fixed model parameters
+    static const float MAX_SPATIAL_DISTANCE;
+    static const int THRESHOLD_NEXT_WORD_PROBABILITY;
+    static const int THRESHOLD_NEXT_WORD_PROBABILITY_FOR_CAPPED;
+    static const float AUTOCORRECT_OUTPUT_THRESHOLD;
+    static const int MAX_CACHE_DIC_NODE_SIZE;
+    static const int MAX_CACHE_DIC_NODE_SIZE_FOR_LOW_PROBABILITY_LOCALE;
+    static const int THRESHOLD_SHORT_WORD_LENGTH;
+
+    // Tuned against gestures through the centers of the keys. To be tuned against recorded
+    // gestures.
+    static const float PROBABILITY_WEIGHT;
+    static const float SKIP_PROBABILITY_WEIGHT;
+    static const float STROKE_END_SKIP_COST;
+    static const float DISTANCE_WEIGHT_LENGTH;
+    static const float DISTANCE_WEIGHT_LANGUAGE;
+    static const float INTENTIONAL_OMISSION_COST;
+    static const float DOUBLE_LETTER_COST;
+    static const float STRONG_DOUBLE_LETTER_COST;
+    static const float NOT_A_DOUBLE_LETTER_COST;
+    static const float SPACE_OMISSION_COST;
+    static const float COST_FIRST_COMPLETION;
+    static const float COST_COMPLETION;
+    static const float HAS_MULTI_WORD_TERMINAL_COST;
+    static const float GESTURE_BASE_OUTPUT_SCORE;
+    static const float GESTURE_MAX_OUTPUT_SCORE_PER_INPUT;
+    static const float MOST_PROBABLE_STRING_MAX_LOG_PROBABILITY_PER_INPUT;
+    static const float MOST_PROBABLE_STRING_OUTPUT_SCORE;
+    static const float LOCALE_WEIGHT_THRESHOLD_FOR_SPACE_OMISSION;
+    static const float LOCALE_WEIGHT_THRESHOLD_FOR_SMALL_CACHE_SIZE;
+
+ private:
+    DISALLOW_IMPLICIT_CONSTRUCTORS(GestureScoringParams);
+};
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_GESTURE_SCORING_PARAMS_H
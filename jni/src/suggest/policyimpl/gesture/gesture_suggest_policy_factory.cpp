@@ -16,6 +16,13 @@
 
 #include "gesture_suggest_policy_factory.h"
 
+#include "suggest/policyimpl/gesture/gesture_suggest_policy.h"
+
 namespace turbokeyboard {
-    const SuggestPolicy *(*GestureSuggestPolicyFactory::sGestureSuggestFactoryMethod)() = 0;
+    static const SuggestPolicy *getDefaultGestureSuggestPolicy() {
+        return GestureSuggestPolicy::getInstance();
+    }
+
+    const SuggestPolicy *(*GestureSuggestPolicyFactory::sGestureSuggestFactoryMethod)() =
+            getDefaultGestureSuggestPolicy;
 } // namespace turbokeyboard
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#ifndef TURBOKEYBOARD_GESTURE_TRAVERSAL_H
+#define TURBOKEYBOARD_GESTURE_TRAVERSAL_H
+
+#include <cstdint>
+
+#include "defines.h"
+#include "suggest/core/dicnode/dic_node.h"
+#include "suggest/core/dicnode/dic_node_vector.h"
+#include "suggest/core/layout/proximity_info.h"
+#include "suggest/core/layout/proximity_info_state.h"
+#include "suggest/core/policy/traversal.h"
+#include "suggest/core/session/dic_traverse_session.h"
+#include "suggest/core/suggest_options.h"
+#include "suggest/policyimpl/gesture/gesture_scoring_params.h"
+#include "utils/char_utils.h"
+
+namespace turbokeyboard {
+class GestureTraversal : public Traversal {
+ public:
+    static const GestureTraversal *getInstance() { return &sInstance; }
+
+    AK_FORCE_INLINE int getMaxPointerCount() const {
+        // The proximity info states are only set up for geometric input with this pointer count.
+        return MAX_POINTER_COUNT_G;
+    }
+
+    AK_FORCE_INLINE bool allowsErrorCorrections(const DicNode *const dicNode) const {
+        // Sloppy strokes are handled by the alignment of code points to points instead.
+        return false;
+    }
+
+    AK_FORCE_INLINE bool isOmission(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode, const DicNode *const childDicNode,
+            const bool allowsErrorCorrections) const {
+        if (!CORRECT_INTENTIONAL_OMISSION) {
+            return false;
+        }
+        // Only code points that can't be traced, like apostrophes, may be omitted.
+        return childDicNode->canBeIntentionalOmission()
+                && !dicNode->isCompletion(traverseSession->getInputSize());
+    }
+
+    AK_FORCE_INLINE bool isSpaceSubstitutionTerminal(
+            const DicTraverseSession *const traverseSession, const DicNode *const dicNode) const {
+        return false;
+    }
+
+    AK_FORCE_INLINE bool isSpaceOmissionTerminal(
+            const DicTraverseSession *const traverseSession, const DicNode *const dicNode) const {
+        if (!CORRECT_NEW_WORD_SPACE_OMISSION) {
+            return false;
+        }
+        if (traverseSession->getSuggestOptions()->weightForLocale()
+                < GestureScoringParams::LOCALE_WEIGHT_THRESHOLD_FOR_SPACE_OMISSION) {
+            return false;
+        }
+        const int inputSize = traverseSession->getInputSize();
+        if (dicNode->isCompletion(inputSize)) {
+            return false;
+        }
+        if (!dicNode->isTerminalDicNode()) {
+            return false;
+        }
+        return !dicNode->isTotalInputSizeExceedingLimit()
+                && !dicNode->shouldBeFilteredBySafetyNetForBigram();
+    }
+
+    AK_FORCE_INLINE bool shouldDepthLevelCache(
+            const DicTraverseSession *const traverseSession) const {
+        // Dic nodes don't advance by one point per expansion, so there is no depth to cache at.
+        return false;
+    }
+
+    AK_FORCE_INLINE bool shouldNodeLevelCache(
+            const DicTraverseSession *const traverseSession, const DicNode *const dicNode) const {
+        return false;
+    }
+
+    AK_FORCE_INLINE bool canDoLookAheadCorrection(
+            const DicTraverseSession *const traverseSession, const DicNode *const dicNode) const {
+        return false;
+    }
+
+    AK_FORCE_INLINE ProximityType getProximityType(
+            const DicTraverseSession *const traverseSession, const DicNode *const dicNode,
+            const DicNode *const childDicNode) const {
+        const int inputIndex = dicNode->getInputIndex(0);
+        if (inputIndex >= traverseSession->getProximityInfoState(0)->size()) {
+            return UNRELATED_CHAR;
+        }
+        if (dicNode->getNodeCodePointCount() > 0 && CharUtils::toBaseLowerCase(
+                childDicNode->getNodeCodePoint()) == dicNode->getPrevCodePointG(0)) {
+            // A double letter, which is aligned to the point of the first letter.
+            return MATCH_CHAR;
+        }
+        // The key may be well beyond the search radius of the current point. The weighting charges
+        // the points up to it as skipped.
+        const ProximityInfoState *const pInfoState = traverseSession->getProximityInfoState(0);
+        const int keyId = traverseSession->getProximityInfo()->getKeyIndexOf(
+                CharUtils::toBaseLowerCase(childDicNode->getNodeCodePoint()));
+        if (keyId == NOT_AN_INDEX) {
+            return pInfoState->getProximityTypeG(inputIndex, childDicNode->getNodeCodePoint());
+        }
+        for (int i = inputIndex; i < pInfoState->size(); ++i) {
+            if (pInfoState->isKeyInSerchKeysAfterIndex(i, keyId)) {
+                return MATCH_CHAR;
+            }
+        }
+        return UNRELATED_CHAR;
+    }
+
+    AK_FORCE_INLINE bool needsToTraverseAllUserInput() const {
+        return true;
+    }
+
+    AK_FORCE_INLINE float getMaxSpatialDistance() const {
+        return GestureScoringParams::MAX_SPATIAL_DISTANCE;
+    }
+
+    AK_FORCE_INLINE int getDefaultExpandDicNodeSize() const {
+        return DicNodeVector::DEFAULT_NODES_SIZE_FOR_OPTIMIZATION;
+    }
+
+    AK_FORCE_INLINE int getMaxCacheSize(const int inputSize, const float weightForLocale) const {
+        if (weightForLocale < GestureScoringParams::LOCALE_WEIGHT_THRESHOLD_FOR_SMALL_CACHE_SIZE) {
+            return GestureScoringParams::MAX_CACHE_DIC_NODE_SIZE_FOR_LOW_PROBABILITY_LOCALE;
+        }
+        return GestureScoringParams::MAX_CACHE_DIC_NODE_SIZE;
+    }
+
+    AK_FORCE_INLINE int getTerminalCacheSize() const {
+        return MAX_RESULTS;
+    }
+
+    AK_FORCE_INLINE bool isPossibleOmissionChildNode(
+            const DicTraverseSession *const traverseSession, const DicNode *const parentDicNode,
+            const DicNode *const dicNode) const {
+        return getProximityType(traverseSession, parentDicNode, dicNode) == MATCH_CHAR;
+    }
+
+    AK_FORCE_INLINE bool isGoodToTraverseNextWord(const DicNode *const dicNode,
+            const int probability) const {
+        if (probability < GestureScoringParams::THRESHOLD_NEXT_WORD_PROBABILITY) {
+            return false;
+        }
+        const bool shortCappedWord = dicNode->getNodeCodePointCount()
+                < GestureScoringParams::THRESHOLD_SHORT_WORD_LENGTH
+                && dicNode->isFirstCharUppercase();
+        return !shortCappedWord
+                || probability >= GestureScoringParams::THRESHOLD_NEXT_WORD_PROBABILITY_FOR_CAPPED;
+    }
+
+ private:
+    DISALLOW_COPY_AND_ASSIGN(GestureTraversal);
+    static const bool CORRECT_INTENTIONAL_OMISSION;
+    static const bool CORRECT_NEW_WORD_SPACE_OMISSION;
+    static const GestureTraversal sInstance;
+
+    GestureTraversal() {}
+    ~GestureTraversal() {}
+};
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_GESTURE_TRAVERSAL_H
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "suggest/policyimpl/gesture/gesture_weighting.h"
+
+#include <algorithm>
+
+#include "suggest/core/dicnode/dic_node.h"
+#include "suggest/core/layout/proximity_info.h"
+#include "suggest/core/layout/proximity_info_state.h"
+#include "utils/char_utils.h"
+
+namespace turbokeyboard {
+
+const GestureWeighting GestureWeighting::sInstance;
+
+// The cost of leaving a sampled point unaligned to any code point. A stroke starts on the first
+// key of the word and ends on the last one, so its first and last points are never skipped at
+// their mere probability of being skipped.
+static float getSkippedPointCost(const ProximityInfoState *const pInfoState, const int index) {
+    if (index == 0 || index == pInfoState->size() - 1) {
+        return GestureScoringParams::STROKE_END_SKIP_COST;
+    }
+    return GestureScoringParams::SKIP_PROBABILITY_WEIGHT
+            * pInfoState->getProbability(index, NOT_AN_INDEX);
+}
+
+float GestureWeighting::getMatchedCost(const DicTraverseSession *const traverseSession,
+        const DicNode *const dicNode, DicNode_InputStateG *inputStateG) const {
+    const ProximityInfoState *const pInfoState = traverseSession->getProximityInfoState(0);
+    const int startIndex = dicNode->getInputIndex(0);
+    const int codePoint = CharUtils::toBaseLowerCase(dicNode->getNodeCodePoint());
+    inputStateG->mNeedsToUpdateInputStateG = true;
+    inputStateG->mPointerId = 0;
+    inputStateG->mInputIndex = static_cast<int16_t>(startIndex);
+    inputStateG->mPrevCodePoint = codePoint;
+    inputStateG->mTerminalDiffCost = dicNode->getTerminalDiffCostG(0);
+    inputStateG->mRawLength = 0.0f;
+    inputStateG->mDoubleLetterLevel = NOT_A_DOUBLE_LETTER;
+
+    if (dicNode->getNodeCodePointCount() > 1 && startIndex > 0
+            && codePoint == dicNode->getPrevCodePointG(0)) {
+        // The second letter of a double letter stays on the point of the first one. How long
+        // the stroke lingered there tells whether a double letter was meant.
+        inputStateG->mDoubleLetterLevel = pInfoState->getDoubleLetterLevel(startIndex - 1);
+        return getDoubleLetterCost(inputStateG->mDoubleLetterLevel);
+    }
+
+    const int keyId = traverseSession->getProximityInfo()->getKeyIndexOf(codePoint);
+    if (keyId == NOT_AN_INDEX) {
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+    // Find the point that is the cheapest to align the key to. Every point before it is
+    // skipped, at the cost of the probability of skipping it.
+    const int inputSize = pInfoState->size();
+    float skippedCost = 0.0f;
+    float minCost = static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    int alignedIndex = NOT_AN_INDEX;
+    for (int i = startIndex; i < inputSize; ++i) {
+        if (skippedCost >= minCost) {
+            break;
+        }
+        // A straight stroke passes over keys that are not in the word, so the key may only be
+        // found several points further. Skipping them is what makes this expensive.
+        const float keyCost = pInfoState->getProbability(i, keyId);
+        if (keyCost < static_cast<float>(MAX_VALUE_FOR_WEIGHTING)) {
+            const float cost = skippedCost + GestureScoringParams::PROBABILITY_WEIGHT * keyCost
+                    + GestureScoringParams::DISTANCE_WEIGHT_LENGTH
+                            * pInfoState->getPointToKeyByIdLength(i, keyId);
+            if (cost < minCost) {
+                minCost = cost;
+                alignedIndex = i;
+            }
+        }
+        skippedCost += getSkippedPointCost(pInfoState, i);
+    }
+    if (alignedIndex == NOT_AN_INDEX) {
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+    inputStateG->mInputIndex = static_cast<int16_t>(alignedIndex + 1);
+    inputStateG->mRawLength = static_cast<float>(pInfoState->getLengthCache(alignedIndex)
+            - pInfoState->getLengthCache(std::max(startIndex - 1, 0)));
+    return minCost;
+}
+
+float GestureWeighting::getTerminalInsertionCost(const DicTraverseSession *const traverseSession,
+        const DicNode *const dicNode) const {
+    // The points left after the last code point of the word are skipped.
+    const ProximityInfoState *const pInfoState = traverseSession->getProximityInfoState(0);
+    const int inputSize = pInfoState->size();
+    float cost = 0.0f;
+    for (int i = dicNode->getInputIndex(0); i < inputSize; ++i) {
+        cost += getSkippedPointCost(pInfoState, i);
+    }
+    return std::min(cost, static_cast<float>(MAX_VALUE_FOR_WEIGHTING));
+}
+
+float GestureWeighting::getDoubleLetterCost(const DoubleLetterLevel doubleLetterLevel) const {
+    switch (doubleLetterLevel) {
+        case A_STRONG_DOUBLE_LETTER:
+            return GestureScoringParams::STRONG_DOUBLE_LETTER_COST;
+        case A_DOUBLE_LETTER:
+            return GestureScoringParams::DOUBLE_LETTER_COST;
+        default:
+            return GestureScoringParams::NOT_A_DOUBLE_LETTER_COST;
+    }
+}
+
+ErrorTypeUtils::ErrorType GestureWeighting::getErrorType(const CorrectionType correctionType,
+        const DicTraverseSession *const traverseSession, const DicNode *const parentDicNode,
+        const DicNode *const dicNode) const {
+    switch (correctionType) {
+        case CT_MATCH:
+            // A traced code point is never exactly what was input, so gesture suggestions must
+            // not be taken for exact matches, e.g. when blocking offensive words.
+            return ErrorTypeUtils::PROXIMITY_CORRECTION;
+        case CT_OMISSION:
+            return ErrorTypeUtils::INTENTIONAL_OMISSION;
+        case CT_TERMINAL_INSERTION:
+            return ErrorTypeUtils::EDIT_CORRECTION;
+        case CT_NEW_WORD_SPACE_OMISSION:
+            return ErrorTypeUtils::NEW_WORD;
+        case CT_COMPLETION:
+            return ErrorTypeUtils::COMPLETION;
+        case CT_TERMINAL:
+            return ErrorTypeUtils::NOT_AN_ERROR;
+        default:
+            return ErrorTypeUtils::NOT_AN_ERROR;
+    }
+}
+}  // namespace turbokeyboard
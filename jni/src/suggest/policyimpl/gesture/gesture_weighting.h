@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#ifndef TURBOKEYBOARD_GESTURE_WEIGHTING_H
+#define TURBOKEYBOARD_GESTURE_WEIGHTING_H
+
+#include "defines.h"
+#include "suggest/core/dicnode/dic_node_utils.h"
+#include "suggest/core/dictionary/error_type_utils.h"
+#include "suggest/core/policy/weighting.h"
+#include "suggest/core/session/dic_traverse_session.h"
+#include "suggest/policyimpl/gesture/gesture_scoring_params.h"
+
+namespace turbokeyboard {
+
+class DicNode;
+struct DicNode_InputStateG;
+class MultiBigramMap;
+
+// Weights dic nodes against the sampled points of a gesture. Unlike typing, a code point does not
+// consume a fixed number of points: each one is aligned to the sampled point that is the most
+// likely to stand for its key, and the points passed over on the way are charged as skipped.
+class GestureWeighting : public Weighting {
+ public:
+    static const GestureWeighting *getInstance() { return &sInstance; }
+
+ protected:
+    float getTerminalSpatialCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode) const {
+        return dicNode->hasMultipleWords() ? GestureScoringParams::HAS_MULTI_WORD_TERMINAL_COST
+                : 0.0f;
+    }
+
+    float getOmissionCost(const DicNode *const parentDicNode, const DicNode *const dicNode) const {
+        // Only intentional omissions are traversed for gestures.
+        return parentDicNode->isZeroCostOmission() ? 0.0f
+                : GestureScoringParams::INTENTIONAL_OMISSION_COST;
+    }
+
+    float getMatchedCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode, DicNode_InputStateG *inputStateG) const;
+
+    bool isProximityDicNode(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode) const {
+        return false;
+    }
+
+    float getTranspositionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const parentDicNode, const DicNode *const dicNode) const {
+        // Not traversed for gestures.
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+
+    float getInsertionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const parentDicNode, const DicNode *const dicNode) const {
+        // Not traversed for gestures: extra points are charged when a code point is aligned.
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+
+    float getSpaceOmissionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode, DicNode_InputStateG *inputStateG) const {
+        const float cost = GestureScoringParams::SPACE_OMISSION_COST;
+        return cost * traverseSession->getMultiWordCostMultiplier();
+    }
+
+    float getNewWordBigramLanguageCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode,
+            MultiBigramMap *const multiBigramMap) const {
+        return DicNodeUtils::getBigramNodeImprobability(
+                traverseSession->getDictionaryStructurePolicy(),
+                dicNode, multiBigramMap) * GestureScoringParams::DISTANCE_WEIGHT_LANGUAGE;
+    }
+
+    float getCompletionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode) const {
+        // The auto completion starts when the input index is same as the input size
+        const bool firstCompletion = dicNode->getInputIndex(0)
+                == traverseSession->getInputSize();
+        return firstCompletion ? GestureScoringParams::COST_FIRST_COMPLETION
+                : GestureScoringParams::COST_COMPLETION;
+    }
+
+    float getTerminalLanguageCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode, const float dicNodeLanguageImprobability) const {
+        return dicNodeLanguageImprobability * GestureScoringParams::DISTANCE_WEIGHT_LANGUAGE;
+    }
+
+    float getTerminalInsertionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode) const;
+
+    AK_FORCE_INLINE bool needsToNormalizeCompoundDistance() const {
+        // Dic nodes in the same queue may have consumed very different numbers of points.
+        return true;
+    }
+
+    AK_FORCE_INLINE float getAdditionalProximityCost() const {
+        // Not traversed for gestures.
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+
+    AK_FORCE_INLINE float getSubstitutionCost() const {
+        // Not traversed for gestures.
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+
+    AK_FORCE_INLINE float getSpaceSubstitutionCost(const DicTraverseSession *const traverseSession,
+            const DicNode *const dicNode) const {
+        // Not traversed for gestures.
+        return static_cast<float>(MAX_VALUE_FOR_WEIGHTING);
+    }
+
+    ErrorTypeUtils::ErrorType getErrorType(const CorrectionType correctionType,
+            const DicTraverseSession *const traverseSession,
+            const DicNode *const parentDicNode, const DicNode *const dicNode) const;
+
+ private:
+    DISALLOW_COPY_AND_ASSIGN(GestureWeighting);
+    static const GestureWeighting sInstance;
+
+    GestureWeighting() {}
+    ~GestureWeighting() {}
+
+    float getDoubleLetterCost(const DoubleLetterLevel doubleLetterLevel) const;
+};
+} // namespace turbokeyboard
+#endif // TURBOKEYBOARD_GESTURE_WEIGHTING_H
@@ -22,6 +22,17 @@ namespace turbokeyboard {
 
 const int JniDataUtils::CODE_POINT_REPLACEMENT_CHARACTER = 0xFFFD;
 const int JniDataUtils::CODE_POINT_NULL = 0;
+const int JniDataUtils::WORD_PROPERTY_ENTRY_FLAGS_OFFSET = 0;
+const int JniDataUtils::WORD_PROPERTY_ENTRY_PROBABILITY_INFO_OFFSET = 1;
+const int JniDataUtils::WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET = 5;
+const int JniDataUtils::WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET = 6;
+const int JniDataUtils::WORD_PROPERTY_ENTRY_MIN_SIZE =
+        WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET + MAX_WORD_LENGTH;
+const int JniDataUtils::WORD_PROPERTY_FLAG_IS_NOT_A_WORD = 0x1;
+const int JniDataUtils::WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE = 0x2;
+const int JniDataUtils::WORD_PROPERTY_FLAG_HAS_NGRAMS = 0x4;
+const int JniDataUtils::WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE = 0x8;
+const int JniDataUtils::WORD_PROPERTY_FLAG_NGRAMS_OMITTED = 0x10;
 
 /* static */ void JniDataUtils::outputWordProperty(JNIEnv *const env,
         const WordProperty &wordProperty, jintArray outCodePoints, jbooleanArray outFlags,
@@ -112,4 +123,62 @@ const int JniDataUtils::CODE_POINT_NULL = 0;
     env->DeleteLocalRef(arrayListClass);
 }
 
+/* static */ int JniDataUtils::outputWordPropertyEntry(const WordProperty &wordProperty,
+        int *const outEntry, const int room) {
+    const CodePointArrayView codePoints = wordProperty.getCodePoints();
+    const UnigramProperty &unigramProperty = wordProperty.getUnigramProperty();
+    const std::vector<NgramProperty> &ngrams = wordProperty.getNgramProperties();
+    int flags = 0;
+    if (unigramProperty.isNotAWord()) flags |= WORD_PROPERTY_FLAG_IS_NOT_A_WORD;
+    if (unigramProperty.isPossiblyOffensive()) flags |= WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE;
+    if (!ngrams.empty()) flags |= WORD_PROPERTY_FLAG_HAS_NGRAMS;
+    if (unigramProperty.representsBeginningOfSentence()) {
+        flags |= WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE;
+    }
+    outputProbabilityInfo(unigramProperty.getProbability(), unigramProperty.getHistoricalInfo(),
+            outEntry + WORD_PROPERTY_ENTRY_PROBABILITY_INFO_OFFSET);
+    const int codePointCount = filterCodePointsToOutput(codePoints.data(), codePoints.size(),
+            outEntry + WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET);
+    outEntry[WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET] = codePointCount;
+    int size = WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET + codePointCount;
+    // An upper bound, as filtering code points never adds any.
+    int ngramsSize = 1 /* ngram count */;
+    for (const auto &ngramProperty : ngrams) {
+        const NgramContext *const ngramContext = ngramProperty.getNgramContext();
+        ngramsSize += 1 /* prev word count */ + 1 /* target code point count */
+                + ngramProperty.getTargetCodePoints()->size() + 4 /* probability info */;
+        for (size_t i = 0; i < ngramContext->getPrevWordCount(); ++i) {
+            ngramsSize += 2 + ngramContext->getNthPrevWordCodePoints(i + 1).size();
+        }
+    }
+    if (size + ngramsSize > room) {
+        outEntry[WORD_PROPERTY_ENTRY_FLAGS_OFFSET] = flags | WORD_PROPERTY_FLAG_NGRAMS_OMITTED;
+        return size;
+    }
+    outEntry[WORD_PROPERTY_ENTRY_FLAGS_OFFSET] = flags;
+    outEntry[size++] = ngrams.size();
+    for (const auto &ngramProperty : ngrams) {
+        const NgramContext *const ngramContext = ngramProperty.getNgramContext();
+        outEntry[size++] = ngramContext->getPrevWordCount();
+        for (size_t i = 0; i < ngramContext->getPrevWordCount(); ++i) {
+            const CodePointArrayView prevWordCodePoints =
+                    ngramContext->getNthPrevWordCodePoints(i + 1);
+            outEntry[size++] = ngramContext->isNthPrevWordBeginningOfSentence(i + 1) ? 1 : 0;
+            const int prevWordCodePointCount = filterCodePointsToOutput(
+                    prevWordCodePoints.data(), prevWordCodePoints.size(), outEntry + size + 1);
+            outEntry[size++] = prevWordCodePointCount;
+            size += prevWordCodePointCount;
+        }
+        const std::vector<int> *const targetCodePoints = ngramProperty.getTargetCodePoints();
+        const int targetCodePointCount = filterCodePointsToOutput(targetCodePoints->data(),
+                targetCodePoints->size(), outEntry + size + 1);
+        outEntry[size++] = targetCodePointCount;
+        size += targetCodePointCount;
+        outputProbabilityInfo(ngramProperty.getProbability(), ngramProperty.getHistoricalInfo(),
+                outEntry + size);
+        size += 4;
+    }
+    return size;
+}
+
 } // namespace turbokeyboard
@@ -31,6 +31,24 @@ namespace turbokeyboard {
 
 class JniDataUtils {
  public:
+    // The layout of an entry of the output buffer of getNextWordProperties, in ints.
+    // Must be equal to the layout in BinaryDictionary.java.
+    static const int WORD_PROPERTY_ENTRY_FLAGS_OFFSET;
+    static const int WORD_PROPERTY_ENTRY_PROBABILITY_INFO_OFFSET;
+    static const int WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET;
+    static const int WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET;
+    // The code points are followed by the n-gram count and, for each n-gram, the previous word
+    // count, the previous words as (is beginning of sentence, code point count, code points), the
+    // target code point count, the target code points and the 4 ints of the probability info. An
+    // entry whose n-grams do not fit in the buffer ends right after its code points and has
+    // WORD_PROPERTY_FLAG_NGRAMS_OMITTED set, so an entry always fits in this many ints.
+    static const int WORD_PROPERTY_ENTRY_MIN_SIZE;
+    static const int WORD_PROPERTY_FLAG_IS_NOT_A_WORD;
+    static const int WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE;
+    static const int WORD_PROPERTY_FLAG_HAS_NGRAMS;
+    static const int WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE;
+    static const int WORD_PROPERTY_FLAG_NGRAMS_OMITTED;
+
     static void jintarrayToVector(JNIEnv *env, jintArray array, std::vector<int> *const outVector) {
         if (!array) {
             outVector->clear();
@@ -75,22 +93,8 @@ class JniDataUtils {
             const bool needsNullTermination) {
         const int codePointBufSize = std::min(maxLength, codePointCount);
         int outputCodePonts[codePointBufSize];
-        int outputCodePointCount = 0;
-        for (int i = 0; i < codePointBufSize; ++i) {
-            const int codePoint = codePoints[i];
-            int codePointToOutput = codePoint;
-            if (!CharUtils::isInUnicodeSpace(codePoint)) {
-                if (codePoint == CODE_POINT_BEGINNING_OF_SENTENCE) {
-                    // Just skip Beginning-of-Sentence marker.
-                    continue;
-                }
-                codePointToOutput = CODE_POINT_REPLACEMENT_CHARACTER;
-            } else if (codePoint >= 0x01 && codePoint <= 0x1F) {
-                // Control code.
-                codePointToOutput = CODE_POINT_REPLACEMENT_CHARACTER;
-            }
-            outputCodePonts[outputCodePointCount++] = codePointToOutput;
-        }
+        const int outputCodePointCount =
+                filterCodePointsToOutput(codePoints, codePointBufSize, outputCodePonts);
         env->SetIntArrayRegion(intArrayToOutputCodePoints, start, outputCodePointCount,
                 outputCodePonts);
         if (needsNullTermination && outputCodePointCount < maxLength) {
@@ -147,11 +151,48 @@ class JniDataUtils {
             jobject outNgramTargets, jobject outNgramProbabilities, jobject outShortcutTargets,
             jobject outShortcutProbabilities);
 
+    // Writes an entry of the output buffer of getNextWordProperties and returns its size. The
+    // n-grams are omitted when they do not fit in the given room, which must be at least
+    // WORD_PROPERTY_ENTRY_MIN_SIZE. The code points are filtered like in outputCodePoints.
+    static int outputWordPropertyEntry(const WordProperty &wordProperty, int *const outEntry,
+            const int room);
+
  private:
     DISALLOW_IMPLICIT_CONSTRUCTORS(JniDataUtils);
 
     static const int CODE_POINT_REPLACEMENT_CHARACTER;
     static const int CODE_POINT_NULL;
+
+    // Copies the code points to outCodePoints, skipping the Beginning-of-Sentence marker and
+    // replacing invalid code points and control codes, and returns the number of copied ones.
+    static int filterCodePointsToOutput(const int *const codePoints, const int codePointCount,
+            int *const outCodePoints) {
+        int outputCodePointCount = 0;
+        for (int i = 0; i < codePointCount; ++i) {
+            const int codePoint = codePoints[i];
+            int codePointToOutput = codePoint;
+            if (!CharUtils::isInUnicodeSpace(codePoint)) {
+                if (codePoint == CODE_POINT_BEGINNING_OF_SENTENCE) {
+                    // Just skip Beginning-of-Sentence marker.
+                    continue;
+                }
+                codePointToOutput = CODE_POINT_REPLACEMENT_CHARACTER;
+            } else if (codePoint >= 0x01 && codePoint <= 0x1F) {
+                // Control code.
+                codePointToOutput = CODE_POINT_REPLACEMENT_CHARACTER;
+            }
+            outCodePoints[outputCodePointCount++] = codePointToOutput;
+        }
+        return outputCodePointCount;
+    }
+
+    static void outputProbabilityInfo(const int probability,
+            const HistoricalInfo &historicalInfo, int *const outProbabilityInfo) {
+        outProbabilityInfo[0] = probability;
+        outProbabilityInfo[1] = historicalInfo.getTimestamp();
+        outProbabilityInfo[2] = historicalInfo.getLevel();
+        outProbabilityInfo[3] = historicalInfo.getCount();
+    }
 };
 } // namespace turbokeyboard
 #endif // TURBOKEYBOARD_JNI_DATA_UTILS_H
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "suggest/core/dicnode/internal/dic_node_state_scoring.h"
+
+#include <gtest/gtest.h>
+
+#include "suggest/core/dictionary/error_type_utils.h"
+
+namespace turbokeyboard {
+namespace {
+
+const int INPUT_SIZE = 4;
+
+TEST(DicNodeStateScoringTest, TestDistanceIsNotNormalizedWhenTyping) {
+    DicNodeStateScoring scoring;
+    scoring.addCost(1.0f /* spatialCost */, 2.0f /* languageCost */,
+            false /* doNormalization */, INPUT_SIZE, 2 /* totalInputIndex */,
+            ErrorTypeUtils::NOT_AN_ERROR);
+    EXPECT_FLOAT_EQ(3.0f, scoring.getNormalizedCompoundDistance());
+    // Completions go past the input.
+    scoring.addCost(0.5f /* spatialCost */, 0.5f /* languageCost */,
+            false /* doNormalization */, INPUT_SIZE, INPUT_SIZE + 3 /* totalInputIndex */,
+            ErrorTypeUtils::COMPLETION);
+    EXPECT_FLOAT_EQ(4.0f, scoring.getNormalizedCompoundDistance());
+}
+
+TEST(DicNodeStateScoringTest, TestDistanceIsNormalizedByConsumedPoints) {
+    DicNodeStateScoring scoring;
+    scoring.addCost(1.0f /* spatialCost */, 1.0f /* languageCost */,
+            true /* doNormalization */, INPUT_SIZE, 0 /* totalInputIndex */,
+            ErrorTypeUtils::NOT_AN_ERROR);
+    EXPECT_FLOAT_EQ(2.0f, scoring.getNormalizedCompoundDistance());
+    scoring.addCost(1.0f /* spatialCost */, 1.0f /* languageCost */,
+            true /* doNormalization */, INPUT_SIZE, 2 /* totalInputIndex */,
+            ErrorTypeUtils::NOT_AN_ERROR);
+    EXPECT_FLOAT_EQ(2.0f, scoring.getNormalizedCompoundDistance());
+}
+
+TEST(DicNodeStateScoringTest, TestCompletionsDoNotCountAsConsumedPoints) {
+    DicNodeStateScoring scoring;
+    scoring.addCost(4.0f /* spatialCost */, 0.0f /* languageCost */,
+            true /* doNormalization */, INPUT_SIZE, INPUT_SIZE /* totalInputIndex */,
+            ErrorTypeUtils::NOT_AN_ERROR);
+    EXPECT_FLOAT_EQ(1.0f, scoring.getNormalizedCompoundDistance());
+    scoring.addCost(0.0f /* spatialCost */, 4.0f /* languageCost */,
+            true /* doNormalization */, INPUT_SIZE, INPUT_SIZE + 4 /* totalInputIndex */,
+            ErrorTypeUtils::COMPLETION);
+    EXPECT_FLOAT_EQ(2.0f, scoring.getNormalizedCompoundDistance());
+}
+
+}  // namespace
+}  // namespace turbokeyboard
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "suggest/policyimpl/gesture/gesture_suggest_policy.h"
+
+#include <gtest/gtest.h>
+
+#include <algorithm>
+#include <cstdlib>
+#include <string>
+#include <unistd.h>
+#include <vector>
+
+#include "benchmark_dictionary.h"
+#include "benchmark_keyboard.h"
+#include "dictionary/property/ngram_context.h"
+#include "suggest/core/dictionary/dictionary.h"
+#include "suggest/core/result/suggested_word.h"
+#include "suggest/core/result/suggestion_results.h"
+#include "suggest/core/session/dic_traverse_session.h"
+#include "suggest/core/suggest_options.h"
+
+using turbokeyboard::benchmark::BenchmarkDictionary;
+using turbokeyboard::benchmark::BenchmarkKeyboard;
+
+namespace turbokeyboard {
+namespace {
+
+const int SAMPLE_WORD_COUNT = 128;
+// Same as NativeSuggestOptions in Java. The weight for the locale is in thousands.
+const int GESTURE_OPTIONS[] = { 1 /* isGesture */, 0 /* useFullEditDistance */,
+        0 /* blockOffensiveWords */, 1 /* spaceAwareGestureEnabled */,
+        1000 /* weightForLocaleInThousands */ };
+
+// A gesture going through the centers of the keys can't tell a doubled letter from a single one,
+// so words with doubled letters are not sampled.
+bool hasDoubledLetter(const std::vector<int> &word) {
+    for (size_t i = 1; i < word.size(); ++i) {
+        if (word[i] == word[i - 1]) {
+            return true;
+        }
+    }
+    return false;
+}
+
+void getSampleWords(const BenchmarkDictionary *const dictionary,
+        std::vector<std::vector<int>> *const outWords) {
+    const std::vector<std::vector<int>> &words = dictionary->getWords();
+    const size_t step = std::max(static_cast<size_t>(1), words.size() / SAMPLE_WORD_COUNT);
+    for (size_t i = 0; i < words.size(); i += step) {
+        size_t index = i;
+        while (index < words.size() - 1
+                && (words[index].size() < 2 || hasDoubledLetter(words[index]))) {
+            ++index;
+        }
+        outWords->push_back(words[index]);
+    }
+}
+
+// Returns the rank of the word in the suggestions for a gesture through its keys, or -1.
+int getRankOfGesturedWord(const BenchmarkDictionary *const dictionary,
+        const BenchmarkKeyboard *const keyboard, DicTraverseSession *const traverseSession,
+        const std::vector<int> &word, std::vector<int> *const outTopWord) {
+    BenchmarkKeyboard::Input input;
+    keyboard->getGestureInput(word, &input);
+    const NgramContext ngramContext;
+    const SuggestOptions suggestOptions(GESTURE_OPTIONS, NELEMS(GESTURE_OPTIONS));
+    SuggestionResults suggestionResults(MAX_RESULTS);
+    dictionary->getDictionary()->getSuggestions(keyboard->getProximityInfo(), traverseSession,
+            input.mXCoordinates.data(), input.mYCoordinates.data(), input.mTimes.data(),
+            input.mPointerIds.data(), input.mCodePoints.data(), input.getSize(), &ngramContext,
+            &suggestOptions, NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL, &suggestionResults);
+    std::vector<SuggestedWord> suggestedWords;
+    suggestionResults.getSortedSuggestedWords(&suggestedWords);
+    outTopWord->clear();
+    if (!suggestedWords.empty()) {
+        outTopWord->assign(suggestedWords[0].getCodePoint(),
+                suggestedWords[0].getCodePoint() + suggestedWords[0].getCodePointCount());
+    }
+    for (size_t i = 0; i < suggestedWords.size(); ++i) {
+        const std::vector<int> suggestedWord(suggestedWords[i].getCodePoint(),
+                suggestedWords[i].getCodePoint() + suggestedWords[i].getCodePointCount());
+        if (suggestedWord == word) {
+            return static_cast<int>(i);
+        }
+    }
+    return -1;
+}
+
+class GestureSuggestPolicyTest : public ::testing::Test {
+ protected:
+    GestureSuggestPolicyTest()
+            : mDictionary(getDictDirPath().c_str()), mKeyboard(),
+              mTraverseSession(nullptr /* env */, nullptr /* localeStr */,
+                      true /* usesLargeCache */) {}
+
+    static std::string getDictDirPath() {
+#ifdef __ANDROID__
+        static const char *const DEFAULT_TMP_DIR_PATH = "/data/local/tmp";
+#else
+        static const char *const DEFAULT_TMP_DIR_PATH = "/tmp";
+#endif
+        const char *const tmpDirPath = getenv("TMPDIR");
+        return std::string(tmpDirPath ? tmpDirPath : DEFAULT_TMP_DIR_PATH)
+                + "/turbokeyboard_gesture_test_dict_" + std::to_string(getpid());
+    }
+
+    BenchmarkDictionary mDictionary;
+    const BenchmarkKeyboard mKeyboard;
+    DicTraverseSession mTraverseSession;
+};
+
+TEST_F(GestureSuggestPolicyTest, TestGesturedWordIsTopSuggestion) {
+    ASSERT_TRUE(mDictionary.isValid());
+    std::vector<std::vector<int>> sampleWords;
+    getSampleWords(&mDictionary, &sampleWords);
+    int topCount = 0;
+    int topThreeCount = 0;
+    std::vector<int> topWord;
+    for (const auto &word : sampleWords) {
+        const int rank = getRankOfGesturedWord(&mDictionary, &mKeyboard, &mTraverseSession,
+                word, &topWord);
+        if (rank == 0) {
+            ++topCount;
+        }
+        if (rank >= 0 && rank < 3) {
+            ++topThreeCount;
+        }
+    }
+    const int sampleCount = static_cast<int>(sampleWords.size());
+    // The language model legitimately prefers a more probable word whose keys the gesture also
+    // goes through, so a few gestured words are only close to the top.
+    EXPECT_GE(topCount * 10, sampleCount * 9);
+    EXPECT_GE(topThreeCount * 100, sampleCount * 97);
+}
+
+TEST_F(GestureSuggestPolicyTest, TestTopSuggestionStartsAndEndsOnStrokeEnds) {
+    ASSERT_TRUE(mDictionary.isValid());
+    std::vector<std::vector<int>> sampleWords;
+    getSampleWords(&mDictionary, &sampleWords);
+    std::vector<int> topWord;
+    for (const auto &word : sampleWords) {
+        getRankOfGesturedWord(&mDictionary, &mKeyboard, &mTraverseSession, word, &topWord);
+        ASSERT_FALSE(topWord.empty());
+        EXPECT_EQ(word.front(), topWord.front());
+        EXPECT_EQ(word.back(), topWord.back());
+    }
+}
+
+} // namespace
+} // namespace turbokeyboard
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+#include "utils/jni_data_utils.h"
+
+#include <gtest/gtest.h>
+
+#include <vector>
+
+#include "dictionary/property/ngram_context.h"
+#include "dictionary/property/ngram_property.h"
+#include "dictionary/property/unigram_property.h"
+#include "dictionary/structure/dictionary_structure_with_buffer_policy_factory.h"
+#include "dictionary/utils/format_utils.h"
+#include "suggest/core/dictionary/dictionary.h"
+#include "utils/char_utils.h"
+#include "utils/int_array_view.h"
+
+namespace turbokeyboard {
+namespace {
+
+const int BUFFER_SIZE = 1024;
+const int PROBABILITY = 100;
+
+class JniDataUtilsTest : public ::testing::Test {
+ protected:
+    virtual void SetUp() {
+        const std::vector<int> locale = { 'e', 'n' };
+        const DictionaryHeaderStructurePolicy::AttributeMap attributeMap;
+        DictionaryStructureWithBufferPolicy::StructurePolicyPtr policy =
+                DictionaryStructureWithBufferPolicyFactory::newPolicyForOnMemoryDict(
+                        FormatUtils::VERSION_403, locale, &attributeMap);
+        ASSERT_NE(nullptr, policy.get());
+        mDictionary.reset(new Dictionary(nullptr /* env */, std::move(policy)));
+    }
+
+    void addUnigram(const std::vector<int> &word) {
+        const UnigramProperty unigramProperty(false /* representsBeginningOfSentence */,
+                false /* isNotAWord */, false /* isPossiblyOffensive */, PROBABILITY,
+                HistoricalInfo(NOT_A_TIMESTAMP, 0 /* level */, 1 /* count */));
+        ASSERT_TRUE(mDictionary->addUnigramEntry(CodePointArrayView(word), &unigramProperty));
+    }
+
+    void addNgram(const NgramContext &ngramContext, const std::vector<int> &word) {
+        const NgramProperty ngramProperty(ngramContext, std::vector<int>(word), PROBABILITY,
+                HistoricalInfo(NOT_A_TIMESTAMP, 0 /* level */, 1 /* count */));
+        ASSERT_TRUE(mDictionary->addNgramEntry(&ngramProperty));
+    }
+
+    // Iterates the words like getNextWordProperties and returns the entries.
+    std::vector<std::vector<int>> getWordPropertyEntries() {
+        std::vector<std::vector<int>> entries;
+        int codePoints[MAX_WORD_LENGTH];
+        int codePointCount = 0;
+        int token = 0;
+        do {
+            token = mDictionary->getNextWordAndNextToken(token, codePoints, &codePointCount);
+            if (codePointCount <= 0) {
+                continue;
+            }
+            const WordProperty wordProperty = mDictionary->getWordProperty(
+                    CodePointArrayView(codePoints, codePointCount));
+            std::vector<int> entry(BUFFER_SIZE);
+            entry.resize(JniDataUtils::outputWordPropertyEntry(wordProperty, entry.data(),
+                    BUFFER_SIZE));
+            entries.push_back(entry);
+        } while (token != 0);
+        return entries;
+    }
+
+    std::unique_ptr<Dictionary> mDictionary;
+};
+
+std::vector<int> getCodePoints(const std::vector<int> &entry, const int pos) {
+    return std::vector<int>(entry.begin() + pos + 1, entry.begin() + pos + 1 + entry[pos]);
+}
+
+// Returns the word, the previous words and the targets of the entry.
+std::vector<std::vector<int>> getAllCodePoints(const std::vector<int> &entry) {
+    std::vector<std::vector<int>> allCodePoints;
+    int pos = JniDataUtils::WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET;
+    allCodePoints.push_back(getCodePoints(entry, pos));
+    pos += 1 + entry[pos];
+    if (entry[JniDataUtils::WORD_PROPERTY_ENTRY_FLAGS_OFFSET]
+            & JniDataUtils::WORD_PROPERTY_FLAG_NGRAMS_OMITTED) {
+        return allCodePoints;
+    }
+    const int ngramCount = entry[pos++];
+    for (int i = 0; i < ngramCount; ++i) {
+        const int prevWordCount = entry[pos++];
+        for (int j = 0; j < prevWordCount; ++j) {
+            ++pos; // Is beginning of sentence.
+            allCodePoints.push_back(getCodePoints(entry, pos));
+            pos += 1 + entry[pos];
+        }
+        allCodePoints.push_back(getCodePoints(entry, pos));
+        pos += 1 + entry[pos] + 4 /* probability info */;
+    }
+    EXPECT_EQ(static_cast<int>(entry.size()), pos);
+    return allCodePoints;
+}
+
+TEST_F(JniDataUtilsTest, TestBeginningOfSentenceIsNotOutput) {
+    const std::vector<int> hello = { 'h', 'e', 'l', 'l', 'o' };
+    const std::vector<int> world = { 'w', 'o', 'r', 'l', 'd' };
+    addUnigram(hello);
+    addUnigram(world);
+    const int emptyWord[] = { 0 };
+    addNgram(NgramContext(emptyWord, 0 /* prevWordCodePointCount */,
+            true /* isBeginningOfSentence */), hello);
+    addNgram(NgramContext(hello.data(), static_cast<int>(hello.size()),
+            false /* isBeginningOfSentence */), world);
+
+    const std::vector<std::vector<int>> entries = getWordPropertyEntries();
+    EXPECT_EQ(3u, entries.size());
+    int beginningOfSentenceEntryCount = 0;
+    for (const auto &entry : entries) {
+        const bool isBeginningOfSentence = entry[JniDataUtils::WORD_PROPERTY_ENTRY_FLAGS_OFFSET]
+                & JniDataUtils::WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE;
+        const std::vector<std::vector<int>> allCodePoints = getAllCodePoints(entry);
+        if (isBeginningOfSentence) {
+            ++beginningOfSentenceEntryCount;
+            EXPECT_TRUE(allCodePoints[0].empty());
+        } else {
+            EXPECT_FALSE(allCodePoints[0].empty());
+        }
+        for (const auto &codePoints : allCodePoints) {
+            for (const int codePoint : codePoints) {
+                EXPECT_TRUE(CharUtils::isInUnicodeSpace(codePoint));
+            }
+        }
+    }
+    EXPECT_EQ(1, beginningOfSentenceEntryCount);
+}
+
+TEST_F(JniDataUtilsTest, TestControlCodeIsReplaced) {
+    const std::vector<int> word = { 'a', '\t', 'b' };
+    addUnigram(word);
+
+    const std::vector<std::vector<int>> entries = getWordPropertyEntries();
+    ASSERT_EQ(1u, entries.size());
+    const std::vector<int> expectedCodePoints = { 'a', 0xFFFD, 'b' };
+    EXPECT_EQ(expectedCodePoints, getAllCodePoints(entries[0])[0]);
+}
+
+TEST_F(JniDataUtilsTest, TestNgramsAreOmittedWhenTheyDoNotFit) {
+    const std::vector<int> prevWord(30, 'a');
+    const std::vector<int> word(30, 'b');
+    addUnigram(prevWord);
+    addUnigram(word);
+    addNgram(NgramContext(prevWord.data(), static_cast<int>(prevWord.size()),
+            false /* isBeginningOfSentence */), word);
+
+    const WordProperty wordProperty =
+            mDictionary->getWordProperty(CodePointArrayView(prevWord));
+    std::vector<int> entry(JniDataUtils::WORD_PROPERTY_ENTRY_MIN_SIZE);
+    const int size = JniDataUtils::outputWordPropertyEntry(wordProperty, entry.data(),
+            JniDataUtils::WORD_PROPERTY_ENTRY_MIN_SIZE);
+    EXPECT_EQ(JniDataUtils::WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET
+            + static_cast<int>(prevWord.size()), size);
+    EXPECT_TRUE(entry[JniDataUtils::WORD_PROPERTY_ENTRY_FLAGS_OFFSET]
+            & JniDataUtils::WORD_PROPERTY_FLAG_NGRAMS_OMITTED);
+}
+
+} // namespace
+} // namespace turbokeyboard
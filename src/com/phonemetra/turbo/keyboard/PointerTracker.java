@@ -33,6 +33,7 @@ import com.phonemetra.turbo.keyboard.internal.PointerTrackerQueue;
 import com.phonemetra.turbo.keyboard.internal.TimerProxy;
 import com.phonemetra.turbo.keyboard.internal.TypingTimeRecorder;
 import com.phonemetra.turbo.keyboard.R;
+import com.phonemetra.turbo.keyboard.latin.KeystrokeLatencyTracer;
 import com.phonemetra.turbo.keyboard.latin.common.Constants;
 import com.phonemetra.turbo.keyboard.latin.common.CoordinateUtils;
 import com.phonemetra.turbo.keyboard.latin.common.InputPointers;
@@ -614,11 +615,17 @@ public final class PointerTracker implements PointerTrackerQueue.Element,
 		switch (action) {
 		case MotionEvent.ACTION_DOWN:
 		case MotionEvent.ACTION_POINTER_DOWN:
+			final long downStartNanos = KeystrokeLatencyTracer.start();
 			onDownEvent(x, y, eventTime, keyDetector);
+			KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_POINTER_DOWN,
+					downStartNanos);
 			break;
 		case MotionEvent.ACTION_UP:
 		case MotionEvent.ACTION_POINTER_UP:
+			final long upStartNanos = KeystrokeLatencyTracer.start();
 			onUpEvent(x, y, eventTime);
+			KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_POINTER_UP,
+					upStartNanos);
 			break;
 		case MotionEvent.ACTION_CANCEL:
 			onCancelEvent(x, y, eventTime);
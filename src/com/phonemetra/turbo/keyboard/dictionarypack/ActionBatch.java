@@ -25,9 +25,7 @@ import android.net.Uri;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.phonemetra.turbo.keyboard.latin.BinaryDictionaryFileDumper;
 import com.phonemetra.turbo.keyboard.R;
-import com.phonemetra.turbo.keyboard.latin.common.LocaleUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ApplicationUtils;
 
 import java.util.LinkedList;
@@ -188,13 +186,9 @@ public final class ActionBatch {
             //DebugLogUtils.l("Setting word list as installed");
             final SQLiteDatabase db = MetadataDbHelper.getDb(context, mClientId);
             MetadataDbHelper.markEntryAsFinishedDownloadingAndInstalled(db, mWordListValues);
-
-            // Install the downloaded file by un-compressing and moving it to the staging
-            // directory. Ideally, we should do this before updating the DB, but the
+            // The caller then installs the downloaded file to the staging directory. Ideally,
+            // we should do this before updating the DB, but the
             // installDictToStagingFromContentProvider() relies on the db being updated.
-            final String localeString = mWordListValues.getAsString(MetadataDbHelper.LOCALE_COLUMN);
-            BinaryDictionaryFileDumper.installDictToStagingFromContentProvider(
-                    LocaleUtils.constructLocaleFromString(localeString), context, false);
         }
     }
 
@@ -620,5 +614,30 @@ public final class ActionBatch {
                     reporter.report(e);
             }
         }
+        // Some actions write to the database directly.
+        MetadataDbHelper.onMetadataChanged();
+    }
+
+    /**
+     * Execute this batch in a single transaction of the passed database.
+     *
+     * All the actions of a batch computed for a client write to the database of this client, and
+     * committing them all at once is much cheaper than committing each of them separately. An
+     * action that fails is reported and skipped as usual, and does not roll back the others.
+     *
+     * @param context the context for getting resources, databases, system services.
+     * @param db the metadata database the actions write to.
+     * @param reporter a Reporter to send errors to.
+     */
+    public void executeInTransaction(final Context context, final SQLiteDatabase db,
+            final ProblemReporter reporter) {
+        db.beginTransactionNonExclusive();
+        try {
+            execute(context, reporter);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        MetadataDbHelper.onMetadataChanged();
     }
 }
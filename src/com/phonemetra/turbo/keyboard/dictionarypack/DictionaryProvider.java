@@ -24,7 +24,6 @@ import android.content.UriMatcher;
 import android.content.res.AssetFileDescriptor;
 import android.database.AbstractCursor;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
@@ -36,6 +35,7 @@ import com.phonemetra.turbo.keyboard.latin.common.LocaleUtils;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -270,9 +270,8 @@ public final class DictionaryProvider extends ContentProvider {
             final String wordlistId) {
         final Context context = getContext();
         if (TextUtils.isEmpty(wordlistId)) return null;
-        final SQLiteDatabase db = MetadataDbHelper.getDb(context, clientId);
-        return MetadataDbHelper.getInstalledOrDeletingWordListContentValuesByWordListId(
-                db, wordlistId);
+        return MetadataDbHelper.getCachedInstalledOrDeletingWordList(context, clientId,
+                wordlistId);
     }
 
     /**
@@ -347,84 +346,70 @@ public final class DictionaryProvider extends ContentProvider {
     private Collection<WordListInfo> getDictionaryWordListsForLocale(final String clientId,
             final String locale) {
         final Context context = getContext();
-        final Cursor results =
-                MetadataDbHelper.queryInstalledOrDeletingOrAvailableDictionaryMetadata(context,
+        // This is answered from the metadata kept in memory, as it's called each time the
+        // keyboard loads its dictionaries.
+        final ArrayList<ContentValues> results =
+                MetadataDbHelper.getCachedInstalledOrDeletingOrAvailableWordLists(context,
                         clientId);
-        if (null == results) {
-            return Collections.<WordListInfo>emptyList();
-        }
-        try {
-            final HashMap<String, WordListInfo> dicts = new HashMap<>();
-            final int idIndex = results.getColumnIndex(MetadataDbHelper.WORDLISTID_COLUMN);
-            final int localeIndex = results.getColumnIndex(MetadataDbHelper.LOCALE_COLUMN);
-            final int localFileNameIndex =
-                    results.getColumnIndex(MetadataDbHelper.LOCAL_FILENAME_COLUMN);
-            final int rawChecksumIndex =
-                    results.getColumnIndex(MetadataDbHelper.RAW_CHECKSUM_COLUMN);
-            final int statusIndex = results.getColumnIndex(MetadataDbHelper.STATUS_COLUMN);
-            if (results.moveToFirst()) {
-                do {
-                    final String wordListId = results.getString(idIndex);
-                    if (TextUtils.isEmpty(wordListId)) continue;
-                    final String[] wordListIdArray =
-                            TextUtils.split(wordListId, ID_CATEGORY_SEPARATOR);
-                    final String wordListCategory;
-                    if (2 == wordListIdArray.length) {
-                        // This is at the category:manual_id format.
-                        wordListCategory = wordListIdArray[0];
-                        // We don't need to read wordListIdArray[1] here, because it's irrelevant to
-                        // word list selection - it's just a name we use to identify which data file
-                        // is a newer version of which word list. We do however return the full id
-                        // string for each selected word list, so in this sense we are 'using' it.
-                    } else {
-                        // This does not contain a colon, like the old format does. Old-format IDs
-                        // always point to main dictionaries, so we force the main category upon it.
-                        wordListCategory = UpdateHandler.MAIN_DICTIONARY_CATEGORY;
-                    }
-                    final String wordListLocale = results.getString(localeIndex);
-                    final String wordListLocalFilename = results.getString(localFileNameIndex);
-                    final String wordListRawChecksum = results.getString(rawChecksumIndex);
-                    final int wordListStatus = results.getInt(statusIndex);
-                    // Test the requested locale against this wordlist locale. The requested locale
-                    // has to either match exactly or be more specific than the dictionary - a
-                    // dictionary for "en" would match both a request for "en" or for "en_US", but a
-                    // dictionary for "en_GB" would not match a request for "en_US". Thus if all
-                    // three of "en" "en_US" and "en_GB" dictionaries are installed, a request for
-                    // "en_US" would match "en" and "en_US", and a request for "en" only would only
-                    // match the generic "en" dictionary. For more details, see the documentation
-                    // for LocaleUtils#getMatchLevel.
-                    final int matchLevel = LocaleUtils.getMatchLevel(wordListLocale, locale);
-                    if (!LocaleUtils.isMatch(matchLevel)) {
-                        // The locale of this wordlist does not match the required locale.
-                        // Skip this wordlist and go to the next.
-                        continue;
-                    }
-                    if (MetadataDbHelper.STATUS_INSTALLED == wordListStatus) {
-                        // If the file does not exist, it has been deleted and the IME should
-                        // already have it. Do not return it. However, this only applies if the
-                        // word list is INSTALLED, for if it is DELETING we should return it always
-                        // so that Android Keyboard can perform the actual deletion.
-                        final File f = getContext().getFileStreamPath(wordListLocalFilename);
-                        if (!f.isFile()) {
-                            continue;
-                        }
-                    } else if (MetadataDbHelper.STATUS_AVAILABLE == wordListStatus) {
-                        // The locale is the id for the main dictionary.
-                        UpdateHandler.installIfNeverRequested(context, clientId, wordListId);
-                        continue;
-                    }
-                    final WordListInfo currentBestMatch = dicts.get(wordListCategory);
-                    if (null == currentBestMatch
-                            || currentBestMatch.mMatchLevel < matchLevel) {
-                        dicts.put(wordListCategory, new WordListInfo(wordListId, wordListLocale,
-                                wordListRawChecksum, matchLevel));
-                    }
-                } while (results.moveToNext());
+        final HashMap<String, WordListInfo> dicts = new HashMap<>();
+        for (final ContentValues result : results) {
+            final String wordListId = result.getAsString(MetadataDbHelper.WORDLISTID_COLUMN);
+            if (TextUtils.isEmpty(wordListId)) continue;
+            final String[] wordListIdArray = TextUtils.split(wordListId, ID_CATEGORY_SEPARATOR);
+            final String wordListCategory;
+            if (2 == wordListIdArray.length) {
+                // This is at the category:manual_id format.
+                wordListCategory = wordListIdArray[0];
+                // We don't need to read wordListIdArray[1] here, because it's irrelevant to
+                // word list selection - it's just a name we use to identify which data file
+                // is a newer version of which word list. We do however return the full id
+                // string for each selected word list, so in this sense we are 'using' it.
+            } else {
+                // This does not contain a colon, like the old format does. Old-format IDs
+                // always point to main dictionaries, so we force the main category upon it.
+                wordListCategory = UpdateHandler.MAIN_DICTIONARY_CATEGORY;
+            }
+            final String wordListLocale = result.getAsString(MetadataDbHelper.LOCALE_COLUMN);
+            final String wordListLocalFilename =
+                    result.getAsString(MetadataDbHelper.LOCAL_FILENAME_COLUMN);
+            final String wordListRawChecksum =
+                    result.getAsString(MetadataDbHelper.RAW_CHECKSUM_COLUMN);
+            final int wordListStatus = result.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
+            // Test the requested locale against this wordlist locale. The requested locale
+            // has to either match exactly or be more specific than the dictionary - a
+            // dictionary for "en" would match both a request for "en" or for "en_US", but a
+            // dictionary for "en_GB" would not match a request for "en_US". Thus if all
+            // three of "en" "en_US" and "en_GB" dictionaries are installed, a request for
+            // "en_US" would match "en" and "en_US", and a request for "en" only would only
+            // match the generic "en" dictionary. For more details, see the documentation
+            // for LocaleUtils#getMatchLevel.
+            final int matchLevel = LocaleUtils.getMatchLevel(wordListLocale, locale);
+            if (!LocaleUtils.isMatch(matchLevel)) {
+                // The locale of this wordlist does not match the required locale.
+                // Skip this wordlist and go to the next.
+                continue;
+            }
+            if (MetadataDbHelper.STATUS_INSTALLED == wordListStatus) {
+                // If the file does not exist, it has been deleted and the IME should
+                // already have it. Do not return it. However, this only applies if the
+                // word list is INSTALLED, for if it is DELETING we should return it always
+                // so that Android Keyboard can perform the actual deletion.
+                final File f = getContext().getFileStreamPath(wordListLocalFilename);
+                if (!f.isFile()) {
+                    continue;
+                }
+            } else if (MetadataDbHelper.STATUS_AVAILABLE == wordListStatus) {
+                // The locale is the id for the main dictionary.
+                UpdateHandler.installIfNeverRequested(context, clientId, wordListId);
+                continue;
+            }
+            final WordListInfo currentBestMatch = dicts.get(wordListCategory);
+            if (null == currentBestMatch || currentBestMatch.mMatchLevel < matchLevel) {
+                dicts.put(wordListCategory, new WordListInfo(wordListId, wordListLocale,
+                        wordListRawChecksum, matchLevel));
             }
-            return Collections.unmodifiableCollection(dicts.values());
-        } finally {
-            results.close();
         }
+        return Collections.unmodifiableCollection(dicts.values());
     }
 
     /**
@@ -103,7 +103,19 @@ public final class DictionaryService extends Service {
      * An executor that serializes tasks given to it.
      */
     private ThreadPoolExecutor mExecutor;
+    /**
+     * An executor that handles finished downloads, several at a time. Each word list is copied,
+     * checked and installed independently, so a user setting up several languages does not wait
+     * for each of them in turn.
+     */
+    private ThreadPoolExecutor mDownloadExecutor;
     private static final int WORKER_THREAD_TIMEOUT_SECONDS = 15;
+    private static final int MAX_CONCURRENT_DOWNLOAD_HANDLERS = 3;
+
+    // The number of commands submitted and not finished yet, and the id of the last one. Commands
+    // may end out of order, so the service is only stopped when all of them are done.
+    private int mPendingCommandCount;
+    private int mLastStartId;
 
     @Override
     public void onCreate() {
@@ -121,6 +133,10 @@ public final class DictionaryService extends Service {
                 TimeUnit.SECONDS /* unit for keepAliveTime */,
                 new LinkedBlockingQueue<Runnable>() /* workQueue */);
         mExecutor.allowCoreThreadTimeOut(true);
+        mDownloadExecutor = new ThreadPoolExecutor(MAX_CONCURRENT_DOWNLOAD_HANDLERS,
+                MAX_CONCURRENT_DOWNLOAD_HANDLERS, WORKER_THREAD_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        mDownloadExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -168,21 +184,45 @@ public final class DictionaryService extends Service {
             // if necessary, or reuse a thread that has become idle as appropriate.
             // DATE_CHANGED or UPDATE_NOW are examples of commands that can be done on another
             // thread.
-            mExecutor.submit(new Runnable() {
+            // Finished downloads are handled in parallel with each other; everything else,
+            // including the update that registers downloads, runs serially.
+            final ThreadPoolExecutor executor = isDownloadFinishedCommand(intent)
+                    ? mDownloadExecutor : mExecutor;
+            ++mPendingCommandCount;
+            mLastStartId = startId;
+            executor.submit(new Runnable() {
                 @Override
                 public void run() {
-                    dispatchBroadcast(self, intent);
-                    // Since calls to onStartCommand are serialized, the submissions to the executor
-                    // are serialized. That means we are guaranteed to call the stopSelfResult()
-                    // in the same order that we got them, so we don't need to take care of the
-                    // order.
-                    stopSelfResult(startId);
+                    try {
+                        dispatchBroadcast(self, intent);
+                    } finally {
+                        onCommandFinished();
+                    }
                 }
             });
         //}
         return Service.START_REDELIVER_INTENT;
     }
 
+    /**
+     * Stops the service once all the commands it was given are done. Commands are not finished in
+     * the order they were started, so stopping with the id of each as it ends could stop the
+     * service while others are still running.
+     */
+    private synchronized void onCommandFinished() {
+        --mPendingCommandCount;
+        if (0 == mPendingCommandCount) {
+            stopSelfResult(mLastStartId);
+        }
+    }
+
+    private static boolean isDownloadFinishedCommand(final Intent intent) {
+        final String action = intent.getAction();
+        return !DATE_CHANGED_INTENT_ACTION.equals(action)
+                && !DictionaryPackConstants.UPDATE_NOW_INTENT_ACTION.equals(action)
+                && !DictionaryPackConstants.INIT_AND_UPDATE_NOW_INTENT_ACTION.equals(action);
+    }
+
     static void dispatchBroadcast(final Context context, final Intent intent) {
         final String action = intent.getAction();
         if (DATE_CHANGED_INTENT_ACTION.equals(action)) {
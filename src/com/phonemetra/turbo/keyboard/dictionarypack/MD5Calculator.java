@@ -25,10 +25,8 @@ public final class MD5Calculator {
 
     public static String checksum(final InputStream in) throws IOException {
         // This code from the Android documentation for MessageDigest. Nearly verbatim.
-        MessageDigest digester;
-        try {
-            digester = MessageDigest.getInstance("MD5");
-        } catch (java.security.NoSuchAlgorithmException e) {
+        final MessageDigest digester = newDigester();
+        if (null == digester) {
             return null; // Platform does not support MD5 : can't check, so return null
         }
         final byte[] bytes = new byte[8192];
@@ -36,10 +34,30 @@ public final class MD5Calculator {
         while ((byteCount = in.read(bytes)) > 0) {
             digester.update(bytes, 0, byteCount);
         }
-        final byte[] digest = digester.digest();
-        final StringBuilder s = new StringBuilder();
-        for (int i = 0; i < digest.length; ++i) {
-            s.append(String.format("%1$02x", digest[i]));
+        return toHexString(digester.digest());
+    }
+
+    /**
+     * Returns a new MD5 digester, for callers that compute the checksum while they read the
+     * data for another purpose, or null if the platform does not support MD5.
+     */
+    public static MessageDigest newDigester() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (java.security.NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Returns the checksum in the format of {@link #checksum}, from the digest of a digester.
+     */
+    public static String toHexString(final byte[] digest) {
+        final StringBuilder s = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            s.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
         }
         return s.toString();
     }
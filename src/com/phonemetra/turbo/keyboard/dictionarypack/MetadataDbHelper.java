@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
@@ -201,6 +202,115 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
         return getInstance(context, clientId).getWritableDatabase();
     }
 
+    /**
+     * The metadata of a client as it was at some generation of the databases.
+     */
+    private static final class Snapshot {
+        public final int mGeneration;
+        // The metadata URI of the client, or null if the client is not known.
+        public final String mMetadataUri;
+        // All the lines of the metadata table of the client. These must not be modified.
+        public final ArrayList<ContentValues> mWordLists;
+
+        public Snapshot(final int generation, final String metadataUri,
+                final ArrayList<ContentValues> wordLists) {
+            mGeneration = generation;
+            mMetadataUri = metadataUri;
+            mWordLists = wordLists;
+        }
+    }
+
+    // Incremented after each write to any of the databases. A snapshot taken at an older
+    // generation is out of date and is read again on the next access.
+    private static final AtomicInteger sGeneration = new AtomicInteger();
+    private volatile Snapshot mSnapshot;
+
+    /**
+     * Notifies that the metadata was written to, so that the snapshots read from memory by the
+     * dictionary provider are read again from the databases.
+     *
+     * This must be called after the write is committed. The methods of this class that write
+     * call it themselves.
+     */
+    public static void onMetadataChanged() {
+        sGeneration.incrementAndGet();
+    }
+
+    /**
+     * Returns the metadata of a client, read from the databases only if it changed since the
+     * last call. The keyboard queries the dictionary provider for every dictionary it loads,
+     * and the metadata rarely changes.
+     */
+    private static Snapshot getSnapshot(final Context context, final String clientId) {
+        final MetadataDbHelper helper = getInstance(context, clientId);
+        final Snapshot snapshot = helper.mSnapshot;
+        // Read the generation before reading the databases: if they are written to while we
+        // read them, the new snapshot is out of date as soon as it's taken.
+        final int generation = sGeneration.get();
+        if (null != snapshot && generation == snapshot.mGeneration) {
+            return snapshot;
+        }
+        final ArrayList<ContentValues> wordLists = new ArrayList<>();
+        final Cursor cursor = helper.getWritableDatabase().query(METADATA_TABLE_NAME,
+                METADATA_TABLE_COLUMNS, null, null, null, null, LOCALE_COLUMN);
+        if (null != cursor) {
+            try {
+                while (cursor.moveToNext()) {
+                    wordLists.add(getCurrentLineAsContentValues(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        final Snapshot newSnapshot = new Snapshot(generation,
+                readMetadataUriAsString(context, clientId), wordLists);
+        helper.mSnapshot = newSnapshot;
+        return newSnapshot;
+    }
+
+    /**
+     * Gets the info about an installed OR deleting word list with a specified id, from the
+     * snapshot of the metadata kept in memory.
+     *
+     * @param context the context for getting the database.
+     * @param clientId the client id for retrieving the database. null for default (deprecated)
+     * @param id the word list ID.
+     * @return a copy of the metadata about this word list, or null if there is none.
+     */
+    @Nullable
+    public static ContentValues getCachedInstalledOrDeletingWordList(final Context context,
+            final String clientId, final String id) {
+        for (final ContentValues wordList : getSnapshot(context, clientId).mWordLists) {
+            final int status = wordList.getAsInteger(STATUS_COLUMN);
+            if ((STATUS_INSTALLED == status || STATUS_DELETING == status)
+                    && id.equals(wordList.getAsString(WORDLISTID_COLUMN))) {
+                return new ContentValues(wordList);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the info about all installed, deleting or available word lists, from the snapshot of
+     * the metadata kept in memory.
+     *
+     * @param context the context for getting the database.
+     * @param clientId the client id for retrieving the database. null for default (deprecated)
+     * @return copies of the metadata about these word lists, sorted by locale.
+     */
+    public static ArrayList<ContentValues> getCachedInstalledOrDeletingOrAvailableWordLists(
+            final Context context, final String clientId) {
+        final ArrayList<ContentValues> results = new ArrayList<>();
+        for (final ContentValues wordList : getSnapshot(context, clientId).mWordLists) {
+            final int status = wordList.getAsInteger(STATUS_COLUMN);
+            if (STATUS_INSTALLED == status || STATUS_DELETING == status
+                    || STATUS_AVAILABLE == status) {
+                results.add(new ContentValues(wordList));
+            }
+        }
+        return results;
+    }
+
     private void createClientTable(final SQLiteDatabase db) {
         // The clients table only exists in the primary db, the one that has an empty client id
         if (!TextUtils.isEmpty(mClientId)) return;
@@ -339,7 +449,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     public static boolean isClientKnown(final Context context, final String clientId) {
         // If the client is known, they'll have a non-null metadata URI. An empty string is
         // allowed as a metadata URI, if the client doesn't want any updates to happen.
-        return null != getMetadataUriAsString(context, clientId);
+        return null != getSnapshot(context, clientId).mMetadataUri;
     }
 
     private static final MetadataUriGetter sMetadataUriGetter = new MetadataUriGetter();
@@ -355,6 +465,10 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
      * @return the string representation of the URI
      */
     public static String getMetadataUriAsString(final Context context, final String clientId) {
+        return getSnapshot(context, clientId).mMetadataUri;
+    }
+
+    private static String readMetadataUriAsString(final Context context, final String clientId) {
         SQLiteDatabase defaultDb = MetadataDbHelper.getDb(context, null);
         final Cursor cursor = defaultDb.query(MetadataDbHelper.CLIENT_TABLE_NAME,
                 new String[] { MetadataDbHelper.CLIENT_METADATA_URI_COLUMN },
@@ -568,26 +682,31 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
         result.put(columnId, cursor.getInt(cursor.getColumnIndex(columnId)));
     }
 
+    private static ContentValues getCurrentLineAsContentValues(final Cursor cursor) {
+        final ContentValues result = new ContentValues(COLUMN_COUNT);
+        putIntResult(result, cursor, PENDINGID_COLUMN);
+        putIntResult(result, cursor, TYPE_COLUMN);
+        putIntResult(result, cursor, STATUS_COLUMN);
+        putStringResult(result, cursor, WORDLISTID_COLUMN);
+        putStringResult(result, cursor, LOCALE_COLUMN);
+        putStringResult(result, cursor, DESCRIPTION_COLUMN);
+        putStringResult(result, cursor, LOCAL_FILENAME_COLUMN);
+        putStringResult(result, cursor, REMOTE_FILENAME_COLUMN);
+        putIntResult(result, cursor, DATE_COLUMN);
+        putStringResult(result, cursor, RAW_CHECKSUM_COLUMN);
+        putStringResult(result, cursor, CHECKSUM_COLUMN);
+        putIntResult(result, cursor, RETRY_COUNT_COLUMN);
+        putIntResult(result, cursor, FILESIZE_COLUMN);
+        putIntResult(result, cursor, VERSION_COLUMN);
+        putIntResult(result, cursor, FORMATVERSION_COLUMN);
+        putIntResult(result, cursor, FLAGS_COLUMN);
+        return result;
+    }
+
     private static ContentValues getFirstLineAsContentValues(final Cursor cursor) {
         final ContentValues result;
         if (cursor.moveToFirst()) {
-            result = new ContentValues(COLUMN_COUNT);
-            putIntResult(result, cursor, PENDINGID_COLUMN);
-            putIntResult(result, cursor, TYPE_COLUMN);
-            putIntResult(result, cursor, STATUS_COLUMN);
-            putStringResult(result, cursor, WORDLISTID_COLUMN);
-            putStringResult(result, cursor, LOCALE_COLUMN);
-            putStringResult(result, cursor, DESCRIPTION_COLUMN);
-            putStringResult(result, cursor, LOCAL_FILENAME_COLUMN);
-            putStringResult(result, cursor, REMOTE_FILENAME_COLUMN);
-            putIntResult(result, cursor, DATE_COLUMN);
-            putStringResult(result, cursor, RAW_CHECKSUM_COLUMN);
-            putStringResult(result, cursor, CHECKSUM_COLUMN);
-            putIntResult(result, cursor, RETRY_COUNT_COLUMN);
-            putIntResult(result, cursor, FILESIZE_COLUMN);
-            putIntResult(result, cursor, VERSION_COLUMN);
-            putIntResult(result, cursor, FORMATVERSION_COLUMN);
-            putIntResult(result, cursor, FLAGS_COLUMN);
+            result = getCurrentLineAsContentValues(cursor);
             if (cursor.moveToNext()) {
                 // TODO: print the second level of the stack to the log so that we know
                 // in which code path the error happened
@@ -626,33 +745,29 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Gets the info about an installed OR deleting word list with a specified id.
-     *
-     * Basically, this is the word list that we want to return to Android Keyboard when
-     * it asks for a specific id.
+     * Gets the DownloadManager ids of all the word lists that are being downloaded.
      *
      * @param db the database to get the information from.
-     * @param id the word list ID.
-     * @return the metadata about this word list.
+     * @return the list of ids. Never null, but may be empty.
      */
-    public static ContentValues getInstalledOrDeletingWordListContentValuesByWordListId(
-            final SQLiteDatabase db, final String id) {
+    public static ArrayList<Long> getDownloadingWordListPendingIds(final SQLiteDatabase db) {
+        final ArrayList<Long> results = new ArrayList<>();
         final Cursor cursor = db.query(METADATA_TABLE_NAME,
-                METADATA_TABLE_COLUMNS,
-                WORDLISTID_COLUMN + "=? AND (" + STATUS_COLUMN + "=? OR " + STATUS_COLUMN + "=?)",
-                new String[] { id, Integer.toString(STATUS_INSTALLED),
-                        Integer.toString(STATUS_DELETING) },
+                new String[] { PENDINGID_COLUMN },
+                STATUS_COLUMN + " = ?",
+                new String[] { Integer.toString(STATUS_DOWNLOADING) },
                 null, null, null);
         if (null == cursor) {
-            return null;
+            return results;
         }
         try {
-            // There should only be one result, but if there are several, we can't tell which
-            // is the best, so we just return the first one.
-            return getFirstLineAsContentValues(cursor);
+            while (cursor.moveToNext()) {
+                results.add(cursor.getLong(0));
+            }
         } finally {
             cursor.close();
         }
+        return results;
     }
 
     /**
@@ -755,35 +870,6 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
         }
     }
 
-    /**
-     * Gets the current metadata about INSTALLED, AVAILABLE or DELETING dictionaries.
-     *
-     * This odd method is tailored to the needs of
-     * DictionaryProvider#getDictionaryWordListsForContentUri, which needs the word list if
-     * it is:
-     * - INSTALLED: this should be returned to LatinIME if the file is still inside the dictionary
-     * pack, so that it can be copied. If the file is not there, it's been copied already and should
-     * not be returned, so getDictionaryWordListsForContentUri takes care of this.
-     * - DELETING: this should be returned to LatinIME so that it can actually delete the file.
-     * - AVAILABLE: this should not be returned, but should be checked for auto-installation.
-     *
-     * @param context the context for getting the database.
-     * @param clientId the client id for retrieving the database. null for default (deprecated)
-     * @return a cursor with metadata about usable dictionaries.
-     */
-    public static Cursor queryInstalledOrDeletingOrAvailableDictionaryMetadata(
-            final Context context, final String clientId) {
-        // If clientId is null, we get the defaut DB (see #getInstance() for more about this)
-        final Cursor results = getDb(context, clientId).query(METADATA_TABLE_NAME,
-                METADATA_TABLE_COLUMNS,
-                STATUS_COLUMN + " = ? OR " + STATUS_COLUMN + " = ? OR " + STATUS_COLUMN + " = ?",
-                new String[] { Integer.toString(STATUS_INSTALLED),
-                        Integer.toString(STATUS_DELETING),
-                        Integer.toString(STATUS_AVAILABLE) },
-                null, null, LOCALE_COLUMN);
-        return results;
-    }
-
     /**
      * Gets the current metadata about all dictionaries.
      *
@@ -840,15 +926,20 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     public static boolean deleteClient(final Context context, final String clientId) {
         // Remove all metadata associated with this client
         final SQLiteDatabase db = getDb(context, clientId);
-        db.execSQL("DROP TABLE IF EXISTS " + METADATA_TABLE_NAME);
-        db.execSQL(METADATA_TABLE_CREATE);
+        db.beginTransactionNonExclusive();
+        try {
+            db.execSQL("DROP TABLE IF EXISTS " + METADATA_TABLE_NAME);
+            db.execSQL(METADATA_TABLE_CREATE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
         // Remove this client's entry in the clients table
         final SQLiteDatabase defaultDb = getDb(context, "");
-        if (0 == defaultDb.delete(CLIENT_TABLE_NAME,
-                CLIENT_CLIENT_ID_COLUMN + " = ?", new String[] { clientId })) {
-            return false;
-        }
-        return true;
+        final boolean deleted = 0 != defaultDb.delete(CLIENT_TABLE_NAME,
+                CLIENT_CLIENT_ID_COLUMN + " = ?", new String[] { clientId });
+        onMetadataChanged();
+        return deleted;
     }
 
     /**
@@ -898,6 +989,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
             defaultDb.update(CLIENT_TABLE_NAME, values,
                     CLIENT_CLIENT_ID_COLUMN + " = ?", new String[] { clientId });
         }
+        onMetadataChanged();
     }
 
     /**
@@ -999,6 +1091,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
                 db.insert(METADATA_TABLE_NAME, null, r);
                 db.setTransactionSuccessful();
                 db.endTransaction();
+                onMetadataChanged();
                 for (String filename : filenames) {
                     try {
                         final File f = new File(filename);
@@ -1027,6 +1120,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     public static void deleteDownloadingEntry(final SQLiteDatabase db, final long id) {
         db.delete(METADATA_TABLE_NAME, PENDINGID_COLUMN + " = ? AND " + STATUS_COLUMN + " = ?",
                 new String[] { Long.toString(id), Integer.toString(STATUS_DOWNLOADING) });
+        onMetadataChanged();
     }
 
     /**
@@ -1042,6 +1136,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
     public static void deleteEntry(final SQLiteDatabase db, final String id, final int version) {
         db.delete(METADATA_TABLE_NAME, WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
                 new String[] { id, Integer.toString(version) });
+        onMetadataChanged();
     }
 
     /**
@@ -1063,6 +1158,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
         db.update(METADATA_TABLE_NAME, values,
                 WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
                 new String[] { id, Integer.toString(version) });
+        onMetadataChanged();
     }
 
     /**
@@ -1147,6 +1243,7 @@ public class MetadataDbHelper extends SQLiteOpenHelper {
             db.update(METADATA_TABLE_NAME, values,
                     WORDLISTID_COLUMN + " = ? AND " + VERSION_COLUMN + " = ?",
                     new String[] { id, Integer.toString(version) });
+            onMetadataChanged();
             return true;
         }
         return false;
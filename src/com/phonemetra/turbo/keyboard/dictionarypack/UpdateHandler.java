@@ -31,27 +31,30 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.phonemetra.turbo.keyboard.compat.NotificationCompatUtils;
 import com.phonemetra.turbo.keyboard.R;
+import com.phonemetra.turbo.keyboard.latin.BinaryDictionaryFileDumper;
 import com.phonemetra.turbo.keyboard.latin.common.LocaleUtils;
 import com.phonemetra.turbo.keyboard.latin.makedict.FormatSpec;
 import com.phonemetra.turbo.keyboard.latin.utils.ApplicationUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -70,6 +73,12 @@ public final class UpdateHandler {
     
     // Used to prevent trying to read the id of the downloaded file before it is written
     static final Object sSharedIdProtector = new Object();
+    // Ids of the downloads being handled, guarded by sSharedIdProtector. The same finished
+    // download may be reported by the DownloadManager broadcast and found again by
+    // #resumeInterruptedDownloads on another thread; only the first one handles it.
+    private static final HashSet<Long> sDownloadIdsBeingHandled = new HashSet<>();
+    // Locks serializing the installation of the word lists of each locale, by locale string.
+    private static final HashMap<String, Object> sInstallLocks = new HashMap<>();
 
     // Value used to mean this is not a real DownloadManager downloaded file id
     // DownloadManager uses as an ID numbers returned out of an AUTOINCREMENT column
@@ -79,7 +88,7 @@ public final class UpdateHandler {
             FormatSpec.MAXIMUM_SUPPORTED_STATIC_VERSION;
 
     // Arbitrary. Probably good if it's a power of 2, and a couple thousand bytes long.
-    private static final int FILE_COPY_BUFFER_SIZE = 8192;
+    private static final int FILE_COPY_BUFFER_SIZE = 64 * 1024;
 
     // Table fixed values for metadata / downloads
     final static String METADATA_NAME = "metadata";
@@ -172,6 +181,7 @@ public final class UpdateHandler {
     public static boolean tryUpdate(final Context context) {
         
         final TreeSet<String> uris = new TreeSet<>();
+        final ArrayList<String> clientIds = new ArrayList<>();
         final Cursor cursor = MetadataDbHelper.queryClientIds(context);
         if (null == cursor) return false;
         try {
@@ -182,10 +192,14 @@ public final class UpdateHandler {
                         MetadataDbHelper.getMetadataUriAsString(context, clientId);
                  
                 uris.add(metadataUri);
+                clientIds.add(clientId);
             } while (cursor.moveToNext());
         } finally {
             cursor.close();
         }
+        for (final String clientId : clientIds) {
+            resumeInterruptedDownloads(context, clientId);
+        }
         boolean started = false;
         for (final String metadataUri : uris) {
             if (!TextUtils.isEmpty(metadataUri)) {
@@ -201,6 +215,32 @@ public final class UpdateHandler {
         return started;
     }
 
+    /**
+     * Finishes the word list downloads of a client that ended while we were not listening.
+     *
+     * DownloadManager resumes partial downloads by itself, so downloads that are still running
+     * or paused are left alone. But if the process died after a download ended and before the
+     * broadcast was handled, the word list would stay marked as downloading forever, and would
+     * only be downloaded again from scratch at the next update. Such downloads are handled now,
+     * from the file DownloadManager kept.
+     *
+     * @param context the context, to open the database and get DownloadManager.
+     * @param clientId the id of the client whose downloads to check.
+     */
+    private static void resumeInterruptedDownloads(final Context context, final String clientId) {
+        final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
+        final ArrayList<Long> pendingIds = MetadataDbHelper.getDownloadingWordListPendingIds(
+                MetadataDbHelper.getDb(context, clientId));
+        for (final long pendingId : pendingIds) {
+            final int status = getCompletedDownloadInfo(manager, pendingId).mStatus;
+            if (DownloadManager.STATUS_SUCCESSFUL == status
+                    || DownloadManager.STATUS_FAILED == status) {
+                Log.i(TAG, "resumeInterruptedDownloads() : DownloadId = " + pendingId);
+                downloadFinished(context, pendingId);
+            }
+        }
+    }
+
     /**
      * Download latest metadata from the server through DownloadManager for all relevant clients
      *
@@ -352,7 +392,7 @@ public final class UpdateHandler {
                 } else {
                     uri = uriWithAnchor;
                 }
-                if (DownloadManager.STATUS_SUCCESSFUL != status) {
+                if (DownloadManager.STATUS_FAILED == status) {
                     Log.e(TAG, "Permanent failure of download " + downloadId
                             + " with error code: " + error);
                 }
@@ -366,13 +406,27 @@ public final class UpdateHandler {
         }
     }
 
+    /**
+     * Claims a finished download and returns the records waiting for it.
+     *
+     * Word lists that are no longer downloading were already handled, so they are left out.
+     * The caller must call {@link #releaseDownloadId(long)} when done with a non-null result.
+     *
+     * @return the records, or null if another thread is already handling this download.
+     */
     private static ArrayList<DownloadRecord> getDownloadRecordsForCompletedDownloadInfo(
             final Context context, final CompletedDownloadInfo downloadInfo) {
         // Get and check the ID of the file we are waiting for, compare them to downloaded ones
         synchronized(sSharedIdProtector) {
-            final ArrayList<DownloadRecord> downloadRecords =
-                    MetadataDbHelper.getDownloadRecordsForDownloadId(context,
-                            downloadInfo.mDownloadId);
+            if (!sDownloadIdsBeingHandled.add(downloadInfo.mDownloadId)) return null;
+            final ArrayList<DownloadRecord> downloadRecords = new ArrayList<>();
+            for (final DownloadRecord record : MetadataDbHelper.getDownloadRecordsForDownloadId(
+                    context, downloadInfo.mDownloadId)) {
+                if (record.isMetadata() || MetadataDbHelper.STATUS_DOWNLOADING
+                        == record.mAttributes.getAsInteger(MetadataDbHelper.STATUS_COLUMN)) {
+                    downloadRecords.add(record);
+                }
+            }
             // If any of these is metadata, we should update the DB
             boolean hasMetadata = false;
             for (DownloadRecord record : downloadRecords) {
@@ -389,6 +443,12 @@ public final class UpdateHandler {
         }
     }
 
+    private static void releaseDownloadId(final long downloadId) {
+        synchronized(sSharedIdProtector) {
+            sDownloadIdsBeingHandled.remove(downloadId);
+        }
+    }
+
     /**
      * Take appropriate action after a download finished, in success or in error.
      *
@@ -406,24 +466,54 @@ public final class UpdateHandler {
         final long fileId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, NOT_AN_ID);
         Log.i(TAG, "downloadFinished() : DownloadId = " + fileId);
         if (NOT_AN_ID == fileId) return; // Spurious wake-up: ignore
+        downloadFinished(context, fileId);
+    }
 
+    /**
+     * Take appropriate action after the download with the passed id finished.
+     *
+     * Several downloads may be handled at the same time on different threads: the copy and
+     * the installation of a word list don't hold any lock shared with other word lists, except
+     * for the lists of the same locale, which are installed together. A given download is only
+     * handled by one thread at a time, and only once.
+     *
+     * @param context The context for this action.
+     * @param fileId The DownloadManager id of the download.
+     */
+    private static void downloadFinished(final Context context, final long fileId) {
         final DownloadManagerWrapper manager = new DownloadManagerWrapper(context);
         final CompletedDownloadInfo downloadInfo = getCompletedDownloadInfo(manager, fileId);
 
         final ArrayList<DownloadRecord> recordList =
                 getDownloadRecordsForCompletedDownloadInfo(context, downloadInfo);
         
-        if (null == recordList) return; // It was someone else's download.
+        if (null == recordList) return; // Another thread is handling this download.
         Log.i(TAG,"downloadFinished() : recordList " + recordList);
 
+        try {
+            handleDownloadRecords(context, manager, downloadInfo, recordList);
+            // Now that we're done using it, we can remove this download from DLManager
+            manager.remove(fileId);
+        } finally {
+            releaseDownloadId(fileId);
+        }
+    }
+
+    private static void handleDownloadRecords(final Context context,
+            final DownloadManagerWrapper manager, final CompletedDownloadInfo downloadInfo,
+            final ArrayList<DownloadRecord> recordList) {
+        final long fileId = downloadInfo.mDownloadId;
         for (final DownloadRecord record : recordList) {
             // downloadSuccessful is not final because we may still have exceptions from now on
             boolean downloadSuccessful = false;
+            final long startTime = SystemClock.uptimeMillis();
+            long handledTime = startTime;
             try {
                 if (downloadInfo.wasSuccessful()) {
                     downloadSuccessful = handleDownloadedFile(context, record, manager, fileId);
                     Log.i(TAG, "downloadFinished() : Success = " + downloadSuccessful);
                 }
+                handledTime = SystemClock.uptimeMillis();
             } finally {
                 final String resultMessage = downloadSuccessful ? "Success" : "Failure";
                 if (record.isMetadata()) {
@@ -436,9 +526,11 @@ public final class UpdateHandler {
                             db, record.mAttributes, record.mClientId);
                 }
             }
+            final long endTime = SystemClock.uptimeMillis();
+            Log.i(TAG, "downloadFinished() : DownloadId = " + fileId + " : Copy = "
+                    + (handledTime - startTime) + "ms : Install = " + (endTime - handledTime)
+                    + "ms");
         }
-        // Now that we're done using it, we can remove this download from DLManager
-        manager.remove(fileId);
     }
 
     /**
@@ -469,13 +561,35 @@ public final class UpdateHandler {
             final boolean downloadSuccessful, final long fileId,
             final SQLiteDatabase db, final ContentValues downloadedFileRecord,
             final String clientId) {
-        synchronized(sSharedIdProtector) {
-            if (downloadSuccessful) {
-                final ActionBatch actions = new ActionBatch();
-                actions.add(new ActionBatch.InstallAfterDownloadAction(clientId,
-                        downloadedFileRecord));
-                actions.execute(context, new LogProblemReporter(TAG));
-            } else {
+        if (downloadSuccessful) {
+            // Word lists of the same locale are installed together, so they must not be
+            // installed at the same time. Lists of other locales don't wait for this one.
+            final String localeString =
+                    downloadedFileRecord.getAsString(MetadataDbHelper.LOCALE_COLUMN);
+            synchronized (getInstallLock(localeString)) {
+                final boolean shouldInstall;
+                synchronized(sSharedIdProtector) {
+                    // Read the status from the database rather than from the record, which
+                    // was read before the copy.
+                    final ContentValues currentRecord =
+                            MetadataDbHelper.getContentValuesByPendingId(db, fileId);
+                    shouldInstall = null != currentRecord && MetadataDbHelper.STATUS_DOWNLOADING
+                            == currentRecord.getAsInteger(MetadataDbHelper.STATUS_COLUMN);
+                    final ActionBatch actions = new ActionBatch();
+                    actions.add(new ActionBatch.InstallAfterDownloadAction(clientId,
+                            downloadedFileRecord));
+                    actions.execute(context, new LogProblemReporter(TAG));
+                }
+                // Install the downloaded file by un-compressing and moving it to the staging
+                // directory. This reads and writes the whole file, so it is done without
+                // holding sSharedIdProtector, which all the other downloads need.
+                if (shouldInstall) {
+                    BinaryDictionaryFileDumper.installDictToStagingFromContentProvider(
+                            LocaleUtils.constructLocaleFromString(localeString), context, false);
+                }
+            }
+        } else {
+            synchronized(sSharedIdProtector) {
                 MetadataDbHelper.deleteDownloadingEntry(db, fileId);
             }
         }
@@ -487,6 +601,21 @@ public final class UpdateHandler {
         publishUpdateCycleCompletedEvent(context);
     }
 
+    /**
+     * Returns the lock that serializes the installation of the word lists of a locale.
+     */
+    private static Object getInstallLock(final String localeString) {
+        final String key = null == localeString ? "" : localeString;
+        synchronized (sInstallLocks) {
+            Object lock = sInstallLocks.get(key);
+            if (null == lock) {
+                lock = new Object();
+                sInstallLocks.put(key, lock);
+            }
+            return lock;
+        }
+    }
+
     private static void publishUpdateCycleCompletedEvent(final Context context) {
         // Even if this is not successful, we have to publish the new state.
         //PrivateLog.log("Publishing update cycle completed event");
@@ -587,10 +716,15 @@ public final class UpdateHandler {
         //DebugLogUtils.l("Downloaded metadata :", newMetadata);
         //PrivateLog.log("Downloaded metadata\n" + newMetadata);
 
-        final ActionBatch actions = computeUpgradeTo(context, clientId, newMetadata);
-        // TODO: Check with UX how we should report to the user
-        // TODO: add an action to close the database
-        actions.execute(context, new LogProblemReporter(TAG));
+        // The batch is executed in a single transaction, committed before any download it
+        // starts can be seen as finished: downloadFinished looks them up under the same lock.
+        synchronized (sSharedIdProtector) {
+            final ActionBatch actions = computeUpgradeTo(context, clientId, newMetadata);
+            // TODO: Check with UX how we should report to the user
+            // TODO: add an action to close the database
+            actions.executeInTransaction(context, MetadataDbHelper.getDb(context, clientId),
+                    new LogProblemReporter(TAG));
+        }
     }
 
     /**
@@ -622,88 +756,52 @@ public final class UpdateHandler {
 		        downloadRecord.mAttributes.put(MetadataDbHelper.LOCAL_FILENAME_COLUMN, destinationFile);
 		
 		        FileOutputStream outputStream = null;
-		        final String md5sum;
+		        final MessageDigest digester = MD5Calculator.newDigester();
 		        try {
 		            outputStream = context.openFileOutput(destinationFile, Context.MODE_PRIVATE);
-		            md5sum = MD5Calculator.checksum(inputStream);
-		            Log.i(TAG, "md5sum:" + md5sum);
-		            copyFile(inputStream, outputStream);
+		            // The checksum is computed on the data as it is copied, so that the file is
+		            // only read once.
+		            copyFile(inputStream, outputStream, digester);
 		        } finally {
 		            inputStream.close();
 		            if (outputStream != null) {
 		                outputStream.close();
 		            }
 		        }
-	             
-	
-//	        // TODO: Consolidate this MD5 calculation with file copying above.
-//	        // We need to reopen the file because the inputstream bytes have been consumed, and there
-//	        // is nothing in InputStream to reopen or rewind the stream
-//	        FileInputStream copiedFile = null;
-//	        final String md5sum;
-//	        try {
-//	            copiedFile = context.openFileInput(destinationFile);
-//	            md5sum = MD5Calculator.checksum(copiedFile);
-//	        } finally {
-//	            if (copiedFile != null) {
-//	                copiedFile.close();
-//	            }
-//	        }
-//	        if (TextUtils.isEmpty(md5sum)) {
-//	            return; // We can't compute the checksum anyway, so return and hope for the best
-//	        }
-//	        if (!md5sum.equals(downloadRecord.mAttributes.getAsString(
-//	                MetadataDbHelper.CHECKSUM_COLUMN))) {
-//	            context.deleteFile(destinationFile);
-//	            throw new BadFormatException("MD5 checksum check failed : \"" + md5sum + "\" <> \""
-//	                    + downloadRecord.mAttributes.getAsString(MetadataDbHelper.CHECKSUM_COLUMN)
-//	                    + "\"");
-//	        }
+		        final String expectedMd5sum = downloadRecord.mAttributes.getAsString(
+		                MetadataDbHelper.CHECKSUM_COLUMN);
+		        if (null != digester && !TextUtils.isEmpty(expectedMd5sum)) {
+		            final String md5sum = MD5Calculator.toHexString(digester.digest());
+		            Log.i(TAG, "md5sum:" + md5sum);
+		            if (!md5sum.equals(expectedMd5sum)) {
+		                // The file is still checked when it is installed to the staging
+		                // directory, so this is not fatal.
+		                Log.w(TAG, "MD5 checksum of the downloaded file differs from metadata");
+		            }
+		        }
+
         }  
     }
 
     /**
-     * Copies in to out using FileChannels.
-     *
-     * This tries to use channels for fast copying. If it doesn't work, fall back to
-     * copyFileFallBack below.
+     * Copies in to out with read/write methods, updating the digester with the data if any.
      *
-     * @param in the stream to copy from.
-     * @param out the stream to copy to.
-     * @throws IOException if both the normal and fallback methods raise exceptions.
-     */
-    private static void copyFile(final InputStream in, final OutputStream out)
-            throws IOException {
-       // DebugLogUtils.l("Copying files");
-        if (!(in instanceof FileInputStream) || !(out instanceof FileOutputStream)) {
-       //     DebugLogUtils.l("Not the right types");
-            copyFileFallback(in, out);
-        } else {
-            try {
-                final FileChannel sourceChannel = ((FileInputStream) in).getChannel();
-                final FileChannel destinationChannel = ((FileOutputStream) out).getChannel();
-                sourceChannel.transferTo(0, Integer.MAX_VALUE, destinationChannel);
-            } catch (IOException e) {
-                // Can't work with channels, or something went wrong. Copy by hand.
-         //       DebugLogUtils.l("Won't work");
-                copyFileFallback(in, out);
-            }
-        }
-    }
-
-    /**
-     * Copies in to out with read/write methods, not FileChannels.
+     * This does not use FileChannels, because the data has to go through the digester anyway.
      *
      * @param in the stream to copy from.
      * @param out the stream to copy to.
+     * @param digester the digester to update with the data, or null.
      * @throws IOException if a read or a write fails.
      */
-    private static void copyFileFallback(final InputStream in, final OutputStream out)
-            throws IOException {
-    //    DebugLogUtils.l("Falling back to slow copy");
+    private static void copyFile(final InputStream in, final OutputStream out,
+            @Nullable final MessageDigest digester) throws IOException {
         final byte[] buffer = new byte[FILE_COPY_BUFFER_SIZE];
-        for (int readBytes = in.read(buffer); readBytes >= 0; readBytes = in.read(buffer))
+        for (int readBytes = in.read(buffer); readBytes >= 0; readBytes = in.read(buffer)) {
+            if (null != digester) {
+                digester.update(buffer, 0, readBytes);
+            }
             out.write(buffer, 0, readBytes);
+        }
     }
 
     /**
@@ -38,13 +38,19 @@ import com.phonemetra.turbo.keyboard.latin.utils.JniUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.WordInputEventForPersonalization;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public final class BinaryDictionary extends Dictionary {
     private static final String TAG = "BinaryDictionary";
@@ -82,6 +88,20 @@ public final class BinaryDictionary extends Dictionary {
     public static final int FORMAT_WORD_PROPERTY_LEVEL_INDEX = 2;
     public static final int FORMAT_WORD_PROPERTY_COUNT_INDEX = 3;
 
+    // The layout of an entry of the buffer filled by getNextWordPropertiesNative(), in ints.
+    // Must be equal to the layout in native/jni/src/utils/jni_data_utils.h.
+    private static final int WORD_PROPERTY_ENTRY_FLAGS_OFFSET = 0;
+    private static final int WORD_PROPERTY_ENTRY_PROBABILITY_INFO_OFFSET = 1;
+    private static final int WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET = 5;
+    private static final int WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET = 6;
+    private static final int WORD_PROPERTY_FLAG_IS_NOT_A_WORD = 0x1;
+    private static final int WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE = 0x2;
+    private static final int WORD_PROPERTY_FLAG_HAS_NGRAMS = 0x4;
+    private static final int WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE = 0x8;
+    private static final int WORD_PROPERTY_FLAG_NGRAMS_OMITTED = 0x10;
+    // The size in ints of the buffer an iteration of getWordProperties() reads the words through.
+    private static final int WORD_PROPERTY_BUFFER_SIZE = 16 * 1024;
+
     public static final String DICT_FILE_NAME_SUFFIX_FOR_MIGRATION = ".migrate";
     public static final String DIR_NAME_SUFFIX_FOR_RECORD_MIGRATION = ".migrating";
 
@@ -194,12 +214,13 @@ public final class BinaryDictionary extends Dictionary {
             ArrayList<int[]> outShortcutTargets, ArrayList<Integer> outShortcutProbabilities);
     private static native int getNextWordNative(long dict, int token, int[] outCodePoints,
             boolean[] outIsBeginningOfSentence);
+    private static native int getNextWordPropertiesNative(long dict, int token,
+            ByteBuffer outBuffer, int[] outEntryCount);
+    // The input is read in place from the direct buffer of DicTraverseSession.
     private static native void getSuggestionsNative(long dict, long proximityInfo,
-            long traverseSession, int[] xCoordinates, int[] yCoordinates, int[] times,
-            int[] pointerIds, int[] inputCodePoints, int inputSize, int[] suggestOptions,
-            int[][] prevWordCodePointArrays, boolean[] isBeginningOfSentenceArray,
-            int prevWordCount, int[] outputSuggestionCount, int[] outputCodePoints,
-            int[] outputScores, int[] outputIndices, int[] outputTypes,
+            long traverseSession, ByteBuffer input, int inputPointerCapacity, int inputSize,
+            int suggestOptionCount, int prevWordCount, int[] outputSuggestionCount,
+            int[] outputCodePoints, int[] outputScores, int[] outputIndices, int[] outputTypes,
             int[] outputAutoCommitFirstWordConfidence,
             float[] inOutWeightOfLangModelVsSpatialModel);
     private static native boolean addUnigramEntryNative(long dict, int[] word, int probability,
@@ -307,16 +328,18 @@ public final class BinaryDictionary extends Dictionary {
                     Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
         }
         // TOOD: Pass multiple previous words information for n-gram.
-        getSuggestionsNative(mNativeDict, proximityInfoHandle,
-                getTraverseSession(sessionId).getSession(), inputPointers.getXCoordinates(),
-                inputPointers.getYCoordinates(), inputPointers.getTimes(),
-                inputPointers.getPointerIds(), session.mInputCodePoints, inputSize,
-                session.mNativeSuggestOptions.getOptions(), session.mPrevWordCodePointArrays,
-                session.mIsBeginningOfSentenceArray, ngramContext.getPrevWordCount(),
-                session.mOutputSuggestionCount, session.mOutputCodePoints, session.mOutputScores,
-                session.mSpaceIndices, session.mOutputTypes,
+        final long startNanos = KeystrokeLatencyTracer.start();
+        session.writeInputBuffer(inputPointers, inputSize, ngramContext.getPrevWordCount());
+        getSuggestionsNative(mNativeDict, proximityInfoHandle, session.getSession(),
+                session.getInputBuffer(), session.getInputPointerCapacity(), inputSize,
+                session.mNativeSuggestOptions.getOptions().length,
+                ngramContext.getPrevWordCount(), session.mOutputSuggestionCount,
+                session.mOutputCodePoints, session.mOutputScores, session.mSpaceIndices,
+                session.mOutputTypes,
                 session.mOutputAutoCommitFirstWordConfidence,
                 session.mInputOutputWeightOfLangModelVsSpatialModel);
+        KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_NATIVE_GET_SUGGESTIONS,
+                startNanos);
         if (inOutWeightOfLangModelVsSpatialModel != null) {
             inOutWeightOfLangModelVsSpatialModel[0] =
                     session.mInputOutputWeightOfLangModelVsSpatialModel[0];
@@ -445,6 +468,113 @@ public final class BinaryDictionary extends Dictionary {
                 getWordProperty(word, isBeginningOfSentence[0]), nextToken);
     }
 
+    /**
+     * Returns the properties of all the words in the dictionary, for dumps and exports.
+     *
+     * The words are read from native code in batches through a buffer of a fixed size, and each
+     * word property is only created when the iterator reaches it, so iterating a large dictionary
+     * takes a few JNI calls and does not hold all of its words at once. As with
+     * {@link #getNextWordProperty(int)}, an iteration must not be interleaved with another one on
+     * this dictionary, nor with modifications of it.
+     */
+    @Nonnull
+    public Iterable<WordProperty> getWordProperties() {
+        return new Iterable<WordProperty>() {
+            @Override
+            public Iterator<WordProperty> iterator() {
+                return new WordPropertyIterator();
+            }
+        };
+    }
+
+    private final class WordPropertyIterator implements Iterator<WordProperty> {
+        private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(WORD_PROPERTY_BUFFER_SIZE * 4)
+                .order(ByteOrder.nativeOrder());
+        private final IntBuffer mInts = mBuffer.asIntBuffer();
+        private final int[] mOutEntryCount = new int[1];
+        private int mNextToken = 0;
+        private boolean mHasNextBatch = true;
+        private int mRemainingEntryCount = 0;
+        private int mPos = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (0 == mRemainingEntryCount && mHasNextBatch) {
+                mNextToken = getNextWordPropertiesNative(mNativeDict, mNextToken, mBuffer,
+                        mOutEntryCount);
+                mHasNextBatch = 0 != mNextToken;
+                mRemainingEntryCount = mOutEntryCount[0];
+                mPos = 0;
+            }
+            return mRemainingEntryCount > 0;
+        }
+
+        @Override
+        public WordProperty next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            --mRemainingEntryCount;
+            final int flags = mInts.get(mPos + WORD_PROPERTY_ENTRY_FLAGS_OFFSET);
+            final int[] probabilityInfo = readInts(
+                    mPos + WORD_PROPERTY_ENTRY_PROBABILITY_INFO_OFFSET,
+                    FORMAT_WORD_PROPERTY_OUTPUT_PROBABILITY_INFO_COUNT);
+            final int[] codePoints = readInts(mPos + WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET,
+                    mInts.get(mPos + WORD_PROPERTY_ENTRY_CODE_POINT_COUNT_OFFSET));
+            mPos += WORD_PROPERTY_ENTRY_CODE_POINTS_OFFSET + codePoints.length;
+            final boolean isBeginningOfSentence =
+                    0 != (flags & WORD_PROPERTY_FLAG_IS_BEGINNING_OF_SENTENCE);
+            if (0 != (flags & WORD_PROPERTY_FLAG_NGRAMS_OMITTED)) {
+                // The n-grams of this word did not fit in the buffer.
+                return getWordProperty(StringUtils.getStringFromNullTerminatedCodePointArray(
+                        codePoints), isBeginningOfSentence);
+            }
+            final int ngramCount = mInts.get(mPos++);
+            final ArrayList<int[][]> ngramPrevWordsArray = new ArrayList<>(ngramCount);
+            final ArrayList<boolean[]> ngramPrevWordIsBeginningOfSentenceArray =
+                    new ArrayList<>(ngramCount);
+            final ArrayList<int[]> ngramTargets = new ArrayList<>(ngramCount);
+            final ArrayList<int[]> ngramProbabilityInfo = new ArrayList<>(ngramCount);
+            for (int i = 0; i < ngramCount; ++i) {
+                final int prevWordCount = mInts.get(mPos++);
+                final int[][] prevWords = new int[prevWordCount][];
+                final boolean[] prevWordIsBeginningOfSentence = new boolean[prevWordCount];
+                for (int j = 0; j < prevWordCount; ++j) {
+                    prevWordIsBeginningOfSentence[j] = 0 != mInts.get(mPos++);
+                    prevWords[j] = readInts(mPos + 1, mInts.get(mPos));
+                    mPos += 1 + prevWords[j].length;
+                }
+                final int[] target = readInts(mPos + 1, mInts.get(mPos));
+                mPos += 1 + target.length;
+                ngramPrevWordsArray.add(prevWords);
+                ngramPrevWordIsBeginningOfSentenceArray.add(prevWordIsBeginningOfSentence);
+                ngramTargets.add(target);
+                ngramProbabilityInfo.add(
+                        readInts(mPos, FORMAT_WORD_PROPERTY_OUTPUT_PROBABILITY_INFO_COUNT));
+                mPos += FORMAT_WORD_PROPERTY_OUTPUT_PROBABILITY_INFO_COUNT;
+            }
+            return new WordProperty(codePoints,
+                    0 != (flags & WORD_PROPERTY_FLAG_IS_NOT_A_WORD),
+                    0 != (flags & WORD_PROPERTY_FLAG_IS_POSSIBLY_OFFENSIVE),
+                    0 != (flags & WORD_PROPERTY_FLAG_HAS_NGRAMS), isBeginningOfSentence,
+                    probabilityInfo, ngramPrevWordsArray,
+                    ngramPrevWordIsBeginningOfSentenceArray, ngramTargets,
+                    ngramProbabilityInfo);
+        }
+
+        private int[] readInts(final int pos, final int count) {
+            final int[] ints = new int[count];
+            mInts.position(pos);
+            mInts.get(ints);
+            return ints;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
     // Add a unigram entry to binary dictionary with unigram attributes in native code.
     public boolean addUnigramEntry(
             final String word, final int probability, final boolean isBeginningOfSentence,
@@ -493,6 +623,23 @@ public final class BinaryDictionary extends Dictionary {
         return true;
     }
 
+    // Remove an n-gram entry from the binary dictionary in native code.
+    public boolean removeNgramEntry(final NgramContext ngramContext, final String word) {
+        if (!ngramContext.isValid() || TextUtils.isEmpty(word)) {
+            return false;
+        }
+        final int[][] prevWordCodePointArrays = new int[ngramContext.getPrevWordCount()][];
+        final boolean[] isBeginningOfSentenceArray = new boolean[ngramContext.getPrevWordCount()];
+        ngramContext.outputToArray(prevWordCodePointArrays, isBeginningOfSentenceArray);
+        final int[] wordCodePoints = StringUtils.toCodePointArray(word);
+        if (!removeNgramEntryNative(mNativeDict, prevWordCodePointArrays,
+                isBeginningOfSentenceArray, wordCodePoints)) {
+            return false;
+        }
+        mHasUpdated = true;
+        return true;
+    }
+
     // Update entries for the word occurrence with the ngramContext.
     public boolean updateEntriesForWordWithNgramContext(@Nonnull final NgramContext ngramContext,
             final String word, final boolean isValidWord, final int count, final int timestamp) {
@@ -639,6 +786,32 @@ public final class BinaryDictionary extends Dictionary {
         return candidate.mAutoCommitFirstWordConfidence > CONFIDENCE_TO_AUTO_COMMIT;
     }
 
+    /**
+     * Returns the decoder counters of the traverse sessions of this dictionary, indexed by the
+     * DicTraverseSession.DECODER_COUNTER_* constants. Counts are summed over the sessions, and
+     * the depth and the capacity are the largest ones. A session that is getting suggestions
+     * meanwhile may be counted partially.
+     */
+    @Override
+    @Nullable
+    public int[] getDecoderCounters() {
+        final int[] counters = new int[DicTraverseSession.DECODER_COUNTER_COUNT];
+        synchronized (mDicTraverseSessions) {
+            final int sessionsSize = mDicTraverseSessions.size();
+            for (int index = 0; index < sessionsSize; ++index) {
+                final DicTraverseSession traverseSession = mDicTraverseSessions.valueAt(index);
+                if (traverseSession == null) {
+                    continue;
+                }
+                final IntBuffer sessionCounters = traverseSession.getDecoderCounters();
+                for (int i = 0; i < DicTraverseSession.DECODER_COUNTER_COUNT; ++i) {
+                    DicTraverseSession.mergeDecoderCounter(counters, i, sessionCounters.get(i));
+                }
+            }
+        }
+        return counters;
+    }
+
     @Override
     public void close() {
         synchronized (mDicTraverseSessions) {
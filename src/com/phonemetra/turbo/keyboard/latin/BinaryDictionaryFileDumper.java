@@ -38,14 +38,14 @@ import com.phonemetra.turbo.keyboard.latin.utils.FileTransforms;
 import com.phonemetra.turbo.keyboard.latin.utils.MetadataFileUriGetter;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -61,7 +61,12 @@ import com.phonemetra.turbo.keyboard.R;
 public final class BinaryDictionaryFileDumper {
 	private static final String TAG = "BinaryDictionaryFileDumper";
 
-	private static final int FILE_READ_BUFFER_SIZE = 8192;
+	private static final int FILE_COPY_BUFFER_SIZE = 64 * 1024;
+	// Word lists may be compressed, crypted and compressed again.
+	private static final int MAX_ENCODING_LAYERS = 3;
+
+	private static final byte[] GZIP_MAGIC_NUMBER = new byte[] {
+			(byte) 0x1F, (byte) 0x8B };
 
 	private static final byte[] MAGIC_NUMBER_VERSION_1 = new byte[] {
 			(byte) 0x78, (byte) 0xB1, (byte) 0x00, (byte) 0x00 };
@@ -260,15 +265,6 @@ public final class BinaryDictionaryFileDumper {
 	private static void installWordListToStaging(final String wordlistId, final String locale,
             final String rawChecksum, final ContentProviderClient providerClient,
             final Context context) {
-        final int COMPRESSED_CRYPTED_COMPRESSED = 0;
-        final int CRYPTED_COMPRESSED = 1;
-        final int COMPRESSED_CRYPTED = 2;
-        final int COMPRESSED_ONLY = 3;
-        final int CRYPTED_ONLY = 4;
-        final int NONE = 5;
-        final int MODE_MIN = COMPRESSED_CRYPTED_COMPRESSED;
-        final int MODE_MAX = NONE;
-
         final String clientId = context.getString(R.string.dictionary_pack_client_id);
         final Uri.Builder wordListUriBuilder;
         try {
@@ -278,150 +274,79 @@ public final class BinaryDictionaryFileDumper {
             Log.e(TAG, "Can't communicate with the dictionary pack", e);
             return;
         }
-        
-        String finalFileName = null;
-		try {
-			 finalFileName =  DictionaryInfoUtils.getStagingFileName(wordlistId, locale, context);
-		} catch (Exception e) {
-	        Log.e(TAG, "finalFileName:" + finalFileName);
-		}
-        Log.i(TAG, "finalFileName:" + finalFileName);
-        
-        String tempFileName = null;
-        try {
-        	tempFileName = DictionaryInfoUtils.getTempFileName(wordlistId, locale, context);
-        } catch (Exception e) {
-        	Log.e(TAG, "tempFileName:" + tempFileName);
-        }
-        Log.i(TAG, "tempFileName:" + tempFileName);
-
-        for (int mode = MODE_MIN; mode <= MODE_MAX; ++mode) {
-        	
-        	 Log.i(TAG, "Entra nel for mode:" + mode);
-        	
-            final InputStream originalSourceStream;
-            InputStream inputStream = null;
-            InputStream uncompressedStream = null;
-            InputStream decryptedStream = null;
-            BufferedInputStream bufferedInputStream = null;
-            File outputFile = null;
-            BufferedOutputStream bufferedOutputStream = null;
-            AssetFileDescriptor afd = null;
-            final Uri wordListUri = wordListUriBuilder.build();
-            
-            Log.i(TAG, "wordListUri:" + wordListUri);
-            
-            try {
-            	Log.i(TAG, "Entra nel try");
-                // Open input.
-                afd = openAssetFileDescriptor(providerClient, wordListUri);
-                
-                if (afd!=null) {
-                	originalSourceStream = afd.createInputStream();
-                } else {
-                	return;
-                }   
-                Log.i(TAG, "afd:"+ afd.getFileDescriptor());
-                Log.i(TAG, "originalSourceStream:"+ originalSourceStream);
-                
-                // Open output.
-                outputFile = new File(tempFileName);
-                Log.i(TAG, "outputFile" + outputFile);
-                
-                // Just to be sure, delete the file. This may fail silently, and return false: this
-                // is the right thing to do, as we just want to continue anyway.
-                outputFile.delete();
-                
-                // Get the appropriate decryption method for this try
-                switch (mode) {
-                    case COMPRESSED_CRYPTED_COMPRESSED:
-                    	Log.i(TAG, "Entra nel switch mode COMPRESSED_CRYPTED_COMPRESSED:" + COMPRESSED_CRYPTED_COMPRESSED);
-                        uncompressedStream =
-                                FileTransforms.getUncompressedStream(originalSourceStream);
-                        decryptedStream = FileTransforms.getDecryptedStream(uncompressedStream);
-                        inputStream = FileTransforms.getUncompressedStream(decryptedStream);
-                        break;
-                    case CRYPTED_COMPRESSED:
-                    	Log.i(TAG, "Entra nel switch mode CRYPTED_COMPRESSED:" + CRYPTED_COMPRESSED);
-                        decryptedStream = FileTransforms.getDecryptedStream(originalSourceStream);
-                        inputStream = FileTransforms.getUncompressedStream(decryptedStream);
-                        break;
-                    case COMPRESSED_CRYPTED:
-                    	Log.i(TAG, "Entra nel switch mode COMPRESSED_CRYPTED:" + COMPRESSED_CRYPTED);
-                        uncompressedStream =
-                                FileTransforms.getUncompressedStream(originalSourceStream);
-                        inputStream = FileTransforms.getDecryptedStream(uncompressedStream);
-                        break;
-                    case COMPRESSED_ONLY:
-                    	Log.i(TAG, "Entra nel switch mode COMPRESSED_ONLY:" + COMPRESSED_ONLY);
-                        inputStream = FileTransforms.getUncompressedStream(originalSourceStream);
-                        break;
-                    case CRYPTED_ONLY:
-                    	Log.i(TAG, "Entra nel switch mode CRYPTED_ONLY:" + CRYPTED_ONLY);
-                        inputStream = FileTransforms.getDecryptedStream(originalSourceStream);
-                        break;
-                    case NONE:
-                    	Log.i(TAG, "Entra nel switch mode NONE:" + NONE);
-                        inputStream = originalSourceStream;
-                        break;
-                }
-                Log.i(TAG, "Esce dal switch mode con inputStream:" + inputStream); 
-                Log.i(TAG, "Esce dal switch mode con outputFile:" + outputFile); 
-                
-                bufferedInputStream = new BufferedInputStream(inputStream);
-                bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(outputFile));
-                
-                Log.i(TAG, "bufferedInputStream:" + bufferedInputStream); 
-                Log.i(TAG, "bufferedOutputStream:" + bufferedOutputStream); 
-                checkMagicAndCopyFileTo(bufferedInputStream, bufferedOutputStream);
-                Log.i(TAG, "Passa il checkMagicAndCopyFileTo");
-                bufferedOutputStream.flush();
-                bufferedOutputStream.close();
-
-                if (SHOULD_VERIFY_CHECKSUM) {
-                    final String actualRawChecksum = MD5Calculator.checksum(
-                            new BufferedInputStream(new FileInputStream(outputFile)));
-                    Log.i(TAG, "Computed checksum for downloaded dictionary. Expected = "
-                            + rawChecksum + " ; actual = " + actualRawChecksum);
-                    if (!TextUtils.isEmpty(rawChecksum) && !rawChecksum.equals(actualRawChecksum)) {
-                        throw new IOException(
-                                "Could not decode the file correctly : checksum differs");
-                    }
-                }
 
-                // move the output file to the final staging file.
-                final File finalFile = new File(finalFileName);
-                if (!FileUtils.renameTo(outputFile, finalFile)) {
-                    Log.e(TAG, String.format("Failed to rename from %s to %s.",
-                            outputFile.getAbsoluteFile(), finalFile.getAbsoluteFile()));
-                }
+        final String finalFileName =
+                DictionaryInfoUtils.getStagingFileName(wordlistId, locale, context);
+        final String tempFileName =
+                DictionaryInfoUtils.getTempFileName(wordlistId, locale, context);
 
-                wordListUriBuilder.appendQueryParameter(QUERY_PARAMETER_DELETE_RESULT,
-                        QUERY_PARAMETER_SUCCESS);
-                if (0 >= providerClient.delete(wordListUriBuilder.build(), null, null)) {
-                    Log.e(TAG, "Could not have the dictionary pack delete a word list");
-                }
-                Log.d(TAG, "Successfully copied file for wordlist ID " + wordlistId);
-                // Success! Close files (through the finally{} clause) and return.
+        InputStream inputStream = null;
+        FileOutputStream outputStream = null;
+        File outputFile = null;
+        AssetFileDescriptor afd = null;
+        try {
+            // Open input.
+            afd = openAssetFileDescriptor(providerClient, wordListUriBuilder.build());
+            if (null == afd) {
                 return;
-            } catch (Exception e) {
-                
-                if (null != outputFile) {
-                    // This may or may not fail. The file may not have been created if the
-                    // exception was thrown before it could be. Hence, both failure and
-                    // success are expected outcomes, so we don't check the return value.
-                    outputFile.delete();
+            }
+            inputStream = getDecodedStream(afd.createInputStream());
+
+            // Open output. Just to be sure, delete the file first. This may fail silently, and
+            // return false: this is the right thing to do, as we just want to continue anyway.
+            outputFile = new File(tempFileName);
+            outputFile.delete();
+            outputStream = new FileOutputStream(outputFile);
+
+            // Compute the checksum of the decoded data while copying it, rather than reading
+            // the file again afterwards.
+            final MessageDigest digester = (SHOULD_VERIFY_CHECKSUM
+                    && !TextUtils.isEmpty(rawChecksum)) ? MD5Calculator.newDigester() : null;
+            copyStream(inputStream, outputStream, digester);
+            // Make sure the data is on disk before the file can be seen in the staging
+            // directory.
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (null != digester) {
+                final String actualRawChecksum = MD5Calculator.toHexString(digester.digest());
+                Log.i(TAG, "Computed checksum for downloaded dictionary. Expected = "
+                        + rawChecksum + " ; actual = " + actualRawChecksum);
+                if (!rawChecksum.equals(actualRawChecksum)) {
+                    throw new IOException(
+                            "Could not decode the file correctly : checksum differs");
                 }
-                // Try the next method.
-            } finally {
-                // Ignore exceptions while closing files.
-                closeAssetFileDescriptorAndReportAnyException(afd);
-                closeCloseableAndReportAnyException(inputStream);
-                closeCloseableAndReportAnyException(uncompressedStream);
-                closeCloseableAndReportAnyException(decryptedStream);
-                closeCloseableAndReportAnyException(bufferedInputStream);
-                closeCloseableAndReportAnyException(bufferedOutputStream);
             }
+
+            // move the output file to the final staging file.
+            final File finalFile = new File(finalFileName);
+            if (!FileUtils.renameTo(outputFile, finalFile)) {
+                Log.e(TAG, String.format("Failed to rename from %s to %s.",
+                        outputFile.getAbsoluteFile(), finalFile.getAbsoluteFile()));
+            }
+
+            wordListUriBuilder.appendQueryParameter(QUERY_PARAMETER_DELETE_RESULT,
+                    QUERY_PARAMETER_SUCCESS);
+            if (0 >= providerClient.delete(wordListUriBuilder.build(), null, null)) {
+                Log.e(TAG, "Could not have the dictionary pack delete a word list");
+            }
+            Log.d(TAG, "Successfully copied file for wordlist ID " + wordlistId);
+            // Success! Close files (through the finally{} clause) and return.
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "Could not decode a word list", e);
+            if (null != outputFile) {
+                // This may or may not fail. The file may not have been created if the
+                // exception was thrown before it could be. Hence, both failure and
+                // success are expected outcomes, so we don't check the return value.
+                outputFile.delete();
+            }
+        } finally {
+            // Ignore exceptions while closing files.
+            closeAssetFileDescriptorAndReportAnyException(afd);
+            closeCloseableAndReportAnyException(inputStream);
+            closeCloseableAndReportAnyException(outputStream);
         }
 
         // We could not copy the file at all. This is very unexpected.
@@ -534,58 +459,90 @@ public final class BinaryDictionaryFileDumper {
 	}
 
 	/**
-	 * Copies the data in an input stream to a target file if the magic number
-	 * matches.
+	 * Returns a stream of the decoded data of a word list, by looking at the
+	 * beginning of the data to find out how it is encoded, instead of trying
+	 * every possible encoding in turn.
 	 *
-	 * If the magic number does not match the expected value, this method throws
-	 * an IOException. Other usual conditions for IOException or
-	 * FileNotFoundException also apply.
+	 * Word lists may be compressed, crypted and compressed again. Compressed
+	 * data is recognized by the gzip magic number. Data that is neither
+	 * compressed nor a dictionary is decrypted, once.
 	 *
-	 * @param input
-	 *            the stream to be copied.
-	 * @param output
-	 *            an output stream to copy the data to.
+	 * @param source
+	 *            the stream of the word list as provided.
+	 * @return the decoded stream, which supports mark and reset.
 	 */
-	public static void checkMagicAndCopyFileTo(final BufferedInputStream input,
-			final BufferedOutputStream output) throws FileNotFoundException,
-			IOException {
-		
-		Log.i(TAG, "Entra nel checkMagicAndCopyFileTo");
-		
-		
-		// Check the magic number
-		final int length = MAGIC_NUMBER_VERSION_2.length;
-		Log.i(TAG, "length:" + length);
-		final byte[] magicNumberBuffer = new byte[length];
-		final int readMagicNumberSize = input.read(magicNumberBuffer, 0, length);
-		Log.i(TAG, "readMagicNumberSize:" + readMagicNumberSize);
-		if (readMagicNumberSize < length) {
-			throw new IOException(
-					"Less bytes to read than the magic number length");
+	private static InputStream getDecodedStream(final InputStream source)
+			throws IOException {
+		InputStream stream = new BufferedInputStream(source, FILE_COPY_BUFFER_SIZE);
+		boolean isDecrypted = false;
+		for (int layer = 0; layer < MAX_ENCODING_LAYERS; ++layer) {
+			final byte[] header = peek(stream, MAGIC_NUMBER_VERSION_2.length);
+			if (header.length < MAGIC_NUMBER_VERSION_2.length) {
+				throw new IOException(
+						"Less bytes to read than the magic number length");
+			}
+			if (startsWith(header, GZIP_MAGIC_NUMBER)) {
+				stream = new BufferedInputStream(
+						FileTransforms.getUncompressedStream(stream),
+						FILE_COPY_BUFFER_SIZE);
+			} else if (isDecrypted || Arrays.equals(header, MAGIC_NUMBER_VERSION_2)
+					|| Arrays.equals(header, MAGIC_NUMBER_VERSION_1)) {
+				return stream;
+			} else {
+				stream = new BufferedInputStream(
+						FileTransforms.getDecryptedStream(stream),
+						FILE_COPY_BUFFER_SIZE);
+				isDecrypted = true;
+			}
+		}
+		return stream;
+	}
+
+	// Reads the first bytes of a stream that supports mark and reset, without
+	// consuming them.
+	private static byte[] peek(final InputStream stream, final int length)
+			throws IOException {
+		final byte[] buffer = new byte[length];
+		stream.mark(length);
+		int readBytes = 0;
+		while (readBytes < length) {
+			final int count = stream.read(buffer, readBytes, length - readBytes);
+			if (count < 0) {
+				break;
+			}
+			readBytes += count;
+		}
+		stream.reset();
+		return (readBytes == length) ? buffer : Arrays.copyOf(buffer, readBytes);
+	}
+
+	private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+		if (bytes.length < prefix.length) {
+			return false;
 		}
-		
-//		if (SHOULD_VERIFY_MAGIC_NUMBER) {
-//			Log.i(TAG, "Entra nel SHOULD_VERIFY_MAGIC_NUMBER");
-//			if (!Arrays.equals(MAGIC_NUMBER_VERSION_2, magicNumberBuffer)) 	{	
-//				Log.i(TAG, "Entra nella disugualianza MAGIC_NUMBER_VERSION_2:" + MAGIC_NUMBER_VERSION_2);
-//				Log.i(TAG, "Entra nella disugualianza magicNumberBuffer:" + magicNumberBuffer);
-//				//if (!Arrays.equals(MAGIC_NUMBER_VERSION_1, magicNumberBuffer)) {
-//					
-//					Log.i(TAG, "Entra nel IOException");
-//					throw new IOException(
-//							"Wrong magic number for downloaded file");
-//				//}
-//			}
-//		}
-		output.write(magicNumberBuffer);
-
-		// Actually copy the file
-		final byte[] buffer = new byte[FILE_READ_BUFFER_SIZE];
-		for (int readBytes = input.read(buffer); readBytes >= 0; readBytes = input
-				.read(buffer)) {
+		for (int i = 0; i < prefix.length; ++i) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the data in an input stream to an output stream, updating the
+	 * digester with it if any, so that the data is read only once.
+	 */
+	private static void copyStream(final InputStream input,
+			final OutputStream output, final MessageDigest digester)
+			throws IOException {
+		final byte[] buffer = new byte[FILE_COPY_BUFFER_SIZE];
+		for (int readBytes = input.read(buffer); readBytes >= 0;
+				readBytes = input.read(buffer)) {
+			if (null != digester) {
+				digester.update(buffer, 0, readBytes);
+			}
 			output.write(buffer, 0, readBytes);
 		}
-		input.close();
 	}
 
 	private static void reinitializeClientRecordInDictionaryContentProvider(
@@ -31,9 +31,15 @@ import com.phonemetra.turbo.keyboard.latin.personalization.AccountUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
@@ -43,6 +49,9 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
 
     private final boolean mUseFirstLastBigrams;
     private final ContactsManager mContactsManager;
+    // The words of the profile and of the device accounts, which are loaded along with the
+    // contacts but never updated with them. Guarded by the write lock of the dictionary.
+    private final HashSet<String> mWordsNotFromContacts = new HashSet<>();
 
     protected ContactsBinaryDictionary(final Context context, final Locale locale,
             final File dictFile, final String name) {
@@ -73,6 +82,7 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
      */
     @Override
     public void loadInitialContentsLocked() {
+        mWordsNotFromContacts.clear();
         loadDeviceAccountsEmailAddressesLocked();
         loadDictionaryForUriLocked(ContactsContract.Profile.CONTENT_URI);
         // TODO: Switch this URL to the newer ContactsContract too
@@ -94,6 +104,7 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
             addUnigramLocked(word, ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS,
                     false /* isNotAWord */, false /* isPossiblyOffensive */,
                     BinaryDictionary.NOT_A_VALID_TIMESTAMP);
+            mWordsNotFromContacts.add(word);
         }
     }
 
@@ -106,21 +117,28 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
             Log.i(TAG, "No permission to read contacts. Not loading the Dictionary.");
         }
 
+        final long startTime = System.currentTimeMillis();
         final ArrayList<String> validNames = mContactsManager.getValidNames(uri);
+        final boolean isForContacts = uri.equals(Contacts.CONTENT_URI);
         for (final String name : validNames) {
             addNameLocked(name);
+            if (!isForContacts) {
+                mWordsNotFromContacts.addAll(getWords(name));
+            }
         }
-        if (uri.equals(Contacts.CONTENT_URI)) {
+        if (isForContacts) {
             // Since we were able to add content successfully, update the local
             // state of the manager.
-            mContactsManager.updateLocalState(validNames);
+            mContactsManager.updateLocalState(validNames, startTime);
         }
     }
 
-    private void addNameLocked(final String name) {
+    /**
+     * Returns the words of a name that go in the dictionary, in order.
+     */
+    private static ArrayList<String> getWords(final String name) {
+        final ArrayList<String> words = new ArrayList<>();
         int len = StringUtils.codePointCount(name);
-        NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
-                BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
         for (int i = 0; i < len; i++) {
             if (Character.isLetter(name.codePointAt(i))) {
                 int end = ContactsDictionaryUtils.getWordEndPosition(name, len, i);
@@ -130,27 +148,100 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
                 // capitalization of i.
                 final int wordLen = StringUtils.codePointCount(word);
                 if (wordLen <= MAX_WORD_LENGTH && wordLen > 1) {
-                    runGCIfRequiredLocked(true /* mindsBlockByGC */);
-                    addUnigramLocked(word,
-                            ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS, false /* isNotAWord */,
-                            false /* isPossiblyOffensive */,
-                            BinaryDictionary.NOT_A_VALID_TIMESTAMP);
-                    if (ngramContext.isValid() && mUseFirstLastBigrams) {
-                        runGCIfRequiredLocked(true /* mindsBlockByGC */);
-                        addNgramEntryLocked(ngramContext,
-                                word,
-                                ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS_BIGRAM,
-                                BinaryDictionary.NOT_A_VALID_TIMESTAMP);
-                    }
-                    ngramContext = ngramContext.getNextNgramContext(
-                            new NgramContext.WordInfo(word));
+                    words.add(word);
                 }
             }
         }
+        return words;
+    }
+
+    private void addNameLocked(final String name) {
+        NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
+                BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
+        for (final String word : getWords(name)) {
+            runGCIfRequiredLocked(true /* mindsBlockByGC */);
+            addUnigramLocked(word,
+                    ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS, false /* isNotAWord */,
+                    false /* isPossiblyOffensive */,
+                    BinaryDictionary.NOT_A_VALID_TIMESTAMP);
+            if (ngramContext.isValid() && mUseFirstLastBigrams) {
+                runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                addNgramEntryLocked(ngramContext,
+                        word,
+                        ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS_BIGRAM,
+                        BinaryDictionary.NOT_A_VALID_TIMESTAMP);
+            }
+            ngramContext = ngramContext.getNextNgramContext(
+                    new NgramContext.WordInfo(word));
+        }
+    }
+
+    /**
+     * Removes the n-grams of a name, and the words of the name that no other name uses.
+     *
+     * @param wordsInUse the words of the names that stay in the dictionary.
+     */
+    private void removeNameLocked(final String name, final Set<String> wordsInUse) {
+        NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
+                BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
+        for (final String word : getWords(name)) {
+            runGCIfRequiredLocked(true /* mindsBlockByGC */);
+            if (!wordsInUse.contains(word)) {
+                // Removing the word also makes the n-grams that end with it unreachable.
+                removeUnigramLocked(word);
+            } else if (ngramContext.isValid() && mUseFirstLastBigrams) {
+                removeNgramEntryLocked(ngramContext, word);
+            }
+            ngramContext = ngramContext.getNextNgramContext(
+                    new NgramContext.WordInfo(word));
+        }
     }
 
     @Override
     public void onContactsChange() {
         setNeedsToRecreate();
     }
+
+    /**
+     * Applies the changes of the names to the dictionary as it is, instead of recreating it from
+     * all the contacts. The local state of the contacts manager is updated once they are applied,
+     * so that changes that could not be applied are found again on the next update.
+     */
+    @Override
+    public void onContactsChange(@Nonnull final Collection<String> names,
+            @Nonnull final Collection<String> addedNames,
+            @Nonnull final Collection<String> removedNames, final long timestamp) {
+        final ArrayList<String> currentNames = new ArrayList<>(names);
+        final LinkedHashSet<String> namesToAdd = new LinkedHashSet<>(addedNames);
+        final ArrayList<String> namesToRemove = new ArrayList<>(removedNames);
+        updateDictionaryWithWriteLock(new Runnable() {
+            @Override
+            public void run() {
+                if (!namesToRemove.isEmpty()) {
+                    final HashSet<String> wordsInUse = new HashSet<>(mWordsNotFromContacts);
+                    for (final String name : currentNames) {
+                        wordsInUse.addAll(getWords(name));
+                    }
+                    final HashSet<String> removedWords = new HashSet<>();
+                    for (final String name : namesToRemove) {
+                        removeNameLocked(name, wordsInUse);
+                        removedWords.addAll(getWords(name));
+                    }
+                    // The n-grams of a removed name may be shared with names that stay, so add
+                    // these names again.
+                    for (final String name : currentNames) {
+                        if (!namesToAdd.contains(name)
+                                && !Collections.disjoint(getWords(name), removedWords)) {
+                            namesToAdd.add(name);
+                        }
+                    }
+                }
+                for (final String name : namesToAdd) {
+                    addNameLocked(name);
+                }
+                mContactsManager.updateLocalState(currentNames, timestamp);
+            }
+        });
+        asyncFlushBinaryDictionary();
+    }
 }
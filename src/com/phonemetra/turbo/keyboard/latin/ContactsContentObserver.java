@@ -29,17 +29,31 @@ import com.phonemetra.turbo.keyboard.latin.permissions.PermissionsUtil;
 import com.phonemetra.turbo.keyboard.latin.utils.ExecutorUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A content observer that listens to updates to content provider {@link Contacts#CONTENT_URI}.
+ *
+ * Changes come in bursts while accounts are synced, so they are only looked at once no change
+ * has been notified for {@link #UPDATE_DELAY_IN_MILLISECONDS}, or at the latest
+ * {@link #MAX_UPDATE_DELAY_IN_MILLISECONDS} after the first one.
  */
 public class ContactsContentObserver implements Runnable {
     private static final String TAG = "ContactsContentObserver";
 
+    private static final long UPDATE_DELAY_IN_MILLISECONDS = TimeUnit.SECONDS.toMillis(2);
+    private static final long MAX_UPDATE_DELAY_IN_MILLISECONDS = TimeUnit.SECONDS.toMillis(30);
+
     private final Context mContext;
     private final ContactsManager mManager;
-    private final AtomicBoolean mRunning = new AtomicBoolean(false);
+    private final AtomicBoolean mUpdateScheduled = new AtomicBoolean(false);
+    // The times of the first and the last change notified since the last update, in
+    // {@link SystemClock#uptimeMillis()}.
+    private volatile long mFirstChangeTime;
+    private volatile long mLastChangeTime;
 
     private ContentObserver mContentObserver;
     private ContactsChangedListener mContactsChangedListener;
@@ -62,59 +76,95 @@ public class ContactsContentObserver implements Runnable {
         mContentObserver = new ContentObserver(null /* handler */) {
             @Override
             public void onChange(boolean self) {
-                ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD)
-                        .execute(ContactsContentObserver.this);
+                final long now = SystemClock.uptimeMillis();
+                mLastChangeTime = now;
+                if (mUpdateScheduled.compareAndSet(false /* expect */, true /* update */)) {
+                    mFirstChangeTime = now;
+                    scheduleUpdate(UPDATE_DELAY_IN_MILLISECONDS);
+                }
             }
         };
         final ContentResolver contentResolver = mContext.getContentResolver();
         contentResolver.registerContentObserver(Contacts.CONTENT_URI, true, mContentObserver);
     }
 
+    private void scheduleUpdate(final long delayInMillis) {
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).schedule(
+                this, delayInMillis, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void run() {
         if (!PermissionsUtil.checkAllPermissionsGranted(
                 mContext, Manifest.permission.READ_CONTACTS)) {
             Log.i(TAG, "No permission to read contacts. Not updating the contacts.");
+            mUpdateScheduled.set(false);
             unregister();
             return;
         }
 
-        if (!mRunning.compareAndSet(false /* expect */, true /* update */)) {
-            
+        final long now = SystemClock.uptimeMillis();
+        final long timeSinceLastChange = now - mLastChangeTime;
+        if (timeSinceLastChange < UPDATE_DELAY_IN_MILLISECONDS
+                && now - mFirstChangeTime < MAX_UPDATE_DELAY_IN_MILLISECONDS) {
+            // More changes are coming in: wait for them to settle.
+            scheduleUpdate(UPDATE_DELAY_IN_MILLISECONDS - timeSinceLastChange);
             return;
         }
-        if (haveContentsChanged()) {
-            
-            mContactsChangedListener.onContactsChange();
-        }
-        mRunning.set(false);
+        // Changes notified from now on need another update, as this one may miss them.
+        mUpdateScheduled.set(false);
+        updateContacts();
     }
 
-    boolean haveContentsChanged() {
+    /**
+     * Finds out which valid names were added or removed since the last update, and notifies the
+     * listener of them if there are any.
+     */
+    void updateContacts() {
         if (!PermissionsUtil.checkAllPermissionsGranted(
                 mContext, Manifest.permission.READ_CONTACTS)) {
-            Log.i(TAG, "No permission to read contacts. Marking contacts as not changed.");
-            return false;
+            Log.i(TAG, "No permission to read contacts. Not updating the contacts.");
+            return;
         }
 
-        final long startTime = SystemClock.uptimeMillis();
+        if (!mManager.hasLocalState()) {
+            // The dictionary may have been loaded from a file written by another instance, so
+            // what it holds is unknown.
+            mContactsChangedListener.onContactsChange();
+            return;
+        }
+        if (!mManager.mayHaveChangedSinceLastRebuild()) {
+            return;
+        }
+        final long startTime = System.currentTimeMillis();
         final int contactCount = mManager.getContactCount();
         if (contactCount > ContactsDictionaryConstants.MAX_CONTACTS_PROVIDER_QUERY_LIMIT) {
-            // If there are too many contacts then return false. In this rare case it is impossible
+            // If there are too many contacts then don't update. In this rare case it is impossible
             // to include all of them anyways and the cost of rebuilding the dictionary is too high.
             // TODO: Sort and check only the most recent contacts?
-            return false;
-        }
-        if (contactCount != mManager.getContactCountAtLastRebuild()) {
-            
-            return true;
+            return;
         }
         final ArrayList<String> names = mManager.getValidNames(Contacts.CONTENT_URI);
-        if (names.hashCode() != mManager.getHashCodeAtLastRebuild()) {
-            return true;
+        final Set<String> namesAtLastRebuild = mManager.getNamesAtLastRebuild();
+        final ArrayList<String> addedNames = new ArrayList<>();
+        for (final String name : names) {
+            if (!namesAtLastRebuild.contains(name)) {
+                addedNames.add(name);
+            }
         }
-        
-        return false;
+        final HashSet<String> currentNames = new HashSet<>(names);
+        final ArrayList<String> removedNames = new ArrayList<>();
+        for (final String name : namesAtLastRebuild) {
+            if (!currentNames.contains(name)) {
+                removedNames.add(name);
+            }
+        }
+        if (addedNames.isEmpty() && removedNames.isEmpty()) {
+            mManager.updateLocalState(names, startTime);
+            return;
+        }
+        // The listener updates the local state once the changes are applied to the dictionary.
+        mContactsChangedListener.onContactsChange(names, addedNames, removedNames, startTime);
     }
 
     public void unregister() {
@@ -16,21 +16,30 @@
 
 package com.phonemetra.turbo.keyboard.latin;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.Build;
 import android.provider.ContactsContract.Contacts;
+import android.provider.ContactsContract.DeletedContacts;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.phonemetra.turbo.keyboard.compat.BuildCompatUtils;
 import com.phonemetra.turbo.keyboard.latin.common.Constants;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
 
 /**
  * Manages all interactions with Contacts DB.
@@ -103,20 +112,39 @@ public class ContactsManager {
      * to Contacts content provider.
      */
     public static interface ContactsChangedListener {
+        /**
+         * Called when the contacts have changed in ways that are not known, for example before
+         * the names in the dictionary are known.
+         */
         public void onContactsChange();
+
+        /**
+         * Called when the valid names of the contacts have changed. The listener must call
+         * {@link ContactsManager#updateLocalState(Collection,long)} once it has applied the
+         * changes.
+         *
+         * @param names all the valid names now.
+         * @param addedNames the names that are new, including the new names of renamed contacts.
+         * @param removedNames the names that are gone, including the old names of renamed
+         * contacts.
+         * @param timestamp the time the names were read at, in milliseconds since the epoch.
+         */
+        public void onContactsChange(@Nonnull Collection<String> names,
+                @Nonnull Collection<String> addedNames,
+                @Nonnull Collection<String> removedNames, long timestamp);
     }
 
     /**
-     * The number of contacts observed in the most recent instance of
-     * contacts content provider.
+     * The valid contacts names in the most recent update of the dictionary.
      */
-    private AtomicInteger mContactCountAtLastRebuild = new AtomicInteger(0);
+    private AtomicReference<Set<String>> mNamesAtLastRebuild =
+            new AtomicReference<Set<String>>(Collections.<String>emptySet());
 
     /**
-     * The hash code of list of valid contacts names in the most recent dictionary
-     * rebuild.
+     * The time of the most recent update of the dictionary, or 0 if it has never been updated.
+     * Contacts that are updated or deleted later have a more recent timestamp.
      */
-    private AtomicInteger mHashCodeAtLastRebuild = new AtomicInteger(0);
+    private AtomicLong mTimestampAtLastRebuild = new AtomicLong(0);
 
     private final Context mContext;
     private final ContactsContentObserver mObserver;
@@ -131,17 +159,64 @@ public class ContactsManager {
         mObserver.registerObserver(listener);
     }
 
-    public int getContactCountAtLastRebuild() {
-        return mContactCountAtLastRebuild.get();
+    /**
+     * Returns whether the names in the dictionary are known, which is not the case until the
+     * dictionary has been built or updated by this instance.
+     */
+    public boolean hasLocalState() {
+        return 0 != mTimestampAtLastRebuild.get();
+    }
+
+    @Nonnull
+    public Set<String> getNamesAtLastRebuild() {
+        return mNamesAtLastRebuild.get();
+    }
+
+    /**
+     * Returns whether contacts may have been added, updated or deleted since the last update of
+     * the local state. This only queries the contacts that changed, but the provider only tells
+     * which ones did from JB MR2 on, so before that this always returns true.
+     */
+    public boolean mayHaveChangedSinceLastRebuild() {
+        final long timestamp = mTimestampAtLastRebuild.get();
+        if (BuildCompatUtils.EFFECTIVE_SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2
+                || 0 == timestamp) {
+            return true;
+        }
+        return hasContactsChangedSince(timestamp);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private boolean hasContactsChangedSince(final long timestamp) {
+        final String[] selectionArgs = { Long.toString(timestamp) };
+        return hasAnyRow(Contacts.CONTENT_URI,
+                Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + ">?", selectionArgs)
+                || hasAnyRow(DeletedContacts.CONTENT_URI,
+                        DeletedContacts.CONTACT_DELETED_TIMESTAMP + ">?", selectionArgs);
     }
 
-    public int getHashCodeAtLastRebuild() {
-        return mHashCodeAtLastRebuild.get();
+    private boolean hasAnyRow(final Uri uri, final String selection,
+            final String[] selectionArgs) {
+        Cursor cursor = null;
+        try {
+            cursor = mContext.getContentResolver().query(uri,
+                    ContactsDictionaryConstants.PROJECTION_ID_ONLY, selection, selectionArgs,
+                    null);
+            // Assume a change if the provider can't tell.
+            return null == cursor || cursor.getCount() > 0;
+        } catch (final SQLiteException e) {
+            Log.e(TAG, "SQLiteException in the remote Contacts process.", e);
+            return true;
+        } finally {
+            if (null != cursor) {
+                cursor.close();
+            }
+        }
     }
 
     /**
      * Returns all the valid names in the Contacts DB. Callers should also
-     * call {@link #updateLocalState(ArrayList)} after they are done with result
+     * call {@link #updateLocalState(Collection,long)} after they are done with result
      * so that the manager can cache local state for determining updates.
      *
      * These names are sorted by their affinity to the user, with favorite
@@ -228,10 +303,13 @@ public class ContactsManager {
     /**
      * Updates the local state of the manager. This should be called when the callers
      * are done with all the updates of the content provider successfully.
+     *
+     * @param names the valid names that the dictionary now holds.
+     * @param timestamp the time at which the names started to be read.
      */
-    public void updateLocalState(final ArrayList<String> names) {
-        mContactCountAtLastRebuild.set(getContactCount());
-        mHashCodeAtLastRebuild.set(names.hashCode());
+    public void updateLocalState(final Collection<String> names, final long timestamp) {
+        mNamesAtLastRebuild.set(Collections.unmodifiableSet(new HashSet<>(names)));
+        mTimestampAtLastRebuild.set(timestamp);
     }
 
     /**
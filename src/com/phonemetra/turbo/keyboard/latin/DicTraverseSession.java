@@ -16,18 +16,61 @@
 
 package com.phonemetra.turbo.keyboard.latin;
 
+import com.phonemetra.turbo.keyboard.latin.common.InputPointers;
 import com.phonemetra.turbo.keyboard.latin.common.NativeSuggestOptions;
 import com.phonemetra.turbo.keyboard.latin.define.DecoderSpecificConstants;
 import com.phonemetra.turbo.keyboard.latin.utils.JniUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.Locale;
 
+import javax.annotation.Nonnull;
+
 public final class DicTraverseSession {
     static {
         JniUtils.loadNativeLibrary();
     }
     // Must be equal to MAX_RESULTS in native/jni/src/defines.h
     private static final int MAX_RESULTS = 18;
+
+    // The indices of the decoder counters.
+    // Must be equal to DecoderCounterId in native/jni/src/suggest/core/session/decoder_counters.h
+    public static final int DECODER_COUNTER_GET_SUGGESTIONS_CALLS = 0;
+    public static final int DECODER_COUNTER_EXPANDED_DIC_NODES = 1;
+    public static final int DECODER_COUNTER_PRUNED_DIC_NODES = 2;
+    public static final int DECODER_COUNTER_PRIORITY_QUEUE_OVERFLOWS = 3;
+    public static final int DECODER_COUNTER_TERMINAL_CANDIDATES = 4;
+    // A maximum, not a count.
+    public static final int DECODER_COUNTER_MAX_TRAVERSAL_DEPTH = 5;
+    // A capacity, not a count.
+    public static final int DECODER_COUNTER_PRIORITY_QUEUE_CAPACITY = 6;
+    public static final int DECODER_COUNTER_COUNT = 7;
+    private static final String[] DECODER_COUNTER_NAMES = { "getSuggestionsCalls",
+            "expandedDicNodes", "prunedDicNodes", "priorityQueueOverflows", "terminalCandidates",
+            "maxTraversalDepth", "priorityQueueCapacity" };
+
+    // The layout of the input buffer, in ints.
+    // Must be equal to the layout in
+    // native/jni/com_phonemetra_turbo_keyboard_latin_BinaryDictionary.cpp
+    private static final int MAX_SUGGEST_OPTION_COUNT = 16;
+    private static final int INPUT_CODE_POINTS_OFFSET = 0;
+    private static final int SUGGEST_OPTIONS_OFFSET =
+            INPUT_CODE_POINTS_OFFSET + DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH;
+    private static final int PREV_WORD_CODE_POINTS_OFFSET =
+            SUGGEST_OPTIONS_OFFSET + MAX_SUGGEST_OPTION_COUNT;
+    private static final int PREV_WORD_CODE_POINT_COUNTS_OFFSET = PREV_WORD_CODE_POINTS_OFFSET
+            + DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM
+                    * DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH;
+    private static final int PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET =
+            PREV_WORD_CODE_POINT_COUNTS_OFFSET
+                    + DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+    // Followed by the x-coordinates, the y-coordinates, the times and the pointer ids, in
+    // sections of mInputPointerCapacity ints.
+    private static final int INPUT_POINTERS_OFFSET = PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET
+            + DecoderSpecificConstants.MAX_PREV_WORD_COUNT_FOR_N_GRAM;
+    private static final int INPUT_POINTERS_SECTION_COUNT = 4;
     public final int[] mInputCodePoints =
             new int[DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH];
     public final int[][] mPrevWordCodePointArrays =
@@ -49,9 +92,19 @@ public final class DicTraverseSession {
     private static native long setDicTraverseSessionNative(String locale, long dictSize);
     private static native void initDicTraverseSessionNative(long nativeDicTraverseSession,
             long dictionary, int[] previousWord, int previousWordLength);
+    private static native void getDecoderCountersNative(long nativeDicTraverseSession,
+            ByteBuffer outCounters);
     private static native void releaseDicTraverseSessionNative(long nativeDicTraverseSession);
 
     private long mNativeDicTraverseSession;
+    // The input of getSuggestions, which the native side reads in place. It is a direct buffer,
+    // so that it is never moved, and it is reused by every call. Allocated by the first call.
+    private ByteBuffer mInputBuffer;
+    private IntBuffer mInputInts;
+    private int mInputPointerCapacity;
+    // Allocated the first time the counters are read.
+    private ByteBuffer mDecoderCountersBuffer;
+    private IntBuffer mDecoderCounters;
 
     public DicTraverseSession(Locale locale, long dictionary, long dictSize) {
         mNativeDicTraverseSession = createNativeDicTraverseSession(
@@ -72,6 +125,100 @@ public final class DicTraverseSession {
                 mNativeDicTraverseSession, dictionary, previousWord, previousWordLength);
     }
 
+    /**
+     * Writes the input of getSuggestions to the input buffer: {@link #mInputCodePoints}, the
+     * options of {@link #mNativeSuggestOptions}, the previous words of
+     * {@link #mPrevWordCodePointArrays} and {@link #mIsBeginningOfSentenceArray}, and the first
+     * pointers of {@code inputPointers}. The buffer grows if it cannot hold the pointers.
+     */
+    public void writeInputBuffer(@Nonnull final InputPointers inputPointers,
+            final int pointerCount, final int prevWordCount) {
+        if (null == mInputBuffer || pointerCount > mInputPointerCapacity) {
+            mInputPointerCapacity = Math.max(pointerCount, Math.max(
+                    DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH,
+                    mInputPointerCapacity * 2));
+            mInputBuffer = ByteBuffer.allocateDirect(getInputBufferSize(mInputPointerCapacity) * 4)
+                    .order(ByteOrder.nativeOrder());
+            mInputInts = mInputBuffer.asIntBuffer();
+        }
+        final IntBuffer input = mInputInts;
+        input.position(INPUT_CODE_POINTS_OFFSET);
+        input.put(mInputCodePoints);
+        final int[] options = mNativeSuggestOptions.getOptions();
+        input.position(SUGGEST_OPTIONS_OFFSET);
+        input.put(options, 0, Math.min(options.length, MAX_SUGGEST_OPTION_COUNT));
+        for (int i = 0; i < prevWordCount; ++i) {
+            final int[] prevWord = mPrevWordCodePointArrays[i];
+            // Words that are too long are ignored, as the native side would.
+            final int prevWordLength = (null == prevWord
+                    || prevWord.length > DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH)
+                            ? 0 : prevWord.length;
+            if (prevWordLength > 0) {
+                input.position(PREV_WORD_CODE_POINTS_OFFSET
+                        + i * DecoderSpecificConstants.DICTIONARY_MAX_WORD_LENGTH);
+                input.put(prevWord, 0, prevWordLength);
+            }
+            input.put(PREV_WORD_CODE_POINT_COUNTS_OFFSET + i, prevWordLength);
+            input.put(PREV_WORD_IS_BEGINNING_OF_SENTENCE_OFFSET + i,
+                    mIsBeginningOfSentenceArray[i] ? 1 : 0);
+        }
+        inputPointers.writeTo(input, INPUT_POINTERS_OFFSET, mInputPointerCapacity, pointerCount);
+    }
+
+    /**
+     * Returns the input buffer written by {@link #writeInputBuffer(InputPointers, int, int)}.
+     */
+    public ByteBuffer getInputBuffer() {
+        return mInputBuffer;
+    }
+
+    /**
+     * Returns the number of pointers the input buffer can hold.
+     */
+    public int getInputPointerCapacity() {
+        return mInputPointerCapacity;
+    }
+
+    private static int getInputBufferSize(final int inputPointerCapacity) {
+        return INPUT_POINTERS_OFFSET + INPUT_POINTERS_SECTION_COUNT * inputPointerCapacity;
+    }
+
+    /**
+     * Returns the decoder counters of this session, indexed by the DECODER_COUNTER_* constants.
+     * They count the work done by the decoder since the session was created.
+     *
+     * The native side writes them to a direct buffer, so reading them does not allocate after
+     * the first call. The returned buffer is overwritten by the next call, and must not be read
+     * while the session is used to get suggestions.
+     */
+    public IntBuffer getDecoderCounters() {
+        if (null == mDecoderCountersBuffer) {
+            mDecoderCountersBuffer = ByteBuffer.allocateDirect(DECODER_COUNTER_COUNT * 4)
+                    .order(ByteOrder.nativeOrder());
+            mDecoderCounters = mDecoderCountersBuffer.asIntBuffer();
+        }
+        getDecoderCountersNative(mNativeDicTraverseSession, mDecoderCountersBuffer);
+        return mDecoderCounters;
+    }
+
+    /**
+     * Merges a decoder counter of another session into counters. Counts are summed, and the
+     * depth and the capacity are the largest ones.
+     */
+    public static void mergeDecoderCounter(@Nonnull final int[] counters, final int index,
+            final int value) {
+        if (index == DECODER_COUNTER_MAX_TRAVERSAL_DEPTH
+                || index == DECODER_COUNTER_PRIORITY_QUEUE_CAPACITY) {
+            counters[index] = Math.max(counters[index], value);
+        } else {
+            counters[index] += value;
+        }
+    }
+
+    public static String getDecoderCounterName(final int index) {
+        return DECODER_COUNTER_NAMES[index];
+    }
+
     private static long createNativeDicTraverseSession(String locale, long dictSize) {
         return setDicTraverseSessionNative(locale, dictSize);
     }
@@ -179,6 +179,16 @@ public abstract class Dictionary {
         return false;
     }
 
+    /**
+     * Returns the decoder counters of this dictionary, indexed by the
+     * DicTraverseSession.DECODER_COUNTER_* constants. Subclasses that use the native decoder
+     * override this.
+     * @return the counters, or null if this dictionary does not use the native decoder.
+     */
+    public int[] getDecoderCounters() {
+        return null;
+    }
+
     /**
      * Whether this dictionary is based on data specific to the user, e.g., the user's contacts.
      * @return Whether this dictionary is specific to the user.
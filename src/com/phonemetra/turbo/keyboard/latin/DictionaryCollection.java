@@ -114,6 +114,22 @@ public final class DictionaryCollection extends Dictionary {
         return !mDictionaries.isEmpty();
     }
 
+    @Override
+    public int[] getDecoderCounters() {
+        int[] counters = null;
+        for (final Dictionary dict : mDictionaries) {
+            final int[] dictCounters = dict.getDecoderCounters();
+            if (null == dictCounters) continue;
+            if (null == counters) {
+                counters = new int[DicTraverseSession.DECODER_COUNTER_COUNT];
+            }
+            for (int i = 0; i < DicTraverseSession.DECODER_COUNTER_COUNT; ++i) {
+                DicTraverseSession.mergeDecoderCounter(counters, i, dictCounters[i]);
+            }
+        }
+        return counters;
+    }
+
     @Override
     public void close() {
         for (final Dictionary dict : mDictionaries)
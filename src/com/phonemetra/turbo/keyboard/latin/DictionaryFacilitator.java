@@ -25,6 +25,7 @@ import com.phonemetra.turbo.keyboard.latin.common.ComposedData;
 import com.phonemetra.turbo.keyboard.latin.settings.SettingsValuesForSuggestion;
 import com.phonemetra.turbo.keyboard.latin.utils.SuggestionResults;
 
+import java.io.PrintWriter;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -121,6 +122,10 @@ public interface DictionaryFacilitator {
 
     boolean hasAtLeastOneUninitializedMainDictionary();
 
+    // Whether any dictionary, main or not, is still being created or loaded, in which case
+    // lookups may miss its words.
+    boolean hasAtLeastOneUninitializedDictionary();
+
     void waitForLoadingMainDictionaries(final long timeout, final TimeUnit unit)
             throws InterruptedException;
 
@@ -150,5 +155,7 @@ public interface DictionaryFacilitator {
 
     void dumpDictionaryForDebug(final String dictName);
 
+    void dumpDecoderCounters(@Nonnull final PrintWriter pw);
+
     @Nonnull List<DictionaryStats> getDictionaryStats(final Context context);
 }
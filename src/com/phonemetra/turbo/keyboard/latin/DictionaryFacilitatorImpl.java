@@ -36,6 +36,7 @@ import com.phonemetra.turbo.keyboard.latin.utils.ExecutorUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.SuggestionResults;
 
 import java.io.File;
+import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -72,6 +73,8 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     private volatile CountDownLatch mLatchForWaitingLoadingMainDictionaries = new CountDownLatch(0);
     // To synchronize assigning mDictionaryGroup to ensure closing dictionaries.
     private final Object mLock = new Object();
+    // The sub dictionaries being created, by dictionary type. Guarded by mLock.
+    private final HashMap<String, SubDictCreation> mSubDictCreations = new HashMap<>();
 
     public static final Map<String, Class<? extends ExpandableBinaryDictionary>>
             DICT_TYPE_TO_CLASS = new HashMap<>();
@@ -216,6 +219,35 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         }
     }
 
+    /**
+     * A sub dictionary being created in the background, and the group it is created for. A reset
+     * that needs the same dictionary while it is being created retargets it to the new group
+     * instead of creating it again.
+     */
+    private static class SubDictCreation {
+        public final Locale mLocale;
+        @Nullable public final String mAccount;
+        public final String mDictNamePrefix;
+        public final CountDownLatch mLatch = new CountDownLatch(1);
+        // The group to add the dictionary to. Guarded by mLock.
+        public DictionaryGroup mDictionaryGroup;
+
+        public SubDictCreation(final DictionaryGroup dictionaryGroup,
+                final String dictNamePrefix) {
+            mLocale = dictionaryGroup.mLocale;
+            mAccount = dictionaryGroup.mAccount;
+            mDictNamePrefix = dictNamePrefix;
+            mDictionaryGroup = dictionaryGroup;
+        }
+
+        public boolean creates(final DictionaryGroup dictionaryGroup,
+                final String dictNamePrefix) {
+            return mLocale.equals(dictionaryGroup.mLocale)
+                    && TextUtils.equals(mAccount, dictionaryGroup.mAccount)
+                    && TextUtils.equals(mDictNamePrefix, dictNamePrefix);
+        }
+    }
+
     public DictionaryFacilitatorImpl() {
     }
 
@@ -332,19 +364,17 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         }
 
         final Map<String, ExpandableBinaryDictionary> subDicts = new HashMap<>();
+        final ArrayList<String> subDictTypesToCreate = new ArrayList<>();
         for (final String subDictType : subDictTypesToUse) {
-            final ExpandableBinaryDictionary subDict;
             if (noExistingDictsForThisLocale
                     || !dictionaryGroupForLocale.hasDict(subDictType, account)) {
-                // Create a new dictionary.
-                subDict = getSubDict(subDictType, context, newLocale, null /* dictFile */,
-                        dictNamePrefix, account);
+                // Create a new dictionary. This is done in the background, see below.
+                subDictTypesToCreate.add(subDictType);
             } else {
                 // Reuse the existing dictionary, and don't close it at the end
-                subDict = dictionaryGroupForLocale.getSubDict(subDictType);
+                subDicts.put(subDictType, dictionaryGroupForLocale.getSubDict(subDictType));
                 dictTypesToCleanupForLocale.remove(subDictType);
             }
-            subDicts.put(subDictType, subDict);
         }
         DictionaryGroup newDictionaryGroup =
                 new DictionaryGroup(newLocale, mainDict, account, subDicts);
@@ -355,8 +385,10 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             oldDictionaryGroup = mDictionaryGroup;
             mDictionaryGroup = newDictionaryGroup;
             if (hasAtLeastOneUninitializedMainDictionary()) {
-                asyncReloadUninitializedMainDictionaries(context, newLocale, listener);
+                asyncReloadUninitializedMainDictionaries(context, newDictionaryGroup, listener);
             }
+            asyncCreateSubDictionaries(context, newDictionaryGroup, subDictTypesToCreate,
+                    dictNamePrefix);
         }
         if (listener != null) {
             listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
@@ -378,38 +410,40 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         }
     }
 
+    /**
+     * Loads the main dictionary of a group on the dictionary loader. Loads for several groups may
+     * run at the same time, so only the load for the current group sets its result.
+     */
     private void asyncReloadUninitializedMainDictionaries(final Context context,
-            final Locale locale, final DictionaryInitializationListener listener) {
+            final DictionaryGroup dictionaryGroup,
+            final DictionaryInitializationListener listener) {
         final CountDownLatch latchForWaitingLoadingMainDictionary = new CountDownLatch(1);
         mLatchForWaitingLoadingMainDictionaries = latchForWaitingLoadingMainDictionary;
-        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
-            @Override
-            public void run() {
-                doReloadUninitializedMainDictionaries(
-                        context, locale, listener, latchForWaitingLoadingMainDictionary);
-            }
-        });
-    }
-
-    void doReloadUninitializedMainDictionaries(final Context context, final Locale locale,
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.DICTIONARY_LOADER).execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        doReloadUninitializedMainDictionaries(context, dictionaryGroup,
+                                listener, latchForWaitingLoadingMainDictionary);
+                    }
+                });
+    }
+
+    void doReloadUninitializedMainDictionaries(final Context context,
+            final DictionaryGroup dictionaryGroup,
             final DictionaryInitializationListener listener,
             final CountDownLatch latchForWaitingLoadingMainDictionary) {
-        final DictionaryGroup dictionaryGroup =
-                findDictionaryGroupWithLocale(mDictionaryGroup, locale);
-        if (null == dictionaryGroup) {
-            // This should never happen, but better safe than crashy
-            Log.w(TAG, "Expected a dictionary group for " + locale + " but none found");
-            return;
-        }
-        final Dictionary mainDict =
-                DictionaryFactory.createMainDictionaryFromManager(context, locale);
+        final Dictionary mainDict = DictionaryFactory.createMainDictionaryFromManager(context,
+                dictionaryGroup.mLocale);
         synchronized (mLock) {
-            if (locale.equals(dictionaryGroup.mLocale)) {
-                dictionaryGroup.setMainDict(mainDict);
-            } else {
-                // Dictionary facilitator has been reset for another locale.
+            if (dictionaryGroup != mDictionaryGroup) {
+                // Dictionary facilitator has been reset meanwhile. The load for the current group
+                // sets its main dictionary.
                 mainDict.close();
+                latchForWaitingLoadingMainDictionary.countDown();
+                return;
             }
+            dictionaryGroup.setMainDict(mainDict);
         }
         if (listener != null) {
             listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
@@ -417,6 +451,63 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         latchForWaitingLoadingMainDictionary.countDown();
     }
 
+    /**
+     * Creates the sub dictionaries of a group in parallel, and adds each one to the group as soon
+     * as it is created, so that the keyboard does not wait for them to be ready. Creating a
+     * dictionary registers its observers and starts loading its contents, which may take a while
+     * for the contacts dictionary in particular. Must be called with mLock held.
+     */
+    private void asyncCreateSubDictionaries(final Context context,
+            final DictionaryGroup dictionaryGroup, final ArrayList<String> subDictTypes,
+            final String dictNamePrefix) {
+        for (final String subDictType : subDictTypes) {
+            final SubDictCreation pendingCreation = mSubDictCreations.get(subDictType);
+            if (null != pendingCreation && pendingCreation.creates(dictionaryGroup,
+                    dictNamePrefix)) {
+                pendingCreation.mDictionaryGroup = dictionaryGroup;
+                continue;
+            }
+            final SubDictCreation creation = new SubDictCreation(dictionaryGroup, dictNamePrefix);
+            mSubDictCreations.put(subDictType, creation);
+            ExecutorUtils.getBackgroundExecutor(ExecutorUtils.DICTIONARY_LOADER).execute(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                doCreateSubDictionary(context, subDictType, creation);
+                            } finally {
+                                creation.mLatch.countDown();
+                            }
+                        }
+                    });
+        }
+    }
+
+    void doCreateSubDictionary(final Context context, final String subDictType,
+            final SubDictCreation creation) {
+        ExpandableBinaryDictionary subDict = null;
+        try {
+            subDict = getSubDict(subDictType, context, creation.mLocale, null /* dictFile */,
+                    creation.mDictNamePrefix, creation.mAccount);
+        } finally {
+            synchronized (mLock) {
+                if (mSubDictCreations.get(subDictType) == creation) {
+                    mSubDictCreations.remove(subDictType);
+                }
+                if (null != subDict && creation.mDictionaryGroup == mDictionaryGroup) {
+                    mDictionaryGroup.setSubDict(subDictType, subDict);
+                    subDict = null;
+                }
+            }
+        }
+        // Dictionary facilitator has been reset meanwhile, and the current group does not use
+        // this dictionary. User history dictionaries are cached and shared by the groups of the
+        // same locale, so they are left open for the cache to hand out again.
+        if (null != subDict && !Dictionary.TYPE_USER_HISTORY.equals(subDictType)) {
+            subDict.close();
+        }
+    }
+
     
     public void closeDictionaries() {
         final DictionaryGroup dictionaryGroupToClose;
@@ -448,6 +539,23 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         return false;
     }
 
+    public boolean hasAtLeastOneUninitializedDictionary() {
+        if (hasAtLeastOneUninitializedMainDictionary()) {
+            return true;
+        }
+        synchronized (mLock) {
+            if (!mSubDictCreations.isEmpty()) {
+                return true;
+            }
+        }
+        for (final ExpandableBinaryDictionary dict : mDictionaryGroup.mSubDictMap.values()) {
+            if (!dict.isLoaded()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void waitForLoadingMainDictionaries(final long timeout, final TimeUnit unit)
             throws InterruptedException {
         mLatchForWaitingLoadingMainDictionaries.await(timeout, unit);
@@ -457,6 +565,13 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     public void waitForLoadingDictionariesForTesting(final long timeout, final TimeUnit unit)
             throws InterruptedException {
         waitForLoadingMainDictionaries(timeout, unit);
+        final ArrayList<SubDictCreation> subDictCreations;
+        synchronized (mLock) {
+            subDictCreations = new ArrayList<>(mSubDictCreations.values());
+        }
+        for (final SubDictCreation creation : subDictCreations) {
+            creation.mLatch.await(timeout, unit);
+        }
         for (final ExpandableBinaryDictionary dict : mDictionaryGroup.mSubDictMap.values()) {
             dict.waitAllTasksForTests();
         }
@@ -583,6 +698,7 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             NgramContext ngramContext, @Nonnull final Keyboard keyboard,
             SettingsValuesForSuggestion settingsValuesForSuggestion, int sessionId,
             int inputStyle) {
+        final long startNanos = KeystrokeLatencyTracer.start();
         long proximityInfoHandle = keyboard.getProximityInfo().getNativeProximityInfo();
         final SuggestionResults suggestionResults = new SuggestionResults(
                 SuggestedWords.MAX_SUGGESTIONS, ngramContext.isBeginningOfSentenceContext(),
@@ -605,6 +721,8 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
                 suggestionResults.mRawSuggestions.addAll(dictionarySuggestions);
             }
         }
+        KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_GET_SUGGESTION_RESULTS,
+                startNanos);
         return suggestionResults;
     }
 
@@ -684,6 +802,20 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         dictToDump.dumpAllWordsForDebug();
     }
 
+    @Override
+    public void dumpDecoderCounters(@Nonnull final PrintWriter pw) {
+        pw.println("Decoder counters of the main dictionary:");
+        final Dictionary mainDict = mDictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+        final int[] counters = (mainDict == null) ? null : mainDict.getDecoderCounters();
+        if (counters == null) {
+            pw.println("  (no data)");
+            return;
+        }
+        for (int i = 0; i < DicTraverseSession.DECODER_COUNTER_COUNT; ++i) {
+            pw.println("  " + DicTraverseSession.getDecoderCounterName(i) + ": " + counters[i]);
+        }
+    }
+
     @Override
     @Nonnull public List<DictionaryStats> getDictionaryStats(final Context context) {
         final ArrayList<DictionaryStats> statsOfEnabledSubDicts = new ArrayList<>();
@@ -16,7 +16,11 @@
 
 package com.phonemetra.turbo.keyboard.latin;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import android.content.Context;
@@ -28,50 +32,78 @@ import android.util.Log;
  */
 public class DictionaryFacilitatorLruCache {
     private static final String TAG = "DictionaryFacilitatorLruCache";
-    private static final int WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS = 1000;
-    private static final int MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT = 5;
+    private static final int MAX_CACHE_SIZE = 3;
+    private static final long WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS = 1000;
 
     private final Context mContext;
     private final String mDictionaryNamePrefix;
     private final Object mLock = new Object();
-    private final DictionaryFacilitator mDictionaryFacilitator;
-    private boolean mUseContactsDictionary;
-    private Locale mLocale;
+    // The facilitators, from the least recently used to the most recently used.
+    // Synchronized using {@link #mLock}.
+    private final LinkedHashMap<Locale, DictionaryFacilitator> mCachedFacilitators =
+            new LinkedHashMap<>(MAX_CACHE_SIZE, 0.75f, true /* accessOrder */);
+    private boolean mUseContactsDictionary; // synchronized using {@link #mLock}.
 
     public DictionaryFacilitatorLruCache(final Context context, final String dictionaryNamePrefix) {
         mContext = context;
         mDictionaryNamePrefix = dictionaryNamePrefix;
-        mDictionaryFacilitator = DictionaryFacilitatorProvider.getDictionaryFacilitator(
-                true /* isNeededForSpellChecking */);
     }
 
+    /**
+     * Waits for the main dictionaries of the facilitator to be loaded, for no longer than
+     * {@link #WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS} in total, even if interrupted. Callers
+     * are expected to check whether the main dictionaries are loaded before using them.
+     */
     private static void waitForLoadingMainDictionary(
             final DictionaryFacilitator dictionaryFacilitator) {
-        for (int i = 0; i < MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT; i++) {
-            try {
-                dictionaryFacilitator.waitForLoadingMainDictionaries(
-                        WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
-                return;
-            } catch (final InterruptedException e) {
-                Log.i(TAG, "Interrupted during waiting for loading main dictionary.", e);
-                if (i < MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT - 1) {
-                    Log.i(TAG, "Retry", e);
-                } else {
-                    Log.w(TAG, "Give up retrying. Retried "
-                            + MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT + " times.", e);
+        final long deadline =
+                System.currentTimeMillis() + WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final long remainingTime = deadline - System.currentTimeMillis();
+                if (remainingTime <= 0) {
+                    Log.i(TAG, "Main dictionary is still loading after "
+                            + WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS + "ms.");
+                    return;
+                }
+                try {
+                    dictionaryFacilitator.waitForLoadingMainDictionaries(
+                            remainingTime, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (final InterruptedException e) {
+                    Log.i(TAG, "Interrupted during waiting for loading main dictionary.", e);
+                    interrupted = true;
                 }
             }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    private void resetDictionariesForLocaleLocked() {
-        // Nothing to do if the locale is null.  This would be the case before any get() calls.
-        if (mLocale != null) {
-          // Note: Given that personalized dictionaries are not used here; we can pass null account.
-          mDictionaryFacilitator.resetDictionaries(mContext, mLocale,
-              mUseContactsDictionary, false /* usePersonalizedDicts */,
-              false /* forceReloadMainDictionary */, null /* account */,
-              mDictionaryNamePrefix, null /* listener */);
+    private void resetDictionariesLocked(final DictionaryFacilitator dictionaryFacilitator,
+            final Locale locale) {
+        // Note: Given that personalized dictionaries are not used here; we can pass null account.
+        dictionaryFacilitator.resetDictionaries(mContext, locale,
+                mUseContactsDictionary, false /* usePersonalizedDicts */,
+                false /* forceReloadMainDictionary */, null /* account */,
+                mDictionaryNamePrefix, null /* listener */);
+    }
+
+    /**
+     * Closes the least recently used facilitators until at most <code>maxSize</code> remain.
+     * The dictionaries tolerate being closed while another thread reads them, in which case the
+     * reads find nothing.
+     */
+    private void evictLocked(final int maxSize) {
+        final Iterator<Map.Entry<Locale, DictionaryFacilitator>> iterator =
+                mCachedFacilitators.entrySet().iterator();
+        while (mCachedFacilitators.size() > maxSize && iterator.hasNext()) {
+            final DictionaryFacilitator evictedFacilitator = iterator.next().getValue();
+            iterator.remove();
+            evictedFacilitator.closeDictionaries();
         }
     }
 
@@ -82,25 +114,67 @@ public class DictionaryFacilitatorLruCache {
                 return;
             }
             mUseContactsDictionary = useContactsDictionary;
-            resetDictionariesForLocaleLocked();
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
+            for (final Map.Entry<Locale, DictionaryFacilitator> entry
+                    : mCachedFacilitators.entrySet()) {
+                resetDictionariesLocked(entry.getValue(), entry.getKey());
+            }
         }
     }
 
+    /**
+     * Returns the facilitator for the locale, creating it and starting to load its dictionaries
+     * if needed. This waits a bounded time for the main dictionaries to be loaded, without
+     * blocking the callers that ask for other locales meanwhile.
+     */
     public DictionaryFacilitator get(final Locale locale) {
+        DictionaryFacilitator dictionaryFacilitator;
         synchronized (mLock) {
-            if (!mDictionaryFacilitator.isForLocale(locale)) {
-                mLocale = locale;
-                resetDictionariesForLocaleLocked();
+            dictionaryFacilitator = mCachedFacilitators.get(locale);
+            if (null == dictionaryFacilitator) {
+                dictionaryFacilitator = DictionaryFacilitatorProvider.getDictionaryFacilitator(
+                        true /* isNeededForSpellChecking */);
+                if (null != locale) {
+                    resetDictionariesLocked(dictionaryFacilitator, locale);
+                }
+                mCachedFacilitators.put(locale, dictionaryFacilitator);
+                evictLocked(MAX_CACHE_SIZE);
             }
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
-            return mDictionaryFacilitator;
+        }
+        waitForLoadingMainDictionary(dictionaryFacilitator);
+        return dictionaryFacilitator;
+    }
+
+    /**
+     * Returns whether the facilitator for the locale exists and all its dictionaries are loaded.
+     * Unlike {@link #get(Locale)}, this neither creates the facilitator nor waits for it.
+     */
+    public boolean hasLoadedAllDictionaries(final Locale locale) {
+        final DictionaryFacilitator dictionaryFacilitator;
+        synchronized (mLock) {
+            dictionaryFacilitator = mCachedFacilitators.get(locale);
+        }
+        return null != dictionaryFacilitator
+                && !dictionaryFacilitator.hasAtLeastOneUninitializedDictionary();
+    }
+
+    /**
+     * Closes the least recently used facilitators to free memory, keeping only the most recently
+     * used one. The others are created again when they are needed.
+     */
+    public void trimToMostRecentlyUsed() {
+        synchronized (mLock) {
+            evictLocked(1 /* maxSize */);
         }
     }
 
     public void closeDictionaries() {
+        final ArrayList<DictionaryFacilitator> facilitatorsToClose;
         synchronized (mLock) {
-            mDictionaryFacilitator.closeDictionaries();
+            facilitatorsToClose = new ArrayList<>(mCachedFacilitators.values());
+            mCachedFacilitators.clear();
+        }
+        for (final DictionaryFacilitator dictionaryFacilitator : facilitatorsToClose) {
+            dictionaryFacilitator.closeDictionaries();
         }
     }
 }
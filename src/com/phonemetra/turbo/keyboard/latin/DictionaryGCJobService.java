@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * Runs the GC deferred by {@link DictionaryGCScheduler} when the device is idle.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public final class DictionaryGCJobService extends JobService {
+    private static final int JOB_ID = 1;
+
+    static void schedule(final Context context) {
+        final JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (null == jobScheduler) {
+            return;
+        }
+        // This replaces the job if it is already scheduled.
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, DictionaryGCJobService.class))
+                        .setRequiresDeviceIdle(true)
+                        .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        // This only posts the GC to the dictionary executor, so the job is done.
+        DictionaryGCScheduler.getInstance().runPendingGC();
+        return false;
+    }
+
+    @Override
+    public boolean onStopJob(final JobParameters params) {
+        return false;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+
+import com.phonemetra.turbo.keyboard.compat.BuildCompatUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Defers the GC of the user history and contacts dictionaries to when the user is not typing:
+ * when the keyboard is hidden, when the device starts charging, or in an idle window of the
+ * JobScheduler.
+ *
+ * The updates made while typing still run GC when the dictionary reports that it cannot grow
+ * without it, see {@link ExpandableBinaryDictionary#runGCIfRequiredLocked(boolean)}. The deferred
+ * GC also runs when it would only be worth it, so that this hard limit is rarely reached.
+ */
+public final class DictionaryGCScheduler {
+    private static final DictionaryGCScheduler sInstance = new DictionaryGCScheduler();
+
+    // The dictionaries whose GC is deferred. The dictionaries that are dropped meanwhile are not
+    // kept alive.
+    private final Set<ExpandableBinaryDictionary> mPendingDictionaries =
+            Collections.newSetFromMap(new WeakHashMap<ExpandableBinaryDictionary, Boolean>());
+
+    private Context mContext;
+
+    private final BroadcastReceiver mPowerConnectedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(final Context context, final Intent intent) {
+            runPendingGC();
+        }
+    };
+
+    public static DictionaryGCScheduler getInstance() {
+        return sInstance;
+    }
+
+    private DictionaryGCScheduler() {
+        // Intentional empty constructor for singleton.
+    }
+
+    public static void init(final Context context) {
+        sInstance.initInternal(context);
+    }
+
+    private synchronized void initInternal(final Context context) {
+        if (null != mContext) {
+            return;
+        }
+        // The receiver lives as long as the process, as the dictionaries do.
+        mContext = context.getApplicationContext();
+        mContext.registerReceiver(mPowerConnectedReceiver,
+                new IntentFilter(Intent.ACTION_POWER_CONNECTED));
+    }
+
+    /**
+     * Schedules the GC of a dictionary for the next time the user is not typing.
+     */
+    void schedule(@Nonnull final ExpandableBinaryDictionary dictionary) {
+        final boolean isFirstPendingDictionary;
+        synchronized (mPendingDictionaries) {
+            isFirstPendingDictionary = mPendingDictionaries.isEmpty();
+            mPendingDictionaries.add(dictionary);
+        }
+        if (isFirstPendingDictionary) {
+            scheduleIdleJob();
+        }
+    }
+
+    public void onKeyboardHidden() {
+        runPendingGC();
+    }
+
+    /**
+     * Runs the GC of the pending dictionaries, in the background.
+     */
+    void runPendingGC() {
+        final ArrayList<ExpandableBinaryDictionary> dictionaries;
+        synchronized (mPendingDictionaries) {
+            if (mPendingDictionaries.isEmpty()) {
+                return;
+            }
+            dictionaries = new ArrayList<>(mPendingDictionaries);
+            mPendingDictionaries.clear();
+        }
+        for (final ExpandableBinaryDictionary dictionary : dictionaries) {
+            dictionary.runDeferredGC();
+        }
+    }
+
+    private void scheduleIdleJob() {
+        final Context context;
+        synchronized (this) {
+            context = mContext;
+        }
+        if (null == context || BuildCompatUtils.EFFECTIVE_SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        DictionaryGCJobService.schedule(context);
+    }
+}
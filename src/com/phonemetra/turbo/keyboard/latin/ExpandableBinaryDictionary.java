@@ -102,6 +102,9 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     /** Indicates whether the current dictionary needs to be recreated. */
     private boolean mNeedsToRecreate;
 
+    /** Indicates whether GC has been deferred to when the user is not typing. */
+    private final AtomicBoolean mIsDeferredGCScheduled;
+
     private final ReentrantReadWriteLock mLock;
 
     private Map<String, String> mAdditionalAttributeMap = null;
@@ -148,6 +151,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         mBinaryDictionary = null;
         mIsReloading = new AtomicBoolean();
         mNeedsToRecreate = false;
+        mIsDeferredGCScheduled = new AtomicBoolean();
         mLock = new ReentrantReadWriteLock();
     }
 
@@ -270,13 +274,39 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         });
     }
 
+    /**
+     * Runs GC if required. Updates call this minding the block by GC, so that GC only runs when
+     * the dictionary is near its capacity, and the GC that is otherwise worth running is deferred
+     * to when the user is not typing.
+     */
     protected void runGCIfRequiredLocked(final boolean mindsBlockByGC) {
         if (mBinaryDictionary.needsToRunGC(mindsBlockByGC)) {
             mBinaryDictionary.flushWithGC();
         }
+        if (mindsBlockByGC && isDeferredGCSupported()
+                && mIsDeferredGCScheduled.compareAndSet(false, true)) {
+            DictionaryGCScheduler.getInstance().schedule(this);
+        }
+    }
+
+    private boolean isDeferredGCSupported() {
+        return Dictionary.TYPE_USER_HISTORY.equals(mDictType)
+                || Dictionary.TYPE_CONTACTS.equals(mDictType);
+    }
+
+    /**
+     * Runs the GC deferred by {@link #runGCIfRequiredLocked(boolean)}, in the background.
+     */
+    void runDeferredGC() {
+        mIsDeferredGCScheduled.set(false);
+        runGCIfRequired(false /* mindsBlockByGC */);
     }
 
-    private void updateDictionaryWithWriteLock(@Nonnull final Runnable updateTask) {
+    /**
+     * Runs the task with the write lock once the dictionary is loaded, after running GC if
+     * required. The task is dropped if the dictionary can't be loaded.
+     */
+    protected void updateDictionaryWithWriteLock(@Nonnull final Runnable updateTask) {
         reloadDictionaryIfRequired();
         final Runnable task = new Runnable() {
             @Override
@@ -362,6 +392,24 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         }
     }
 
+    protected void removeUnigramLocked(final String word) {
+        if (!mBinaryDictionary.removeUnigramEntry(word)) {
+            if (DEBUG) {
+                Log.i(TAG, "Cannot remove unigram entry: " + word);
+            }
+        }
+    }
+
+    protected void removeNgramEntryLocked(@Nonnull final NgramContext ngramContext,
+            final String word) {
+        if (!mBinaryDictionary.removeNgramEntry(ngramContext, word)) {
+            if (DEBUG) {
+                Log.i(TAG, "Cannot remove n-gram entry.");
+                Log.i(TAG, "  NgramContext: " + ngramContext + ", word: " + word);
+            }
+        }
+    }
+
     /**
      * Update dictionary for the word with the ngramContext.
      */
@@ -587,6 +635,14 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         return mBinaryDictionary == null || mNeedsToRecreate;
     }
 
+    /**
+     * Returns whether the contents of the dictionary are loaded: no reload is required nor in
+     * progress.
+     */
+    public boolean isLoaded() {
+        return !mIsReloading.get() && !isReloadRequired();
+    }
+
     /**
      * Reloads the dictionary. Access is controlled on a per dictionary file basis.
      */
@@ -704,18 +760,14 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 } catch (final UnsupportedFormatException e) {
                     Log.d(tag, "Cannot fetch header information.", e);
                 }
-                int token = 0;
-                do {
-                    final BinaryDictionary.GetNextWordPropertyResult result =
-                            binaryDictionary.getNextWordProperty(token);
-                    final WordProperty wordProperty = result.mWordProperty;
-                    if (wordProperty == null) {
-                        Log.d(tag, " dictionary is empty.");
-                        break;
-                    }
+                boolean isEmpty = true;
+                for (final WordProperty wordProperty : binaryDictionary.getWordProperties()) {
                     Log.d(tag, wordProperty.toString());
-                    token = result.mNextToken;
-                } while (token != 0);
+                    isEmpty = false;
+                }
+                if (isEmpty) {
+                    Log.d(tag, " dictionary is empty.");
+                }
             }
         });
     }
@@ -735,18 +787,10 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 if (binaryDictionary == null) {
                     return;
                 }
-                int token = 0;
-                do {
-                    // TODO: We need a new API that returns *new* un-synced data.
-                    final BinaryDictionary.GetNextWordPropertyResult nextWordPropertyResult =
-                            binaryDictionary.getNextWordProperty(token);
-                    final WordProperty wordProperty = nextWordPropertyResult.mWordProperty;
-                    if (wordProperty == null) {
-                        break;
-                    }
+                // TODO: We need a new API that returns *new* un-synced data.
+                for (final WordProperty wordProperty : binaryDictionary.getWordProperties()) {
                     wordPropertyList.add(wordProperty);
-                    token = nextWordPropertyResult.mNextToken;
-                } while (token != 0);
+                }
                 result.set(wordPropertyList.toArray(new WordProperty[wordPropertyList.size()]));
             }
         });
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.util.LruCache;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Round-trip latency histograms of the synchronous InputConnection calls, the
+ * ones that wait for the editor to answer, for one target application.
+ *
+ * Each operation gets a histogram with power-of-two millisecond buckets:
+ * bucket 0 counts calls under 1ms, bucket i counts calls in [2^(i-1), 2^i) ms
+ * and the last bucket is open-ended. Instances are kept per target package in
+ * a process-wide LRU so that what we learned about an application survives
+ * switching between text fields and applications.
+ */
+public final class InputConnectionLatencyStats {
+	private static final int MAX_CACHE_ENTRIES = 32; // arbitrary
+	private static final LruCache<String, InputConnectionLatencyStats> sStatsPerPackage = new LruCache<>(
+			MAX_CACHE_ENTRIES);
+	private static final String UNKNOWN_PACKAGE_NAME = "<unknown>";
+
+	private static final int NUM_BUCKETS = 12;
+
+	/**
+	 * The minimum number of synchronous calls we need to have seen before we
+	 * judge an application to be slow.
+	 */
+	private static final int MIN_SAMPLES_TO_JUDGE_SLOWNESS = 20;
+	/**
+	 * An application is slow if at least 1/SLOW_CALLS_RATIO_DENOMINATOR of its
+	 * synchronous calls are slow.
+	 */
+	private static final int SLOW_CALLS_RATIO_DENOMINATOR = 10;
+	/**
+	 * When this many synchronous calls have been counted, both counts are
+	 * halved, so that older calls weigh less and an application that became
+	 * fast again stops being judged slow.
+	 */
+	private static final int MAX_SAMPLES_TO_JUDGE_SLOWNESS = 200;
+
+	@Nonnull
+	private final String mPackageName;
+	private final int[][] mBuckets;
+	private final int[] mCounts;
+	private final long[] mTotalNanos;
+	private final long[] mMaxNanos;
+	private int mSynchronousCallCount;
+	private int mSlowSynchronousCallCount;
+
+	private InputConnectionLatencyStats(@Nonnull final String packageName,
+			final int operationCount) {
+		mPackageName = packageName;
+		mBuckets = new int[operationCount][NUM_BUCKETS];
+		mCounts = new int[operationCount];
+		mTotalNanos = new long[operationCount];
+		mMaxNanos = new long[operationCount];
+	}
+
+	/**
+	 * Returns the stats for the specified target package, creating them if
+	 * needed.
+	 */
+	@Nonnull
+	public static InputConnectionLatencyStats getInstance(
+			@Nullable final String packageName, final int operationCount) {
+		final String key = null == packageName ? UNKNOWN_PACKAGE_NAME
+				: packageName;
+		synchronized (sStatsPerPackage) {
+			InputConnectionLatencyStats stats = sStatsPerPackage.get(key);
+			if (null == stats) {
+				stats = new InputConnectionLatencyStats(key, operationCount);
+				sStatsPerPackage.put(key, stats);
+			}
+			return stats;
+		}
+	}
+
+	private static int getBucketIndex(final long durationNanos) {
+		final long durationMs = durationNanos / 1000000;
+		if (durationMs <= 0) {
+			return 0;
+		}
+		return Math.min(NUM_BUCKETS - 1,
+				Long.SIZE - Long.numberOfLeadingZeros(durationMs));
+	}
+
+	/**
+	 * Records the duration of an operation.
+	 *
+	 * @param operation
+	 *            the operation, as an index into the operation names.
+	 * @param durationNanos
+	 *            how long the call took.
+	 */
+	public synchronized void record(final int operation,
+			final long durationNanos) {
+		++mBuckets[operation][getBucketIndex(durationNanos)];
+		++mCounts[operation];
+		mTotalNanos[operation] += durationNanos;
+		if (durationNanos > mMaxNanos[operation]) {
+			mMaxNanos[operation] = durationNanos;
+		}
+	}
+
+	/**
+	 * Records the outcome of a call that blocks the keyboard until the editor
+	 * answers. These are the calls that decide whether the application is
+	 * slow.
+	 */
+	public synchronized void recordSynchronousCall(final boolean wasSlow) {
+		++mSynchronousCallCount;
+		if (wasSlow) {
+			++mSlowSynchronousCallCount;
+		}
+		if (mSynchronousCallCount >= MAX_SAMPLES_TO_JUDGE_SLOWNESS) {
+			mSynchronousCallCount /= 2;
+			mSlowSynchronousCallCount /= 2;
+		}
+	}
+
+	/**
+	 * Returns whether enough of the recent synchronous calls to this
+	 * application were slow that we should avoid IPC from the start when input starts there.
+	 */
+	public synchronized boolean isSlowEditor() {
+		return mSynchronousCallCount >= MIN_SAMPLES_TO_JUDGE_SLOWNESS
+				&& mSlowSynchronousCallCount * SLOW_CALLS_RATIO_DENOMINATOR >= mSynchronousCallCount;
+	}
+
+	/**
+	 * Returns an upper bound for the specified percentile of the durations of
+	 * an operation, in milliseconds, or -1 if the operation was never
+	 * recorded. The open-ended last bucket reports the maximum.
+	 */
+	private long getPercentileUpperBoundMs(final int operation,
+			final int percentile) {
+		final int count = mCounts[operation];
+		if (0 == count) {
+			return -1;
+		}
+		final long threshold = ((long) count * percentile + 99) / 100;
+		long cumulativeCount = 0;
+		for (int i = 0; i < NUM_BUCKETS - 1; ++i) {
+			cumulativeCount += mBuckets[operation][i];
+			if (cumulativeCount >= threshold) {
+				return 1L << i;
+			}
+		}
+		return mMaxNanos[operation] / 1000000;
+	}
+
+	private synchronized void dump(@Nonnull final PrintWriter pw,
+			@Nonnull final String[] operationNames) {
+		pw.println("  " + mPackageName + (isSlowEditor() ? " (slow)" : "")
+				+ ": " + mSlowSynchronousCallCount + "/"
+				+ mSynchronousCallCount + " slow synchronous calls");
+		for (int operation = 0; operation < mCounts.length; ++operation) {
+			final int count = mCounts[operation];
+			if (0 == count) {
+				continue;
+			}
+			final StringBuilder sb = new StringBuilder("    ");
+			sb.append(operationNames[operation]).append(": count=")
+					.append(count).append(" avg=")
+					.append(mTotalNanos[operation] / count / 1000)
+					.append("us max=").append(mMaxNanos[operation] / 1000)
+					.append("us p50<=")
+					.append(getPercentileUpperBoundMs(operation, 50))
+					.append("ms p90<=")
+					.append(getPercentileUpperBoundMs(operation, 90))
+					.append("ms p99<=")
+					.append(getPercentileUpperBoundMs(operation, 99))
+					.append("ms buckets=[");
+			for (int i = 0; i < NUM_BUCKETS; ++i) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(mBuckets[operation][i]);
+			}
+			pw.println(sb.append(']'));
+		}
+	}
+
+	/**
+	 * Dumps the stats of all the target applications we know about.
+	 */
+	public static void dumpAll(@Nonnull final PrintWriter pw,
+			@Nonnull final String[] operationNames) {
+		pw.println("InputConnection round-trip latency, per target application:");
+		final Map<String, InputConnectionLatencyStats> snapshot;
+		synchronized (sStatsPerPackage) {
+			snapshot = sStatsPerPackage.snapshot();
+		}
+		if (snapshot.isEmpty()) {
+			pw.println("  (no data)");
+			return;
+		}
+		for (final InputConnectionLatencyStats stats : snapshot.values()) {
+			stats.dump(pw, operationNames);
+		}
+	}
+}
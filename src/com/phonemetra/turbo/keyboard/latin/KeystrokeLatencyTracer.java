@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Records how long each stage of a keystroke takes, from the touch events to
+ * the suggestion strip, so that jank can be attributed to a stage.
+ *
+ * Stages are timed with {@link System#nanoTime()} and recorded in a
+ * fixed-size ring buffer that any thread can write to without locking. The
+ * latest entries are aggregated into histograms only when they are dumped.
+ * While tracing is disabled, which is the default, recording allocates
+ * nothing and costs a volatile read.
+ *
+ * Usage:
+ *
+ * <pre>
+ * final long startNanos = KeystrokeLatencyTracer.start();
+ * ... the stage ...
+ * KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_XXX, startNanos);
+ * </pre>
+ */
+public final class KeystrokeLatencyTracer {
+	public static final int STAGE_POINTER_DOWN = 0;
+	public static final int STAGE_POINTER_UP = 1;
+	public static final int STAGE_CODE_INPUT = 2;
+	public static final int STAGE_GET_SUGGESTED_WORDS = 3;
+	public static final int STAGE_GET_SUGGESTION_RESULTS = 4;
+	public static final int STAGE_NATIVE_GET_SUGGESTIONS = 5;
+	public static final int STAGE_SHOW_SUGGESTION_STRIP = 6;
+	// From the end of a pointer up event to the end of the next suggestion
+	// strip update. This is recorded by the tracer itself.
+	private static final int STAGE_KEYSTROKE = 7;
+	private static final String[] STAGE_NAMES = {
+			"PointerTracker.onDownEvent", "PointerTracker.onUpEvent",
+			"InputLogic.onCodeInput", "InputLogicHandler.getSuggestedWords",
+			"DictionaryFacilitator.getSuggestionResults",
+			"BinaryDictionary.getSuggestionsNative",
+			"LatinIME.showSuggestionStrip", "Keystroke (up to strip shown)" };
+
+	// Returned by start() while tracing is disabled.
+	private static final long NOT_STARTED = 0;
+	// Must be a power of two.
+	private static final int RING_BUFFER_SIZE = 4096;
+	// Bucket 0 counts durations under 1us, bucket i durations in
+	// [2^(i-1), 2^i) us and the last bucket is open-ended.
+	private static final int NUM_BUCKETS = 20;
+
+	private static final class RingBuffer {
+		private final AtomicLong mNextIndex = new AtomicLong();
+		private final int[] mStages = new int[RING_BUFFER_SIZE];
+		private final long[] mDurationNanos = new long[RING_BUFFER_SIZE];
+
+		public void add(final int stage, final long durationNanos) {
+			final int index = (int) (mNextIndex.getAndIncrement() & (RING_BUFFER_SIZE - 1));
+			mStages[index] = stage;
+			mDurationNanos[index] = durationNanos;
+		}
+	}
+
+	private static volatile boolean sIsEnabled;
+	// Allocated the first time tracing is enabled.
+	private static volatile RingBuffer sRingBuffer;
+	private static volatile long sLastPointerUpNanos = NOT_STARTED;
+
+	private KeystrokeLatencyTracer() {
+		// This utility class is not publicly instantiable.
+	}
+
+	public static synchronized void setEnabled(final boolean isEnabled) {
+		if (isEnabled && null == sRingBuffer) {
+			sRingBuffer = new RingBuffer();
+		}
+		sIsEnabled = isEnabled;
+	}
+
+	public static boolean isEnabled() {
+		return sIsEnabled;
+	}
+
+	/**
+	 * Returns the start time of a stage, to be passed to
+	 * {@link #end(int, long)} when the stage ends.
+	 */
+	public static long start() {
+		return sIsEnabled ? System.nanoTime() : NOT_STARTED;
+	}
+
+	/**
+	 * Records a stage that started at the time returned by {@link #start()}.
+	 * This does nothing if tracing was disabled when the stage started.
+	 */
+	public static void end(final int stage, final long startNanos) {
+		final RingBuffer ringBuffer = sRingBuffer;
+		if (NOT_STARTED == startNanos || null == ringBuffer) {
+			return;
+		}
+		final long endNanos = System.nanoTime();
+		ringBuffer.add(stage, endNanos - startNanos);
+		if (STAGE_POINTER_UP == stage) {
+			sLastPointerUpNanos = endNanos;
+		} else if (STAGE_SHOW_SUGGESTION_STRIP == stage) {
+			// Only the first strip update after a key is attributed to it.
+			final long pointerUpNanos = sLastPointerUpNanos;
+			if (NOT_STARTED != pointerUpNanos) {
+				sLastPointerUpNanos = NOT_STARTED;
+				ringBuffer.add(STAGE_KEYSTROKE, endNanos - pointerUpNanos);
+			}
+		}
+	}
+
+	private static int getBucketIndex(final long durationNanos) {
+		final long durationUs = durationNanos / 1000;
+		if (durationUs <= 0) {
+			return 0;
+		}
+		return Math.min(NUM_BUCKETS - 1,
+				Long.SIZE - Long.numberOfLeadingZeros(durationUs));
+	}
+
+	// Nearest-rank percentile of sorted values.
+	private static long getPercentile(final long[] sortedValues, final int count,
+			final int percentile) {
+		final int rank = (count * percentile + 99) / 100;
+		return sortedValues[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * Dumps the histograms of the latest recorded stages. Entries being
+	 * written while this runs may be counted with a wrong duration, which is
+	 * fine for statistics.
+	 */
+	public static void dump(@Nonnull final PrintWriter pw) {
+		final RingBuffer ringBuffer = sRingBuffer;
+		pw.println("Keystroke latency" + (sIsEnabled ? "" : " (tracing disabled)")
+				+ ":");
+		if (null == ringBuffer) {
+			pw.println("  (no data)");
+			return;
+		}
+		final int entryCount = (int) Math.min(RING_BUFFER_SIZE,
+				ringBuffer.mNextIndex.get());
+		final int[] stages = Arrays.copyOf(ringBuffer.mStages, entryCount);
+		final long[] durations = Arrays.copyOf(ringBuffer.mDurationNanos, entryCount);
+		pw.println("  latest " + entryCount + " entries");
+		final long[] stageDurations = new long[entryCount];
+		for (int stage = 0; stage < STAGE_NAMES.length; ++stage) {
+			int count = 0;
+			long totalNanos = 0;
+			final int[] buckets = new int[NUM_BUCKETS];
+			for (int i = 0; i < entryCount; ++i) {
+				if (stages[i] != stage) {
+					continue;
+				}
+				stageDurations[count++] = durations[i];
+				totalNanos += durations[i];
+				++buckets[getBucketIndex(durations[i])];
+			}
+			if (0 == count) {
+				continue;
+			}
+			Arrays.sort(stageDurations, 0, count);
+			final StringBuilder sb = new StringBuilder("    ");
+			sb.append(STAGE_NAMES[stage]).append(": count=").append(count)
+					.append(" avg=").append(totalNanos / count / 1000)
+					.append("us p50=")
+					.append(getPercentile(stageDurations, count, 50) / 1000)
+					.append("us p90=")
+					.append(getPercentile(stageDurations, count, 90) / 1000)
+					.append("us p99=")
+					.append(getPercentile(stageDurations, count, 99) / 1000)
+					.append("us max=").append(stageDurations[count - 1] / 1000)
+					.append("us buckets=[");
+			for (int i = 0; i < NUM_BUCKETS; ++i) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(buckets[i]);
+			}
+			pw.println(sb.append(']'));
+		}
+	}
+}
@@ -30,12 +30,14 @@ import android.inputmethodservice.InputMethodService;
 import android.media.AudioManager;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.View;
 import android.view.ViewGroup.LayoutParams;
+import android.view.ViewTreeObserver;
 import android.view.Window;
 import android.view.WindowManager;
 import android.view.inputmethod.CompletionInfo;
@@ -81,6 +83,8 @@ import com.phonemetra.turbo.keyboard.latin.utils.LeakGuardHandlerWrapper;
 import com.phonemetra.turbo.keyboard.latin.utils.SubtypeLocaleUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ViewLayoutUtils;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -99,6 +103,7 @@ public class LatinIME extends InputMethodService implements
 	private static final int EXTENDED_TOUCHABLE_REGION_HEIGHT = 100;
 	private static final int PERIOD_FOR_AUDIO_AND_HAPTIC_FEEDBACK_IN_KEY_REPEAT = 2;
 	private static final int PENDING_IMS_CALLBACK_DURATION_MILLIS = 800;
+	private static final long NOT_MEASURED = -1;
 	static final long DELAY_WAIT_FOR_DICTIONARY_LOAD_MILLIS = 2000;
 	static final long DELAY_DEALLOCATE_MEMORY_MILLIS = 8000;
 
@@ -116,6 +121,10 @@ public class LatinIME extends InputMethodService implements
 
 	private View mInputView;
 	private InsetsUpdater mInsetsUpdater;
+	// The time from onCreate to the first draw of the input view, which
+	// doesn't wait for the dictionaries to load.
+	private long mCreateUptimeMillis;
+	private volatile long mTimeToFirstDrawnKeyboardMillis = NOT_MEASURED;
 	private SuggestionStripView mSuggestionStripView;
 
 	private RichInputMethodManager mRichImm;
@@ -164,6 +173,13 @@ public class LatinIME extends InputMethodService implements
 		private static final int ARG2_UNUSED = 0;
 		private static final int ARG1_TRUE = 1;
 
+		/**
+		 * On a slow InputConnection we wait this many times longer before
+		 * resuming suggestions, so that a burst of cursor moves results in a
+		 * single round of calls to the editor.
+		 */
+		private static final int SLOW_INPUT_CONNECTION_RESUME_SUGGESTIONS_DELAY_MULTIPLIER = 4;
+
 		private int mDelayInMillisecondsToUpdateSuggestions;
 		private int mDelayInMillisecondsToUpdateShiftState;
 
@@ -293,8 +309,12 @@ public class LatinIME extends InputMethodService implements
 			final int message = forStartInput ? MSG_RESUME_SUGGESTIONS_FOR_START_INPUT
 					: MSG_RESUME_SUGGESTIONS;
 			if (shouldDelay) {
+				final int delayMultiplier = latinIME.mInputLogic.mConnection
+						.hasSlowInputConnection() ? SLOW_INPUT_CONNECTION_RESUME_SUGGESTIONS_DELAY_MULTIPLIER
+						: 1;
 				sendMessageDelayed(obtainMessage(message),
-						mDelayInMillisecondsToUpdateSuggestions);
+						mDelayInMillisecondsToUpdateSuggestions
+								* delayMultiplier);
 			} else {
 				sendMessage(obtainMessage(message));
 			}
@@ -553,6 +573,7 @@ public class LatinIME extends InputMethodService implements
 
 	@Override
 	public void onCreate() {
+		mCreateUptimeMillis = SystemClock.uptimeMillis();
 		Log.i("LatinIME", "onCreate");
 		Settings.init(this);
 		Log.i("LatinIME", "Passa settings.init");
@@ -561,6 +582,7 @@ public class LatinIME extends InputMethodService implements
 		KeyboardSwitcher.init(this);
 		AudioAndHapticFeedbackManager.init(this);
 		AccessibilityUtils.init(this);
+		DictionaryGCScheduler.init(this);
 		super.onCreate();
 
 		mHandler.onCreate();
@@ -791,6 +813,9 @@ public class LatinIME extends InputMethodService implements
 	public void setInputView(final View view) {
 		super.setInputView(view);
 		mInputView = view;
+		if (NOT_MEASURED == mTimeToFirstDrawnKeyboardMillis) {
+			measureTimeToFirstDrawnKeyboard(view);
+		}
 		mInsetsUpdater = ViewOutlineProviderCompatUtils
 				.setInsetsOutlineProvider(view);
 		updateSoftInputWindowLayoutParameters();
@@ -801,6 +826,23 @@ public class LatinIME extends InputMethodService implements
 		}
 	}
 
+	private void measureTimeToFirstDrawnKeyboard(final View inputView) {
+		inputView.getViewTreeObserver().addOnPreDrawListener(
+				new ViewTreeObserver.OnPreDrawListener() {
+					@Override
+					public boolean onPreDraw() {
+						inputView.getViewTreeObserver().removeOnPreDrawListener(this);
+						if (NOT_MEASURED == mTimeToFirstDrawnKeyboardMillis) {
+							mTimeToFirstDrawnKeyboardMillis = SystemClock.uptimeMillis()
+									- mCreateUptimeMillis;
+							Log.i("LatinIME", "Time to first drawn keyboard: "
+									+ mTimeToFirstDrawnKeyboardMillis + " ms");
+						}
+						return true;
+					}
+				});
+	}
+
 	@Override
 	public void setCandidatesView(final View view) {
 
@@ -1061,6 +1103,8 @@ public class LatinIME extends InputMethodService implements
 		if (mainKeyboardView != null) {
 			mainKeyboardView.closing();
 		}
+		// The user is not typing anymore, so dictionary GC cannot delay a keystroke.
+		DictionaryGCScheduler.getInstance().onKeyboardHidden();
 	}
 
 	void onFinishInputInternal() {
@@ -1097,6 +1141,9 @@ public class LatinIME extends InputMethodService implements
 			final int composingSpanStart, final int composingSpanEnd) {
 		super.onUpdateSelection(oldSelStart, oldSelEnd, newSelStart, newSelEnd,
 				composingSpanStart, composingSpanEnd);
+		// The editor caught up with the edits we sent: let the connection send
+		// what it held back in the meantime.
+		mInputLogic.mConnection.onUpdateSelection();
 
 		// This call happens whether our view is displayed or not, but if it's
 		// not then we should
@@ -1643,6 +1690,7 @@ public class LatinIME extends InputMethodService implements
 
 	@Override
 	public void showSuggestionStrip(final SuggestedWords suggestedWords) {
+		final long startNanos = KeystrokeLatencyTracer.start();
 		if (suggestedWords.isEmpty()) {
 			setNeutralSuggestionStrip();
 		} else {
@@ -1652,6 +1700,20 @@ public class LatinIME extends InputMethodService implements
 		// the user
 		// touches a key that will insert it.
 		AccessibilityUtils.getInstance().setAutoCorrection(suggestedWords);
+		KeystrokeLatencyTracer.end(
+				KeystrokeLatencyTracer.STAGE_SHOW_SUGGESTION_STRIP, startNanos);
+	}
+
+	// Called on the InputLogicHandler thread, right before the suggestions are
+	// sent to the UI thread to be shown. Laying them out here leaves the UI
+	// thread with only the views to update.
+	@Override
+	public void prepareSuggestionStrip(final SuggestedWords suggestedWords) {
+		final SuggestionStripView suggestionStripView = mSuggestionStripView;
+		if (null == suggestionStripView || suggestedWords.isEmpty()) {
+			return;
+		}
+		suggestionStripView.prepareSuggestions(suggestedWords);
 	}
 
 	// Called from {@link SuggestionStripView} through the {@link
@@ -1954,6 +2016,11 @@ public class LatinIME extends InputMethodService implements
 				unit);
 	}
 
+	// DO NOT USE THIS for any other purpose than testing.
+	long getTimeToFirstDrawnKeyboardMillisForTest() {
+		return mTimeToFirstDrawnKeyboardMillis;
+	}
+
 	// DO NOT USE THIS for any other purpose than testing. This can break the
 	// keyboard badly.
 	
@@ -1987,6 +2054,19 @@ public class LatinIME extends InputMethodService implements
 		mDictionaryFacilitator.dumpDictionaryForDebug(dictName);
 	}
 
+	@Override
+	protected void dump(final FileDescriptor fd, final PrintWriter fout,
+			final String[] args) {
+		super.dump(fd, fout, args);
+		fout.println("Time to first drawn keyboard: "
+				+ mTimeToFirstDrawnKeyboardMillis + " ms");
+		RichInputConnection.dumpLatencyStats(fout);
+		KeystrokeLatencyTracer.dump(fout);
+		if (ApplicationUtils.isDebuggable(this)) {
+			mDictionaryFacilitator.dumpDecoderCounters(fout);
+		}
+	}
+
 	public void debugDumpStateAndCrashWithException(final String context) {
 		final SettingsValues settingsValues = mSettings.getCurrent();
 		final StringBuilder s = new StringBuilder(settingsValues.toString());
@@ -47,8 +47,14 @@ public class NgramContext {
         return new NgramContext(maxPrevWordCount, WordInfo.EMPTY_WORD_INFO);
     }
 
+    private static final int[] EMPTY_CODE_POINTS = new int[0];
+
     /**
      * Word information used to represent previous words information.
+     *
+     * The code points of the word are computed once, when it is created. An n-gram context
+     * shares its word infos with the context it was made from, so each word is converted once
+     * however many times it is passed to the dictionaries.
      */
     public static class WordInfo {
         @Nonnull
@@ -62,25 +68,47 @@ public class NgramContext {
         // Whether the current context is beginning of sentence or not. This is true when composing
         // at the beginning of an input field or composing a word after a sentence separator.
         public final boolean mIsBeginningOfSentence;
+        // The code points of mWord, or an empty array if it is null. These must not be modified.
+        @Nonnull
+        private final int[] mCodePoints;
+        private final int mHashCode;
 
         // Beginning of sentence.
         private WordInfo() {
             mWord = "";
             mIsBeginningOfSentence = true;
+            mCodePoints = EMPTY_CODE_POINTS;
+            mHashCode = computeHashCode();
         }
 
         public WordInfo(final CharSequence word) {
             mWord = word;
             mIsBeginningOfSentence = false;
+            mCodePoints = (null == word) ? EMPTY_CODE_POINTS : StringUtils.toCodePointArray(word);
+            mHashCode = computeHashCode();
         }
 
         public boolean isValid() {
             return mWord != null;
         }
 
+        /**
+         * Returns the code points of the word, shared by all the users of this word info. The
+         * returned array must not be modified.
+         */
+        @Nonnull
+        public int[] getCodePoints() {
+            return mCodePoints;
+        }
+
+        private int computeHashCode() {
+            return Arrays.hashCode(mCodePoints) * 31 + (mIsBeginningOfSentence ? 1 : 0)
+                    + (isValid() ? 2 : 0);
+        }
+
         @Override
         public int hashCode() {
-            return Arrays.hashCode(new Object[] { mWord, mIsBeginningOfSentence } );
+            return mHashCode;
         }
 
         @Override
@@ -88,11 +116,12 @@ public class NgramContext {
             if (this == o) return true;
             if (!(o instanceof WordInfo)) return false;
             final WordInfo wordInfo = (WordInfo)o;
+            if (mHashCode != wordInfo.mHashCode) return false;
             if (mWord == null || wordInfo.mWord == null) {
                 return mWord == wordInfo.mWord
                         && mIsBeginningOfSentence == wordInfo.mIsBeginningOfSentence;
             }
-            return TextUtils.equals(mWord, wordInfo.mWord)
+            return Arrays.equals(mCodePoints, wordInfo.mCodePoints)
                     && mIsBeginningOfSentence == wordInfo.mIsBeginningOfSentence;
         }
     }
@@ -107,6 +136,8 @@ public class NgramContext {
     private final int mPrevWordsCount;
 
     private final int mMaxPrevWordCount;
+    // Lazily computed; 0 means not computed yet. Contexts are immutable, and are used as keys.
+    private int mHashCode;
 
     // Construct from the previous word information.
     public NgramContext(final WordInfo... prevWordsInfo) {
@@ -210,11 +241,12 @@ public class NgramContext {
         for (int i = 0; i < mPrevWordsCount; i++) {
             final WordInfo wordInfo = mPrevWordsInfo[i];
             if (wordInfo == null || !wordInfo.isValid()) {
-                codePointArrays[i] = new int[0];
+                codePointArrays[i] = EMPTY_CODE_POINTS;
                 isBeginningOfSentenceArray[i] = false;
                 continue;
             }
-            codePointArrays[i] = StringUtils.toCodePointArray(wordInfo.mWord);
+            // The arrays are only read by the native code, so they can be shared.
+            codePointArrays[i] = wordInfo.getCodePoints();
             isBeginningOfSentenceArray[i] = wordInfo.mIsBeginningOfSentence;
         }
     }
@@ -225,12 +257,21 @@ public class NgramContext {
 
     @Override
     public int hashCode() {
-        int hashValue = 0;
-        for (final WordInfo wordInfo : mPrevWordsInfo) {
-            if (wordInfo == null || !WordInfo.EMPTY_WORD_INFO.equals(wordInfo)) {
-                break;
+        int hashValue = mHashCode;
+        if (0 == hashValue) {
+            // Trailing empty word infos are ignored by equals(), so they must not change the
+            // hash code either.
+            int significantCount = mPrevWordsCount;
+            while (significantCount > 0 && (mPrevWordsInfo[significantCount - 1] == null
+                    || WordInfo.EMPTY_WORD_INFO.equals(mPrevWordsInfo[significantCount - 1]))) {
+                --significantCount;
+            }
+            hashValue = 1;
+            for (int i = 0; i < significantCount; i++) {
+                final WordInfo wordInfo = mPrevWordsInfo[i];
+                hashValue = hashValue * 31 + (wordInfo == null ? 0 : wordInfo.hashCode());
             }
-            hashValue ^= wordInfo.hashCode();
+            mHashCode = hashValue;
         }
         return hashValue;
     }
@@ -240,6 +281,7 @@ public class NgramContext {
         if (this == o) return true;
         if (!(o instanceof NgramContext)) return false;
         final NgramContext prevWordsInfo = (NgramContext)o;
+        if (hashCode() != prevWordsInfo.hashCode()) return false;
 
         final int minLength = Math.min(mPrevWordsCount, prevWordsInfo.mPrevWordsCount);
         for (int i = 0; i < minLength; i++) {
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import com.phonemetra.turbo.keyboard.latin.common.LocaleUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable index of the entries of the personal dictionary, used by
+ * {@link PersonalDictionaryLookup}.
+ *
+ * The entries are partitioned by locale. For each locale, they are kept in an array sorted by
+ * lower case word, and those with a shortcut in another array sorted by shortcut, so that words
+ * and shortcuts are found with binary searches, and shortcuts can be looked up by prefix.
+ * Changes to single entries produce a new index that shares the arrays of the other locales.
+ */
+final class PersonalDictionaryIndex {
+    /**
+     * An entry of the personal dictionary, as read from a row of the provider.
+     */
+    static final class Entry {
+        public final long mId;
+        // The word, as the user entered it.
+        @Nonnull
+        public final String mWord;
+        // The word, lower cased using its locale.
+        @Nonnull
+        public final String mLowerCaseWord;
+        // {@link PersonalDictionaryLookup#ANY_LOCALE} for entries that apply to all locales.
+        @Nonnull
+        public final Locale mLocale;
+        @Nullable
+        public final String mShortcut;
+
+        public Entry(final long id, @Nonnull final String word, @Nonnull final Locale locale,
+                @Nullable final String shortcut) {
+            mId = id;
+            mWord = word;
+            final String lowerCaseWord = word.toLowerCase(locale);
+            // Share the string when lower casing doesn't change it, which is the common case.
+            mLowerCaseWord = lowerCaseWord.equals(word) ? word : lowerCaseWord;
+            mLocale = locale;
+            mShortcut = shortcut;
+        }
+    }
+
+    private static final Comparator<Entry> WORD_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry lhs, final Entry rhs) {
+            final int result = lhs.mLowerCaseWord.compareTo(rhs.mLowerCaseWord);
+            return (0 != result) ? result : compareIds(lhs.mId, rhs.mId);
+        }
+    };
+
+    private static final Comparator<Entry> SHORTCUT_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry lhs, final Entry rhs) {
+            final int result = lhs.mShortcut.compareTo(rhs.mShortcut);
+            return (0 != result) ? result : compareIds(lhs.mId, rhs.mId);
+        }
+    };
+
+    private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+
+    /**
+     * The entries of a single locale.
+     */
+    private static final class LocaleEntries {
+        // Sorted with {@link #WORD_COMPARATOR}.
+        public final Entry[] mEntriesByWord;
+        // The entries that have a shortcut, sorted with {@link #SHORTCUT_COMPARATOR}.
+        public final Entry[] mEntriesByShortcut;
+
+        public LocaleEntries(final Entry[] entriesByWord, final Entry[] entriesByShortcut) {
+            mEntriesByWord = entriesByWord;
+            mEntriesByShortcut = entriesByShortcut;
+        }
+
+        public boolean isEmpty() {
+            return 0 == mEntriesByWord.length;
+        }
+
+        public boolean containsWord(@Nonnull final String lowerCaseWord) {
+            final int index = lowerBoundOfWord(mEntriesByWord, lowerCaseWord);
+            return index < mEntriesByWord.length
+                    && mEntriesByWord[index].mLowerCaseWord.equals(lowerCaseWord);
+        }
+
+        @Nullable
+        public String expandShortcut(@Nonnull final String shortcut) {
+            final int index = lowerBoundOfShortcut(mEntriesByShortcut, shortcut);
+            if (index < mEntriesByShortcut.length
+                    && mEntriesByShortcut[index].mShortcut.equals(shortcut)) {
+                return mEntriesByShortcut[index].mWord;
+            }
+            return null;
+        }
+
+        @Nonnull
+        public LocaleEntries withoutEntry(@Nonnull final Entry entry) {
+            return new LocaleEntries(remove(mEntriesByWord, entry),
+                    (null == entry.mShortcut) ? mEntriesByShortcut
+                            : remove(mEntriesByShortcut, entry));
+        }
+
+        @Nonnull
+        public LocaleEntries withEntry(@Nonnull final Entry entry) {
+            return new LocaleEntries(insert(mEntriesByWord, entry, WORD_COMPARATOR),
+                    (null == entry.mShortcut) ? mEntriesByShortcut
+                            : insert(mEntriesByShortcut, entry, SHORTCUT_COMPARATOR));
+        }
+    }
+
+    private final HashMap<Locale, LocaleEntries> mEntriesPerLocale;
+    private final int mWordCount;
+    private final int mShortcutCount;
+    // The results of {@link #getWordsForLocale} and {@link #getShortcutsForLocale}, which are
+    // computed once per index and input locale.
+    private final ConcurrentHashMap<Locale, Set<String>> mWordsForLocale =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Locale, Set<String>> mShortcutsForLocale =
+            new ConcurrentHashMap<>();
+
+    private PersonalDictionaryIndex(
+            @Nonnull final HashMap<Locale, LocaleEntries> entriesPerLocale) {
+        mEntriesPerLocale = entriesPerLocale;
+        int wordCount = 0;
+        int shortcutCount = 0;
+        for (final LocaleEntries localeEntries : entriesPerLocale.values()) {
+            wordCount += localeEntries.mEntriesByWord.length;
+            shortcutCount += localeEntries.mEntriesByShortcut.length;
+        }
+        mWordCount = wordCount;
+        mShortcutCount = shortcutCount;
+    }
+
+    @Nonnull
+    static PersonalDictionaryIndex build(@Nonnull final Collection<Entry> entries) {
+        final HashMap<Locale, ArrayList<Entry>> entryListPerLocale = new HashMap<>();
+        for (final Entry entry : entries) {
+            ArrayList<Entry> entryList = entryListPerLocale.get(entry.mLocale);
+            if (null == entryList) {
+                entryList = new ArrayList<>();
+                entryListPerLocale.put(entry.mLocale, entryList);
+            }
+            entryList.add(entry);
+        }
+        final HashMap<Locale, LocaleEntries> entriesPerLocale = new HashMap<>();
+        for (final Map.Entry<Locale, ArrayList<Entry>> mapEntry : entryListPerLocale.entrySet()) {
+            final ArrayList<Entry> entryList = mapEntry.getValue();
+            final Entry[] entriesByWord = entryList.toArray(new Entry[entryList.size()]);
+            Arrays.sort(entriesByWord, WORD_COMPARATOR);
+            final ArrayList<Entry> entriesWithShortcut = new ArrayList<>();
+            for (final Entry entry : entriesByWord) {
+                if (null != entry.mShortcut) {
+                    entriesWithShortcut.add(entry);
+                }
+            }
+            final Entry[] entriesByShortcut =
+                    entriesWithShortcut.toArray(new Entry[entriesWithShortcut.size()]);
+            Arrays.sort(entriesByShortcut, SHORTCUT_COMPARATOR);
+            entriesPerLocale.put(mapEntry.getKey(),
+                    new LocaleEntries(entriesByWord, entriesByShortcut));
+        }
+        return new PersonalDictionaryIndex(entriesPerLocale);
+    }
+
+    /**
+     * Returns an index where the entry with the specified id is replaced.
+     *
+     * @param id the id of the entry in the provider.
+     * @param newEntry the entry as it is now, or null if it was deleted.
+     */
+    @Nonnull
+    PersonalDictionaryIndex withEntry(final long id, @Nullable final Entry newEntry) {
+        final HashMap<Locale, LocaleEntries> entriesPerLocale = new HashMap<>(mEntriesPerLocale);
+        for (final Map.Entry<Locale, LocaleEntries> mapEntry : mEntriesPerLocale.entrySet()) {
+            final Entry oldEntry = findById(mapEntry.getValue().mEntriesByWord, id);
+            if (null == oldEntry) {
+                continue;
+            }
+            final LocaleEntries localeEntries = mapEntry.getValue().withoutEntry(oldEntry);
+            if (localeEntries.isEmpty()) {
+                entriesPerLocale.remove(mapEntry.getKey());
+            } else {
+                entriesPerLocale.put(mapEntry.getKey(), localeEntries);
+            }
+            break;
+        }
+        if (null != newEntry) {
+            final LocaleEntries localeEntries = entriesPerLocale.get(newEntry.mLocale);
+            entriesPerLocale.put(newEntry.mLocale, (null == localeEntries)
+                    ? new LocaleEntries(new Entry[] { newEntry },
+                            (null == newEntry.mShortcut) ? EMPTY_ENTRIES
+                                    : new Entry[] { newEntry })
+                    : localeEntries.withEntry(newEntry));
+        }
+        return new PersonalDictionaryIndex(entriesPerLocale);
+    }
+
+    int getWordCount() {
+        return mWordCount;
+    }
+
+    int getShortcutCount() {
+        return mShortcutCount;
+    }
+
+    /**
+     * Returns whether the word, lower cased using the input locale, is in the dictionary for a
+     * locale that matches the input locale.
+     */
+    boolean isValidWord(@Nonnull final String lowerCaseWord, @Nonnull final Locale inputLocale) {
+        final String inputLocaleString = inputLocale.toString();
+        for (final Map.Entry<Locale, LocaleEntries> mapEntry : mEntriesPerLocale.entrySet()) {
+            if (LocaleUtils.isMatch(LocaleUtils.getMatchLevel(
+                    mapEntry.getKey().toString(), inputLocaleString))
+                    && mapEntry.getValue().containsWord(lowerCaseWord)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the expansion of the shortcut for exactly this locale, or null if there is none.
+     */
+    @Nullable
+    String expandShortcut(@Nonnull final String shortcut, @Nonnull final Locale locale) {
+        final LocaleEntries localeEntries = mEntriesPerLocale.get(locale);
+        return (null == localeEntries) ? null : localeEntries.expandShortcut(shortcut);
+    }
+
+    /**
+     * Returns the words of the locales that match the input locale, as the user entered them.
+     */
+    @Nonnull
+    Set<String> getWordsForLocale(@Nonnull final Locale inputLocale) {
+        final Set<String> cachedWords = mWordsForLocale.get(inputLocale);
+        if (null != cachedWords) {
+            return cachedWords;
+        }
+        final HashSet<String> words = new HashSet<>();
+        final String inputLocaleString = inputLocale.toString();
+        for (final Map.Entry<Locale, LocaleEntries> mapEntry : mEntriesPerLocale.entrySet()) {
+            if (LocaleUtils.isMatch(LocaleUtils.getMatchLevel(
+                    mapEntry.getKey().toString(), inputLocaleString))) {
+                for (final Entry entry : mapEntry.getValue().mEntriesByWord) {
+                    words.add(entry.mWord);
+                }
+            }
+        }
+        final Set<String> unmodifiableWords = Collections.unmodifiableSet(words);
+        mWordsForLocale.put(inputLocale, unmodifiableWords);
+        return unmodifiableWords;
+    }
+
+    /**
+     * Returns the shortcuts of the specified locales.
+     */
+    @Nonnull
+    Set<String> getShortcutsForLocale(@Nonnull final Locale inputLocale,
+            @Nonnull final List<Locale> locales) {
+        final Set<String> cachedShortcuts = mShortcutsForLocale.get(inputLocale);
+        if (null != cachedShortcuts) {
+            return cachedShortcuts;
+        }
+        final HashSet<String> shortcuts = new HashSet<>();
+        for (final Locale locale : locales) {
+            final LocaleEntries localeEntries = mEntriesPerLocale.get(locale);
+            if (null == localeEntries) {
+                continue;
+            }
+            for (final Entry entry : localeEntries.mEntriesByShortcut) {
+                shortcuts.add(entry.mShortcut);
+            }
+        }
+        final Set<String> unmodifiableShortcuts = Collections.unmodifiableSet(shortcuts);
+        mShortcutsForLocale.put(inputLocale, unmodifiableShortcuts);
+        return unmodifiableShortcuts;
+    }
+
+    private static int compareIds(final long lhs, final long rhs) {
+        return (lhs < rhs) ? -1 : ((lhs == rhs) ? 0 : 1);
+    }
+
+    // Returns the index of the first entry whose lower case word is not less than the word.
+    private static int lowerBoundOfWord(final Entry[] entriesByWord, final String lowerCaseWord) {
+        int low = 0;
+        int high = entriesByWord.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (entriesByWord[mid].mLowerCaseWord.compareTo(lowerCaseWord) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Returns the index of the first entry whose shortcut is not less than the shortcut.
+    private static int lowerBoundOfShortcut(final Entry[] entriesByShortcut,
+            final String shortcut) {
+        int low = 0;
+        int high = entriesByShortcut.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (entriesByShortcut[mid].mShortcut.compareTo(shortcut) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Nullable
+    private static Entry findById(final Entry[] entries, final long id) {
+        for (final Entry entry : entries) {
+            if (entry.mId == id) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static Entry[] remove(final Entry[] entries, final Entry entry) {
+        final Entry[] newEntries = new Entry[entries.length - 1];
+        int newIndex = 0;
+        for (final Entry e : entries) {
+            if (e != entry) {
+                newEntries[newIndex++] = e;
+            }
+        }
+        return newEntries;
+    }
+
+    private static Entry[] insert(final Entry[] entries, final Entry entry,
+            final Comparator<Entry> comparator) {
+        final int searchResult = Arrays.binarySearch(entries, entry, comparator);
+        final int index = (searchResult < 0) ? -searchResult - 1 : searchResult;
+        final Entry[] newEntries = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, newEntries, 0, index);
+        newEntries[index] = entry;
+        System.arraycopy(entries, index, newEntries, index + 1, entries.length - index);
+        return newEntries;
+    }
+}
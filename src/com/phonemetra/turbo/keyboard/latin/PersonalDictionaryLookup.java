@@ -17,6 +17,7 @@
 package com.phonemetra.turbo.keyboard.latin;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.database.ContentObserver;
 import android.database.Cursor;
@@ -26,18 +27,16 @@ import android.text.TextUtils;
 import android.util.Log;
 
 
-import com.phonemetra.turbo.keyboard.latin.common.CollectionUtils;
+import com.phonemetra.turbo.keyboard.latin.PersonalDictionaryIndex.Entry;
 import com.phonemetra.turbo.keyboard.latin.common.LocaleUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ExecutorUtils;
 
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -65,11 +64,17 @@ import javax.annotation.Nullable;
 public class PersonalDictionaryLookup implements Closeable {
 
     /**
-     * To avoid loading too many dictionary entries in memory, we cap them at this number.  If
-     * that number is exceeded, the lowest-frequency items will be dropped.  Note, there is no
-     * explicit cap on the number of locales in every entry.
+     * To avoid loading a runaway dictionary in memory, we stop reading entries at this number.
+     * Entries are kept in compact sorted arrays, so this is far more than any user dictionary
+     * holds.  Note, there is no explicit cap on the number of locales in every entry.
      */
-    private static final int MAX_NUM_ENTRIES = 1000;
+    private static final int MAX_NUM_ENTRIES = 100000;
+
+    /**
+     * When more single entries than this change before a reload, the whole dictionary is
+     * reloaded instead of each of them.
+     */
+    private static final int MAX_NUM_ENTRIES_TO_RELOAD_INCREMENTALLY = 20;
 
     /**
      * The delay (in milliseconds) to impose on reloads.  Previously scheduled reloads will be
@@ -149,7 +154,15 @@ public class PersonalDictionaryLookup implements Closeable {
 
         @Override
         public void onChange(boolean selfChange, Uri uri) {
-            
+            final long id = getEntryId(uri);
+            synchronized (mPendingChangedIds) {
+                if (NOT_AN_ENTRY_ID == id) {
+                    mIsFullReloadPending = true;
+                } else {
+                    mPendingChangedIds.add(id);
+                }
+            }
+
             // Cancel (but don't interrupt) any pending reloads (except the initial load).
             if (mReloadFuture != null && !mReloadFuture.isCancelled() &&
                     !mReloadFuture.isDone()) {
@@ -167,7 +180,30 @@ public class PersonalDictionaryLookup implements Closeable {
 
         @Override
         public void run() {
-            loadPersonalDictionary();
+            reloadPersonalDictionary();
+        }
+    }
+
+    private static final long NOT_AN_ENTRY_ID = -1;
+
+    /**
+     * Returns the id of the entry a change notification is about, or {@link #NOT_AN_ENTRY_ID}
+     * if it is about the whole dictionary, or if the platform doesn't tell.
+     */
+    private static long getEntryId(@Nullable final Uri uri) {
+        if (null == uri) {
+            return NOT_AN_ENTRY_ID;
+        }
+        final List<String> pathSegments = uri.getPathSegments();
+        final List<String> wordsPathSegments = UserDictionary.Words.CONTENT_URI.getPathSegments();
+        if (pathSegments.size() != wordsPathSegments.size() + 1
+                || !pathSegments.subList(0, wordsPathSegments.size()).equals(wordsPathSegments)) {
+            return NOT_AN_ENTRY_ID;
+        }
+        try {
+            return ContentUris.parseId(uri);
+        } catch (final NumberFormatException e) {
+            return NOT_AN_ENTRY_ID;
         }
     }
 
@@ -185,16 +221,19 @@ public class PersonalDictionaryLookup implements Closeable {
     private AtomicBoolean mIsClosed = new AtomicBoolean(false);
 
     /**
-     * We store a map from a dictionary word to the set of locales & raw string(as it appears)
-     * We then iterate over the set of locales to find a match using LocaleUtils.
+     * The entries of the dictionary, partitioned by locale. Entries that apply to any locale are
+     * under {@link #ANY_LOCALE}. The index is immutable, and replaced as a whole on each change,
+     * so readers don't need to lock. Null until the initial load is done.
      */
-    private volatile HashMap<String, HashMap<Locale, String>> mDictWords;
+    private volatile PersonalDictionaryIndex mIndex;
 
     /**
-     * We store a map from a shortcut to a word for each locale.
-     * Shortcuts that apply to any locale are keyed by {@link #ANY_LOCALE}.
+     * The ids of the entries that were changed since the last reload, and whether a change that
+     * was not about a single entry happened, which requires reloading all of them.
+     * Synchronized using {@link #mPendingChangedIds}.
      */
-    private volatile HashMap<Locale, HashMap<String, String>> mShortcutsPerLocale;
+    private final HashSet<Long> mPendingChangedIds = new HashSet<>();
+    private boolean mIsFullReloadPending;
 
     /**
      *  The last-scheduled reload future.  Saved in order to cancel a pending reload if a new one
@@ -232,8 +271,14 @@ public class PersonalDictionaryLookup implements Closeable {
 
         // Schedule the initial load to run immediately.  It's possible that the first call to
         // isValidWord occurs before the dictionary has actually loaded, so it should not
-        // assume that the dictionary has been loaded.
-        loadPersonalDictionary();
+        // assume that the dictionary has been loaded. The load runs on the same thread as
+        // the reloads, so that changes are applied in order.
+        ExecutorUtils.getBackgroundExecutor(mServiceName).execute(new Runnable() {
+            @Override
+            public void run() {
+                loadPersonalDictionary();
+            }
+        });
 
         // Register the observer to be notified on changes to the personal dictionary and all
         // individual items.
@@ -286,7 +331,7 @@ public class PersonalDictionaryLookup implements Closeable {
      * @return true if the initial load is successful
      */
     public boolean isLoaded() {
-        return mDictWords != null && mShortcutsPerLocale != null;
+        return mIndex != null;
     }
 
     /**
@@ -298,29 +343,14 @@ public class PersonalDictionaryLookup implements Closeable {
      * by {@link #getShortcutsForLocale}.
      *
      * @param inputLocale the locale to restrict for
-     * @return set of words that apply to the given locale.
+     * @return set of words that apply to the given locale. It must not be modified.
      */
     public Set<String> getWordsForLocale(@Nonnull final Locale inputLocale) {
-        final HashMap<String, HashMap<Locale, String>> dictWords = mDictWords;
-        if (CollectionUtils.isNullOrEmpty(dictWords)) {
+        final PersonalDictionaryIndex index = mIndex;
+        if (null == index || 0 == index.getWordCount()) {
             return Collections.emptySet();
         }
-
-        final Set<String> words = new HashSet<>();
-        final String inputLocaleString = inputLocale.toString();
-        for (String word : dictWords.keySet()) {
-            HashMap<Locale, String> localeStringMap = dictWords.get(word);
-                if (!CollectionUtils.isNullOrEmpty(localeStringMap)) {
-                    for (Locale wordLocale : localeStringMap.keySet()) {
-                        final String wordLocaleString = wordLocale.toString();
-                        final int match = LocaleUtils.getMatchLevel(wordLocaleString, inputLocaleString);
-                        if (LocaleUtils.isMatch(match)) {
-                            words.add(localeStringMap.get(wordLocale));
-                        }
-                    }
-            }
-        }
-        return words;
+        return index.getWordsForLocale(inputLocale);
     }
 
     /**
@@ -332,38 +362,31 @@ public class PersonalDictionaryLookup implements Closeable {
      * by {@link #getWordsForLocale}.
      *
      * @param inputLocale the locale to restrict for
-     * @return set of shortcuts that apply to the given locale.
+     * @return set of shortcuts that apply to the given locale. It must not be modified.
      */
     public Set<String> getShortcutsForLocale(@Nonnull final Locale inputLocale) {
-        final Map<Locale, HashMap<String, String>> shortcutsPerLocale = mShortcutsPerLocale;
-        if (CollectionUtils.isNullOrEmpty(shortcutsPerLocale)) {
+        final PersonalDictionaryIndex index = mIndex;
+        if (null == index || 0 == index.getShortcutCount()) {
             return Collections.emptySet();
         }
+        return index.getShortcutsForLocale(inputLocale, getShortcutLocales(inputLocale));
+    }
 
-        final Set<String> shortcuts = new HashSet<>();
+    /**
+     * Returns the locales in which to look shortcuts up for the input locale, from the most
+     * specific one to the global one.
+     */
+    private static List<Locale> getShortcutLocales(@Nonnull final Locale inputLocale) {
+        final ArrayList<Locale> locales = new ArrayList<>(3);
         if (!TextUtils.isEmpty(inputLocale.getCountry())) {
             // First look for the country-specific shortcut: en_US, en_UK, fr_FR, etc.
-            final Map<String, String> countryShortcuts = shortcutsPerLocale.get(inputLocale);
-            if (!CollectionUtils.isNullOrEmpty(countryShortcuts)) {
-                shortcuts.addAll(countryShortcuts.keySet());
-            }
+            locales.add(inputLocale);
         }
-
         // Next look for the language-specific shortcut: en, fr, etc.
-        final Locale languageOnlyLocale =
-                LocaleUtils.constructLocaleFromString(inputLocale.getLanguage());
-        final Map<String, String> languageShortcuts = shortcutsPerLocale.get(languageOnlyLocale);
-        if (!CollectionUtils.isNullOrEmpty(languageShortcuts)) {
-            shortcuts.addAll(languageShortcuts.keySet());
-        }
-
+        locales.add(LocaleUtils.constructLocaleFromString(inputLocale.getLanguage()));
         // If all else fails, look for a global shortcut.
-        final Map<String, String> globalShortcuts = shortcutsPerLocale.get(ANY_LOCALE);
-        if (!CollectionUtils.isNullOrEmpty(globalShortcuts)) {
-            shortcuts.addAll(globalShortcuts.keySet());
-        }
-
-        return shortcuts;
+        locales.add(ANY_LOCALE);
+        return locales;
     }
 
     /**
@@ -377,42 +400,18 @@ public class PersonalDictionaryLookup implements Closeable {
      * @return true iff the word has been matched for this locale in the dictionary.
      */
     public boolean isValidWord(@Nonnull final String word, @Nonnull final Locale inputLocale) {
-        if (!isLoaded()) {
+        // Atomically obtain the current copy of mIndex.
+        final PersonalDictionaryIndex index = mIndex;
+        if (null == index) {
             // This is a corner case in the event the initial load of the dictionary has not
             // completed. In that case, we assume the word is not a valid word in the dictionary.
-            
             return false;
         }
-
-        
-        // Atomically obtain the current copy of mDictWords;
-        final HashMap<String, HashMap<Locale, String>> dictWords = mDictWords;
         // Lowercase the word using the given locale. Note, that dictionary
         // words are lowercased using their locale, and theoretically the
         // lowercasing between two matching locales may differ. For simplicity
         // we ignore that possibility.
-        final String lowercased = word.toLowerCase(inputLocale);
-        final HashMap<Locale, String> dictLocales = dictWords.get(lowercased);
-
-        if (CollectionUtils.isNullOrEmpty(dictLocales)) {
-            
-            return false;
-        } else {
-            
-            // Iterate over the locales this word is in.
-            for (final Locale dictLocale : dictLocales.keySet()) {
-                final int matchLevel = LocaleUtils.getMatchLevel(dictLocale.toString(),
-                        inputLocale.toString());
-                
-                if (LocaleUtils.isMatch(matchLevel)) {
-                    
-                    return true;
-                }
-                
-            }
-            
-            return false;
-        }
+        return index.isValidWord(word.toLowerCase(inputLocale), inputLocale);
     }
 
     /**
@@ -424,55 +423,100 @@ public class PersonalDictionaryLookup implements Closeable {
      */
     @Nullable public String expandShortcut(
             @Nonnull final String shortcut, @Nonnull final Locale inputLocale) {
-        
-
-        // Atomically obtain the current copy of mShortcuts;
-        final HashMap<Locale, HashMap<String, String>> shortcutsPerLocale = mShortcutsPerLocale;
+        // Atomically obtain the current copy of mIndex.
+        final PersonalDictionaryIndex index = mIndex;
 
         // Exit as early as possible. Most users don't use shortcuts.
-        if (CollectionUtils.isNullOrEmpty(shortcutsPerLocale)) {
-            
+        if (null == index || 0 == index.getShortcutCount()) {
             return null;
         }
 
-        if (!TextUtils.isEmpty(inputLocale.getCountry())) {
-            // First look for the country-specific shortcut: en_US, en_UK, fr_FR, etc.
-            final String expansionForCountry = expandShortcut(
-                    shortcutsPerLocale, shortcut, inputLocale);
-            if (!TextUtils.isEmpty(expansionForCountry)) {
-                
-                return expansionForCountry;
+        for (final Locale locale : getShortcutLocales(inputLocale)) {
+            final String expansion = index.expandShortcut(shortcut, locale);
+            if (!TextUtils.isEmpty(expansion)) {
+                return expansion;
             }
         }
+        return null;
+    }
 
-        // Next look for the language-specific shortcut: en, fr, etc.
-        final Locale languageOnlyLocale =
-                LocaleUtils.constructLocaleFromString(inputLocale.getLanguage());
-        final String expansionForLanguage = expandShortcut(
-                shortcutsPerLocale, shortcut, languageOnlyLocale);
-        if (!TextUtils.isEmpty(expansionForLanguage)) {
-            
-            return expansionForLanguage;
+    /**
+     * Applies the changes notified since the last reload, entry by entry if there are few of
+     * them, or else by reloading the whole dictionary.
+     */
+    private void reloadPersonalDictionary() {
+        final ArrayList<Long> changedIds;
+        final boolean isFullReloadPending;
+        synchronized (mPendingChangedIds) {
+            changedIds = new ArrayList<>(mPendingChangedIds);
+            isFullReloadPending = mIsFullReloadPending;
+            mPendingChangedIds.clear();
+            mIsFullReloadPending = false;
         }
-
-        // If all else fails, look for a global shortcut.
-        final String expansionForGlobal = expandShortcut(shortcutsPerLocale, shortcut, ANY_LOCALE);
-        
-        return expansionForGlobal;
+        PersonalDictionaryIndex index = mIndex;
+        if (null == index || isFullReloadPending
+                || changedIds.size() > MAX_NUM_ENTRIES_TO_RELOAD_INCREMENTALLY) {
+            loadPersonalDictionary();
+            return;
+        }
+        for (final long id : changedIds) {
+            final Cursor cursor = mResolver.query(
+                    ContentUris.withAppendedId(UserDictionary.Words.CONTENT_URI, id),
+                    null, null, null, null);
+            if (null == cursor) {
+                // The provider is not available: keep what we have.
+                continue;
+            }
+            try {
+                // Entries that are not there anymore, or can't be read, are removed.
+                index = index.withEntry(id, cursor.moveToFirst() ? readEntry(cursor) : null);
+            } finally {
+                cursor.close();
+            }
+        }
+        publishIndex(index);
+        Log.i(mTag, "reloadPersonalDictionary() : Reloaded " + changedIds.size() + " entries");
     }
 
-    @Nullable private String expandShortcut(
-            @Nullable final HashMap<Locale, HashMap<String, String>> shortcutsPerLocale,
-            @Nonnull final String shortcut,
-            @Nonnull final Locale locale) {
-        if (CollectionUtils.isNullOrEmpty(shortcutsPerLocale)) {
+    /**
+     * Reads the entry at the current position of the cursor.
+     *
+     * @return the entry, or null if it has no word or no locale column.
+     */
+    @Nullable
+    private static Entry readEntry(@Nonnull final Cursor cursor) {
+        // If there is no column for locale, skip this entry. An empty
+        // locale on the other hand will not be skipped.
+        final int dictLocaleIndex = cursor.getColumnIndex(UserDictionary.Words.LOCALE);
+        if (dictLocaleIndex < 0) {
+            return null;
+        }
+        // If there is no column for word, skip this entry.
+        final int dictWordIndex = cursor.getColumnIndex(UserDictionary.Words.WORD);
+        if (dictWordIndex < 0) {
             return null;
         }
-        final HashMap<String, String> localeShortcuts = shortcutsPerLocale.get(locale);
-        if (CollectionUtils.isNullOrEmpty(localeShortcuts)) {
+        // If the word is null, skip this entry.
+        final String rawDictWord = cursor.getString(dictWordIndex);
+        if (null == rawDictWord) {
             return null;
         }
-        return localeShortcuts.get(shortcut);
+        // If the locale is null, that's interpreted to mean all locales. Note, the special
+        // zz locale for an Alphabet (QWERTY) layout will not match any actual language.
+        String localeString = cursor.getString(dictLocaleIndex);
+        if (null == localeString) {
+            // For purposes of LocaleUtils, an empty locale matches everything.
+            localeString = "";
+        }
+        final Locale dictLocale = LocaleUtils.constructLocaleFromString(localeString);
+        final int idIndex = cursor.getColumnIndex(UserDictionary.Words._ID);
+        final long id = (idIndex < 0) ? NOT_AN_ENTRY_ID : cursor.getLong(idIndex);
+        // If there is no column for a shortcut, or if the shortcut is null, there is none.
+        // Shortcuts map to the raw input, which might be capitalized.
+        // This lets the user create a shortcut from "gm" to "General Motors".
+        final int shortcutIndex = cursor.getColumnIndex(UserDictionary.Words.SHORTCUT);
+        final String shortcut = (shortcutIndex < 0) ? null : cursor.getString(shortcutIndex);
+        return new Entry(id, rawDictWord, dictLocale, shortcut);
     }
 
     /**
@@ -487,8 +531,7 @@ public class PersonalDictionaryLookup implements Closeable {
             return;
         }
         Log.i(mTag, "loadPersonalDictionary() : Start Loading");
-        HashMap<String, HashMap<Locale, String>> dictWords = new HashMap<>();
-        HashMap<Locale, HashMap<String, String>> shortcutsPerLocale = new HashMap<>();
+        final ArrayList<Entry> entries = new ArrayList<>();
         // Load the dictionary.  Items are returned in the default sort order (by frequency).
         Cursor cursor = mResolver.query(UserDictionary.Words.CONTENT_URI,
                 null, null, null, UserDictionary.Words.DEFAULT_SORT_ORDER);
@@ -497,92 +540,34 @@ public class PersonalDictionaryLookup implements Closeable {
         } else {
             // Iterate over the entries in the personal dictionary.  Note, that iteration is in
             // descending frequency by default.
-            while (dictWords.size() < MAX_NUM_ENTRIES && cursor.moveToNext()) {
-                // If there is no column for locale, skip this entry. An empty
-                // locale on the other hand will not be skipped.
-                final int dictLocaleIndex = cursor.getColumnIndex(UserDictionary.Words.LOCALE);
-                if (dictLocaleIndex < 0) {
-                    
-                    continue;
-                }
-                // If there is no column for word, skip this entry.
-                final int dictWordIndex = cursor.getColumnIndex(UserDictionary.Words.WORD);
-                if (dictWordIndex < 0) {
-                    
-                    continue;
-                }
-                // If the word is null, skip this entry.
-                final String rawDictWord = cursor.getString(dictWordIndex);
-                if (null == rawDictWord) {
-                    
-                    continue;
+            while (entries.size() < MAX_NUM_ENTRIES && cursor.moveToNext()) {
+                final Entry entry = readEntry(cursor);
+                if (null != entry) {
+                    entries.add(entry);
                 }
-                // If the locale is null, that's interpreted to mean all locales. Note, the special
-                // zz locale for an Alphabet (QWERTY) layout will not match any actual language.
-                String localeString = cursor.getString(dictLocaleIndex);
-                if (null == localeString) {
-                    
-                    // For purposes of LocaleUtils, an empty locale matches everything.
-                    localeString = "";
-                }
-                final Locale dictLocale = LocaleUtils.constructLocaleFromString(localeString);
-                // Lowercase the word before storing it.
-                final String dictWord = rawDictWord.toLowerCase(dictLocale);
-                
-                // Check if there is an existing entry for this word.
-                HashMap<Locale, String> dictLocales = dictWords.get(dictWord);
-                if (CollectionUtils.isNullOrEmpty(dictLocales)) {
-                    // If there is no entry for this word, create one.
-                    
-                    dictLocales = new HashMap<>();
-                    dictWords.put(dictWord, dictLocales);
-                }
-                // Append the locale to the list of locales this word is in.
-                dictLocales.put(dictLocale, rawDictWord);
-
-                // If there is no column for a shortcut, we're done.
-                final int shortcutIndex = cursor.getColumnIndex(UserDictionary.Words.SHORTCUT);
-                if (shortcutIndex < 0) {
-                    
-                    continue;
-                }
-                // If the shortcut is null, we're done.
-                final String shortcut = cursor.getString(shortcutIndex);
-                if (shortcut == null) {
-                    
-                    continue;
-                }
-                // Else, save the shortcut.
-                HashMap<String, String> localeShortcuts = shortcutsPerLocale.get(dictLocale);
-                if (localeShortcuts == null) {
-                    localeShortcuts = new HashMap<>();
-                    shortcutsPerLocale.put(dictLocale, localeShortcuts);
-                }
-                // Map to the raw input, which might be capitalized.
-                // This lets the user create a shortcut from "gm" to "General Motors".
-                localeShortcuts.put(shortcut, rawDictWord);
             }
         }
-
-        List<DictionaryStats> stats = new ArrayList<>();
-        stats.add(new DictionaryStats(ANY_LOCALE, Dictionary.TYPE_USER, dictWords.size()));
-        int numShortcuts = 0;
-        for (HashMap<String, String> shortcuts : shortcutsPerLocale.values()) {
-            numShortcuts += shortcuts.size();
+        if (null != cursor) {
+            cursor.close();
         }
-        stats.add(new DictionaryStats(ANY_LOCALE, Dictionary.TYPE_USER_SHORTCUT, numShortcuts));
-        mDictionaryStats = stats;
 
-        // Atomically replace the copy of mDictWords and mShortcuts.
-        mDictWords = dictWords;
-        mShortcutsPerLocale = shortcutsPerLocale;
+        // Atomically replace the copy of mIndex.
+        publishIndex(PersonalDictionaryIndex.build(entries));
 
         // Allow other calls to loadPersonalDictionary to execute now.
         mIsLoading.set(false);
 
-        Log.i(mTag, "loadPersonalDictionary() : Loaded " + mDictWords.size()
-                + " words and " + numShortcuts + " shortcuts");
+        Log.i(mTag, "loadPersonalDictionary() : Loaded " + mIndex.getWordCount()
+                + " words and " + mIndex.getShortcutCount() + " shortcuts");
+    }
 
+    private void publishIndex(@Nonnull final PersonalDictionaryIndex index) {
+        List<DictionaryStats> stats = new ArrayList<>();
+        stats.add(new DictionaryStats(ANY_LOCALE, Dictionary.TYPE_USER, index.getWordCount()));
+        stats.add(new DictionaryStats(ANY_LOCALE, Dictionary.TYPE_USER_SHORTCUT,
+                index.getShortcutCount()));
+        mDictionaryStats = stats;
+        mIndex = index;
         notifyListeners();
     }
 }
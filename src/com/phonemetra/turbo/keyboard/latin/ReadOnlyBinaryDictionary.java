@@ -115,6 +115,18 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
         return NOT_A_PROBABILITY;
     }
 
+    @Override
+    public int[] getDecoderCounters() {
+        if (mLock.readLock().tryLock()) {
+            try {
+                return mBinaryDictionary.getDecoderCounters();
+            } finally {
+                mLock.readLock().unlock();
+            }
+        }
+        return null;
+    }
+
     @Override
     public void close() {
         mLock.writeLock().lock();
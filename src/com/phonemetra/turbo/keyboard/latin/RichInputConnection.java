@@ -19,6 +19,8 @@ package com.phonemetra.turbo.keyboard.latin;
 import android.inputmethodservice.InputMethodService;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
@@ -27,6 +29,7 @@ import android.util.Log;
 import android.view.KeyEvent;
 import android.view.inputmethod.CompletionInfo;
 import android.view.inputmethod.CorrectionInfo;
+import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
 import android.view.inputmethod.InputMethodManager;
 
@@ -42,6 +45,7 @@ import com.phonemetra.turbo.keyboard.latin.utils.ScriptUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.SpannableStringUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.TextRange;
 
+import java.io.PrintWriter;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
@@ -52,6 +56,11 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	
 	private static final int NUM_CHARS_TO_GET_BEFORE_CURSOR = 40;
 	private static final int NUM_CHARS_TO_GET_AFTER_CURSOR = 40;
+	/**
+	 * How much text after the cursor we fetch at once when the InputConnection
+	 * is slow, so that we need to go back to the editor less often.
+	 */
+	private static final int NUM_CHARS_TO_GET_AFTER_CURSOR_ON_SLOW_CONNECTION = 200;
 	private static final int INVALID_CURSOR_POSITION = -1;
 
 	/**
@@ -85,6 +94,13 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	private static final long SLOW_INPUTCONNECTION_PERSIST_MS = TimeUnit.MINUTES
 			.toMillis(10);
 
+	/**
+	 * The longest we hold back a composing text update or a deletion while the
+	 * editor has not acknowledged the previous edit. This is about one display
+	 * frame: the user can't see edits faster than that anyway.
+	 */
+	private static final long PENDING_EDITS_MAX_DELAY_MS = 16;
+
 	/**
 	 * This variable contains an expected value for the selection start
 	 * position. This is where the cursor or selection start may end up after
@@ -114,6 +130,32 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	 * TextView is seeing it.
 	 */
 	private final StringBuilder mComposingText = new StringBuilder();
+	/**
+	 * This contains the text immediately following the cursor, as last fetched
+	 * from the TextView. It is fetched lazily the first time it is needed, is
+	 * trimmed when we move the cursor forward inside it, and is dropped when
+	 * the cursor moves outside of it, when the editor moves the cursor, or when
+	 * an edit may have changed it. Null when nothing is cached.
+	 */
+	@Nullable
+	private CharSequence mCachedTextAfterCursor;
+	/**
+	 * The number of characters that were requested when
+	 * {@link #mCachedTextAfterCursor} was fetched, minus the characters trimmed
+	 * since. If the cached text is shorter than this, it extends to the end of
+	 * the text field.
+	 */
+	private int mCachedTextAfterCursorRequestedLength;
+	/**
+	 * The flags {@link #mCachedTextAfterCursor} was fetched with.
+	 */
+	private int mCachedTextAfterCursorFlags;
+	/**
+	 * Whether the composing region set by {@link #setComposingRegion} extends
+	 * past the cursor, in which case replacing the composing text also changes
+	 * the text after the cursor.
+	 */
+	private boolean mComposingRegionExtendsPastCursor;
 
 	/**
 	 * This variable is a temporary object used in
@@ -130,6 +172,42 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	 */
 	private long mLastSlowInputConnectionTime = -SLOW_INPUTCONNECTION_PERSIST_MS;
 
+	/**
+	 * The latency stats of the application we are currently typing into. Only
+	 * the calls that wait for the editor to answer are timed: the edits are
+	 * one-way calls that return as soon as they are sent.
+	 */
+	@Nonnull
+	private InputConnectionLatencyStats mLatencyStats = InputConnectionLatencyStats
+			.getInstance(null /* packageName */, OPERATION_NAMES.length);
+
+	/**
+	 * Edits that we hold back because the editor has not yet acknowledged the
+	 * previous one. At most one kind is pending at any time: either a composing
+	 * text, which replaces any earlier one, or a number of characters to delete
+	 * before the cursor, which adds up. Our own caches and the expected
+	 * selection are always updated right away; only the calls to the editor
+	 * are deferred.
+	 */
+	@Nullable
+	private CharSequence mPendingComposingText;
+	private int mPendingComposingTextNewCursorPosition;
+	private int mPendingDeleteBeforeLength;
+	/**
+	 * Whether we sent an edit the editor has not acknowledged through
+	 * onUpdateSelection yet, and when.
+	 */
+	private boolean mIsEditInFlight;
+	private long mLastEditSentTime;
+	private final Handler mPendingEditsHandler = new Handler(
+			Looper.getMainLooper());
+	private final Runnable mFlushPendingEditsRunnable = new Runnable() {
+		@Override
+		public void run() {
+			flushPendingEdits();
+		}
+	};
+
 	public RichInputConnection(final InputMethodService parent) {
 		mParent = parent;
 		mIC = null;
@@ -150,7 +228,79 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	}
 
 	public void onStartInput() {
-		mLastSlowInputConnectionTime = -SLOW_INPUTCONNECTION_PERSIST_MS;
+		// mIC is still the connection to the previous editor here, and input
+		// may restart without onFinishInput, so send it the edits we held back
+		// for it: our caches already account for them. They are only dropped
+		// if that connection is already gone.
+		flushPendingEdits();
+		mIsEditInFlight = false;
+		final EditorInfo editorInfo = mParent.getCurrentInputEditorInfo();
+		mLatencyStats = InputConnectionLatencyStats.getInstance(
+				null == editorInfo ? null : editorInfo.packageName,
+				OPERATION_NAMES.length);
+		// If we already know this application is slow, there is no point in
+		// finding out again the hard way: start in the slow state right away.
+		mLastSlowInputConnectionTime = mLatencyStats.isSlowEditor() ? SystemClock
+				.uptimeMillis() : -SLOW_INPUTCONNECTION_PERSIST_MS;
+		mCachedTextAfterCursor = null;
+		mComposingRegionExtendsPastCursor = false;
+	}
+
+	/**
+	 * Called when the editor reports a selection change, which acknowledges the
+	 * edits we sent so far. Anything we held back can be sent now.
+	 */
+	public void onUpdateSelection() {
+		mIsEditInFlight = false;
+		flushPendingEdits();
+	}
+
+	private boolean isEditInFlight() {
+		return mIsEditInFlight
+				&& SystemClock.uptimeMillis() - mLastEditSentTime < PENDING_EDITS_MAX_DELAY_MS;
+	}
+
+	private void onEditSent() {
+		mIsEditInFlight = true;
+		mLastEditSentTime = SystemClock.uptimeMillis();
+	}
+
+	private void schedulePendingEditsFlush() {
+		mPendingEditsHandler.removeCallbacks(mFlushPendingEditsRunnable);
+		mPendingEditsHandler.postDelayed(mFlushPendingEditsRunnable,
+				PENDING_EDITS_MAX_DELAY_MS);
+	}
+
+	/**
+	 * Sends the edits we held back to the editor. This must be called before
+	 * any other call to the editor, so that it sees the edits in order.
+	 */
+	public void flushPendingEdits() {
+		mPendingEditsHandler.removeCallbacks(mFlushPendingEditsRunnable);
+		final CharSequence composingText = mPendingComposingText;
+		final int deleteBeforeLength = mPendingDeleteBeforeLength;
+		mPendingComposingText = null;
+		mPendingDeleteBeforeLength = 0;
+		if (!isConnected()) {
+			return;
+		}
+		if (null != composingText) {
+			sendComposingText(composingText,
+					mPendingComposingTextNewCursorPosition);
+		} else if (0 != deleteBeforeLength) {
+			sendDeleteTextBeforeCursor(deleteBeforeLength);
+		}
+	}
+
+	private void sendComposingText(final CharSequence text,
+			final int newCursorPosition) {
+		mIC.setComposingText(text, newCursorPosition);
+		onEditSent();
+	}
+
+	private void sendDeleteTextBeforeCursor(final int beforeLength) {
+		mIC.deleteSurroundingText(beforeLength, 0);
+		onEditSent();
 	}
 
 	public void beginBatchEdit() {
@@ -196,6 +346,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	public boolean resetCachesUponCursorMoveAndReturnSuccess(
 			final int newSelStart, final int newSelEnd,
 			final boolean shouldFinishComposition) {
+		// We did not move the cursor, so the text after it may have changed
+		// too (paste, undo, replacement by the app...) and the cursor delta
+		// says nothing about it.
+		mCachedTextAfterCursor = null;
 		mExpectedSelStart = newSelStart;
 		mExpectedSelEnd = newSelEnd;
 		mComposingText.setLength(0);
@@ -216,13 +370,14 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	 */
 	private boolean reloadTextCache() {
 		mCommittedTextBeforeComposingText.setLength(0);
+		mComposingRegionExtendsPastCursor = false;
 		mIC = mParent.getCurrentInputConnection();
-		
+
 		final CharSequence textBeforeCursor = getTextBeforeCursorAndDetectLaggyConnection(
 				OPERATION_RELOAD_TEXT_CACHE,
 				SLOW_INPUT_CONNECTION_ON_FULL_RELOAD_MS,
 				Constants.EDITOR_CONTENTS_CACHE_SIZE, 0 /* flags */);
-		
+
 		if (textBeforeCursor!=null && textBeforeCursor.length()>0) {
 			mCommittedTextBeforeComposingText.append(textBeforeCursor);
 			return true;
@@ -237,11 +392,25 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 
 		mCommittedTextBeforeComposingText.append(mComposingText);
 		mComposingText.setLength(0);
+		mComposingRegionExtendsPastCursor = false;
+		flushPendingEdits();
 		if (isConnected()) {
 			mIC.finishComposingText();
 		}
 	}
 
+	/**
+	 * Drops the text after the cursor if it becomes stale when the composing
+	 * text is replaced, which is when the composing region extends past the
+	 * cursor.
+	 */
+	private void onComposingTextReplaced() {
+		if (mComposingRegionExtendsPastCursor) {
+			mCachedTextAfterCursor = null;
+			mComposingRegionExtendsPastCursor = false;
+		}
+	}
+
 	/**
 	 * Calls {@link InputConnection#commitText(CharSequence, int)}.
 	 *
@@ -251,6 +420,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	 *            The new cursor position around the text.
 	 */
 	public void commitText(final CharSequence text, final int newCursorPosition) {
+		onComposingTextReplaced();
 		mCommittedTextBeforeComposingText.append(text);
 		// TODO: the following is exceedingly error-prone. Right now when the
 		// cursor is in the
@@ -261,6 +431,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		mExpectedSelStart += text.length() - mComposingText.length();
 		mExpectedSelEnd = mExpectedSelStart;
 		mComposingText.setLength(0);
+		flushPendingEdits();
 		if (isConnected()) {
 			mTempObjectForCommitText.clear();
 			mTempObjectForCommitText.append(text);
@@ -296,6 +467,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 
 	@Nullable
 	public CharSequence getSelectedText(final int flags) {
+		flushPendingEdits();
 		return isConnected() ? mIC.getSelectedText(flags) : null;
 	}
 
@@ -421,16 +593,76 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		if (!isConnected()) {
 			return null;
 		}
-		final long startTime = SystemClock.uptimeMillis();
+		flushPendingEdits();
+		final long startTime = System.nanoTime();
 		final CharSequence result = mIC.getTextBeforeCursor(n, flags);
 		detectLaggyConnection(operation, timeout, startTime);
 		return result;
 	}
 
+	/**
+	 * Gets the text after the cursor. This is served from a cache when it
+	 * already holds the requested range, fetched with the same flags or with
+	 * styles, in which case they are stripped if not requested.
+	 */
 	public CharSequence getTextAfterCursor(final int n, final int flags) {
-		return getTextAfterCursorAndDetectLaggyConnection(
-				OPERATION_GET_TEXT_AFTER_CURSOR,
-				SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS, n, flags);
+		return getCachedTextAfterCursor(OPERATION_GET_TEXT_AFTER_CURSOR, n,
+				flags);
+	}
+
+	@Nullable
+	private CharSequence getCachedTextAfterCursor(final int operation,
+			final int n, final int flags) {
+		final CharSequence cachedText = mCachedTextAfterCursor;
+		// Styled text can also serve requests for plain text.
+		final boolean cachedFlagsMatch = mCachedTextAfterCursorFlags == flags
+				|| (0 == flags && 0 != (mCachedTextAfterCursorFlags
+						& InputConnection.GET_TEXT_WITH_STYLES));
+		// If the cached text is shorter than what was requested when we fetched
+		// it, then it extends to the end of the text field and we know it all.
+		if (null != cachedText
+				&& cachedFlagsMatch
+				&& (cachedText.length() >= n || cachedText.length() < mCachedTextAfterCursorRequestedLength)) {
+			final CharSequence result = cachedText.length() > n ? cachedText
+					.subSequence(0, n) : cachedText;
+			return flags == mCachedTextAfterCursorFlags ? result : result
+					.toString();
+		}
+		final int lengthToFetch = Math.max(n,
+				hasSlowInputConnection() ? NUM_CHARS_TO_GET_AFTER_CURSOR_ON_SLOW_CONNECTION
+						: NUM_CHARS_TO_GET_AFTER_CURSOR);
+		final CharSequence textAfterCursor = getTextAfterCursorAndDetectLaggyConnection(
+				operation, SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
+				lengthToFetch, flags);
+		if (null == textAfterCursor) {
+			return null;
+		}
+		mCachedTextAfterCursor = textAfterCursor;
+		mCachedTextAfterCursorRequestedLength = lengthToFetch;
+		mCachedTextAfterCursorFlags = flags;
+		return textAfterCursor.length() > n ? textAfterCursor.subSequence(0, n)
+				: textAfterCursor;
+	}
+
+	/**
+	 * Keeps the cached text after the cursor across a cursor move we made, as
+	 * far as it still covers the text after the new cursor position. Must be
+	 * called before {@link #mExpectedSelEnd} is updated.
+	 */
+	private void moveCachedTextAfterCursor(final int newSelEnd) {
+		final CharSequence cachedText = mCachedTextAfterCursor;
+		if (null == cachedText) {
+			return;
+		}
+		final int offset = newSelEnd - mExpectedSelEnd;
+		if (INVALID_CURSOR_POSITION == mExpectedSelEnd || offset < 0
+				|| offset > cachedText.length()) {
+			mCachedTextAfterCursor = null;
+			return;
+		}
+		mCachedTextAfterCursor = cachedText.subSequence(offset,
+				cachedText.length());
+		mCachedTextAfterCursorRequestedLength -= offset;
 	}
 
 	private CharSequence getTextAfterCursorAndDetectLaggyConnection(
@@ -440,16 +672,28 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		if (!isConnected()) {
 			return null;
 		}
-		final long startTime = SystemClock.uptimeMillis();
+		flushPendingEdits();
+		final long startTime = System.nanoTime();
 		final CharSequence result = mIC.getTextAfterCursor(n, flags);
 		detectLaggyConnection(operation, timeout, startTime);
 		return result;
 	}
 
+	/**
+	 * Records the duration of a synchronous call to the editor and enters the
+	 * {@link #hasSlowInputConnection} state if it took too long.
+	 *
+	 * @param startTime
+	 *            the time the call started, as per {@link System#nanoTime}.
+	 */
 	private void detectLaggyConnection(final int operation, final long timeout,
 			final long startTime) {
-		final long duration = SystemClock.uptimeMillis() - startTime;
-		if (duration >= timeout) {
+		final long durationNanos = System.nanoTime() - startTime;
+		mLatencyStats.record(operation, durationNanos);
+		final long duration = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+		final boolean isSlow = duration >= timeout;
+		mLatencyStats.recordSynchronousCall(isSlow);
+		if (isSlow) {
 			final String operationName = OPERATION_NAMES[operation];
 			Log.w(TAG, "Slow InputConnection: " + operationName + " took "
 					+ duration + " ms.");
@@ -457,6 +701,14 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		}
 	}
 
+	/**
+	 * Dumps the InputConnection latency stats of all the applications we know
+	 * about.
+	 */
+	public static void dumpLatencyStats(@Nonnull final PrintWriter pw) {
+		InputConnectionLatencyStats.dumpAll(pw, OPERATION_NAMES);
+	}
+
 	public void deleteTextBeforeCursor(final int beforeLength) {
 
 		final int remainingChars = mComposingText.length() - beforeLength;
@@ -481,12 +733,24 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 			mExpectedSelStart = 0;
 		}
 		if (isConnected()) {
-			mIC.deleteSurroundingText(beforeLength, 0);
+			if (!isEditInFlight()) {
+				flushPendingEdits();
+				sendDeleteTextBeforeCursor(beforeLength);
+			} else {
+				// The editor is still busy with an earlier edit: hold this one
+				// back, adding it up with any other deletion we held back.
+				if (null != mPendingComposingText) {
+					flushPendingEdits();
+				}
+				mPendingDeleteBeforeLength += beforeLength;
+				schedulePendingEditsFlush();
+			}
 		}
 
 	}
 
 	public void performEditorAction(final int actionId) {
+		flushPendingEdits();
 		mIC = mParent.getCurrentInputConnection();
 		if (isConnected()) {
 			mIC.performEditorAction(actionId);
@@ -529,6 +793,9 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 				}
 				break;
 			default:
+				// Keys other than the above (e.g. forward delete) may change the
+				// text after the cursor.
+				mCachedTextAfterCursor = null;
 				final String text = StringUtils
 						.newSingleCodePointString(keyEvent.getUnicodeChar());
 				mCommittedTextBeforeComposingText.append(text);
@@ -537,6 +804,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 				break;
 			}
 		}
+		flushPendingEdits();
 		if (isConnected()) {
 			mIC.sendKeyEvent(keyEvent);
 		}
@@ -563,6 +831,8 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 			mCommittedTextBeforeComposingText.append(textBeforeCursor
 					.subSequence(0, indexOfStartOfComposingText));
 		}
+		mComposingRegionExtendsPastCursor = end > mExpectedSelEnd;
+		flushPendingEdits();
 		if (isConnected()) {
 			mIC.setComposingRegion(start, end);
 		}
@@ -571,6 +841,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	public void setComposingText(final CharSequence text,
 			final int newCursorPosition) {
 
+		onComposingTextReplaced();
 		mExpectedSelStart += text.length() - mComposingText.length();
 		mExpectedSelEnd = mExpectedSelStart;
 		mComposingText.setLength(0);
@@ -579,7 +850,20 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		// never called with
 		// newCursorPosition != 1.
 		if (isConnected()) {
-			mIC.setComposingText(text, newCursorPosition);
+			if (!isEditInFlight()) {
+				flushPendingEdits();
+				sendComposingText(text, newCursorPosition);
+			} else {
+				// The editor is still busy with an earlier edit. Each composing
+				// text replaces the previous one, so we only need to send the
+				// last one we got by the time the editor catches up.
+				if (0 != mPendingDeleteBeforeLength) {
+					flushPendingEdits();
+				}
+				mPendingComposingText = text;
+				mPendingComposingTextNewCursorPosition = newCursorPosition;
+				schedulePendingEditsFlush();
+			}
 		}
 
 	}
@@ -603,8 +887,10 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		if (start < 0 || end < 0) {
 			return false;
 		}
+		moveCachedTextAfterCursor(end);
 		mExpectedSelStart = start;
 		mExpectedSelEnd = end;
+		flushPendingEdits();
 		if (isConnected()) {
 			final boolean isIcValid = mIC.setSelection(start, end);
 			if (!isIcValid) {
@@ -616,6 +902,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 
 	public void commitCorrection(final CorrectionInfo correctionInfo) {
 
+		flushPendingEdits();
 		if (isConnected()) {
 			mIC.commitCorrection(correctionInfo);
 		}
@@ -629,10 +916,12 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		// nothing than to crash
 		if (null == text)
 			text = "";
+		onComposingTextReplaced();
 		mCommittedTextBeforeComposingText.append(text);
 		mExpectedSelStart += text.length() - mComposingText.length();
 		mExpectedSelEnd = mExpectedSelStart;
 		mComposingText.setLength(0);
+		flushPendingEdits();
 		if (isConnected()) {
 			mIC.commitCompletion(completionInfo);
 		}
@@ -707,9 +996,8 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 				SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
 				NUM_CHARS_TO_GET_BEFORE_CURSOR,
 				InputConnection.GET_TEXT_WITH_STYLES);
-		final CharSequence after = getTextAfterCursorAndDetectLaggyConnection(
+		final CharSequence after = getCachedTextAfterCursor(
 				OPERATION_GET_WORD_RANGE_AT_CURSOR,
-				SLOW_INPUT_CONNECTION_ON_PARTIAL_RELOAD_MS,
 				NUM_CHARS_TO_GET_AFTER_CURSOR,
 				InputConnection.GET_TEXT_WITH_STYLES);
 		if (before == null || after == null) {
@@ -967,8 +1255,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		mIC = mParent.getCurrentInputConnection();
 		final CharSequence textBeforeCursor = getTextBeforeCursor(
 				Constants.EDITOR_CONTENTS_CACHE_SIZE, 0);
-		final CharSequence selectedText = isConnected() ? mIC
-				.getSelectedText(0 /* flags */) : null;
+		final CharSequence selectedText = getSelectedText(0 /* flags */);
 		if (null == textBeforeCursor
 				|| (!TextUtils.isEmpty(selectedText) && mExpectedSelEnd == mExpectedSelStart)) {
 			// If textBeforeCursor is null, we have no idea what kind of text
@@ -1022,6 +1309,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 		if (!isConnected()) {
 			return false;
 		}
+		flushPendingEdits();
 		return mIC.performPrivateCommand(action, data);
 	}
 
@@ -1057,6 +1345,7 @@ public final class RichInputConnection implements PrivateCommandPerformer {
 	 */
 	public void maybeMoveTheCursorAroundAndRestoreToWorkaroundABug() {
 		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+			flushPendingEdits();
 			if (mExpectedSelStart > 0) {
 				mIC.setSelection(mExpectedSelStart - 1, mExpectedSelStart - 1);
 			} else {
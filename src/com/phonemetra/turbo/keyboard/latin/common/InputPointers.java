@@ -16,6 +16,8 @@
 
 package com.phonemetra.turbo.keyboard.latin.common;
 
+import java.nio.IntBuffer;
+
 import javax.annotation.Nonnull;
 
 
@@ -158,6 +160,29 @@ public final class InputPointers {
         return mTimes.getPrimitiveArray();
     }
 
+    /**
+     * Writes the first pointers to a buffer. The x-coordinates, the y-coordinates, the times and
+     * the pointer ids are written in this order, each one at the start of its own section of
+     * {@code sectionSize} ints.
+     * @param buffer the buffer to write to.
+     * @param offset the index of the first section in {@code buffer}.
+     * @param sectionSize the size of a section, which must be at least {@code size}.
+     * @param size the number of pointers to write.
+     */
+    public void writeTo(@Nonnull final IntBuffer buffer, final int offset, final int sectionSize,
+            final int size) {
+        writeTo(buffer, offset, mXCoordinates.getPrimitiveArray(), size);
+        writeTo(buffer, offset + sectionSize, mYCoordinates.getPrimitiveArray(), size);
+        writeTo(buffer, offset + sectionSize * 2, mTimes.getPrimitiveArray(), size);
+        writeTo(buffer, offset + sectionSize * 3, mPointerIds.getPrimitiveArray(), size);
+    }
+
+    private static void writeTo(@Nonnull final IntBuffer buffer, final int offset,
+            @Nonnull final int[] values, final int size) {
+        buffer.position(offset);
+        buffer.put(values, 0, Math.min(size, values.length));
+    }
+
     @Override
     public String toString() {
         return "size=" + getPointerSize() + " id=" + mPointerIds + " time=" + mTimes
@@ -36,6 +36,7 @@ import com.phonemetra.turbo.keyboard.event.Event;
 import com.phonemetra.turbo.keyboard.event.InputTransaction;
 import com.phonemetra.turbo.keyboard.latin.Dictionary;
 import com.phonemetra.turbo.keyboard.latin.DictionaryFacilitator;
+import com.phonemetra.turbo.keyboard.latin.KeystrokeLatencyTracer;
 import com.phonemetra.turbo.keyboard.latin.LastComposedWord;
 import com.phonemetra.turbo.keyboard.latin.LatinIME;
 import com.phonemetra.turbo.keyboard.latin.NgramContext;
@@ -192,6 +193,8 @@ public final class InputLogic {
      * Clean up the input logic after input is finished.
      */
     public void finishInput() {
+        // Send any edit the connection is still holding back before we lose the editor.
+        mConnection.flushPendingEdits();
         if (mWordComposer.isComposingWord()) {
             mConnection.finishComposingText();
             
@@ -419,6 +422,7 @@ public final class InputLogic {
     public InputTransaction onCodeInput(final SettingsValues settingsValues,
             @Nonnull final Event event, final int keyboardShiftMode,
             final int currentKeyboardScriptId, final LatinIME.UIHandler handler) {
+        final long startNanos = KeystrokeLatencyTracer.start();
         mWordBeingCorrectedByCursor = null;
         final Event processedEvent = mWordComposer.processEvent(event);
         final InputTransaction inputTransaction = new InputTransaction(settingsValues,
@@ -469,6 +473,7 @@ public final class InputLogic {
             mEnteredText = null;
         }
         mConnection.endBatchEdit();
+        KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_CODE_INPUT, startNanos);
         return inputTransaction;
     }
 
@@ -549,6 +554,16 @@ public final class InputLogic {
         ++mAutoCommitSequenceNumber;
     }
 
+    /**
+     * Runs a task on the thread that computes suggestions, once the suggestion requests that were
+     * made before this call are handled.
+     *
+     * @param task the task to run.
+     */
+    public void runAfterPendingSuggestionRequests(final Runnable task) {
+        mInputLogicHandler.runAfterPendingMessages(task);
+    }
+
     public void onCancelBatchInput(final LatinIME.UIHandler handler) {
         mInputLogicHandler.onCancelBatchInput();
         handler.showGesturePreviewAndSuggestionStrip(
@@ -1439,7 +1454,16 @@ public final class InputLogic {
             return;
         }
 
-        final AsyncResultHolder<SuggestedWords> holder = new AsyncResultHolder<>("Suggest");
+        final AsyncResultHolder<SuggestedWords> holder =
+                new AsyncResultHolder<SuggestedWords>("Suggest") {
+                    @Override
+                    public void set(final SuggestedWords result) {
+                        // Still on the InputLogicHandler thread: lay out the strip here so that
+                        // the UI thread, which is waiting for the result, only has to bind it.
+                        mSuggestionStripViewAccessor.prepareSuggestionStrip(result);
+                        super.set(result);
+                    }
+                };
         mInputLogicHandler.getSuggestedWords(inputStyle, SuggestedWords.NOT_A_SEQUENCE_NUMBER,
                 new OnGetSuggestedWordsCallback() {
                     @Override
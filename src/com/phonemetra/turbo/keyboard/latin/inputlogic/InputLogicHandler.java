@@ -21,6 +21,7 @@ import android.os.HandlerThread;
 import android.os.Message;
 
 import com.phonemetra.turbo.keyboard.compat.LooperCompatUtils;
+import com.phonemetra.turbo.keyboard.latin.KeystrokeLatencyTracer;
 import com.phonemetra.turbo.keyboard.latin.LatinIME;
 import com.phonemetra.turbo.keyboard.latin.SuggestedWords;
 import com.phonemetra.turbo.keyboard.latin.Suggest.OnGetSuggestedWordsCallback;
@@ -58,6 +59,10 @@ class InputLogicHandler implements Handler.Callback {
         @Override
         public void getSuggestedWords(final int sessionId, final int sequenceNumber,
                 final OnGetSuggestedWordsCallback callback) {}
+        @Override
+        public void runAfterPendingMessages(final Runnable task) {
+            task.run();
+        }
     };
 
     InputLogicHandler() {
@@ -94,8 +99,11 @@ class InputLogicHandler implements Handler.Callback {
     public boolean handleMessage(final Message msg) {
         switch (msg.what) {
             case MSG_GET_SUGGESTED_WORDS:
+                final long startNanos = KeystrokeLatencyTracer.start();
                 mLatinIME.getSuggestedWords(msg.arg1 /* inputStyle */,
                         msg.arg2 /* sequenceNumber */, (OnGetSuggestedWordsCallback) msg.obj);
+                KeystrokeLatencyTracer.end(KeystrokeLatencyTracer.STAGE_GET_SUGGESTED_WORDS,
+                        startNanos);
                 break;
         }
         return true;
@@ -157,6 +165,7 @@ class InputLogicHandler implements Handler.Callback {
         } else {
             suggestedWordsToShowSuggestions = suggestedWordsForBatchInput;
         }
+        mLatinIME.prepareSuggestionStrip(suggestedWordsToShowSuggestions);
         mLatinIME.mHandler.showGesturePreviewAndSuggestionStrip(suggestedWordsToShowSuggestions,
                 isTailBatchInput /* dismissGestureFloatingPreviewText */);
         if (isTailBatchInput) {
@@ -217,4 +226,10 @@ class InputLogicHandler implements Handler.Callback {
         mNonUIThreadHandler.obtainMessage(
                 MSG_GET_SUGGESTED_WORDS, inputStyle, sequenceNumber, callback).sendToTarget();
     }
+
+    // Called on any thread. Messages are handled in order, so the task runs once the requests
+    // that were sent before it are done.
+    public void runAfterPendingMessages(final Runnable task) {
+        mNonUIThreadHandler.post(task);
+    }
 }
@@ -24,6 +24,7 @@ import android.os.Bundle;
 import android.preference.ListPreference;
 import com.phonemetra.turbo.keyboard.latin.AudioAndHapticFeedbackManager;
 import com.phonemetra.turbo.keyboard.R;
+import com.phonemetra.turbo.keyboard.latin.utils.ApplicationUtils;
 
 /**
  * "Advanced" settings sub screen.
@@ -52,7 +53,9 @@ public final class AdvancedSettingsFragment extends SubScreenFragment {
 
         final SharedPreferences prefs = getPreferenceManager().getSharedPreferences();
 
-         
+        if (!ApplicationUtils.isDebuggable(context)) {
+            removePreference(Settings.SCREEN_DEBUG);
+        }
 
         if (!AudioAndHapticFeedbackManager.getInstance().hasVibrator()) {
             removePreference(Settings.PREF_VIBRATION_DURATION_SETTINGS);
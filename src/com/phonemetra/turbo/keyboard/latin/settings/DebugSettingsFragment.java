@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin.settings;
+
+import android.app.AlertDialog;
+import android.os.Bundle;
+import android.preference.Preference;
+import android.preference.Preference.OnPreferenceClickListener;
+
+import com.phonemetra.turbo.keyboard.R;
+import com.phonemetra.turbo.keyboard.latin.KeystrokeLatencyTracer;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * "Debug settings" settings sub screen. It is only shown in debuggable builds.
+ *
+ * This settings sub screen handles the following debug preferences.
+ * - Keystroke latency tracing
+ * - Keystroke latency report
+ */
+public final class DebugSettingsFragment extends SubScreenFragment {
+    private static final String PREF_KEYSTROKE_LATENCY_REPORT = "pref_keystroke_latency_report";
+
+    @Override
+    public void onCreate(final Bundle icicle) {
+        super.onCreate(icicle);
+        addPreferencesFromResource(R.xml.prefs_screen_debug);
+        setupKeystrokeLatencyReport();
+    }
+
+    private void setupKeystrokeLatencyReport() {
+        final Preference pref = findPreference(PREF_KEYSTROKE_LATENCY_REPORT);
+        if (pref == null) {
+            return;
+        }
+        pref.setOnPreferenceClickListener(new OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(final Preference preference) {
+                final StringWriter report = new StringWriter();
+                final PrintWriter pw = new PrintWriter(report);
+                KeystrokeLatencyTracer.dump(pw);
+                pw.flush();
+                new AlertDialog.Builder(getActivity())
+                        .setTitle(R.string.prefs_keystroke_latency_report)
+                        .setMessage(report.toString())
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show();
+                return true;
+            }
+        });
+    }
+}
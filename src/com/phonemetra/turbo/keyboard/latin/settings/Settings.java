@@ -25,6 +25,7 @@ import android.preference.PreferenceManager;
 import com.phonemetra.turbo.keyboard.compat.BuildCompatUtils;
 import com.phonemetra.turbo.keyboard.latin.AudioAndHapticFeedbackManager;
 import com.phonemetra.turbo.keyboard.latin.InputAttributes;
+import com.phonemetra.turbo.keyboard.latin.KeystrokeLatencyTracer;
 import com.phonemetra.turbo.keyboard.R;
 import com.phonemetra.turbo.keyboard.latin.common.StringUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.AdditionalSubtypeUtils;
@@ -43,6 +44,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     // Settings screens
     public static final String SCREEN_ACCOUNTS = "screen_accounts";
     public static final String SCREEN_THEME = "screen_theme";
+    public static final String SCREEN_DEBUG = "screen_debug";
     
     // In the same order as xml/prefs.xml
     public static final String PREF_AUTO_CAP = "auto_cap";
@@ -86,6 +88,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
     public static final String PREF_GESTURE_PREVIEW_TRAIL = "pref_gesture_preview_trail";
     public static final String PREF_GESTURE_FLOATING_PREVIEW_TEXT =
             "pref_gesture_floating_preview_text";
+    public static final String PREF_KEYSTROKE_LATENCY_TRACING = "pref_keystroke_latency_tracing";
     
 
     public static final String PREF_KEY_IS_INTERNAL = "pref_key_is_internal";
@@ -169,6 +172,7 @@ public final class Settings implements SharedPreferences.OnSharedPreferenceChang
                 }
             };
             mSettingsValues = job.runInLocale(mRes, locale);
+            KeystrokeLatencyTracer.setEnabled(mSettingsValues.mKeystrokeLatencyTracingEnabled);
         } finally {
             mSettingsValuesLock.unlock();
         }
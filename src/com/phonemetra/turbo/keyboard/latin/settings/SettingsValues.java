@@ -18,7 +18,6 @@ package com.phonemetra.turbo.keyboard.latin.settings;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.content.pm.PackageInfo;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.os.Build;
@@ -29,7 +28,7 @@ import com.phonemetra.turbo.keyboard.compat.AppWorkaroundsUtils;
 import com.phonemetra.turbo.keyboard.latin.InputAttributes;
 import com.phonemetra.turbo.keyboard.R;
 import com.phonemetra.turbo.keyboard.latin.RichInputMethodManager;
-import com.phonemetra.turbo.keyboard.latin.utils.AsyncResultHolder;
+import com.phonemetra.turbo.keyboard.latin.utils.ApplicationUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ResourceUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.TargetPackageInfoGetterTask;
 
@@ -45,7 +44,6 @@ public class SettingsValues {
     // Float.NEGATIVE_INFINITE and Float.MAX_VALUE. Currently used for auto-correction settings.
     private static final String FLOAT_MAX_VALUE_MARKER_STRING = "floatMaxValue";
     private static final String FLOAT_NEGATIVE_INFINITY_MARKER_STRING = "floatNegativeInfinity";
-    private static final int TIMEOUT_TO_GET_TARGET_PACKAGE = 5; // seconds
     public static final float DEFAULT_SIZE_SCALE = 1.0f; // 100%
 
     // From resources:
@@ -76,6 +74,7 @@ public class SettingsValues {
     public final boolean mSlidingKeyInputPreviewEnabled;
     public final int mKeyLongpressTimeout;
     public final boolean mEnableEmojiAltPhysicalKey;
+    public final boolean mKeystrokeLatencyTracingEnabled;
     
    
     public final boolean mCloudSyncEnabled;
@@ -97,7 +96,8 @@ public class SettingsValues {
     public final float mPlausibilityThreshold;
     public final boolean mAutoCorrectionEnabledPerUserSettings;
     private final boolean mSuggestionsEnabledPerUserSettings;
-    private final AsyncResultHolder<AppWorkaroundsUtils> mAppWorkarounds;
+    // The default behavior is used until the workarounds for the target application are known.
+    private volatile AppWorkaroundsUtils mAppWorkarounds;
 
     // Debug settings
     public final boolean mHasCustomKeyPreviewAnimationParams;
@@ -163,6 +163,8 @@ public class SettingsValues {
         mKeyPreviewPopupDismissDelay = Settings.readKeyPreviewPopupDismissDelay(prefs, res);
         mEnableEmojiAltPhysicalKey = prefs.getBoolean(
                 Settings.PREF_ENABLE_EMOJI_ALT_PHYSICAL_KEY, true);
+        mKeystrokeLatencyTracingEnabled = ApplicationUtils.isDebuggable(context)
+                && prefs.getBoolean(Settings.PREF_KEYSTROKE_LATENCY_TRACING, false);
         
         mAutoCorrectionThreshold = readAutoCorrectionThreshold(res,
                 autoCorrectionThresholdRawValue);
@@ -204,14 +206,23 @@ public class SettingsValues {
                 prefs,  "pref_key_preview_dismiss_end_y_scale",
                 defaultKeyPreviewDismissEndScale);
         mDisplayOrientation = res.getConfiguration().orientation;
-        mAppWorkarounds = new AsyncResultHolder<>("AppWorkarounds");
-        final PackageInfo packageInfo = TargetPackageInfoGetterTask.getCachedPackageInfo(
-                mInputAttributes.mTargetApplicationPackageName);
-        if (null != packageInfo) {
-            mAppWorkarounds.set(new AppWorkaroundsUtils(packageInfo));
+        final String targetPackageName = mInputAttributes.mTargetApplicationPackageName;
+        final AppWorkaroundsUtils appWorkarounds =
+                TargetPackageInfoGetterTask.getCachedAppWorkarounds(targetPackageName);
+        if (null != appWorkarounds) {
+            mAppWorkarounds = appWorkarounds;
         } else {
-            new TargetPackageInfoGetterTask(context, mAppWorkarounds)
-                    .execute(mInputAttributes.mTargetApplicationPackageName);
+            mAppWorkarounds = new AppWorkaroundsUtils(null /* packageInfo */);
+            if (null != targetPackageName) {
+                new TargetPackageInfoGetterTask(context,
+                        new TargetPackageInfoGetterTask.OnAppWorkaroundsResolvedListener() {
+                            @Override
+                            public void onAppWorkaroundsResolved(
+                                    final AppWorkaroundsUtils resolvedAppWorkarounds) {
+                                mAppWorkarounds = resolvedAppWorkarounds;
+                            }
+                        }).execute(targetPackageName);
+            }
         }
     }
 
@@ -279,9 +290,7 @@ public class SettingsValues {
     }
 
     public boolean isBeforeJellyBean() {
-        final AppWorkaroundsUtils appWorkaroundUtils
-                = mAppWorkarounds.get(null, TIMEOUT_TO_GET_TARGET_PACKAGE);
-        return null == appWorkaroundUtils ? false : appWorkaroundUtils.isBeforeJellyBean();
+        return mAppWorkarounds.isBeforeJellyBean();
     }
 
     
@@ -16,9 +16,17 @@
 
 package com.phonemetra.turbo.keyboard.latin.spellcheck;
 
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.database.ContentObserver;
 import android.preference.PreferenceManager;
+import android.provider.ContactsContract.Contacts;
+import android.provider.UserDictionary.Words;
 import android.service.textservice.SpellCheckerService;
 import android.text.InputType;
 import android.view.inputmethod.EditorInfo;
@@ -28,6 +36,7 @@ import android.view.textservice.SuggestionsInfo;
 import com.phonemetra.turbo.keyboard.Keyboard;
 import com.phonemetra.turbo.keyboard.KeyboardId;
 import com.phonemetra.turbo.keyboard.KeyboardLayoutSet;
+import com.phonemetra.turbo.keyboard.dictionarypack.DictionaryPackConstants;
 import com.phonemetra.turbo.keyboard.latin.DictionaryFacilitator;
 import com.phonemetra.turbo.keyboard.latin.DictionaryFacilitatorLruCache;
 import com.phonemetra.turbo.keyboard.latin.NgramContext;
@@ -35,15 +44,27 @@ import com.phonemetra.turbo.keyboard.R;
 import com.phonemetra.turbo.keyboard.latin.RichInputMethodSubtype;
 import com.phonemetra.turbo.keyboard.latin.SuggestedWords;
 import com.phonemetra.turbo.keyboard.latin.common.ComposedData;
+import com.phonemetra.turbo.keyboard.latin.permissions.PermissionsUtil;
 import com.phonemetra.turbo.keyboard.latin.settings.SettingsValuesForSuggestion;
 import com.phonemetra.turbo.keyboard.latin.utils.AdditionalSubtypeUtils;
+import com.phonemetra.turbo.keyboard.latin.utils.ExecutorUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ScriptUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.SuggestionResults;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 
 import javax.annotation.Nonnull;
 
@@ -59,18 +80,51 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
     private static final int SPELLCHECKER_DUMMY_KEYBOARD_HEIGHT = 301;
 
     private static final String DICTIONARY_NAME_PREFIX = "spellcheck_";
+    private static final String SPELL_CHECK_WORKER_THREAD_NAME = "SpellCheckWorker";
 
     private static final String[] EMPTY_STRING_ARRAY = new String[0];
 
-    private final int MAX_NUM_OF_THREADS_READ_DICTIONARY = 2;
-    private final Semaphore mSemaphore = new Semaphore(MAX_NUM_OF_THREADS_READ_DICTIONARY,
-            true /* fair */);
+    private static final int MIN_NUM_OF_THREADS_READ_DICTIONARY = 2;
+    // The number of threads that may read the dictionaries at the same time. Set in onCreate from
+    // R.integer.config_spellchecker_max_dictionary_readers and the number of cores.
+    private int mMaxNumOfThreadsReadDictionary;
+    private Semaphore mSemaphore;
     // TODO: Make each spell checker session has its own session id.
     private final ConcurrentLinkedQueue<Integer> mSessionIdPool = new ConcurrentLinkedQueue<>();
 
     private final DictionaryFacilitatorLruCache mDictionaryFacilitatorCache =
             new DictionaryFacilitatorLruCache(this /* context */, DICTIONARY_NAME_PREFIX);
     private final ConcurrentHashMap<Locale, Keyboard> mKeyboardCache = new ConcurrentHashMap<>();
+    private final SpellCheckResultCache mResultCache = new SpellCheckResultCache();
+    // The filters of valid words of the main dictionaries, built in the background the first time
+    // a word of each locale is checked.
+    private final ConcurrentHashMap<Locale, ValidWordFilter> mValidWordFilters =
+            new ConcurrentHashMap<>();
+    // The locales whose filter is being built or couldn't be built, synchronized using itself.
+    private final HashSet<Locale> mValidWordFilterRequestedLocales = new HashSet<>();
+    // Incremented when the filters are discarded, so that builds in progress are discarded too.
+    // Synchronized using {@link #mValidWordFilterRequestedLocales}.
+    private int mValidWordFilterGeneration;
+    // Threads that sessions fan out bulk checks to, besides the calling binder thread. Created
+    // the first time they are needed.
+    private ExecutorService mSpellCheckWorkers; // synchronized using {@link #mWorkersLock}.
+    private final Object mWorkersLock = new Object();
+    // Closes the dictionaries and discards what was computed from them when a new main
+    // dictionary is installed, so that they are opened again from the new files.
+    private final BroadcastReceiver mNewDictionaryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(final Context context, final Intent intent) {
+            closeDictionaries();
+        }
+    };
+    // Clears {@link #mResultCache} when words are added to or removed from the user dictionary
+    // or the contacts.
+    private final ContentObserver mDictionaryContentObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(final boolean self) {
+            mResultCache.clear();
+        }
+    };
 
     // The threshold for a suggestion to be considered "recommended".
     private float mRecommendedThreshold;
@@ -83,9 +137,6 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
 
     public AndroidSpellCheckerService() {
         super();
-        for (int i = 0; i < MAX_NUM_OF_THREADS_READ_DICTIONARY; i++) {
-            mSessionIdPool.add(i);
-        }
     }
 
     @Override
@@ -93,15 +144,105 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         super.onCreate();
         mRecommendedThreshold = Float.parseFloat(
                 getString(R.string.spellchecker_recommended_threshold_value));
+        // Each reader holds a traverse session in the native dictionaries, so there is no point
+        // in having more of them than cores.
+        mMaxNumOfThreadsReadDictionary = Math.max(MIN_NUM_OF_THREADS_READ_DICTIONARY, Math.min(
+                getResources().getInteger(R.integer.config_spellchecker_max_dictionary_readers),
+                Runtime.getRuntime().availableProcessors()));
+        mSemaphore = new Semaphore(mMaxNumOfThreadsReadDictionary, true /* fair */);
+        for (int i = 0; i < mMaxNumOfThreadsReadDictionary; i++) {
+            mSessionIdPool.add(i);
+        }
         final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         prefs.registerOnSharedPreferenceChangeListener(this);
         onSharedPreferenceChanged(prefs, PREF_USE_CONTACTS_KEY);
+        final ContentResolver contentResolver = getContentResolver();
+        contentResolver.registerContentObserver(
+                Words.CONTENT_URI, true /* notifyForDescendents */, mDictionaryContentObserver);
+        if (PermissionsUtil.checkAllPermissionsGranted(this, Manifest.permission.READ_CONTACTS)) {
+            contentResolver.registerContentObserver(Contacts.CONTENT_URI,
+                    true /* notifyForDescendents */, mDictionaryContentObserver);
+        }
+        registerReceiver(mNewDictionaryReceiver,
+                new IntentFilter(DictionaryPackConstants.NEW_DICTIONARY_INTENT_ACTION));
+    }
+
+    @Override
+    public void onDestroy() {
+        synchronized (mWorkersLock) {
+            if (null != mSpellCheckWorkers) {
+                mSpellCheckWorkers.shutdownNow();
+                mSpellCheckWorkers = null;
+            }
+        }
+        getContentResolver().unregisterContentObserver(mDictionaryContentObserver);
+        unregisterReceiver(mNewDictionaryReceiver);
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Keep the dictionaries of the locale checked last, and reload the others if needed.
+            mDictionaryFacilitatorCache.trimToMostRecentlyUsed();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        mDictionaryFacilitatorCache.trimToMostRecentlyUsed();
     }
 
     public float getRecommendedThreshold() {
         return mRecommendedThreshold;
     }
 
+    SpellCheckResultCache getResultCache() {
+        return mResultCache;
+    }
+
+    /**
+     * Returns how many threads besides the calling one can usefully check words at the same time.
+     * More would only wait for the dictionaries.
+     */
+    int getSpellCheckWorkerCount() {
+        return mMaxNumOfThreadsReadDictionary - 1;
+    }
+
+    /**
+     * Runs <code>worker</code> on each of the spell check worker threads. The worker is expected
+     * to take its work from a queue shared with the calling thread, so that it doesn't matter
+     * when, or whether, each of them actually starts.
+     *
+     * @return the futures of the started workers, or an empty list if the workers are shut down.
+     */
+    List<Future<?>> startSpellCheckWorkers(final Runnable worker) {
+        final ArrayList<Future<?>> futures = new ArrayList<>();
+        synchronized (mWorkersLock) {
+            if (null == mSpellCheckWorkers) {
+                mSpellCheckWorkers = Executors.newFixedThreadPool(getSpellCheckWorkerCount(),
+                        new ThreadFactory() {
+                            @Override
+                            public Thread newThread(final Runnable runnable) {
+                                return new Thread(runnable, SPELL_CHECK_WORKER_THREAD_NAME);
+                            }
+                        });
+            }
+            try {
+                for (int i = 0; i < getSpellCheckWorkerCount(); ++i) {
+                    futures.add(mSpellCheckWorkers.submit(worker));
+                }
+            } catch (RejectedExecutionException e) {
+                // The service is being destroyed. The calling thread will do all the work.
+            }
+        }
+        return futures;
+    }
+
     private static String getKeyboardLayoutNameForLocale(final Locale locale) {
         // See b/19963288.
         if (locale.getLanguage().equals("sr")) {
@@ -127,6 +268,7 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         if (!PREF_USE_CONTACTS_KEY.equals(key)) return;
         final boolean useContactsDictionary = prefs.getBoolean(PREF_USE_CONTACTS_KEY, true);
         mDictionaryFacilitatorCache.setUseContactsDictionary(useContactsDictionary);
+        mResultCache.clear();
     }
 
     @Override
@@ -156,6 +298,12 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
     }
 
     public boolean isValidWord(final Locale locale, final String word) {
+        // Most checked words are in the main dictionary: find them without waiting for a
+        // dictionary reader nor calling into native code.
+        final ValidWordFilter validWordFilter = getValidWordFilter(locale);
+        if (null != validWordFilter && validWordFilter.contains(word)) {
+            return true;
+        }
         mSemaphore.acquireUninterruptibly();
         try {
             DictionaryFacilitator dictionaryFacilitatorForLocale =
@@ -166,6 +314,50 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         }
     }
 
+    /**
+     * Returns the filter of valid words of the main dictionaries for the locale, or null if it is
+     * not built yet, in which case this starts building it in the background.
+     */
+    private ValidWordFilter getValidWordFilter(final Locale locale) {
+        if (null == locale) {
+            return null;
+        }
+        final ValidWordFilter validWordFilter = mValidWordFilters.get(locale);
+        if (null != validWordFilter) {
+            return validWordFilter;
+        }
+        final int generation;
+        synchronized (mValidWordFilterRequestedLocales) {
+            if (!mValidWordFilterRequestedLocales.add(locale)) {
+                return null;
+            }
+            generation = mValidWordFilterGeneration;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.SPELLING).execute(new Runnable() {
+            @Override
+            public void run() {
+                final ValidWordFilter builtFilter =
+                        ValidWordFilter.build(AndroidSpellCheckerService.this, locale);
+                synchronized (mValidWordFilterRequestedLocales) {
+                    // If there is no main dictionary, the locale stays requested so that we
+                    // don't try again until the filters are discarded.
+                    if (null != builtFilter && generation == mValidWordFilterGeneration) {
+                        mValidWordFilters.put(locale, builtFilter);
+                    }
+                }
+            }
+        });
+        return null;
+    }
+
+    private void discardValidWordFilters() {
+        synchronized (mValidWordFilterRequestedLocales) {
+            ++mValidWordFilterGeneration;
+            mValidWordFilterRequestedLocales.clear();
+            mValidWordFilters.clear();
+        }
+    }
+
     public SuggestionResults getSuggestionResults(final Locale locale,
             final ComposedData composedData, final NgramContext ngramContext,
             @Nonnull final Keyboard keyboard) {
@@ -197,16 +389,40 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         }
     }
 
+    /**
+     * Returns whether all the dictionaries for the locale are loaded, so that spell checking
+     * results computed with them can be cached.
+     */
+    public boolean hasLoadedAllDictionariesForLocale(final Locale locale) {
+        return mDictionaryFacilitatorCache.hasLoadedAllDictionaries(locale);
+    }
+
     @Override
     public boolean onUnbind(final Intent intent) {
-        mSemaphore.acquireUninterruptibly(MAX_NUM_OF_THREADS_READ_DICTIONARY);
+        closeDictionaries();
+        mKeyboardCache.clear();
+        return false;
+    }
+
+    private void closeDictionaries() {
+        mSemaphore.acquireUninterruptibly(mMaxNumOfThreadsReadDictionary);
         try {
             mDictionaryFacilitatorCache.closeDictionaries();
         } finally {
-            mSemaphore.release(MAX_NUM_OF_THREADS_READ_DICTIONARY);
+            mSemaphore.release(mMaxNumOfThreadsReadDictionary);
+        }
+        // The dictionaries may be updated before they are opened again.
+        mResultCache.clear();
+        discardValidWordFilters();
+    }
+
+    @Override
+    protected void dump(final FileDescriptor fd, final PrintWriter fout, final String[] args) {
+        super.dump(fd, fout, args);
+        mResultCache.dump(fout);
+        for (final ValidWordFilter validWordFilter : mValidWordFilters.values()) {
+            fout.println("  " + validWordFilter);
         }
-        mKeyboardCache.clear();
-        return false;
     }
 
     public Keyboard getKeyboardForLocale(final Locale locale) {
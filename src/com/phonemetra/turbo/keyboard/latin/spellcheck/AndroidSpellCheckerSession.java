@@ -21,6 +21,8 @@ import android.content.res.Resources;
 import android.os.Binder;
 import android.os.Build;
 import android.text.TextUtils;
+import android.util.Log;
+import android.util.Pair;
 import android.view.textservice.SentenceSuggestionsInfo;
 import android.view.textservice.SuggestionsInfo;
 import android.view.textservice.TextInfo;
@@ -30,16 +32,27 @@ import com.phonemetra.turbo.keyboard.latin.NgramContext;
 import com.phonemetra.turbo.keyboard.latin.utils.SpannableStringUtils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheckerSession {
-   
-    
+    private static final String TAG = AndroidSpellCheckerSession.class.getSimpleName();
+
+    // Below this, handing words over to other threads costs more than it saves.
+    private static final int MIN_WORD_COUNT_TO_CHECK_IN_PARALLEL = 16;
+
+    private final AndroidSpellCheckerService mService;
     private final Resources mResources;
     private SentenceLevelAdapter mSentenceLevelAdapter;
 
     public AndroidSpellCheckerSession(AndroidSpellCheckerService service) {
         super(service);
+        mService = service;
         mResources = service.getResources();
     }
 
@@ -83,7 +96,7 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
                 if (TextUtils.isEmpty(splitText)) {
                     continue;
                 }
-                if (mSuggestionsCache.getSuggestionsFromCache(splitText.toString()) == null) {
+                if (!isKnownTypo(splitText.toString())) {
                     continue;
                 }
                 final int newLength = splitText.length();
@@ -170,24 +183,144 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
             return SentenceLevelAdapter.getEmptySentenceSuggestionsInfo();
         }
         final int infosSize = textInfos.length;
+        final SentenceLevelAdapter.SentenceTextInfoParams[] textInfoParams =
+                new SentenceLevelAdapter.SentenceTextInfoParams[infosSize];
+        int wordCount = 0;
+        for (int i = 0; i < infosSize; ++i) {
+            textInfoParams[i] = sentenceLevelAdapter.getSplitWords(textInfos[i]);
+            wordCount += textInfoParams[i].mSize;
+        }
+        if (wordCount >= MIN_WORD_COUNT_TO_CHECK_IN_PARALLEL
+                && mService.getSpellCheckWorkerCount() > 0) {
+            return splitAndSuggestInParallel(textInfoParams, suggestionsLimit);
+        }
         final SentenceSuggestionsInfo[] retval = new SentenceSuggestionsInfo[infosSize];
         for (int i = 0; i < infosSize; ++i) {
-            final SentenceLevelAdapter.SentenceTextInfoParams textInfoParams =
-                    sentenceLevelAdapter.getSplitWords(textInfos[i]);
             final ArrayList<SentenceLevelAdapter.SentenceWordItem> mItems =
-                    textInfoParams.mItems;
+                    textInfoParams[i].mItems;
             final int itemsSize = mItems.size();
             final TextInfo[] splitTextInfos = new TextInfo[itemsSize];
             for (int j = 0; j < itemsSize; ++j) {
                 splitTextInfos[j] = mItems.get(j).mTextInfo;
             }
             retval[i] = SentenceLevelAdapter.reconstructSuggestions(
-                    textInfoParams, onGetSuggestionsMultiple(
+                    textInfoParams[i], onGetSuggestionsMultiple(
                             splitTextInfos, suggestionsLimit, true));
         }
         return retval;
     }
 
+    /**
+     * Same as the serial part of {@link #splitAndSuggest(TextInfo[],int)}, but spreading the
+     * words over the spell check workers of the service.
+     *
+     * Each distinct pair of a word and the word before it is checked only once, however many
+     * times it appears in the texts. The calling thread checks words along with the workers, so
+     * this never takes longer than checking them all on the calling thread.
+     */
+    private SentenceSuggestionsInfo[] splitAndSuggestInParallel(
+            final SentenceLevelAdapter.SentenceTextInfoParams[] textInfoParams,
+            final int suggestionsLimit) {
+        final long ident = Binder.clearCallingIdentity();
+        try {
+            final HashMap<Pair<String, String>, Integer> queryIndices = new HashMap<>();
+            final ArrayList<TextInfo> queryTextInfos = new ArrayList<>();
+            final ArrayList<NgramContext> queryNgramContexts = new ArrayList<>();
+            final int[][] queryIndicesOfWords = new int[textInfoParams.length][];
+            for (int i = 0; i < textInfoParams.length; ++i) {
+                final ArrayList<SentenceLevelAdapter.SentenceWordItem> items =
+                        textInfoParams[i].mItems;
+                queryIndicesOfWords[i] = new int[items.size()];
+                // As in {@link #onGetSuggestionsMultiple(TextInfo[],int,boolean)} with
+                // sequential words.
+                CharSequence prevWord = null;
+                for (int j = 0; j < items.size(); ++j) {
+                    final TextInfo textInfo = items.get(j).mTextInfo;
+                    final CharSequence word = TextInfoCompatUtils.getCharSequenceOrString(textInfo);
+                    final Pair<String, String> query = Pair.create(
+                            null == prevWord ? null : prevWord.toString(), word.toString());
+                    Integer queryIndex = queryIndices.get(query);
+                    if (null == queryIndex) {
+                        queryIndex = queryTextInfos.size();
+                        queryIndices.put(query, queryIndex);
+                        queryTextInfos.add(textInfo);
+                        queryNgramContexts.add(
+                                new NgramContext(new NgramContext.WordInfo(prevWord)));
+                    }
+                    queryIndicesOfWords[i][j] = queryIndex;
+                    prevWord = TextUtils.isEmpty(word) ? null : word;
+                }
+            }
+
+            final int queryCount = queryTextInfos.size();
+            final AtomicInteger nextQueryIndex = new AtomicInteger(0);
+            final AtomicReferenceArray<SuggestionsInfo> results =
+                    new AtomicReferenceArray<>(queryCount);
+            final Runnable worker = new Runnable() {
+                @Override
+                public void run() {
+                    int queryIndex;
+                    while ((queryIndex = nextQueryIndex.getAndIncrement()) < queryCount) {
+                        results.set(queryIndex, onGetSuggestionsInternal(
+                                queryTextInfos.get(queryIndex), queryNgramContexts.get(queryIndex),
+                                suggestionsLimit));
+                    }
+                }
+            };
+            final List<Future<?>> futures = mService.startSpellCheckWorkers(worker);
+            worker.run();
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Exception while spellchecking in parallel", e);
+                }
+            }
+            // Only if we were interrupted or a worker failed, some words have yet to be checked.
+            for (int queryIndex = 0; queryIndex < queryCount; ++queryIndex) {
+                if (null == results.get(queryIndex)) {
+                    results.set(queryIndex, onGetSuggestionsInternal(
+                            queryTextInfos.get(queryIndex), queryNgramContexts.get(queryIndex),
+                            suggestionsLimit));
+                }
+            }
+
+            final SentenceSuggestionsInfo[] retval =
+                    new SentenceSuggestionsInfo[textInfoParams.length];
+            for (int i = 0; i < textInfoParams.length; ++i) {
+                final ArrayList<SentenceLevelAdapter.SentenceWordItem> items =
+                        textInfoParams[i].mItems;
+                final SuggestionsInfo[] suggestionsInfos = new SuggestionsInfo[items.size()];
+                for (int j = 0; j < items.size(); ++j) {
+                    final TextInfo textInfo = items.get(j).mTextInfo;
+                    // Each word gets its own copy, as the cookie and sequence of a result are
+                    // changed to those of the text it is reported for.
+                    suggestionsInfos[j] = copySuggestionsInfo(
+                            results.get(queryIndicesOfWords[i][j]));
+                    suggestionsInfos[j].setCookieAndSequence(
+                            textInfo.getCookie(), textInfo.getSequence());
+                }
+                retval[i] = SentenceLevelAdapter.reconstructSuggestions(
+                        textInfoParams[i], suggestionsInfos);
+            }
+            return retval;
+        } finally {
+            Binder.restoreCallingIdentity(ident);
+        }
+    }
+
+    private static SuggestionsInfo copySuggestionsInfo(final SuggestionsInfo suggestionsInfo) {
+        final int count = suggestionsInfo.getSuggestionsCount();
+        final String[] suggestions = (count <= 0) ? EMPTY_STRING_ARRAY : new String[count];
+        for (int i = 0; i < count; ++i) {
+            suggestions[i] = suggestionsInfo.getSuggestionAt(i);
+        }
+        return new SuggestionsInfo(suggestionsInfo.getSuggestionsAttributes(), suggestions);
+    }
+
     @Override
     public SuggestionsInfo[] onGetSuggestionsMultiple(TextInfo[] textInfos,
             int suggestionsLimit, boolean sequentialWords) {
@@ -16,14 +16,10 @@
 
 package com.phonemetra.turbo.keyboard.latin.spellcheck;
 
-import android.content.ContentResolver;
-import android.database.ContentObserver;
 import android.os.Binder;
-import android.provider.UserDictionary.Words;
 import android.service.textservice.SpellCheckerService.Session;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.LruCache;
 import android.view.textservice.SuggestionsInfo;
 import android.view.textservice.TextInfo;
 
@@ -42,6 +38,7 @@ import com.phonemetra.turbo.keyboard.latin.utils.SuggestionResults;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Pattern;
 
 public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     private static final String TAG = "AndroidWordLevelSpellCheckerSession";
@@ -53,60 +50,15 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     // Cache this for performance
     private int mScript; // One of SCRIPT_LATIN or SCRIPT_CYRILLIC for now.
     private final AndroidSpellCheckerService mService;
-    protected final SuggestionsCache mSuggestionsCache = new SuggestionsCache();
-    private final ContentObserver mObserver;
 
     private static final String quotesRegexp =
             "(\\u0022|\\u0027|\\u0060|\\u00B4|\\u2018|\\u2018|\\u201C|\\u201D)";
-
-    private static final class SuggestionsParams {
-        public final String[] mSuggestions;
-        public final int mFlags;
-        public SuggestionsParams(String[] suggestions, int flags) {
-            mSuggestions = suggestions;
-            mFlags = flags;
-        }
-    }
-
-    protected static final class SuggestionsCache {
-        private static final int MAX_CACHE_SIZE = 50;
-        private final LruCache<String, SuggestionsParams> mUnigramSuggestionsInfoCache =
-                new LruCache<>(MAX_CACHE_SIZE);
-
-        private static String generateKey(final String query) {
-            return query + "";
-        }
-
-        public SuggestionsParams getSuggestionsFromCache(final String query) {
-            return mUnigramSuggestionsInfoCache.get(query);
-        }
-
-        public void putSuggestionsToCache(
-                final String query, final String[] suggestions, final int flags) {
-            if (suggestions == null || TextUtils.isEmpty(query)) {
-                return;
-            }
-            mUnigramSuggestionsInfoCache.put(
-                    generateKey(query),
-                    new SuggestionsParams(suggestions, flags));
-        }
-
-        public void clearCache() {
-            mUnigramSuggestionsInfoCache.evictAll();
-        }
-    }
+    // Compiled once, as every checked word goes through them.
+    private static final Pattern LEADING_QUOTE_PATTERN = Pattern.compile("^" + quotesRegexp);
+    private static final Pattern TRAILING_QUOTE_PATTERN = Pattern.compile(quotesRegexp + "$");
 
     AndroidWordLevelSpellCheckerSession(final AndroidSpellCheckerService service) {
         mService = service;
-        final ContentResolver cres = service.getContentResolver();
-
-        mObserver = new ContentObserver(null) {
-            @Override
-            public void onChange(boolean self) {
-                mSuggestionsCache.clearCache();
-            }
-        };
-        cres.registerContentObserver(Words.CONTENT_URI, true, mObserver);
     }
 
     @Override
@@ -117,10 +69,11 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
         mScript = ScriptUtils.getScriptFromSpellCheckerLocale(mLocale);
     }
 
-    @Override
-    public void onClose() {
-        final ContentResolver cres = mService.getContentResolver();
-        cres.unregisterContentObserver(mObserver);
+    /**
+     * Returns whether the word has recently been found to be a typo in the locale of this session.
+     */
+    protected boolean isKnownTypo(final String text) {
+        return mService.getResultCache().isKnownTypo(mLocale, text);
     }
 
     private static final int CHECKABILITY_CHECKABLE = 0;
@@ -219,50 +172,39 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     protected SuggestionsInfo onGetSuggestionsInternal(
             final TextInfo textInfo, final NgramContext ngramContext, final int suggestionsLimit) {
         try {
-            final String text = textInfo.getText().
-                    replaceAll(AndroidSpellCheckerService.APOSTROPHE,
-                            AndroidSpellCheckerService.SINGLE_QUOTE).
-                    replaceAll("^" + quotesRegexp, "").
-                    replaceAll(quotesRegexp + "$", "");
+            final String text = TRAILING_QUOTE_PATTERN.matcher(
+                    LEADING_QUOTE_PATTERN.matcher(textInfo.getText().replace(
+                            AndroidSpellCheckerService.APOSTROPHE,
+                            AndroidSpellCheckerService.SINGLE_QUOTE)).replaceAll(""))
+                    .replaceAll("");
 
             if (!mService.hasMainDictionaryForLocale(mLocale)) {
                 return AndroidSpellCheckerService.getNotInDictEmptySuggestions(
                         false /* reportAsTypo */);
             }
 
-            // Handle special patterns like email, URI, telephone number.
-            final int checkability = getCheckabilityInScript(text, mScript);
-            if (CHECKABILITY_CHECKABLE != checkability) {
-                if (CHECKABILITY_CONTAINS_PERIOD == checkability) {
-                    final String[] splitText = text.split(Constants.REGEXP_PERIOD);
-                    boolean allWordsAreValid = true;
-                    for (final String word : splitText) {
-                        if (!mService.isValidWord(mLocale, word)) {
-                            allWordsAreValid = false;
-                            break;
-                        }
-                    }
-                    if (allWordsAreValid) {
-                        return new SuggestionsInfo(SuggestionsInfo.RESULT_ATTR_LOOKS_LIKE_TYPO
-                                | SuggestionsInfo.RESULT_ATTR_HAS_RECOMMENDED_SUGGESTIONS,
-                                new String[] {
-                                        TextUtils.join(Constants.STRING_SPACE, splitText) });
-                    }
-                }
-                return mService.isValidWord(mLocale, text) ?
-                        AndroidSpellCheckerService.getInDictEmptySuggestions() :
-                        AndroidSpellCheckerService.getNotInDictEmptySuggestions(
-                                CHECKABILITY_CONTAINS_PERIOD == checkability /* reportAsTypo */);
+            final SpellCheckResultCache resultCache = mService.getResultCache();
+            final String prevWordsContext =
+                    (null == ngramContext) ? null : ngramContext.extractPrevWordsContext();
+            final SuggestionsInfo cachedSuggestionsInfo =
+                    resultCache.get(mLocale, text, prevWordsContext, suggestionsLimit);
+            if (null != cachedSuggestionsInfo) {
+                return cachedSuggestionsInfo;
             }
-
-            // Handle normal words.
-            final int capitalizeType = StringUtils.getCapitalizationType(text);
-
-            if (isInDictForAnyCapitalization(text, capitalizeType)) {
-                
-                return AndroidSpellCheckerService.getInDictEmptySuggestions();
+            // Read this before looking up the dictionaries, so that we don't cache results
+            // computed with dictionaries that change while we are at it. Results computed while
+            // a dictionary is still loading would miss its words, so they are not cached either.
+            final int cacheGeneration = mService.hasLoadedAllDictionariesForLocale(mLocale)
+                    ? resultCache.getGeneration() : SpellCheckResultCache.NOT_A_GENERATION;
+            final SuggestionsInfo suggestionsInfoForAnyContext =
+                    getSuggestionsInfoForAnyContext(text);
+            if (null != suggestionsInfoForAnyContext) {
+                if (mService.hasLoadedAllDictionariesForLocale(mLocale)) {
+                    resultCache.putForAnyContext(
+                            cacheGeneration, mLocale, text, suggestionsInfoForAnyContext);
+                }
+                return suggestionsInfoForAnyContext;
             }
-            
 
             final Keyboard keyboard = mService.getKeyboardForLocale(mLocale);
             if (null == keyboard) {
@@ -272,6 +214,7 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
                         false /* reportAsTypo */);
             }
 
+            final int capitalizeType = StringUtils.getCapitalizationType(text);
             final WordComposer composer = new WordComposer();
             final int[] codePoints = StringUtils.toCodePointArray(text);
             final int[] coordinates;
@@ -282,8 +225,6 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
                     mLocale, composer.getComposedDataSnapshot(), ngramContext, keyboard);
             final Result result = getResult(capitalizeType, mLocale, suggestionsLimit,
                     mService.getRecommendedThreshold(), text, suggestionResults);
-            
-            
 
             final int flags =
                     SuggestionsInfo.RESULT_ATTR_LOOKS_LIKE_TYPO
@@ -292,7 +233,10 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
                                     .getValueOf_RESULT_ATTR_HAS_RECOMMENDED_SUGGESTIONS()
                             : 0);
             final SuggestionsInfo retval = new SuggestionsInfo(flags, result.mSuggestions);
-            mSuggestionsCache.putSuggestionsToCache(text, result.mSuggestions, flags);
+            if (mService.hasLoadedAllDictionariesForLocale(mLocale)) {
+                resultCache.put(cacheGeneration, mLocale, text, prevWordsContext,
+                        suggestionsLimit, flags, result.mSuggestions);
+            }
             return retval;
         } catch (RuntimeException e) {
             // Don't kill the keyboard if there is a bug in the spell checker
@@ -302,6 +246,47 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
         }
     }
 
+    /**
+     * Spell checks a word as far as it can be done without looking at the words before it.
+     *
+     * @param text the word, after normalization of its quotes.
+     * @return the result if it doesn't depend on the previous words nor on the suggestions limit,
+     *   or null if suggestions have to be computed for the word.
+     */
+    private SuggestionsInfo getSuggestionsInfoForAnyContext(final String text) {
+        // Handle special patterns like email, URI, telephone number.
+        final int checkability = getCheckabilityInScript(text, mScript);
+        if (CHECKABILITY_CHECKABLE != checkability) {
+            if (CHECKABILITY_CONTAINS_PERIOD == checkability) {
+                final String[] splitText = text.split(Constants.REGEXP_PERIOD);
+                boolean allWordsAreValid = true;
+                for (final String word : splitText) {
+                    if (!mService.isValidWord(mLocale, word)) {
+                        allWordsAreValid = false;
+                        break;
+                    }
+                }
+                if (allWordsAreValid) {
+                    return new SuggestionsInfo(SuggestionsInfo.RESULT_ATTR_LOOKS_LIKE_TYPO
+                            | SuggestionsInfo.RESULT_ATTR_HAS_RECOMMENDED_SUGGESTIONS,
+                            new String[] {
+                                    TextUtils.join(Constants.STRING_SPACE, splitText) });
+                }
+            }
+            return mService.isValidWord(mLocale, text) ?
+                    AndroidSpellCheckerService.getInDictEmptySuggestions() :
+                    AndroidSpellCheckerService.getNotInDictEmptySuggestions(
+                            CHECKABILITY_CONTAINS_PERIOD == checkability /* reportAsTypo */);
+        }
+
+        // Handle normal words.
+        final int capitalizeType = StringUtils.getCapitalizationType(text);
+        if (isInDictForAnyCapitalization(text, capitalizeType)) {
+            return AndroidSpellCheckerService.getInDictEmptySuggestions();
+        }
+        return null;
+    }
+
     private static final class Result {
         public final String[] mSuggestions;
         public final boolean mHasRecommendedSuggestions;
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin.spellcheck;
+
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.view.textservice.SuggestionsInfo;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Results of spell checking, shared by all the sessions of {@link AndroidSpellCheckerService}.
+ *
+ * Whether a word is valid doesn't depend on the words before it nor on how many suggestions are
+ * asked for, so such results are cached for the word alone. Suggestions for a typo do depend on
+ * both, and are cached for the exact query. The cache is sized by the memory the results take,
+ * and must be cleared whenever the dictionaries it was filled from change. Results computed
+ * while a dictionary is still loading must not be cached.
+ */
+final class SpellCheckResultCache {
+    private static final int MAX_CACHE_SIZE_IN_BYTES = 1024 * 1024;
+    // The cache takes at most this fraction of the memory available to the process.
+    private static final int MAX_MEMORY_FRACTION = 128;
+    // A rough estimate of the memory taken by an entry besides its strings.
+    private static final int ENTRY_OVERHEAD_IN_BYTES = 96;
+
+    // The limit of entries that are valid whatever the previous words and the suggestions limit.
+    private static final int ANY_SUGGESTIONS_LIMIT = -1;
+    // The limit of entries that only remember that a word was found to be a typo.
+    private static final int TYPO_MARKER_SUGGESTIONS_LIMIT = -2;
+
+    private static final class Key {
+        @Nullable
+        private final Locale mLocale;
+        @Nonnull
+        private final String mWord;
+        @Nullable
+        private final String mPrevWordsContext;
+        private final int mSuggestionsLimit;
+
+        public Key(@Nullable final Locale locale, @Nonnull final String word,
+                @Nullable final String prevWordsContext, final int suggestionsLimit) {
+            mLocale = locale;
+            mWord = word;
+            mPrevWordsContext = prevWordsContext;
+            mSuggestionsLimit = suggestionsLimit;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)o;
+            return mWord.equals(other.mWord) && mSuggestionsLimit == other.mSuggestionsLimit
+                    && TextUtils.equals(mPrevWordsContext, other.mPrevWordsContext)
+                    && (mLocale == null ? other.mLocale == null : mLocale.equals(other.mLocale));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = mWord.hashCode();
+            hash = hash * 31 + mSuggestionsLimit;
+            hash = hash * 31 + (mPrevWordsContext == null ? 0 : mPrevWordsContext.hashCode());
+            return hash * 31 + (mLocale == null ? 0 : mLocale.hashCode());
+        }
+
+        public int getSizeInBytes() {
+            return (mWord.length()
+                    + (mPrevWordsContext == null ? 0 : mPrevWordsContext.length())) * 2;
+        }
+    }
+
+    private static final class Result {
+        public final int mFlags;
+        @Nullable
+        public final String[] mSuggestions;
+
+        public Result(final int flags, @Nullable final String[] suggestions) {
+            mFlags = flags;
+            mSuggestions = suggestions;
+        }
+
+        public int getSizeInBytes() {
+            if (mSuggestions == null) {
+                return 0;
+            }
+            int size = 0;
+            for (final String suggestion : mSuggestions) {
+                size += suggestion.length() * 2;
+            }
+            return size;
+        }
+    }
+
+    // A generation that never matches the one of the cache, for results not to be cached.
+    public static final int NOT_A_GENERATION = -1;
+
+    private final LruCache<Key, Result> mCache;
+    // Incremented each time the cache is cleared. Results computed from dictionaries that
+    // changed in the meantime are not cached.
+    private int mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private int mClearCount;
+
+    public SpellCheckResultCache() {
+        final int maxSizeInBytes = (int)Math.min(MAX_CACHE_SIZE_IN_BYTES,
+                Runtime.getRuntime().maxMemory() / MAX_MEMORY_FRACTION);
+        mCache = new LruCache<Key, Result>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(final Key key, final Result result) {
+                return ENTRY_OVERHEAD_IN_BYTES + key.getSizeInBytes() + result.getSizeInBytes();
+            }
+        };
+    }
+
+    /**
+     * Returns the generation of the cache, to be passed to the put methods along with results
+     * computed after this call.
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Returns the cached result for a word, or null if there is none.
+     *
+     * @param locale the locale of the spell checker session.
+     * @param word the word, after normalization of its quotes.
+     * @param prevWordsContext the previous words, as extracted from the ngram context, or null.
+     * @param suggestionsLimit the maximum number of suggestions that were asked for.
+     * @return a new {@link SuggestionsInfo} the caller may modify, or null.
+     */
+    @Nullable
+    public synchronized SuggestionsInfo get(@Nullable final Locale locale,
+            @Nonnull final String word, @Nullable final String prevWordsContext,
+            final int suggestionsLimit) {
+        Result result = mCache.get(new Key(locale, word, null, ANY_SUGGESTIONS_LIMIT));
+        if (result == null) {
+            result = mCache.get(new Key(locale, word, prevWordsContext, suggestionsLimit));
+        }
+        if (result == null) {
+            ++mMissCount;
+            return null;
+        }
+        ++mHitCount;
+        return new SuggestionsInfo(result.mFlags, result.mSuggestions);
+    }
+
+    /**
+     * Caches a result that doesn't depend on the previous words nor on the suggestions limit.
+     */
+    public synchronized void putForAnyContext(final int generation,
+            @Nullable final Locale locale, @Nonnull final String word,
+            @Nonnull final SuggestionsInfo suggestionsInfo) {
+        if (generation != mGeneration || TextUtils.isEmpty(word)) {
+            return;
+        }
+        mCache.put(new Key(locale, word, null, ANY_SUGGESTIONS_LIMIT),
+                new Result(suggestionsInfo.getSuggestionsAttributes(),
+                        getSuggestions(suggestionsInfo)));
+    }
+
+    /**
+     * Caches the suggestions for a typo, for the exact query they were computed for.
+     */
+    public synchronized void put(final int generation, @Nullable final Locale locale,
+            @Nonnull final String word, @Nullable final String prevWordsContext,
+            final int suggestionsLimit, final int flags, @Nullable final String[] suggestions) {
+        if (generation != mGeneration || TextUtils.isEmpty(word)) {
+            return;
+        }
+        mCache.put(new Key(locale, word, prevWordsContext, suggestionsLimit),
+                new Result(flags, suggestions));
+        if (suggestions != null) {
+            mCache.put(new Key(locale, word, null, TYPO_MARKER_SUGGESTIONS_LIMIT),
+                    new Result(flags, null /* suggestions */));
+        }
+    }
+
+    /**
+     * Returns whether the word has recently been found to be a typo with suggestions, in any
+     * context.
+     */
+    public synchronized boolean isKnownTypo(@Nullable final Locale locale,
+            @Nonnull final String word) {
+        return mCache.get(new Key(locale, word, null, TYPO_MARKER_SUGGESTIONS_LIMIT)) != null;
+    }
+
+    public synchronized void clear() {
+        ++mGeneration;
+        ++mClearCount;
+        mCache.evictAll();
+    }
+
+    @Nullable
+    private static String[] getSuggestions(@Nonnull final SuggestionsInfo suggestionsInfo) {
+        final int count = suggestionsInfo.getSuggestionsCount();
+        if (count <= 0) {
+            return AndroidWordLevelSpellCheckerSession.EMPTY_STRING_ARRAY;
+        }
+        final String[] suggestions = new String[count];
+        for (int i = 0; i < count; ++i) {
+            suggestions[i] = suggestionsInfo.getSuggestionAt(i);
+        }
+        return suggestions;
+    }
+
+    public synchronized void dump(@Nonnull final PrintWriter pw) {
+        final long lookupCount = mHitCount + mMissCount;
+        pw.println("Spell check result cache:");
+        pw.println("  size=" + mCache.size() + "/" + mCache.maxSize() + " bytes"
+                + " evictions=" + mCache.evictionCount() + " clears=" + mClearCount);
+        pw.println("  hits=" + mHitCount + " misses=" + mMissCount + " hitRate="
+                + (lookupCount == 0 ? "n/a" : (mHitCount * 100 / lookupCount) + "%"));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin.spellcheck;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.phonemetra.turbo.keyboard.latin.AssetFileAddress;
+import com.phonemetra.turbo.keyboard.latin.BinaryDictionary;
+import com.phonemetra.turbo.keyboard.latin.BinaryDictionaryGetter;
+import com.phonemetra.turbo.keyboard.latin.Dictionary;
+import com.phonemetra.turbo.keyboard.latin.makedict.FormatSpec;
+import com.phonemetra.turbo.keyboard.latin.makedict.WordProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The words of the main dictionaries of a locale, in a form that can be looked up without JNI
+ * calls nor locks.
+ *
+ * Each word is stored as a sorted 64-bit hash of its code units, which takes a fraction of the
+ * memory of the strings. A word whose hash is found is considered to be in the main dictionary:
+ * with a couple hundred thousand words, the odds that a given typo collides with one of them are
+ * in the order of 10^-14. A word that is not found may still be in the user or contacts
+ * dictionaries, so a miss tells nothing and must be looked up in the dictionaries.
+ */
+final class ValidWordFilter {
+    private static final String TAG = ValidWordFilter.class.getSimpleName();
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
+
+    private final Locale mLocale;
+    // Sorted, without duplicates.
+    private final long[] mWordHashes;
+
+    private ValidWordFilter(final Locale locale, final long[] wordHashes) {
+        mLocale = locale;
+        mWordHashes = wordHashes;
+    }
+
+    /**
+     * Builds the filter of the main dictionaries of a locale. This reads every word of the
+     * dictionaries, so it must not be called on the UI thread.
+     *
+     * @return the filter, or null if there is no main dictionary for the locale.
+     */
+    @Nullable
+    public static ValidWordFilter build(@Nonnull final Context context,
+            @Nonnull final Locale locale) {
+        final ArrayList<AssetFileAddress> dictFiles = BinaryDictionaryGetter.getDictionaryFiles(
+                locale, context, false /* notifyDictionaryPackForUpdates */);
+        if (null == dictFiles || dictFiles.isEmpty()) {
+            return null;
+        }
+        long[] wordHashes = new long[INITIAL_CAPACITY];
+        int wordCount = 0;
+        for (final AssetFileAddress dictFile : dictFiles) {
+            final BinaryDictionary binaryDictionary = new BinaryDictionary(dictFile.mFilename,
+                    dictFile.mOffset, dictFile.mLength, false /* useFullEditDistance */, locale,
+                    Dictionary.TYPE_MAIN, false /* isUpdatable */);
+            try {
+                if (!binaryDictionary.isValidDictionary()) {
+                    Log.w(TAG, "Cannot open dictionary: " + dictFile);
+                    return null;
+                }
+                // Only version 4 dictionaries can blacklist words, which their properties don't
+                // tell. Other dictionaries don't need to be asked about each word.
+                final boolean canBlacklistWords =
+                        FormatSpec.VERSION403 == binaryDictionary.getFormatVersion();
+                for (final WordProperty wordProperty : binaryDictionary.getWordProperties()) {
+                    // Only keep what the dictionary itself would report as valid, which
+                    // excludes the words that are marked as not being words.
+                    if (!wordProperty.mIsBeginningOfSentence && !wordProperty.mIsNotAWord
+                            && Dictionary.NOT_A_PROBABILITY
+                                    != wordProperty.mProbabilityInfo.mProbability
+                            && (!canBlacklistWords
+                                    || binaryDictionary.isInDictionary(wordProperty.mWord))) {
+                        if (wordCount == wordHashes.length) {
+                            wordHashes = Arrays.copyOf(wordHashes, wordCount * 2);
+                        }
+                        wordHashes[wordCount++] = hash(wordProperty.mWord);
+                    }
+                }
+            } finally {
+                binaryDictionary.close();
+            }
+        }
+        Arrays.sort(wordHashes, 0, wordCount);
+        int uniqueCount = 0;
+        for (int i = 0; i < wordCount; ++i) {
+            if (0 == uniqueCount || wordHashes[i] != wordHashes[uniqueCount - 1]) {
+                wordHashes[uniqueCount++] = wordHashes[i];
+            }
+        }
+        return new ValidWordFilter(locale, Arrays.copyOf(wordHashes, uniqueCount));
+    }
+
+    /**
+     * Returns whether the word is in the main dictionaries this filter was built from.
+     * Exact case is required, as with {@link BinaryDictionary#isInDictionary(String)}.
+     */
+    public boolean contains(@Nullable final String word) {
+        if (null == word || word.isEmpty()) {
+            return false;
+        }
+        return Arrays.binarySearch(mWordHashes, hash(word)) >= 0;
+    }
+
+    // 64-bit FNV-1a over the UTF-16 code units of the word.
+    private static long hash(@Nonnull final String word) {
+        long hash = FNV_64_OFFSET_BASIS;
+        final int length = word.length();
+        for (int i = 0; i < length; ++i) {
+            final char c = word.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_64_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_64_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidWordFilter{" + mLocale + ": " + mWordHashes.length + " words, "
+                + (mWordHashes.length * 8 / 1024) + " KB}";
+    }
+}
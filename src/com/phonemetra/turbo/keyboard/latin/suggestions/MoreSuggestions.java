@@ -31,6 +31,8 @@ import com.phonemetra.turbo.keyboard.latin.SuggestedWords;
 import com.phonemetra.turbo.keyboard.latin.common.Constants;
 import com.phonemetra.turbo.keyboard.latin.utils.TypefaceUtils;
 
+import javax.annotation.Nullable;
+
 public final class MoreSuggestions extends Keyboard {
     public final SuggestedWords mSuggestedWords;
 
@@ -55,7 +57,7 @@ public final class MoreSuggestions extends Keyboard {
 
         public int layout(final SuggestedWords suggestedWords, final int fromIndex,
                 final int maxWidth, final int minWidth, final int maxRow, final Paint paint,
-                final Resources res) {
+                @Nullable final float[] labelWidths, final Resources res) {
             clearKeys();
             mDivider = res.getDrawable(R.drawable.more_suggestions_divider);
             mDividerWidth = mDivider.getIntrinsicWidth();
@@ -67,15 +69,10 @@ public final class MoreSuggestions extends Keyboard {
             int rowStartIndex = fromIndex;
             final int size = Math.min(suggestedWords.size(), SuggestedWords.MAX_SUGGESTIONS);
             while (index < size) {
-                final String word;
-                if (isIndexSubjectToAutoCorrection(suggestedWords, index)) {
-                    // INDEX_OF_AUTO_CORRECTION and INDEX_OF_TYPED_WORD got swapped.
-                    word = suggestedWords.getLabel(SuggestedWords.INDEX_OF_TYPED_WORD);
-                } else {
-                    word = suggestedWords.getLabel(index);
-                }
                 // TODO: Should take care of text x-scaling.
-                mWidths[index] = (int)(TypefaceUtils.getStringWidth(word, paint) + padding);
+                final float labelWidth = (labelWidths != null) ? labelWidths[index]
+                        : TypefaceUtils.getStringWidth(getLabel(suggestedWords, index), paint);
+                mWidths[index] = (int)(labelWidth + padding);
                 final int numColumn = index - rowStartIndex + 1;
                 final int columnWidth =
                         (maxWidth - mDividerWidth * (numColumn - 1)) / numColumn;
@@ -176,6 +173,14 @@ public final class MoreSuggestions extends Keyboard {
         return suggestedWords.mWillAutoCorrect && index == SuggestedWords.INDEX_OF_AUTO_CORRECTION;
     }
 
+    static String getLabel(final SuggestedWords suggestedWords, final int index) {
+        if (isIndexSubjectToAutoCorrection(suggestedWords, index)) {
+            // INDEX_OF_AUTO_CORRECTION and INDEX_OF_TYPED_WORD got swapped.
+            return suggestedWords.getLabel(SuggestedWords.INDEX_OF_TYPED_WORD);
+        }
+        return suggestedWords.getLabel(index);
+    }
+
     public static final class Builder extends KeyboardBuilder<MoreSuggestionsParam> {
         private final MoreSuggestionsView mPaneView;
         private SuggestedWords mSuggestedWords;
@@ -187,15 +192,25 @@ public final class MoreSuggestions extends Keyboard {
             mPaneView = paneView;
         }
 
+        /**
+         * Lay out more suggestions in rows.
+         *
+         * @param stripModel the model of the suggestion strip showing the first suggestions, or
+         *   null. The labels it has already measured are not measured again.
+         */
         public Builder layout(final SuggestedWords suggestedWords, final int fromIndex,
                 final int maxWidth, final int minWidth, final int maxRow,
-                final Keyboard parentKeyboard) {
+                final Keyboard parentKeyboard, @Nullable final SuggestionStripModel stripModel) {
             final int xmlId = R.xml.kbd_suggestions_pane_template;
             load(xmlId, parentKeyboard.mId);
             mParams.mVerticalGap = mParams.mTopPadding = parentKeyboard.mVerticalGap / 2;
             mPaneView.updateKeyboardGeometry(mParams.mDefaultRowHeight);
+            final Paint labelPaint = mPaneView.newLabelPaint(null /* key */);
+            final float[] labelWidths = (stripModel == null) ? null
+                    : stripModel.getMoreSuggestionsLabelWidths(suggestedWords, fromIndex,
+                            labelPaint);
             final int count = mParams.layout(suggestedWords, fromIndex, maxWidth, minWidth, maxRow,
-                    mPaneView.newLabelPaint(null /* key */), mResources);
+                    labelPaint, labelWidths, mResources);
             mFromIndex = fromIndex;
             mToIndex = fromIndex + count;
             mSuggestedWords = suggestedWords;
@@ -37,6 +37,7 @@ import android.text.style.CharacterStyle;
 import android.text.style.StyleSpan;
 import android.text.style.UnderlineSpan;
 import android.util.AttributeSet;
+import android.util.LruCache;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -52,9 +53,11 @@ import com.phonemetra.turbo.keyboard.latin.SuggestedWords.SuggestedWordInfo;
 import com.phonemetra.turbo.keyboard.latin.settings.Settings;
 import com.phonemetra.turbo.keyboard.latin.settings.SettingsValues;
 import com.phonemetra.turbo.keyboard.latin.utils.ResourceUtils;
+import com.phonemetra.turbo.keyboard.latin.utils.TypefaceUtils;
 import com.phonemetra.turbo.keyboard.latin.utils.ViewLayoutUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -74,7 +77,6 @@ final class SuggestionStripLayoutHelper {
     private int mMaxMoreSuggestionsRow;
     public final float mMinMoreSuggestionsWidth;
     public final int mMoreSuggestionsBottomGap;
-    private boolean mMoreSuggestionsAvailable;
 
     // The index of these {@link ArrayList} is the position in the suggestion strip. The indices
     // increase towards the right for LTR scripts and the left for RTL scripts, starting with 0.
@@ -93,6 +95,14 @@ final class SuggestionStripLayoutHelper {
     private final int mTypedWordPositionWhenAutocorrect;
     private final Drawable mMoreSuggestionsHint;
     private static final String MORE_SUGGESTIONS_HINT = "\u2026";
+    private final String mSpokenEmptySuggestion;
+    // The word views all draw with the same paint settings. This is a copy of them that is never
+    // modified, used as a template to measure words off the UI thread. It is replaced on the UI
+    // thread when the paint of the word views changes, e.g. after a theme or text size change.
+    private volatile TextPaint mWordPaint;
+    // The paint {@link MoreSuggestionsView} draws labels with, if known.
+    @Nullable
+    private volatile Paint mMoreSuggestionsLabelPaint;
 
     private static final CharacterStyle BOLD_SPAN = new StyleSpan(Typeface.BOLD);
     private static final CharacterStyle UNDERLINE_SPAN = new UnderlineSpan();
@@ -104,6 +114,75 @@ final class SuggestionStripLayoutHelper {
     private static final int AUTO_CORRECT_UNDERLINE = 0x02;
     private static final int VALID_TYPED_WORD_BOLD = 0x04;
 
+    // The same words tend to come back on consecutive keystrokes, so we remember how each word
+    // was fitted to its width rather than measuring and ellipsizing it again.
+    private static final int FITTED_TEXT_CACHE_SIZE = 64; // arbitrary
+    private static final int STYLE_BOLD = 0x01;
+    private static final int STYLE_UNDERLINE = 0x02;
+    private final LruCache<FittedTextKey, FittedText> mFittedTextCache =
+            new LruCache<>(FITTED_TEXT_CACHE_SIZE);
+
+    // What the strip was last laid out with, to detect updates that would not change anything.
+    @Nullable
+    private SuggestedWords mLastLaidOutSuggestedWords;
+    private int mLastLaidOutStripWidth;
+    private boolean mLastLaidOutWithLxxSuggestionUi;
+    private boolean mLastLaidOutWithGestureFloatingPreviewText;
+
+    private static final class FittedTextKey {
+        private final String mWord;
+        private final int mStyle;
+        private final int mMaxWidth;
+        private final float mTextSize;
+        private final Typeface mTypeface;
+
+        public FittedTextKey(final String word, final int style, final int maxWidth,
+                final float textSize, final Typeface typeface) {
+            mWord = word;
+            mStyle = style;
+            mMaxWidth = maxWidth;
+            mTextSize = textSize;
+            mTypeface = typeface;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof FittedTextKey)) {
+                return false;
+            }
+            final FittedTextKey other = (FittedTextKey)o;
+            return mWord.equals(other.mWord) && mStyle == other.mStyle
+                    && mMaxWidth == other.mMaxWidth && mTextSize == other.mTextSize
+                    && (mTypeface == null ? other.mTypeface == null
+                            : mTypeface.equals(other.mTypeface));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = mWord.hashCode();
+            hash = hash * 31 + mStyle;
+            hash = hash * 31 + mMaxWidth;
+            hash = hash * 31 + Float.floatToIntBits(mTextSize);
+            return hash * 31 + (mTypeface == null ? 0 : mTypeface.hashCode());
+        }
+    }
+
+    private static final class FittedText {
+        // The text scale x the word would need to fit the width, before clamping.
+        public final float mNaturalScaleX;
+        // The text scale x to draw the word with.
+        public final float mScaleX;
+        // The word, ellipsized if it doesn't fit even at the minimum text scale x.
+        public final CharSequence mText;
+
+        public FittedText(final float naturalScaleX, final float scaleX,
+                final CharSequence text) {
+            mNaturalScaleX = naturalScaleX;
+            mScaleX = scaleX;
+            mText = text;
+        }
+    }
+
     public SuggestionStripLayoutHelper(final Context context, final AttributeSet attrs,
             final int defStyle, final ArrayList<TextView> wordViews,
             final ArrayList<View> dividerViews, final ArrayList<TextView> debugInfoViews) {
@@ -117,8 +196,10 @@ final class SuggestionStripLayoutHelper {
         dividerView.measure(
                 ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         mDividerWidth = dividerView.getMeasuredWidth();
+        mWordPaint = new TextPaint(wordView.getPaint());
 
         final Resources res = wordView.getResources();
+        mSpokenEmptySuggestion = res.getString(R.string.spoken_empty_suggestion);
         mSuggestionsStripHeight = res.getDimensionPixelSize(
                 R.dimen.config_suggestions_strip_height);
 
@@ -159,6 +240,28 @@ final class SuggestionStripLayoutHelper {
                 R.dimen.config_more_suggestions_row_height);
     }
 
+    /**
+     * Takes a new copy of the paint the word views draw with if it no longer measures text the
+     * same way as the copy words are measured with.
+     *
+     * This method must be called on the UI thread.
+     *
+     * @return true if the paint changed, in which case models prepared with the previous paint
+     * should not be used.
+     */
+    public boolean updateWordPaint() {
+        final TextPaint viewPaint = mWordViews.get(0).getPaint();
+        final TextPaint wordPaint = mWordPaint;
+        if (viewPaint.getTextSize() == wordPaint.getTextSize()
+                && viewPaint.getTypeface() == wordPaint.getTypeface()
+                && viewPaint.getTextSkewX() == wordPaint.getTextSkewX()
+                && viewPaint.getFlags() == wordPaint.getFlags()) {
+            return false;
+        }
+        mWordPaint = new TextPaint(viewPaint);
+        return true;
+    }
+
     public int getMaxMoreSuggestionsRow() {
         return mMaxMoreSuggestionsRow;
     }
@@ -228,12 +331,12 @@ final class SuggestionStripLayoutHelper {
      * Convert an index of {@link SuggestedWords} to position in the suggestion strip.
      * @param indexInSuggestedWords the index of {@link SuggestedWords}.
      * @param suggestedWords the suggested words list
+     * @param settingsValues the settings values the suggestion strip is laid out with.
      * @return Non-negative integer of the position in the suggestion strip.
      *         Negative integer if the word of the index shouldn't be shown on the suggestion strip.
      */
     private int getPositionInSuggestionStrip(final int indexInSuggestedWords,
-            final SuggestedWords suggestedWords) {
-        final SettingsValues settingsValues = Settings.getInstance().getCurrent();
+            final SuggestedWords suggestedWords, final SettingsValues settingsValues) {
         final boolean shouldOmitTypedWord = shouldOmitTypedWord(suggestedWords.mInputStyle,
                 settingsValues.mGestureFloatingPreviewTextEnabled,
                 settingsValues.mShouldShowLxxSuggestionUi);
@@ -336,52 +439,145 @@ final class SuggestionStripLayoutHelper {
     }
 
     /**
-     * Layout suggestions to the suggestions strip. And returns the start index of more
-     * suggestions.
+     * Computes how to show suggestions in the suggestions strip: the position, style, color and
+     * fitted text of each word, and the start index of more suggestions. This doesn't touch any
+     * view, so that it can be done off the UI thread, ahead of
+     * {@link #bindStripModel(SuggestionStripModel,ViewGroup,ViewGroup)}.
+     *
+     * This method can be called from any thread.
      *
      * @param suggestedWords suggestions to be shown in the suggestions strip.
-     * @param stripView the suggestions strip view.
-     * @param placerView the view where the debug info will be placed.
-     * @return the start index of more suggestions.
+     * @param stripWidth the width of the suggestions strip.
+     * @return the model to bind to the suggestions strip.
      */
-    public int layoutAndReturnStartIndexOfMoreSuggestions(
-            final Context context,
-            final SuggestedWords suggestedWords,
-            final ViewGroup stripView,
-            final ViewGroup placerView) {
+    @Nonnull
+    public SuggestionStripModel prepareStripModel(@Nonnull final SuggestedWords suggestedWords,
+            final int stripWidth) {
+        final SettingsValues settingsValues = Settings.getInstance().getCurrent();
         if (suggestedWords.isPunctuationSuggestions()) {
-            return layoutPunctuationsAndReturnStartIndexOfMoreSuggestions(
-                    (PunctuationSuggestions)suggestedWords, stripView);
+            return preparePunctuationsStripModel(
+                    (PunctuationSuggestions)suggestedWords, stripWidth, settingsValues);
         }
 
+        final int countInStrip = mSuggestionsCountInStrip;
+        final CharSequence[] styledWords = new CharSequence[countInStrip];
+        final int[] textColors = new int[countInStrip];
+        final int[] indicesInSuggestedWords = new int[countInStrip];
+        Arrays.fill(indicesInSuggestedWords, SuggestionStripModel.NOT_AN_INDEX);
+        final String[] debugInfos = SuggestionStripView.DBG ? new String[countInStrip] : null;
+        int count = 0;
+        int indexInSuggestedWords;
+        for (indexInSuggestedWords = 0; indexInSuggestedWords < suggestedWords.size()
+                && count < countInStrip; indexInSuggestedWords++) {
+            final int positionInStrip = getPositionInSuggestionStrip(
+                    indexInSuggestedWords, suggestedWords, settingsValues);
+            if (positionInStrip < 0) {
+                continue;
+            }
+            indicesInSuggestedWords[positionInStrip] = indexInSuggestedWords;
+            styledWords[positionInStrip] =
+                    getStyledSuggestedWord(suggestedWords, indexInSuggestedWords);
+            textColors[positionInStrip] =
+                    getSuggestionTextColor(suggestedWords, indexInSuggestedWords);
+            if (debugInfos != null) {
+                debugInfos[positionInStrip] = suggestedWords.getDebugString(indexInSuggestedWords);
+            }
+            count++;
+        }
+
+        final String[] contentDescriptions = new String[countInStrip];
+        for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
+            final CharSequence word = styledWords[positionInStrip];
+            // {@link StyleSpan} in a content description may cause an issue of TTS/TalkBack.
+            // Use a simple {@link String} to avoid the issue.
+            contentDescriptions[positionInStrip] =
+                    TextUtils.isEmpty(word) ? mSpokenEmptySuggestion : word.toString();
+        }
+
+        // Measuring modifies the paint, so work on a copy that no view is drawing with.
+        final TextPaint paint = new TextPaint(mWordPaint);
+        final CharSequence[] texts = new CharSequence[countInStrip];
+        final float[] textScaleXs = new float[countInStrip];
+        Arrays.fill(textScaleXs, 1.0f);
         final int wordCountToShow = suggestedWords.getWordCountToShow(
-                Settings.getInstance().getCurrent().mShouldShowLxxSuggestionUi);
-        final int startIndexOfMoreSuggestions = setupWordViewsAndReturnStartIndexOfMoreSuggestions(
-                suggestedWords, mSuggestionsCountInStrip);
-        final TextView centerWordView = mWordViews.get(mCenterPositionInStrip);
-        final int stripWidth = stripView.getWidth();
-        final int centerWidth = getSuggestionWidth(mCenterPositionInStrip, stripWidth);
-        if (wordCountToShow == 1 || getTextScaleX(centerWordView.getText(), centerWidth,
-                centerWordView.getPaint()) < MIN_TEXT_XSCALE) {
-            // Layout only the most relevant suggested word at the center of the suggestion strip
+                settingsValues.mShouldShowLxxSuggestionUi);
+        final FittedText centerFittedText = getFittedText(styledWords[mCenterPositionInStrip],
+                getSuggestionWidth(mCenterPositionInStrip, stripWidth), paint);
+        final boolean isCenterOnly = wordCountToShow == 1 || (centerFittedText != null
+                && centerFittedText.mNaturalScaleX < MIN_TEXT_XSCALE);
+        final boolean moreSuggestionsAvailable;
+        final int startIndexOfMoreSuggestions;
+        if (isCenterOnly) {
+            // Show only the most relevant suggested word at the center of the suggestion strip
             // by consolidating all slots in the strip.
-            final int countInStrip = 1;
-            mMoreSuggestionsAvailable = (wordCountToShow > countInStrip);
-            layoutWord(context, mCenterPositionInStrip, stripWidth - mPadding);
+            moreSuggestionsAvailable = (wordCountToShow > 1);
+            setFittedText(texts, textScaleXs, mCenterPositionInStrip, getFittedText(
+                    styledWords[mCenterPositionInStrip], stripWidth - mPadding, paint));
+            final int centerIndex = indicesInSuggestedWords[mCenterPositionInStrip];
+            startIndexOfMoreSuggestions =
+                    (centerIndex == SuggestionStripModel.NOT_AN_INDEX ? 0 : centerIndex) + 1;
+        } else {
+            moreSuggestionsAvailable = (wordCountToShow > countInStrip);
+            for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
+                setFittedText(texts, textScaleXs, positionInStrip, getFittedText(
+                        styledWords[positionInStrip],
+                        getSuggestionWidth(positionInStrip, stripWidth), paint));
+            }
+            startIndexOfMoreSuggestions = indexInSuggestedWords;
+        }
+
+        final Paint moreSuggestionsLabelPaint = mMoreSuggestionsLabelPaint;
+        return new SuggestionStripModel(suggestedWords, stripWidth, settingsValues, isCenterOnly,
+                countInStrip, texts, textScaleXs, contentDescriptions, textColors,
+                indicesInSuggestedWords, debugInfos, moreSuggestionsAvailable,
+                startIndexOfMoreSuggestions, getMoreSuggestionsLabelWidths(suggestedWords,
+                        startIndexOfMoreSuggestions, moreSuggestionsLabelPaint),
+                moreSuggestionsLabelPaint);
+    }
+
+    private static void setFittedText(final CharSequence[] texts, final float[] textScaleXs,
+            final int positionInStrip, @Nullable final FittedText fittedText) {
+        if (fittedText == null) {
+            return;
+        }
+        texts[positionInStrip] = fittedText.mText;
+        textScaleXs[positionInStrip] = fittedText.mScaleX;
+    }
+
+    /**
+     * Layout suggestions to the suggestions strip as computed by
+     * {@link #prepareStripModel(SuggestedWords,int)}. And returns the start index of more
+     * suggestions. Only the views are updated here: everything else has been computed already.
+     *
+     * @param model the model of the suggestions strip.
+     * @param stripView the suggestions strip view.
+     * @param placerView the view where the debug info will be placed.
+     * @return the start index of more suggestions.
+     */
+    public int bindStripModel(@Nonnull final SuggestionStripModel model,
+            final ViewGroup stripView, final ViewGroup placerView) {
+        mLastLaidOutSuggestedWords = model.mSuggestedWords;
+        mLastLaidOutStripWidth = model.mStripWidth;
+        mLastLaidOutWithLxxSuggestionUi = model.mShouldShowLxxSuggestionUi;
+        mLastLaidOutWithGestureFloatingPreviewText = model.mGestureFloatingPreviewTextEnabled;
+        if (model.mSuggestedWords.isPunctuationSuggestions()) {
+            bindPunctuationsStripModel(model, stripView);
+            return model.mStartIndexOfMoreSuggestions;
+        }
+
+        if (model.mIsCenterOnly) {
+            final TextView centerWordView = bindWord(model, mCenterPositionInStrip);
             stripView.addView(centerWordView);
             setLayoutWeight(centerWordView, 1.0f, ViewGroup.LayoutParams.MATCH_PARENT);
             if (SuggestionStripView.DBG) {
-                layoutDebugInfo(mCenterPositionInStrip, placerView, stripWidth);
+                layoutDebugInfo(model, mCenterPositionInStrip, placerView, model.mStripWidth);
             }
-            final Integer lastIndex = (Integer)centerWordView.getTag();
-            return (lastIndex == null ? 0 : lastIndex) + 1;
+            return model.mStartIndexOfMoreSuggestions;
         }
 
-        final int countInStrip = mSuggestionsCountInStrip;
-        mMoreSuggestionsAvailable = (wordCountToShow > countInStrip);
         @SuppressWarnings("unused")
         int x = 0;
-        for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
+        for (int positionInStrip = 0; positionInStrip < model.mCountInStrip; positionInStrip++) {
             if (positionInStrip != 0) {
                 final View divider = mDividerViews.get(positionInStrip);
                 // Add divider if this isn't the left most suggestion in suggestions strip.
@@ -389,40 +585,94 @@ final class SuggestionStripLayoutHelper {
                 x += divider.getMeasuredWidth();
             }
 
-            final int width = getSuggestionWidth(positionInStrip, stripWidth);
-            final TextView wordView = layoutWord(context, positionInStrip, width);
+            final TextView wordView = bindWord(model, positionInStrip);
             stripView.addView(wordView);
             setLayoutWeight(wordView, getSuggestionWeight(positionInStrip),
                     ViewGroup.LayoutParams.MATCH_PARENT);
             x += wordView.getMeasuredWidth();
 
             if (SuggestionStripView.DBG) {
-                layoutDebugInfo(positionInStrip, placerView, x);
+                layoutDebugInfo(model, positionInStrip, placerView, x);
+            }
+        }
+        return model.mStartIndexOfMoreSuggestions;
+    }
+
+    /**
+     * Returns whether laying out the specified suggestions would give exactly what the strip
+     * shows after the last layout: same words in the same places, with the same styles and
+     * colors. In this case the layout can be skipped altogether.
+     *
+     * @param suggestedWords suggestions to be shown in the suggestions strip.
+     * @param stripWidth the current width of the suggestions strip.
+     * @return true if the strip already shows these suggestions.
+     */
+    public boolean isSameAsLastLayout(final SuggestedWords suggestedWords, final int stripWidth) {
+        final SuggestedWords lastSuggestedWords = mLastLaidOutSuggestedWords;
+        if (lastSuggestedWords == null) {
+            return false;
+        }
+        final SettingsValues settingsValues = Settings.getInstance().getCurrent();
+        if (stripWidth != mLastLaidOutStripWidth
+                || settingsValues.mShouldShowLxxSuggestionUi != mLastLaidOutWithLxxSuggestionUi
+                || settingsValues.mGestureFloatingPreviewTextEnabled
+                        != mLastLaidOutWithGestureFloatingPreviewText) {
+            return false;
+        }
+        if (lastSuggestedWords == suggestedWords) {
+            return true;
+        }
+        if (suggestedWords.isPunctuationSuggestions()
+                        != lastSuggestedWords.isPunctuationSuggestions()
+                || suggestedWords.size() != lastSuggestedWords.size()
+                || suggestedWords.mWillAutoCorrect != lastSuggestedWords.mWillAutoCorrect
+                || suggestedWords.mTypedWordValid != lastSuggestedWords.mTypedWordValid
+                || suggestedWords.mIsObsoleteSuggestions
+                        != lastSuggestedWords.mIsObsoleteSuggestions
+                || suggestedWords.mInputStyle != lastSuggestedWords.mInputStyle) {
+            return false;
+        }
+        for (int i = 0; i < suggestedWords.size(); i++) {
+            if (!TextUtils.equals(suggestedWords.getLabel(i), lastSuggestedWords.getLabel(i))
+                    || suggestedWords.getInfo(i).isKindOf(SuggestedWordInfo.KIND_TYPED)
+                            != lastSuggestedWords.getInfo(i).isKindOf(
+                                    SuggestedWordInfo.KIND_TYPED)) {
+                return false;
             }
         }
-        return startIndexOfMoreSuggestions;
+        return true;
+    }
+
+    /**
+     * Forgets about the last layout, because the strip views have been cleared.
+     */
+    public void forgetLastLayout() {
+        mLastLaidOutSuggestedWords = null;
     }
 
     /**
-     * Format appropriately the suggested word in {@link #mWordViews} specified by
-     * <code>positionInStrip</code>. When the suggested word doesn't exist, the corresponding
-     * {@link TextView} will be disabled and never respond to user interaction. The suggested word
-     * may be shrunk or ellipsized to fit in the specified width.
+     * Set the suggested word in {@link #mWordViews} specified by <code>positionInStrip</code> as
+     * prepared in <code>model</code>. When the suggested word doesn't exist, the corresponding
+     * {@link TextView} will be disabled and never respond to user interaction.
      *
      * The <code>positionInStrip</code> argument is the index in the suggestion strip. The indices
      * increase towards the right for LTR scripts and the left for RTL scripts, starting with 0.
      * The position of the most important suggestion is in {@link #mCenterPositionInStrip}. This
      * usually doesn't match the index in <code>suggedtedWords</code> -- see
-     * {@link #getPositionInSuggestionStrip(int,SuggestedWords)}.
+     * {@link #getPositionInSuggestionStrip(int,SuggestedWords,SettingsValues)}.
      *
+     * @param model the model of the suggestions strip.
      * @param positionInStrip the position in the suggestion strip.
-     * @param width the maximum width for layout in pixels.
      * @return the {@link TextView} containing the suggested word appropriately formatted.
      */
-    private TextView layoutWord(final Context context, final int positionInStrip, final int width) {
+    private TextView bindWord(final SuggestionStripModel model, final int positionInStrip) {
         final TextView wordView = mWordViews.get(positionInStrip);
-        final CharSequence word = wordView.getText();
-        if (positionInStrip == mCenterPositionInStrip && mMoreSuggestionsAvailable) {
+        final int indexInSuggestedWords = model.mIndicesInSuggestedWords[positionInStrip];
+        // {@link TextView#getTag()} is used to get the index in suggestedWords at
+        // {@link SuggestionStripView#onClick(View)}.
+        wordView.setTag(indexInSuggestedWords == SuggestionStripModel.NOT_AN_INDEX ? null
+                : indexInSuggestedWords);
+        if (positionInStrip == mCenterPositionInStrip && model.mMoreSuggestionsAvailable) {
             // TODO: This "more suggestions hint" should have a nicely designed icon.
             wordView.setCompoundDrawablesWithIntrinsicBounds(
                     null, null, null, mMoreSuggestionsHint);
@@ -431,30 +681,26 @@ final class SuggestionStripLayoutHelper {
         } else {
             wordView.setCompoundDrawablesWithIntrinsicBounds(null, null, null, null);
         }
-        // {@link StyleSpan} in a content description may cause an issue of TTS/TalkBack.
-        // Use a simple {@link String} to avoid the issue.
-        wordView.setContentDescription(
-                TextUtils.isEmpty(word)
-                    ? context.getResources().getString(R.string.spoken_empty_suggestion)
-                    : word.toString());
-        final CharSequence text = getEllipsizedTextWithSettingScaleX(
-                word, width, wordView.getPaint());
-        final float scaleX = wordView.getTextScaleX();
+        wordView.setContentDescription(model.mContentDescriptions[positionInStrip]);
+        final CharSequence text = model.mTexts[positionInStrip];
         wordView.setText(text); // TextView.setText() resets text scale x to 1.0.
-        wordView.setTextScaleX(scaleX);
+        wordView.setTextScaleX(model.mTextScaleXs[positionInStrip]);
+        wordView.setTextColor(model.mTextColors[positionInStrip]);
         // A <code>wordView</code> should be disabled when <code>word</code> is empty in order to
         // make it unclickable.
         // With accessibility touch exploration on, <code>wordView</code> should be enabled even
         // when it is empty to avoid announcing as "disabled".
-        wordView.setEnabled(!TextUtils.isEmpty(word)
+        wordView.setEnabled(!TextUtils.isEmpty(text)
                 || AccessibilityUtils.getInstance().isTouchExplorationEnabled());
         return wordView;
     }
 
-    private void layoutDebugInfo(final int positionInStrip, final ViewGroup placerView,
-            final int x) {
+    private void layoutDebugInfo(final SuggestionStripModel model, final int positionInStrip,
+            final ViewGroup placerView, final int x) {
         final TextView debugInfoView = mDebugInfoViews.get(positionInStrip);
-        final CharSequence debugInfo = debugInfoView.getText();
+        final String debugInfo = (model.mDebugInfos == null) ? null
+                : model.mDebugInfos[positionInStrip];
+        debugInfoView.setText(debugInfo);
         if (debugInfo == null) {
             return;
         }
@@ -482,66 +728,80 @@ final class SuggestionStripLayoutHelper {
         return (1.0f - mCenterSuggestionWeight) / (mSuggestionsCountInStrip - 1);
     }
 
-    private int setupWordViewsAndReturnStartIndexOfMoreSuggestions(
-            final SuggestedWords suggestedWords, final int maxSuggestionInStrip) {
-        // Clear all suggestions first
-        for (int positionInStrip = 0; positionInStrip < maxSuggestionInStrip; ++positionInStrip) {
-            final TextView wordView = mWordViews.get(positionInStrip);
-            wordView.setText(null);
-            wordView.setTag(null);
-            // Make this inactive for touches in {@link #layoutWord(int,int)}.
-            if (SuggestionStripView.DBG) {
-                mDebugInfoViews.get(positionInStrip).setText(null);
-            }
-        }
-        int count = 0;
-        int indexInSuggestedWords;
-        for (indexInSuggestedWords = 0; indexInSuggestedWords < suggestedWords.size()
-                && count < maxSuggestionInStrip; indexInSuggestedWords++) {
-            final int positionInStrip =
-                    getPositionInSuggestionStrip(indexInSuggestedWords, suggestedWords);
-            if (positionInStrip < 0) {
-                continue;
-            }
-            final TextView wordView = mWordViews.get(positionInStrip);
-            // {@link TextView#getTag()} is used to get the index in suggestedWords at
-            // {@link SuggestionStripView#onClick(View)}.
-            wordView.setTag(indexInSuggestedWords);
-            wordView.setText(getStyledSuggestedWord(suggestedWords, indexInSuggestedWords));
-            wordView.setTextColor(getSuggestionTextColor(suggestedWords, indexInSuggestedWords));
-            if (SuggestionStripView.DBG) {
-                mDebugInfoViews.get(positionInStrip).setText(
-                        suggestedWords.getDebugString(indexInSuggestedWords));
-            }
-            count++;
+    private SuggestionStripModel preparePunctuationsStripModel(
+            final PunctuationSuggestions punctuationSuggestions, final int stripWidth,
+            final SettingsValues settingsValues) {
+        final int countInStrip = Math.min(punctuationSuggestions.size(), PUNCTUATIONS_IN_STRIP);
+        final CharSequence[] texts = new CharSequence[countInStrip];
+        final float[] textScaleXs = new float[countInStrip];
+        final String[] contentDescriptions = new String[countInStrip];
+        final int[] textColors = new int[countInStrip];
+        final int[] indicesInSuggestedWords = new int[countInStrip];
+        for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
+            final String punctuation = punctuationSuggestions.getLabel(positionInStrip);
+            texts[positionInStrip] = punctuation;
+            textScaleXs[positionInStrip] = 1.0f;
+            contentDescriptions[positionInStrip] = punctuation;
+            textColors[positionInStrip] = mColorAutoCorrect;
+            indicesInSuggestedWords[positionInStrip] = positionInStrip;
         }
-        return indexInSuggestedWords;
+        final Paint moreSuggestionsLabelPaint = mMoreSuggestionsLabelPaint;
+        return new SuggestionStripModel(punctuationSuggestions, stripWidth, settingsValues,
+                false /* isCenterOnly */, countInStrip, texts, textScaleXs, contentDescriptions,
+                textColors, indicesInSuggestedWords, null /* debugInfos */,
+                punctuationSuggestions.size() > countInStrip /* moreSuggestionsAvailable */,
+                countInStrip /* startIndexOfMoreSuggestions */,
+                getMoreSuggestionsLabelWidths(punctuationSuggestions, countInStrip,
+                        moreSuggestionsLabelPaint),
+                moreSuggestionsLabelPaint);
     }
 
-    private int layoutPunctuationsAndReturnStartIndexOfMoreSuggestions(
-            final PunctuationSuggestions punctuationSuggestions, final ViewGroup stripView) {
-        final int countInStrip = Math.min(punctuationSuggestions.size(), PUNCTUATIONS_IN_STRIP);
-        for (int positionInStrip = 0; positionInStrip < countInStrip; positionInStrip++) {
+    private void bindPunctuationsStripModel(final SuggestionStripModel model,
+            final ViewGroup stripView) {
+        for (int positionInStrip = 0; positionInStrip < model.mCountInStrip; positionInStrip++) {
             if (positionInStrip != 0) {
                 // Add divider if this isn't the left most suggestion in suggestions strip.
                 addDivider(stripView, mDividerViews.get(positionInStrip));
             }
 
             final TextView wordView = mWordViews.get(positionInStrip);
-            final String punctuation = punctuationSuggestions.getLabel(positionInStrip);
             // {@link TextView#getTag()} is used to get the index in suggestedWords at
             // {@link SuggestionStripView#onClick(View)}.
-            wordView.setTag(positionInStrip);
-            wordView.setText(punctuation);
-            wordView.setContentDescription(punctuation);
-            wordView.setTextScaleX(1.0f);
+            wordView.setTag(model.mIndicesInSuggestedWords[positionInStrip]);
+            wordView.setText(model.mTexts[positionInStrip]);
+            wordView.setContentDescription(model.mContentDescriptions[positionInStrip]);
+            wordView.setTextScaleX(model.mTextScaleXs[positionInStrip]);
             wordView.setCompoundDrawables(null, null, null, null);
-            wordView.setTextColor(mColorAutoCorrect);
+            wordView.setTextColor(model.mTextColors[positionInStrip]);
             stripView.addView(wordView);
             setLayoutWeight(wordView, 1.0f, mSuggestionsStripHeight);
         }
-        mMoreSuggestionsAvailable = (punctuationSuggestions.size() > countInStrip);
-        return countInStrip;
+    }
+
+    /**
+     * Remembers the paint {@link MoreSuggestionsView} draws labels with, so that the labels of
+     * more suggestions can be measured in advance by
+     * {@link #prepareStripModel(SuggestedWords,int)}.
+     */
+    public void setMoreSuggestionsLabelPaint(@Nonnull final Paint paint) {
+        mMoreSuggestionsLabelPaint = new Paint(paint);
+    }
+
+    @Nullable
+    private static float[] getMoreSuggestionsLabelWidths(
+            @Nonnull final SuggestedWords suggestedWords, final int fromIndex,
+            @Nullable final Paint labelPaint) {
+        final int size = Math.min(suggestedWords.size(), SuggestedWords.MAX_SUGGESTIONS);
+        if (labelPaint == null || fromIndex >= size) {
+            return null;
+        }
+        final float[] widths = new float[size];
+        for (int index = fromIndex; index < size; index++) {
+            // This paint is never modified, and measuring is serialized by TypefaceUtils.
+            widths[index] = TypefaceUtils.getStringWidth(
+                    MoreSuggestions.getLabel(suggestedWords, index), labelPaint);
+        }
+        return widths;
     }
 
     public void layoutImportantNotice(final View importantNoticeStrip,
@@ -576,22 +836,46 @@ final class SuggestionStripLayoutHelper {
         return maxWidth / (float) width;
     }
 
+    /**
+     * Returns how <code>text</code> fits in <code>maxWidth</code> when drawn with
+     * <code>paint</code>, from the cache if we already measured it.
+     */
     @Nullable
-    private static CharSequence getEllipsizedTextWithSettingScaleX(
-            @Nullable final CharSequence text, final int maxWidth, @Nonnull final TextPaint paint) {
+    private FittedText getFittedText(@Nullable final CharSequence text, final int maxWidth,
+            @Nonnull final TextPaint paint) {
         if (text == null) {
             return null;
         }
-        final float scaleX = getTextScaleX(text, maxWidth, paint);
-        if (scaleX >= MIN_TEXT_XSCALE) {
-            paint.setTextScaleX(scaleX);
-            return text;
+        final int style = (hasStyleSpan(text, BOLD_SPAN) ? STYLE_BOLD : 0)
+                | (hasStyleSpan(text, UNDERLINE_SPAN) ? STYLE_UNDERLINE : 0);
+        final FittedTextKey key = new FittedTextKey(text.toString(), style, maxWidth,
+                paint.getTextSize(), paint.getTypeface());
+        final FittedText cachedFittedText = mFittedTextCache.get(key);
+        if (cachedFittedText != null) {
+            return cachedFittedText;
+        }
+        final float naturalScaleX = getTextScaleX(text, maxWidth, paint);
+        final FittedText fittedText;
+        if (naturalScaleX >= MIN_TEXT_XSCALE) {
+            fittedText = new FittedText(naturalScaleX, naturalScaleX, text);
+        } else {
+            fittedText = new FittedText(naturalScaleX, MIN_TEXT_XSCALE,
+                    getEllipsizedText(text, maxWidth, paint, style));
         }
+        mFittedTextCache.put(key, fittedText);
+        return fittedText;
+    }
 
-        // <code>text</code> must be ellipsized with minimum text scale x.
+    /**
+     * Ellipsizes <code>text</code> so that it fits in <code>maxWidth</code> with the minimum
+     * text scale x.
+     */
+    @Nonnull
+    private static CharSequence getEllipsizedText(@Nonnull final CharSequence text,
+            final int maxWidth, @Nonnull final TextPaint paint, final int style) {
         paint.setTextScaleX(MIN_TEXT_XSCALE);
-        final boolean hasBoldStyle = hasStyleSpan(text, BOLD_SPAN);
-        final boolean hasUnderlineStyle = hasStyleSpan(text, UNDERLINE_SPAN);
+        final boolean hasBoldStyle = (style & STYLE_BOLD) != 0;
+        final boolean hasUnderlineStyle = (style & STYLE_UNDERLINE) != 0;
         // TextUtils.ellipsize erases any span object existed after ellipsized point.
         // We have to restore these spans afterward.
         final CharSequence ellipsizedText = TextUtils.ellipsize(
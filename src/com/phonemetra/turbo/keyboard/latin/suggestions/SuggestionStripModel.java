@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin.suggestions;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import com.phonemetra.turbo.keyboard.latin.SuggestedWords;
+import com.phonemetra.turbo.keyboard.latin.settings.SettingsValues;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * What the suggestion strip shows for a {@link SuggestedWords}: which word goes at which position,
+ * with which color, and how it is styled and fitted to its width. It is computed without touching
+ * any view by {@link SuggestionStripLayoutHelper#prepareStripModel(SuggestedWords,int)}, usually
+ * on the input logic thread, so that the UI thread only has to bind it to the strip views.
+ *
+ * Instances are immutable once constructed.
+ */
+public final class SuggestionStripModel {
+    static final int NOT_AN_INDEX = -1;
+
+    @Nonnull
+    final SuggestedWords mSuggestedWords;
+    // The strip width and the settings this model was computed for.
+    final int mStripWidth;
+    final boolean mShouldShowLxxSuggestionUi;
+    final boolean mGestureFloatingPreviewTextEnabled;
+
+    // Whether only the most relevant word is shown, using all the width of the strip.
+    final boolean mIsCenterOnly;
+    // The number of positions to lay out, when {@link #mIsCenterOnly} is false.
+    final int mCountInStrip;
+
+    // The index of these arrays is the position in the suggestion strip, as with the word views
+    // of {@link SuggestionStripLayoutHelper}.
+    // The texts, styled and fitted to their width.
+    final CharSequence[] mTexts;
+    final float[] mTextScaleXs;
+    final String[] mContentDescriptions;
+    final int[] mTextColors;
+    // The index in {@link #mSuggestedWords}, or {@link #NOT_AN_INDEX} if the position is empty.
+    final int[] mIndicesInSuggestedWords;
+    @Nullable
+    final String[] mDebugInfos;
+
+    final boolean mMoreSuggestionsAvailable;
+    final int mStartIndexOfMoreSuggestions;
+
+    // The widths of the labels of more suggestions, indexed by the index in
+    // {@link #mSuggestedWords}, as measured with a paint of the specified text size and typeface.
+    // Null if they could not be measured in advance.
+    @Nullable
+    private final float[] mMoreSuggestionsLabelWidths;
+    private final float mMoreSuggestionsLabelTextSize;
+    @Nullable
+    private final Typeface mMoreSuggestionsLabelTypeface;
+
+    SuggestionStripModel(@Nonnull final SuggestedWords suggestedWords, final int stripWidth,
+            @Nonnull final SettingsValues settingsValues, final boolean isCenterOnly,
+            final int countInStrip, final CharSequence[] texts, final float[] textScaleXs,
+            final String[] contentDescriptions, final int[] textColors,
+            final int[] indicesInSuggestedWords, @Nullable final String[] debugInfos,
+            final boolean moreSuggestionsAvailable, final int startIndexOfMoreSuggestions,
+            @Nullable final float[] moreSuggestionsLabelWidths,
+            @Nullable final Paint moreSuggestionsLabelPaint) {
+        mSuggestedWords = suggestedWords;
+        mStripWidth = stripWidth;
+        mShouldShowLxxSuggestionUi = settingsValues.mShouldShowLxxSuggestionUi;
+        mGestureFloatingPreviewTextEnabled = settingsValues.mGestureFloatingPreviewTextEnabled;
+        mIsCenterOnly = isCenterOnly;
+        mCountInStrip = countInStrip;
+        mTexts = texts;
+        mTextScaleXs = textScaleXs;
+        mContentDescriptions = contentDescriptions;
+        mTextColors = textColors;
+        mIndicesInSuggestedWords = indicesInSuggestedWords;
+        mDebugInfos = debugInfos;
+        mMoreSuggestionsAvailable = moreSuggestionsAvailable;
+        mStartIndexOfMoreSuggestions = startIndexOfMoreSuggestions;
+        mMoreSuggestionsLabelWidths = moreSuggestionsLabelWidths;
+        mMoreSuggestionsLabelTextSize = (moreSuggestionsLabelPaint == null) ? 0.0f
+                : moreSuggestionsLabelPaint.getTextSize();
+        mMoreSuggestionsLabelTypeface = (moreSuggestionsLabelPaint == null) ? null
+                : moreSuggestionsLabelPaint.getTypeface();
+    }
+
+    /**
+     * Returns whether this model shows the specified suggestions in a strip of the specified
+     * width with the current settings.
+     */
+    boolean isFor(@Nonnull final SuggestedWords suggestedWords, final int stripWidth,
+            @Nonnull final SettingsValues settingsValues) {
+        return mSuggestedWords == suggestedWords && mStripWidth == stripWidth
+                && mShouldShowLxxSuggestionUi == settingsValues.mShouldShowLxxSuggestionUi
+                && mGestureFloatingPreviewTextEnabled
+                        == settingsValues.mGestureFloatingPreviewTextEnabled;
+    }
+
+    /**
+     * Returns the widths of the labels of more suggestions starting at <code>fromIndex</code>,
+     * if they were measured in advance with a paint equivalent to <code>paint</code>.
+     *
+     * @return the widths indexed by the index in {@link #mSuggestedWords}, or null.
+     */
+    @Nullable
+    float[] getMoreSuggestionsLabelWidths(@Nonnull final SuggestedWords suggestedWords,
+            final int fromIndex, @Nonnull final Paint paint) {
+        if (mMoreSuggestionsLabelWidths == null || suggestedWords != mSuggestedWords
+                || fromIndex != mStartIndexOfMoreSuggestions
+                || paint.getTextSize() != mMoreSuggestionsLabelTextSize) {
+            return null;
+        }
+        final Typeface typeface = paint.getTypeface();
+        if (typeface == null ? mMoreSuggestionsLabelTypeface != null
+                : !typeface.equals(mMoreSuggestionsLabelTypeface)) {
+            return null;
+        }
+        return mMoreSuggestionsLabelWidths;
+    }
+}
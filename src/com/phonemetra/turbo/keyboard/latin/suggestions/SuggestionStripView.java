@@ -53,6 +53,9 @@ import com.phonemetra.turbo.keyboard.latin.suggestions.MoreSuggestionsView.MoreS
 import com.phonemetra.turbo.keyboard.latin.utils.ImportantNoticeUtils;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
 
 public final class SuggestionStripView extends RelativeLayout implements OnClickListener,
         OnLongClickListener {
@@ -81,6 +84,16 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
     Listener mListener;
     private SuggestedWords mSuggestedWords = SuggestedWords.getEmptyInstance();
     private int mStartIndexOfMoreSuggestions;
+    // The model the strip was last laid out with, if any.
+    @Nullable
+    private SuggestionStripModel mStripModel;
+    // A model prepared ahead of {@link #setSuggestions(SuggestedWords,boolean)}, possibly on
+    // another thread.
+    private final AtomicReference<SuggestionStripModel> mPreparedStripModel =
+            new AtomicReference<>();
+    // The width of {@link #mSuggestionsStrip} as of the last layout, for threads other than the
+    // UI thread to prepare models with.
+    private volatile int mStripWidth;
 
     private final SuggestionStripLayoutHelper mLayoutHelper;
     private final StripVisibilityGroup mStripVisibilityGroup;
@@ -195,12 +208,58 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
         mVoiceKey.setVisibility(currentSettingsValues.mShowsVoiceInputKey ? VISIBLE : INVISIBLE);
     }
 
+    /**
+     * Prepare the layout of the specified suggestions, so that a subsequent call to
+     * {@link #setSuggestions(SuggestedWords,boolean)} with the same suggestions only has to bind
+     * the result to the views.
+     *
+     * This method can be called from any thread. It doesn't touch any view.
+     *
+     * @param suggestedWords suggestions that are about to be shown in the suggestions strip.
+     */
+    public void prepareSuggestions(final SuggestedWords suggestedWords) {
+        final int stripWidth = mStripWidth;
+        if (stripWidth <= 0) {
+            // We don't know the width of the strip yet. It will be laid out on the UI thread.
+            return;
+        }
+        mPreparedStripModel.set(mLayoutHelper.prepareStripModel(suggestedWords, stripWidth));
+    }
+
+    private SuggestionStripModel getStripModel(final SuggestedWords suggestedWords,
+            final int stripWidth) {
+        final SuggestionStripModel preparedStripModel = mPreparedStripModel.getAndSet(null);
+        final boolean isWordPaintChanged = mLayoutHelper.updateWordPaint();
+        if (preparedStripModel != null && !isWordPaintChanged
+                && preparedStripModel.isFor(suggestedWords, stripWidth,
+                        Settings.getInstance().getCurrent())) {
+            return preparedStripModel;
+        }
+        // The suggestions have not been prepared in advance, or the strip, the settings or the
+        // paint of the words changed in the meantime.
+        return mLayoutHelper.prepareStripModel(suggestedWords, stripWidth);
+    }
+
     public void setSuggestions(final SuggestedWords suggestedWords, final boolean isRtlLanguage) {
+        final int stripWidth = mSuggestionsStrip.getWidth();
+        mStripWidth = stripWidth;
+        if (!DBG && !mStripVisibilityGroup.isShowingImportantNoticeStrip()
+                && mLayoutHelper.isSameAsLastLayout(suggestedWords, stripWidth)) {
+            // The strip already shows these very words: we only need to refer to the new
+            // suggestions, as they are what gets picked when the user touches a word.
+            dismissMoreSuggestionsPanel();
+            mStripVisibilityGroup.setLayoutDirection(isRtlLanguage);
+            mSuggestedWords = suggestedWords;
+            mPreparedStripModel.set(null);
+            return;
+        }
+        final SuggestionStripModel stripModel = getStripModel(suggestedWords, stripWidth);
         clear();
         mStripVisibilityGroup.setLayoutDirection(isRtlLanguage);
         mSuggestedWords = suggestedWords;
-        mStartIndexOfMoreSuggestions = mLayoutHelper.layoutAndReturnStartIndexOfMoreSuggestions(
-                getContext(), mSuggestedWords, mSuggestionsStrip, this);
+        mStripModel = stripModel;
+        mStartIndexOfMoreSuggestions = mLayoutHelper.bindStripModel(
+                stripModel, mSuggestionsStrip, this);
         mStripVisibilityGroup.showSuggestionsStrip();
     }
 
@@ -235,6 +294,8 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
 
     public void clear() {
         mSuggestionsStrip.removeAllViews();
+        mLayoutHelper.forgetLastLayout();
+        mStripModel = null;
         removeAllDebugInfoViews();
         mStripVisibilityGroup.showSuggestionsStrip();
         dismissMoreSuggestionsPanel();
@@ -311,7 +372,9 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
         final MoreSuggestions.Builder builder = mMoreSuggestionsBuilder;
         builder.layout(mSuggestedWords, mStartIndexOfMoreSuggestions, maxWidth,
                 (int)(maxWidth * layoutHelper.mMinMoreSuggestionsWidth),
-                layoutHelper.getMaxMoreSuggestionsRow(), parentKeyboard);
+                layoutHelper.getMaxMoreSuggestionsRow(), parentKeyboard, mStripModel);
+        // Now that the panel geometry is known, the next strip models can measure its labels.
+        layoutHelper.setMoreSuggestionsLabelPaint(mMoreSuggestionsView.newLabelPaint(null));
         mMoreSuggestionsView.setKeyboard(builder.build());
         container.measure(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
 
@@ -458,8 +521,7 @@ public final class SuggestionStripView extends RelativeLayout implements OnClick
 
         final Object tag = view.getTag();
         // {@link Integer} tag is set at
-        // {@link SuggestionStripLayoutHelper#setupWordViewsTextAndColor(SuggestedWords,int)} and
-        // {@link SuggestionStripLayoutHelper#layoutPunctuationSuggestions(SuggestedWords,ViewGroup}
+        // {@link SuggestionStripLayoutHelper#bindStripModel(SuggestionStripModel,ViewGroup,ViewGroup)}
         if (tag instanceof Integer) {
             final int index = (Integer) tag;
             if (index >= mSuggestedWords.size()) {
@@ -24,4 +24,6 @@ import com.phonemetra.turbo.keyboard.latin.SuggestedWords;
 public interface SuggestionStripViewAccessor {
     public void setNeutralSuggestionStrip();
     public void showSuggestionStrip(final SuggestedWords suggestedWords);
+    // Can be called from any thread, ahead of {@link #showSuggestionStrip(SuggestedWords)}.
+    public void prepareSuggestionStrip(final SuggestedWords suggestedWords);
 }
@@ -20,6 +20,7 @@ import android.app.Activity;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.util.Log;
@@ -80,4 +81,13 @@ public final class ApplicationUtils {
         }
         return 0;
     }
+
+    /**
+     * A utility method to tell whether the application is a debuggable build. Developer options
+     * are only shown in such builds.
+     * @return whether the application is debuggable
+     */
+    public static boolean isDebuggable(final Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
 }
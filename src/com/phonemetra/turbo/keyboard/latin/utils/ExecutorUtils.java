@@ -35,11 +35,22 @@ public class ExecutorUtils {
 
     public static final String KEYBOARD = "Keyboard";
     public static final String SPELLING = "Spelling";
+    // Loads dictionaries in parallel. Unlike the other executors, tasks are not run in order.
+    public static final String DICTIONARY_LOADER = "DictionaryLoader";
+
+    // Enough to load the main, contacts, user and user history dictionaries at the same time.
+    private static final int DICTIONARY_LOADER_THREAD_COUNT = 4;
 
     private static ScheduledExecutorService sKeyboardExecutorService = newExecutorService(KEYBOARD);
     private static ScheduledExecutorService sSpellingExecutorService = newExecutorService(SPELLING);
+    private static ScheduledExecutorService sDictionaryLoaderExecutorService =
+            newExecutorService(DICTIONARY_LOADER);
 
     private static ScheduledExecutorService newExecutorService(final String name) {
+        if (DICTIONARY_LOADER.equals(name)) {
+            return Executors.newScheduledThreadPool(Math.min(DICTIONARY_LOADER_THREAD_COUNT,
+                    Runtime.getRuntime().availableProcessors()), new ExecutorFactory(name));
+        }
         return Executors.newSingleThreadScheduledExecutor(new ExecutorFactory(name));
     }
 
@@ -89,6 +100,8 @@ public class ExecutorUtils {
                 return sKeyboardExecutorService;
             case SPELLING:
                 return sSpellingExecutorService;
+            case DICTIONARY_LOADER:
+                return sDictionaryLoaderExecutorService;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
@@ -113,6 +126,9 @@ public class ExecutorUtils {
             case SPELLING:
                 sSpellingExecutorService = newExecutorService(SPELLING);
                 break;
+            case DICTIONARY_LOADER:
+                sDictionaryLoaderExecutorService = newExecutorService(DICTIONARY_LOADER);
+                break;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
@@ -23,6 +23,7 @@ import com.phonemetra.turbo.keyboard.latin.settings.AdvancedSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.AppearanceSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.CorrectionSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.CustomInputStyleSettingsFragment;
+import com.phonemetra.turbo.keyboard.latin.settings.DebugSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.GestureSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.PreferencesSettingsFragment;
 import com.phonemetra.turbo.keyboard.latin.settings.SettingsFragment;
@@ -48,6 +49,7 @@ public class FragmentUtils {
         sLatinImeFragments.add(GestureSettingsFragment.class.getName());
         sLatinImeFragments.add(CorrectionSettingsFragment.class.getName());
         sLatinImeFragments.add(AdvancedSettingsFragment.class.getName());
+        sLatinImeFragments.add(DebugSettingsFragment.class.getName());
         sLatinImeFragments.add(SettingsFragment.class.getName());
         sLatinImeFragments.add(SpellCheckerSettingsFragment.class.getName());
         sLatinImeFragments.add(UserDictionaryAddWordFragment.class.getName());
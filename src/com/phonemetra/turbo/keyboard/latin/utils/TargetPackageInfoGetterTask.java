@@ -24,12 +24,22 @@ import android.content.pm.PackageManager;
 import android.os.AsyncTask;
 import android.util.LruCache;
 
+/**
+ * Resolves the workarounds for a target application in the background, so that nobody waits for
+ * the package manager. The results are cached by package name, including for unknown packages.
+ */
 public final class TargetPackageInfoGetterTask extends
-        AsyncTask<String, Void, PackageInfo> {
+        AsyncTask<String, Void, AppWorkaroundsUtils> {
     private static final int MAX_CACHE_ENTRIES = 64; // arbitrary
-    private static final LruCache<String, PackageInfo> sCache = new LruCache<>(MAX_CACHE_ENTRIES);
+    private static final LruCache<String, AppWorkaroundsUtils> sCache =
+            new LruCache<>(MAX_CACHE_ENTRIES);
+
+    public interface OnAppWorkaroundsResolvedListener {
+        // Called on the UI thread.
+        void onAppWorkaroundsResolved(AppWorkaroundsUtils appWorkarounds);
+    }
 
-    public static PackageInfo getCachedPackageInfo(final String packageName) {
+    public static AppWorkaroundsUtils getCachedAppWorkarounds(final String packageName) {
         if (null == packageName) return null;
         return sCache.get(packageName);
     }
@@ -39,29 +49,36 @@ public final class TargetPackageInfoGetterTask extends
     }
 
     private Context mContext;
-    private final AsyncResultHolder<AppWorkaroundsUtils> mResult;
+    private final OnAppWorkaroundsResolvedListener mListener;
 
     public TargetPackageInfoGetterTask(final Context context,
-            final AsyncResultHolder<AppWorkaroundsUtils> result) {
+            final OnAppWorkaroundsResolvedListener listener) {
         mContext = context;
-        mResult = result;
+        mListener = listener;
     }
 
     @Override
-    protected PackageInfo doInBackground(final String... packageName) {
+    protected AppWorkaroundsUtils doInBackground(final String... packageName) {
         final PackageManager pm = mContext.getPackageManager();
         mContext = null; // Bazooka-powered anti-leak device
+        // Another task may have resolved this package meanwhile.
+        final AppWorkaroundsUtils cachedAppWorkarounds = sCache.get(packageName[0]);
+        if (null != cachedAppWorkarounds) {
+            return cachedAppWorkarounds;
+        }
+        PackageInfo packageInfo;
         try {
-            final PackageInfo packageInfo = pm.getPackageInfo(packageName[0], 0 /* flags */);
-            sCache.put(packageName[0], packageInfo);
-            return packageInfo;
+            packageInfo = pm.getPackageInfo(packageName[0], 0 /* flags */);
         } catch (android.content.pm.PackageManager.NameNotFoundException e) {
-            return null;
+            packageInfo = null;
         }
+        final AppWorkaroundsUtils appWorkarounds = new AppWorkaroundsUtils(packageInfo);
+        sCache.put(packageName[0], appWorkarounds);
+        return appWorkarounds;
     }
 
     @Override
-    protected void onPostExecute(final PackageInfo info) {
-        mResult.set(new AppWorkaroundsUtils(info));
+    protected void onPostExecute(final AppWorkaroundsUtils appWorkarounds) {
+        mListener.onAppWorkaroundsResolved(appWorkarounds);
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.ServiceTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.InputType;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+
+import com.phonemetra.turbo.keyboard.KeyboardSwitcher;
+import com.phonemetra.turbo.keyboard.latin.utils.AsyncResultHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from the creation of the IME to the first draw of the keyboard. The service
+ * is created anew, but the process is not, so this doesn't include loading the classes and the
+ * native library.
+ */
+@LargeTest
+public class ColdStartTests extends ServiceTestCase<LatinIME> {
+    private static final String TAG = ColdStartTests.class.getSimpleName();
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private LatinIME mLatinIME;
+
+    public ColdStartTests() {
+        super(LatinIME.class);
+    }
+
+    private void runOnUiThreadAndWait(final Runnable task) {
+        final AsyncResultHolder<Boolean> done = new AsyncResultHolder<>(TAG);
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                done.set(true);
+            }
+        });
+        assertTrue("UI thread task timed out", done.get(false, TIMEOUT_MS));
+    }
+
+    // Does what the window of the IME does for its first frame.
+    private void drawFirstFrame(final View inputView) {
+        final DisplayMetrics metrics = getContext().getResources().getDisplayMetrics();
+        inputView.measure(MeasureSpec.makeMeasureSpec(metrics.widthPixels, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(metrics.heightPixels, MeasureSpec.AT_MOST));
+        inputView.layout(0, 0, inputView.getMeasuredWidth(), inputView.getMeasuredHeight());
+        inputView.getViewTreeObserver().dispatchOnPreDraw();
+        final Bitmap bitmap = Bitmap.createBitmap(inputView.getMeasuredWidth(),
+                inputView.getMeasuredHeight(), Bitmap.Config.ARGB_8888);
+        inputView.draw(new Canvas(bitmap));
+        bitmap.recycle();
+    }
+
+    public void testTimeToFirstDrawnKeyboard() throws Exception {
+        runOnUiThreadAndWait(new Runnable() {
+            @Override
+            public void run() {
+                setupService();
+                mLatinIME = getService();
+                mLatinIME.onCreate();
+                final EditorInfo editorInfo = new EditorInfo();
+                editorInfo.inputType = InputType.TYPE_CLASS_TEXT;
+                mLatinIME.onCreateInputMethodInterface().startInput(
+                        new BaseInputConnection(new View(getContext()), true /* fullEditor */),
+                        editorInfo);
+                final View inputView = mLatinIME.onCreateInputView();
+                mLatinIME.setInputView(inputView);
+                mLatinIME.onBindInput();
+                mLatinIME.onStartInputView(editorInfo, false /* restarting */);
+                drawFirstFrame(inputView);
+            }
+        });
+        final long timeToFirstDrawnKeyboardMillis =
+                mLatinIME.getTimeToFirstDrawnKeyboardMillisForTest();
+        Log.i(TAG, "Time to first drawn keyboard: " + timeToFirstDrawnKeyboardMillis + " ms");
+        assertTrue("time to first drawn keyboard", timeToFirstDrawnKeyboardMillis >= 0);
+        assertNotNull("drawn keyboard", KeyboardSwitcher.getInstance().getKeyboard());
+        // The dictionaries load meanwhile. Let them finish before the service is shut down.
+        mLatinIME.waitForLoadingDictionaries(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+}
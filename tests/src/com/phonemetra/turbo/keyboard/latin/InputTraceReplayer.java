@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.phonemetra.turbo.keyboard.event.Event;
+import com.phonemetra.turbo.keyboard.latin.common.InputPointers;
+import com.phonemetra.turbo.keyboard.latin.utils.AsyncResultHolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Replays a recorded input trace through the input logic, and reports how
+ * long each event took from the input logic to the suggested words being
+ * ready, and how many objects were allocated meanwhile.
+ *
+ * A trace is a text file with one event per line:
+ *
+ * <pre>
+ * # A comment
+ * key &lt;code point or key code&gt; &lt;x&gt; &lt;y&gt;
+ * gesture &lt;x&gt;,&lt;y&gt;,&lt;time&gt; &lt;x&gt;,&lt;y&gt;,&lt;time&gt; ...
+ * </pre>
+ *
+ * Coordinates are in the keyboard frame and times in milliseconds. Each event
+ * is completely handled before the next one is sent, so that a trace always
+ * goes through the same states whatever the speed of the device. The text
+ * goes to the editor LatinIME is bound to and the suggestions come from the
+ * loaded dictionaries: runs are comparable when they replay in an empty editor
+ * with the same dictionaries. InputTraceReplayerTests does so.
+ */
+final class InputTraceReplayer {
+    private static final String TAG = InputTraceReplayer.class.getSimpleName();
+
+    private static final String EVENT_KEY = "key";
+    private static final String EVENT_GESTURE = "gesture";
+    // Gesture points are sent by batches of this size, the way the keyboard
+    // sends them while the finger moves.
+    private static final int GESTURE_UPDATE_POINT_COUNT = 8;
+    private static final long STEP_TIMEOUT_MS = 5000;
+
+    public static final int MEASURE_KEY = 0;
+    public static final int MEASURE_GESTURE_UPDATE = 1;
+    public static final int MEASURE_GESTURE_END = 2;
+    private static final String[] MEASURE_NAMES = { "key", "gestureUpdate",
+            "gestureEnd" };
+
+    private static final class Samples {
+        private long[] mDurationNanos = new long[64];
+        private long[] mAllocCounts = new long[64];
+        private int mCount;
+
+        public void add(final long durationNanos, final long allocCount) {
+            if (mCount == mDurationNanos.length) {
+                mDurationNanos = Arrays.copyOf(mDurationNanos, mCount * 2);
+                mAllocCounts = Arrays.copyOf(mAllocCounts, mCount * 2);
+            }
+            mDurationNanos[mCount] = durationNanos;
+            mAllocCounts[mCount] = allocCount;
+            ++mCount;
+        }
+
+        // Nearest-rank percentile of sorted values.
+        private static long getPercentile(final long[] sortedValues,
+                final int percentile) {
+            final int rank = (sortedValues.length * percentile + 99) / 100;
+            return sortedValues[Math.max(rank, 1) - 1];
+        }
+
+        @Override
+        public String toString() {
+            if (0 == mCount) {
+                return "count=0";
+            }
+            final long[] durations = Arrays.copyOf(mDurationNanos, mCount);
+            final long[] allocCounts = Arrays.copyOf(mAllocCounts, mCount);
+            Arrays.sort(durations);
+            Arrays.sort(allocCounts);
+            long totalAllocCount = 0;
+            for (final long allocCount : allocCounts) {
+                totalAllocCount += allocCount;
+            }
+            return "count=" + mCount + " p50="
+                    + getPercentile(durations, 50) / 1000 + "us p95="
+                    + getPercentile(durations, 95) / 1000 + "us p99="
+                    + getPercentile(durations, 99) / 1000 + "us allocs avg="
+                    + totalAllocCount / mCount + " p99="
+                    + getPercentile(allocCounts, 99);
+        }
+    }
+
+    private final LatinIME mLatinIME;
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private final Samples[] mSamples = new Samples[MEASURE_NAMES.length];
+    private int mTimeoutCount;
+
+    public InputTraceReplayer(@Nonnull final LatinIME latinIME) {
+        mLatinIME = latinIME;
+        for (int i = 0; i < mSamples.length; ++i) {
+            mSamples[i] = new Samples();
+        }
+    }
+
+    /**
+     * Replays a trace and logs the report. This blocks until every event is
+     * handled, so it must not be called on the UI thread.
+     *
+     * @param trace the trace to replay. It is closed once read.
+     * @param traceName the name of the trace in the report.
+     */
+    @SuppressWarnings("deprecation")
+    public void replay(@Nonnull final Reader trace, @Nonnull final String traceName)
+            throws IOException {
+        final ArrayList<String[]> events = readTrace(trace);
+        Debug.startAllocCounting();
+        try {
+            for (final String[] event : events) {
+                try {
+                    if (EVENT_KEY.equals(event[0])) {
+                        replayKey(event);
+                    } else {
+                        replayGesture(event);
+                    }
+                } catch (final NumberFormatException
+                        | ArrayIndexOutOfBoundsException e) {
+                    Log.w(TAG, "Skipping malformed event: "
+                            + Arrays.toString(event), e);
+                }
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        Log.i(TAG, "Replayed " + events.size() + " events from " + traceName
+                + ", " + mTimeoutCount + " timed out");
+        for (int i = 0; i < MEASURE_NAMES.length; ++i) {
+            Log.i(TAG, "  " + MEASURE_NAMES[i] + ": " + mSamples[i]);
+        }
+    }
+
+    public int getSampleCount(final int measure) {
+        return mSamples[measure].mCount;
+    }
+
+    public int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    @Nonnull
+    private static ArrayList<String[]> readTrace(@Nonnull final Reader trace)
+            throws IOException {
+        final ArrayList<String[]> events = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(trace);
+        try {
+            String line;
+            while (null != (line = reader.readLine())) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] event = line.split("\\s+");
+                if ((EVENT_KEY.equals(event[0]) && event.length == 4)
+                        || (EVENT_GESTURE.equals(event[0]) && event.length > 1)) {
+                    events.add(event);
+                } else {
+                    Log.w(TAG, "Skipping malformed event: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return events;
+    }
+
+    private void replayKey(@Nonnull final String[] event) {
+        final Event keyEvent = LatinIME.createSoftwareKeypressEvent(
+                Integer.parseInt(event[1]), Integer.parseInt(event[2]),
+                Integer.parseInt(event[3]), false /* isKeyRepeat */);
+        measure(MEASURE_KEY, new Runnable() {
+            @Override
+            public void run() {
+                mLatinIME.onEvent(keyEvent);
+                // The suggestion strip is normally updated after a delay. Do
+                // it now so that computing the suggestions is measured too.
+                if (mLatinIME.mHandler.hasPendingUpdateSuggestions()) {
+                    mLatinIME.mHandler.cancelUpdateSuggestionStrip();
+                    mLatinIME.mInputLogic.performUpdateSuggestionStripSync(
+                            mLatinIME.mSettings.getCurrent(),
+                            SuggestedWords.INPUT_STYLE_TYPING);
+                }
+            }
+        });
+    }
+
+    private void replayGesture(@Nonnull final String[] event) {
+        final int pointCount = event.length - 1;
+        final int[] xs = new int[pointCount];
+        final int[] ys = new int[pointCount];
+        final int[] times = new int[pointCount];
+        for (int i = 0; i < pointCount; ++i) {
+            final String[] point = event[i + 1].split(",");
+            xs[i] = Integer.parseInt(point[0]);
+            ys[i] = Integer.parseInt(point[1]);
+            times[i] = Integer.parseInt(point[2]);
+        }
+        if (!runOnUiThreadAndWait(new Runnable() {
+            @Override
+            public void run() {
+                mLatinIME.onStartBatchInput();
+            }
+        })) {
+            ++mTimeoutCount;
+            return;
+        }
+        for (int size = GESTURE_UPDATE_POINT_COUNT; size < pointCount;
+                size += GESTURE_UPDATE_POINT_COUNT) {
+            final InputPointers batchPointers = getPointers(xs, ys, times, size);
+            measure(MEASURE_GESTURE_UPDATE, new Runnable() {
+                @Override
+                public void run() {
+                    mLatinIME.onUpdateBatchInput(batchPointers);
+                }
+            });
+        }
+        final InputPointers pointers = getPointers(xs, ys, times, pointCount);
+        measure(MEASURE_GESTURE_END, new Runnable() {
+            @Override
+            public void run() {
+                mLatinIME.onEndBatchInput(pointers);
+            }
+        });
+    }
+
+    @Nonnull
+    private static InputPointers getPointers(@Nonnull final int[] xs,
+            @Nonnull final int[] ys, @Nonnull final int[] times, final int size) {
+        final InputPointers pointers = new InputPointers(size);
+        for (int i = 0; i < size; ++i) {
+            pointers.addPointer(xs[i], ys[i], 0 /* pointerId */, times[i]);
+        }
+        return pointers;
+    }
+
+    /**
+     * Runs a task on the UI thread, waits for the suggestions it requested and
+     * for the UI thread to handle them, then records how long it all took.
+     */
+    @SuppressWarnings("deprecation")
+    private void measure(final int measure, @Nonnull final Runnable uiTask) {
+        final AsyncResultHolder<Boolean> uiTaskDone = new AsyncResultHolder<>(TAG);
+        final AsyncResultHolder<Boolean> suggestionsDone = new AsyncResultHolder<>(TAG);
+        final AsyncResultHolder<Boolean> resultsShown = new AsyncResultHolder<>(TAG);
+        final Runnable runUiTask = new Runnable() {
+            @Override
+            public void run() {
+                uiTask.run();
+                uiTaskDone.set(true);
+            }
+        };
+        final Runnable markSuggestionsDone = new Runnable() {
+            @Override
+            public void run() {
+                suggestionsDone.set(true);
+            }
+        };
+        final Runnable markResultsShown = new Runnable() {
+            @Override
+            public void run() {
+                resultsShown.set(true);
+            }
+        };
+        final long startAllocCount = Debug.getGlobalAllocCount();
+        final long startNanos = System.nanoTime();
+        mUiHandler.post(runUiTask);
+        boolean isDone = uiTaskDone.get(false, STEP_TIMEOUT_MS);
+        if (isDone) {
+            mLatinIME.mInputLogic
+                    .runAfterPendingSuggestionRequests(markSuggestionsDone);
+            isDone = suggestionsDone.get(false, STEP_TIMEOUT_MS);
+        }
+        if (isDone) {
+            // Gesture suggestions are sent back to the UI thread to be shown
+            // and committed before this runs.
+            mUiHandler.post(markResultsShown);
+            isDone = resultsShown.get(false, STEP_TIMEOUT_MS);
+        }
+        final long durationNanos = System.nanoTime() - startNanos;
+        final long allocCount = Debug.getGlobalAllocCount() - startAllocCount;
+        if (!isDone) {
+            Log.w(TAG, "Timed out replaying " + MEASURE_NAMES[measure]);
+            ++mTimeoutCount;
+            return;
+        }
+        mSamples[measure].add(durationNanos, allocCount);
+    }
+
+    private boolean runOnUiThreadAndWait(@Nonnull final Runnable task) {
+        final AsyncResultHolder<Boolean> done = new AsyncResultHolder<>(TAG);
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                done.set(true);
+            }
+        });
+        return done.get(false, STEP_TIMEOUT_MS);
+    }
+}
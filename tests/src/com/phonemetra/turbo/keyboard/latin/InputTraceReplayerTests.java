@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.phonemetra.turbo.keyboard.latin;
+
+import android.graphics.Point;
+import android.os.Handler;
+import android.os.Looper;
+import android.test.ServiceTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.SpannableStringBuilder;
+import android.view.View;
+import android.view.inputmethod.BaseInputConnection;
+import android.view.inputmethod.EditorInfo;
+
+import com.phonemetra.turbo.keyboard.Key;
+import com.phonemetra.turbo.keyboard.KeyboardSwitcher;
+import com.phonemetra.turbo.keyboard.latin.utils.AsyncResultHolder;
+
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays typing and gesture traces through the input logic into an in-memory editor. The
+ * replayer logs the latency and allocation report of each trace.
+ */
+@LargeTest
+public class InputTraceReplayerTests extends ServiceTestCase<LatinIME> {
+    private static final String TAG = InputTraceReplayerTests.class.getSimpleName();
+
+    private static final long TIMEOUT_MS = 5000;
+    private static final int GESTURE_POINTS_BETWEEN_KEYS = 8;
+    private static final int GESTURE_MS_BETWEEN_POINTS = 10;
+
+    /**
+     * An editor that keeps its text in a buffer, so that the replay doesn't depend on any view or
+     * on any app being in the foreground.
+     */
+    private static final class InMemoryInputConnection extends BaseInputConnection {
+        private final SpannableStringBuilder mText = new SpannableStringBuilder();
+
+        public InMemoryInputConnection(final View view) {
+            super(view, true /* fullEditor */);
+        }
+
+        @Override
+        public Editable getEditable() {
+            return mText;
+        }
+    }
+
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private LatinIME mLatinIME;
+    private InMemoryInputConnection mInputConnection;
+
+    public InputTraceReplayerTests() {
+        super(LatinIME.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // The handlers of LatinIME run on the looper of the thread that creates it.
+        runOnUiThreadAndWait(new Runnable() {
+            @Override
+            public void run() {
+                setupService();
+                mLatinIME = getService();
+                mLatinIME.onCreate();
+                final EditorInfo editorInfo = new EditorInfo();
+                editorInfo.inputType = InputType.TYPE_CLASS_TEXT
+                        | InputType.TYPE_TEXT_FLAG_AUTO_CORRECT;
+                mInputConnection = new InMemoryInputConnection(new View(getContext()));
+                mLatinIME.onCreateInputMethodInterface().startInput(mInputConnection, editorInfo);
+                mLatinIME.setInputView(mLatinIME.onCreateInputView());
+                mLatinIME.onBindInput();
+                mLatinIME.onStartInputView(editorInfo, false /* restarting */);
+                mLatinIME.replaceDictionariesForTest(Locale.US);
+            }
+        });
+        mLatinIME.waitForLoadingDictionaries(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        // Let the UI thread handle the start of the input.
+        runOnUiThreadAndWait(new Runnable() {
+            @Override
+            public void run() {}
+        });
+    }
+
+    private void runOnUiThreadAndWait(final Runnable task) {
+        final AsyncResultHolder<Boolean> done = new AsyncResultHolder<>(TAG);
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                done.set(true);
+            }
+        });
+        assertTrue("UI thread task timed out", done.get(false, TIMEOUT_MS));
+    }
+
+    private static Point getKeyCenter(final int codePoint) {
+        final Key key = KeyboardSwitcher.getInstance().getKeyboard().getKey(codePoint);
+        assertNotNull("No key for " + codePoint, key);
+        return new Point(key.getX() + key.getWidth() / 2, key.getY() + key.getHeight() / 2);
+    }
+
+    private static String getTypingTrace(final String text) {
+        final StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < text.length(); i = text.offsetByCodePoints(i, 1)) {
+            final int codePoint = text.codePointAt(i);
+            final Point center = getKeyCenter(codePoint);
+            trace.append("key ").append(codePoint).append(' ').append(center.x).append(' ')
+                    .append(center.y).append('\n');
+        }
+        return trace.toString();
+    }
+
+    // A gesture going straight from the center of a key of the word to the next one.
+    private static String getGestureTrace(final String word) {
+        final StringBuilder trace = new StringBuilder("gesture");
+        Point previousCenter = null;
+        int time = 0;
+        for (int i = 0; i < word.length(); i = word.offsetByCodePoints(i, 1)) {
+            final Point center = getKeyCenter(word.codePointAt(i));
+            final int pointCount = (null == previousCenter) ? 1 : GESTURE_POINTS_BETWEEN_KEYS;
+            for (int j = pointCount - 1; j >= 0; --j) {
+                final int x = (null == previousCenter) ? center.x
+                        : center.x - (center.x - previousCenter.x) * j / pointCount;
+                final int y = (null == previousCenter) ? center.y
+                        : center.y - (center.y - previousCenter.y) * j / pointCount;
+                trace.append(' ').append(x).append(',').append(y).append(',').append(time);
+                time += GESTURE_MS_BETWEEN_POINTS;
+            }
+            previousCenter = center;
+        }
+        return trace.append('\n').toString();
+    }
+
+    private InputTraceReplayer replay(final String trace) throws Exception {
+        final InputTraceReplayer replayer = new InputTraceReplayer(mLatinIME);
+        replayer.replay(new StringReader(trace), getName());
+        assertEquals("timed out events", 0, replayer.getTimeoutCount());
+        return replayer;
+    }
+
+    public void testReplayTyping() throws Exception {
+        final String text = "hello world ";
+        final InputTraceReplayer replayer = replay(getTypingTrace(text));
+        assertEquals("key samples", text.length(),
+                replayer.getSampleCount(InputTraceReplayer.MEASURE_KEY));
+        assertEquals("typed text", text, mInputConnection.getEditable().toString());
+    }
+
+    public void testReplayGesture() throws Exception {
+        final String word = "hello";
+        final InputTraceReplayer replayer = replay(getGestureTrace(word));
+        assertEquals("gesture end samples", 1,
+                replayer.getSampleCount(InputTraceReplayer.MEASURE_GESTURE_END));
+        assertEquals("gestured text", word, mInputConnection.getEditable().toString());
+    }
+
+    public void testReplayGestureThenTyping() throws Exception {
+        replay(getGestureTrace("hello") + getTypingTrace(" ") + getGestureTrace("world")
+                + getTypingTrace(" "));
+        assertEquals("replayed text", "hello world ", mInputConnection.getEditable().toString());
+    }
+}